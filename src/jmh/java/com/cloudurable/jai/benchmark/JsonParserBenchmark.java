@@ -0,0 +1,92 @@
+package com.cloudurable.jai.benchmark;
+
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponseDeserializer;
+import com.cloudurable.jai.util.JsonParsers;
+import io.nats.jparse.node.RootNode;
+import io.nats.jparse.parser.JsonParserBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a new JSON parser for every response with the thread-local parsers from {@link JsonParsers}.
+ * <p>
+ * Run with {@code ./gradlew jmh}. The gc profiler is enabled in the build, so besides the average time per response
+ * the report holds {@code gc.alloc.rate.norm}, the bytes allocated per response. Multiply it by 5,000 to get the
+ * allocation rate of a client handling 5k responses per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JsonParserBenchmark {
+
+    private static final String CHAT_RESPONSE = "{\n" +
+            "  \"id\": \"chatcmpl-7c5ovEXfVwDgwlSK4x2ShVLn4ysKq\",\n" +
+            "  \"object\": \"chat.completion\",\n" +
+            "  \"created\": 1689108713,\n" +
+            "  \"model\": \"gpt-3.5-turbo-0613\",\n" +
+            "  \"choices\": [\n" +
+            "    {\n" +
+            "      \"index\": 0,\n" +
+            "      \"message\": {\n" +
+            "        \"role\": \"assistant\",\n" +
+            "        \"content\": null,\n" +
+            "        \"function_call\": {\n" +
+            "          \"name\": \"get_current_weather\",\n" +
+            "          \"arguments\": \"{\\n  \\\"location\\\": \\\"Austin, TX\\\",\\n  \\\"unit\\\": \\\"fahrenheit\\\"\\n}\"\n" +
+            "        }\n" +
+            "      },\n" +
+            "      \"finish_reason\": \"function_call\"\n" +
+            "    }\n" +
+            "  ],\n" +
+            "  \"usage\": {\n" +
+            "    \"prompt_tokens\": 82,\n" +
+            "    \"completion_tokens\": 26,\n" +
+            "    \"total_tokens\": 108\n" +
+            "  }\n" +
+            "}";
+
+    /**
+     * The old behavior: a parser is built for every response.
+     *
+     * @return the parsed response
+     */
+    @Benchmark
+    public RootNode newParserPerResponse() {
+        return JsonParserBuilder.builder().build().parse(CHAT_RESPONSE);
+    }
+
+    /**
+     * The parser cached for the calling thread is reused.
+     *
+     * @return the parsed response
+     */
+    @Benchmark
+    public RootNode threadLocalParser() {
+        return JsonParsers.parser().parse(CHAT_RESPONSE);
+    }
+
+    /**
+     * A full chat response deserialization, including the nested parse of the function call arguments.
+     *
+     * @return the chat response
+     */
+    @Benchmark
+    public ChatResponse deserializeChatResponse() {
+        return ChatResponseDeserializer.deserialize(CHAT_RESPONSE);
+    }
+}
@@ -0,0 +1,84 @@
+package com.cloudurable.jai.benchmark;
+
+import com.cloudurable.jai.tokenizer.BpeTokenizer;
+import com.cloudurable.jai.tokenizer.Encoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast {@link BpeTokenizer} counts the cl100k_base tokens of English prose mixed with code.
+ * <p>
+ * The vocabulary is not part of the library; download
+ * https://openaipublic.blob.core.windows.net/encodings/cl100k_base.tiktoken into src/jmh/resources before running
+ * {@code ./gradlew jmh}. Each operation is one character of ASCII text, so the throughput in operations per
+ * microsecond is the tokenizer's speed in MB/s on a single core; the target is above 50. The gc profiler shows
+ * {@code gc.alloc.rate.norm} near zero for counting, and the size of the token array for encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class TokenizerBenchmark {
+
+    private static final int TEXT_LENGTH = 1 << 16;
+
+    private static final String PARAGRAPH = "The quick brown fox jumps over the lazy dog, and it's 2023: we've "
+            + "counted 1,234,567 tokens so far. Large language models read text as tokens, not characters.\n\n"
+            + "    public static int add(final int left, final int right) {\n"
+            + "        return left + right; // TODO(perf): vectorize?\n"
+            + "    }\n"
+            + "{\"model\": \"gpt-3.5-turbo\", \"messages\": [{\"role\": \"user\", \"content\": \"Hi!\"}]}\n";
+
+    private BpeTokenizer tokenizer;
+    private String text;
+
+    /**
+     * Loads the vocabulary and builds 64 KiB of text.
+     */
+    @Setup
+    public void setUp() {
+        tokenizer = BpeTokenizer.load(Encoding.CL100K_BASE);
+        final StringBuilder builder = new StringBuilder(TEXT_LENGTH + PARAGRAPH.length());
+        while (builder.length() < TEXT_LENGTH) {
+            builder.append(PARAGRAPH);
+        }
+        text = builder.substring(0, TEXT_LENGTH);
+    }
+
+    /**
+     * Counts the tokens without collecting them.
+     *
+     * @return the number of tokens
+     */
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public int countTokens() {
+        return tokenizer.countTokens(text);
+    }
+
+    /**
+     * Encodes the text into an array of token ids.
+     *
+     * @return the token ids
+     */
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public int[] encode() {
+        return tokenizer.encode(text);
+    }
+}
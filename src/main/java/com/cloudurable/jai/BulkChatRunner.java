@@ -0,0 +1,381 @@
+package com.cloudurable.jai;
+
+import com.cloudurable.jai.model.ClientErrorResponse;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Sends a large number of chat requests with a bounded number in flight.
+ * <p>
+ * Requests are pulled from an iterator or stream only when there is room in the window, so a job of half a million
+ * prompts holds at most the window's worth of requests and responses in memory, and a slow API slows down reading the
+ * source instead of piling up futures. Every request gets exactly one {@link Result}: failed requests are delivered
+ * as a {@link ClientErrorResponse} rather than stopping the run. Results are handed to the consumer one at a time; in
+ * order by default, or as they complete if ordering is relaxed, which keeps the window full when some requests are
+ * much slower than others.
+ * <p>
+ * The checkpoint of a run is the number of leading requests whose results have all been delivered. It is reported to
+ * the checkpoint listener as it advances, and a run that stopped can be continued from it with
+ * {@link #resume(Iterator, long, Consumer)}; requests after the checkpoint may be sent again. Use the rate limiter of
+ * the client to pace the requests; the window only bounds how many wait at once.
+ */
+public class BulkChatRunner {
+
+    private final ClientAsync client;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final LongConsumer checkpointListener;
+    private final int checkpointInterval;
+
+    private BulkChatRunner(ClientAsync client, int maxInFlight, boolean ordered, LongConsumer checkpointListener,
+                           int checkpointInterval) {
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+        this.checkpointListener = checkpointListener;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sends the requests of a stream, closing the stream when the run ends.
+     *
+     * @param requests The requests.
+     * @param results  Receives the result of each request.
+     * @return A future that completes with the final checkpoint, the number of requests, when every result has been
+     * delivered, or fails if the stream or the consumer throws. Cancelling it stops sending requests.
+     */
+    public CompletableFuture<Long> run(final Stream<ChatRequest> requests, final Consumer<Result> results) {
+        final CompletableFuture<Long> done = resume(requests.iterator(), 0, results);
+        done.whenComplete((count, error) -> requests.close());
+        return done;
+    }
+
+    /**
+     * Sends the requests of an iterator.
+     *
+     * @param requests The requests.
+     * @param results  Receives the result of each request.
+     * @return A future that completes with the final checkpoint, the number of requests, when every result has been
+     * delivered, or fails if the iterator or the consumer throws. Cancelling it stops sending requests.
+     */
+    public CompletableFuture<Long> run(final Iterator<ChatRequest> requests, final Consumer<Result> results) {
+        return resume(requests, 0, results);
+    }
+
+    /**
+     * Continues a run from a checkpoint: the first requests of the iterator, up to the checkpoint, are skipped, and
+     * the indexes of results and checkpoints count from the start of the iterator as before.
+     *
+     * @param requests   The requests, from the first one of the original run.
+     * @param checkpoint The last checkpoint of the original run.
+     * @param results    Receives the result of each request after the checkpoint.
+     * @return A future that completes with the final checkpoint when every result has been delivered, or fails if the
+     * iterator or the consumer throws. Cancelling it stops sending requests.
+     */
+    public CompletableFuture<Long> resume(final Iterator<ChatRequest> requests, final long checkpoint,
+                                          final Consumer<Result> results) {
+        final Run run = new Run(requests, checkpoint, results);
+        try {
+            for (long skipped = 0; skipped < checkpoint && requests.hasNext(); skipped++) {
+                requests.next();
+            }
+        } catch (RuntimeException e) {
+            run.done.completeExceptionally(e);
+            return run.done;
+        }
+        run.pump();
+        return run.done;
+    }
+
+    /**
+     * The result of one request of a run.
+     */
+    public static final class Result {
+        private final long index;
+        private final ClientResponse<ChatRequest, ChatResponse> response;
+
+        private Result(final long index, final ClientResponse<ChatRequest, ChatResponse> response) {
+            this.index = index;
+            this.response = response;
+        }
+
+        /**
+         * Gets the position of the request in the source, counting from 0.
+         *
+         * @return The index.
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the chat request.
+         *
+         * @return The request.
+         */
+        public ChatRequest getRequest() {
+            return response.getRequest();
+        }
+
+        /**
+         * Gets the response to the request, which is a {@link ClientErrorResponse} if the request failed.
+         *
+         * @return The response.
+         */
+        public ClientResponse<ChatRequest, ChatResponse> getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * The state of one run. Only one thread pumps requests from the source at a time; results are delivered under the
+     * run's lock, so the consumer is never called concurrently.
+     */
+    private final class Run {
+        private final Iterator<ChatRequest> requests;
+        private final Consumer<Result> results;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+        private final AtomicInteger pumps = new AtomicInteger();
+        /**
+         * Completed results waiting for the results before them, when ordered.
+         */
+        private final Map<Long, Result> waiting = new HashMap<>();
+        /**
+         * The requests after the checkpoint whose results were delivered, by index minus the base, when unordered.
+         */
+        private BitSet delivered = new BitSet();
+        private long deliveredBase;
+        private long next;
+        private long checkpoint;
+        private long reported;
+        private int inFlight;
+        private boolean exhausted;
+
+        private Run(final Iterator<ChatRequest> requests, final long checkpoint, final Consumer<Result> results) {
+            this.requests = requests;
+            this.results = results;
+            this.next = checkpoint;
+            this.checkpoint = checkpoint;
+            this.reported = checkpoint;
+            this.deliveredBase = checkpoint;
+        }
+
+        /**
+         * Sends requests until the window is full or the source is exhausted. Calls made while another thread is
+         * pumping make that thread go around again instead.
+         */
+        void pump() {
+            if (pumps.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done.isDone() && !exhausted && hasRoom()) {
+                    final ChatRequest request;
+                    try {
+                        if (!requests.hasNext()) {
+                            exhausted = true;
+                            break;
+                        }
+                        request = requests.next();
+                    } catch (RuntimeException e) {
+                        done.completeExceptionally(e);
+                        break;
+                    }
+                    final long index;
+                    synchronized (this) {
+                        index = next++;
+                        inFlight++;
+                    }
+                    send(index, request);
+                }
+                final boolean finished;
+                synchronized (this) {
+                    finished = exhausted && inFlight == 0 && !done.isDone() && (reported == checkpoint || report());
+                }
+                if (finished) {
+                    done.complete(checkpoint);
+                }
+            } while (pumps.decrementAndGet() != 0);
+        }
+
+        private synchronized boolean hasRoom() {
+            return inFlight < maxInFlight;
+        }
+
+        private void send(final long index, final ChatRequest request) {
+            CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> sent;
+            try {
+                sent = client.chatAsync(request);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.handle((response, error) -> error == null ? response
+                            : new ClientErrorResponse<ChatRequest, ChatResponse>(request, error))
+                    .thenAccept(response -> deliver(new Result(index, response)));
+        }
+
+        private void deliver(final Result result) {
+            synchronized (this) {
+                if (done.isDone()) {
+                    return;
+                }
+                try {
+                    if (ordered) {
+                        waiting.put(result.index, result);
+                        Result head;
+                        while ((head = waiting.remove(checkpoint)) != null) {
+                            results.accept(head);
+                            checkpoint++;
+                            inFlight--;
+                        }
+                    } else {
+                        results.accept(result);
+                        inFlight--;
+                        delivered.set((int) (result.index - deliveredBase));
+                        while (delivered.get((int) (checkpoint - deliveredBase))) {
+                            checkpoint++;
+                        }
+                        if (checkpoint - deliveredBase >= 4096) {
+                            delivered = delivered.get((int) (checkpoint - deliveredBase), Math.max(delivered.length(),
+                                    (int) (checkpoint - deliveredBase)));
+                            deliveredBase = checkpoint;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                if (checkpoint - reported >= checkpointInterval && !report()) {
+                    return;
+                }
+            }
+            pump();
+        }
+
+        /**
+         * Reports the checkpoint to the listener, failing the run if the listener throws.
+         */
+        private boolean report() {
+            reported = checkpoint;
+            if (checkpointListener == null) {
+                return true;
+            }
+            try {
+                checkpointListener.accept(checkpoint);
+                return true;
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Builder for BulkChatRunner.
+     */
+    public static class Builder {
+        private ClientAsync client;
+        private int maxInFlight = 64;
+        private boolean ordered = true;
+        private LongConsumer checkpointListener;
+        private int checkpointInterval = 1000;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the client used to send the requests.
+         *
+         * @param client The client.
+         * @return The builder instance.
+         */
+        public Builder setClient(ClientAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the most requests sent at once. When results are ordered, a completed result waiting for an earlier
+         * one still takes its place in the window. Defaults to 64.
+         *
+         * @param maxInFlight The most requests in flight.
+         * @return The builder instance.
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets whether results are delivered in the order of the requests. Defaults to true; if false, results are
+         * delivered as they complete.
+         *
+         * @param ordered true to deliver results in order.
+         * @return The builder instance.
+         */
+        public Builder setOrdered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * Sets the listener the checkpoint is reported to, from the thread that delivers results, after the results
+         * before it have been delivered. By default checkpoints are not reported.
+         *
+         * @param checkpointListener The listener.
+         * @return The builder instance.
+         */
+        public Builder setCheckpointListener(LongConsumer checkpointListener) {
+            this.checkpointListener = checkpointListener;
+            return this;
+        }
+
+        /**
+         * Sets how far the checkpoint advances between reports. The final checkpoint is always reported. Defaults to
+         * 1000.
+         *
+         * @param checkpointInterval The number of requests between reports.
+         * @return The builder instance.
+         */
+        public Builder setCheckpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Builds the BulkChatRunner.
+         *
+         * @return The BulkChatRunner.
+         * @throws IllegalArgumentException If the client is missing or a limit is not positive.
+         */
+        public BulkChatRunner build() {
+            if (client == null) {
+                throw new IllegalArgumentException("client is required");
+            }
+            if (maxInFlight < 1 || checkpointInterval < 1) {
+                throw new IllegalArgumentException("maxInFlight and checkpointInterval must be positive");
+            }
+            return new BulkChatRunner(client, maxInFlight, ordered, checkpointListener, checkpointInterval);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.cloudurable.jai.model.audio.TranscriptionRequest;
 import com.cloudurable.jai.model.audio.TranslateRequest;
 import com.cloudurable.jai.model.file.FileData;
 import com.cloudurable.jai.model.file.FileDeleteResponse;
+import com.cloudurable.jai.model.file.FileDownloadRequest;
 import com.cloudurable.jai.model.file.FileListResponse;
 import com.cloudurable.jai.model.file.UploadFileRequest;
 import com.cloudurable.jai.model.finetune.*;
@@ -17,14 +18,22 @@ import com.cloudurable.jai.model.model.ModelData;
 import com.cloudurable.jai.model.model.ModelListResponse;
 import com.cloudurable.jai.model.moderation.CreateModerationRequest;
 import com.cloudurable.jai.model.moderation.CreateModerationResponse;
+import com.cloudurable.jai.model.text.completion.CompletionChunk;
 import com.cloudurable.jai.model.text.completion.CompletionRequest;
 import com.cloudurable.jai.model.text.completion.CompletionResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunk;
 import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
 import com.cloudurable.jai.model.text.edit.EditRequest;
 import com.cloudurable.jai.model.text.edit.EditResponse;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import com.cloudurable.jai.util.RequestResponseUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
 
 /**
  * The Client interface defines synchronous methods for interacting with the JAI (Just AI) client.
@@ -99,6 +108,36 @@ public interface Client {
      */
     String getFileContentString(String id);
 
+    /**
+     * Downloads the content of a file into a local file, writing it to disk as it arrives.
+     * The default implementation throws {@link UnsupportedOperationException}.
+     *
+     * @param downloadRequest The download request, which names the file, the target and how to fetch it.
+     * @return The size of the downloaded file in bytes.
+     */
+    default long downloadFile(FileDownloadRequest downloadRequest) {
+        throw new UnsupportedOperationException("downloadFile is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Streams the content of a file into an output stream, without holding it in memory.
+     * The output stream is not closed. The default implementation writes the content of
+     * {@link #getFileContentBinary(String)}, which is held in memory.
+     *
+     * @param id  The ID of the file.
+     * @param out The stream the content is written to.
+     * @return The number of bytes written.
+     */
+    default long downloadFileContent(String id, OutputStream out) {
+        final byte[] content = getFileContentBinary(id);
+        try {
+            out.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return content.length;
+    }
+
     /**
      * Deletes a file.
      *
@@ -162,6 +201,18 @@ public interface Client {
      */
     ClientResponse<ChatRequest, ChatResponse> chat(ChatRequest chatRequest);
 
+    /**
+     * Sends a chat request and streams the response, passing each chunk to the listener as it arrives.
+     * The default implementation throws {@link UnsupportedOperationException}.
+     *
+     * @param chatRequest the chat request to be sent.
+     * @param listener    the listener that receives each chunk of the response.
+     * @return a `ClientResponse` object containing the chat response assembled from the chunks.
+     */
+    default ClientResponse<ChatRequest, ChatResponse> chatStream(ChatRequest chatRequest, Consumer<ChatChunk> listener) {
+        throw new UnsupportedOperationException("chatStream is not supported by " + getClass().getName());
+    }
+
     /**
      * Sends a completion request and retrieves the corresponding completion response.
      *
@@ -170,6 +221,19 @@ public interface Client {
      */
     ClientResponse<CompletionRequest, CompletionResponse> completion(CompletionRequest completionRequest);
 
+    /**
+     * Sends a completion request and streams the response, passing each chunk to the listener as it arrives.
+     * The default implementation throws {@link UnsupportedOperationException}.
+     *
+     * @param completionRequest the completion request to be sent.
+     * @param listener          the listener that receives each chunk of the response.
+     * @return a `ClientResponse` object containing the completion response assembled from the chunks.
+     */
+    default ClientResponse<CompletionRequest, CompletionResponse> completionStream(CompletionRequest completionRequest,
+                                                                                  Consumer<CompletionChunk> listener) {
+        throw new UnsupportedOperationException("completionStream is not supported by " + getClass().getName());
+    }
+
     /**
      * Sends an edit request and retrieves the corresponding edit response.
      *
@@ -186,6 +250,17 @@ public interface Client {
      */
     ClientResponse<EmbeddingRequest, EmbeddingResponse> embedding(EmbeddingRequest embeddingRequest);
 
+    /**
+     * Sends an embedding request and reads the embeddings into one contiguous matrix, one row per input.
+     * The default implementation copies the response of {@link #embedding(EmbeddingRequest)} into a matrix.
+     *
+     * @param embeddingRequest the embedding request to be sent.
+     * @return a `ClientResponse` object containing the embeddings as an `EmbeddingMatrix`.
+     */
+    default ClientResponse<EmbeddingRequest, EmbeddingMatrix> embeddingMatrix(EmbeddingRequest embeddingRequest) {
+        return RequestResponseUtils.toEmbeddingMatrixResponse(embedding(embeddingRequest));
+    }
+
     /**
      * Sends a transcription request and retrieves the corresponding transcription response.
      *
@@ -6,6 +6,7 @@ import com.cloudurable.jai.model.audio.TranscriptionRequest;
 import com.cloudurable.jai.model.audio.TranslateRequest;
 import com.cloudurable.jai.model.file.FileData;
 import com.cloudurable.jai.model.file.FileDeleteResponse;
+import com.cloudurable.jai.model.file.FileDownloadRequest;
 import com.cloudurable.jai.model.file.FileListResponse;
 import com.cloudurable.jai.model.file.UploadFileRequest;
 import com.cloudurable.jai.model.finetune.*;
@@ -17,16 +18,21 @@ import com.cloudurable.jai.model.model.ModelData;
 import com.cloudurable.jai.model.model.ModelListResponse;
 import com.cloudurable.jai.model.moderation.CreateModerationRequest;
 import com.cloudurable.jai.model.moderation.CreateModerationResponse;
+import com.cloudurable.jai.model.text.completion.CompletionChunk;
 import com.cloudurable.jai.model.text.completion.CompletionRequest;
 import com.cloudurable.jai.model.text.completion.CompletionResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunk;
 import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
 import com.cloudurable.jai.model.text.edit.EditRequest;
 import com.cloudurable.jai.model.text.edit.EditResponse;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import com.cloudurable.jai.util.RequestResponseUtils;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * The ClientAsync interface defines asynchronous methods for interacting with the JAI (Just AI) client.
@@ -96,6 +102,18 @@ public interface ClientAsync {
      */
     CompletableFuture<String> getFileContentStringAsync(String id);
 
+    /**
+     * Downloads the content of a file into a local file asynchronously, writing it to disk as it arrives.
+     * The default implementation returns a future failed with {@link UnsupportedOperationException}.
+     *
+     * @param downloadRequest The download request, which names the file, the target and how to fetch it.
+     * @return A CompletableFuture that resolves to the size of the downloaded file in bytes.
+     */
+    default CompletableFuture<Long> downloadFileAsync(FileDownloadRequest downloadRequest) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("downloadFileAsync is not supported by " + getClass().getName()));
+    }
+
     /**
      * Uploads a file to the JAI system asynchronously.
      *
@@ -160,6 +178,21 @@ public interface ClientAsync {
      */
     CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> chatAsync(ChatRequest chatRequest);
 
+    /**
+     * Asynchronously performs a streamed chat request, passing each chunk to the listener as it arrives.
+     * The default implementation returns a future failed with {@link UnsupportedOperationException}.
+     *
+     * @param chatRequest the chat request to be sent.
+     * @param listener    the listener that receives each chunk of the response.
+     * @return a CompletableFuture that completes once the stream has ended
+     * and contains the client response of type `ClientResponse&lt;ChatRequest, ChatResponse&gt;`.
+     */
+    default CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> chatStreamAsync(ChatRequest chatRequest,
+                                                                                         Consumer<ChatChunk> listener) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("chatStreamAsync is not supported by " + getClass().getName()));
+    }
+
     /**
      * Asynchronously performs a completion request.
      *
@@ -169,6 +202,21 @@ public interface ClientAsync {
      */
     CompletableFuture<ClientResponse<CompletionRequest, CompletionResponse>> completionAsync(CompletionRequest completionRequest);
 
+    /**
+     * Asynchronously performs a streamed completion request, passing each chunk to the listener as it arrives.
+     * The default implementation returns a future failed with {@link UnsupportedOperationException}.
+     *
+     * @param completionRequest the completion request to be sent.
+     * @param listener          the listener that receives each chunk of the response.
+     * @return a CompletableFuture that completes once the stream has ended
+     * and contains the client response of type `ClientResponse&lt;CompletionRequest, CompletionResponse&gt;`.
+     */
+    default CompletableFuture<ClientResponse<CompletionRequest, CompletionResponse>> completionStreamAsync(
+            CompletionRequest completionRequest, Consumer<CompletionChunk> listener) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("completionStreamAsync is not supported by " + getClass().getName()));
+    }
+
     /**
      * Asynchronously performs an edit request.
      *
@@ -187,6 +235,18 @@ public interface ClientAsync {
      */
     CompletableFuture<ClientResponse<EmbeddingRequest, EmbeddingResponse>> embeddingAsync(EmbeddingRequest embeddingRequest);
 
+    /**
+     * Asynchronously performs an embedding request and reads the embeddings into one contiguous matrix.
+     * The default implementation copies the response of {@link #embeddingAsync(EmbeddingRequest)} into a matrix.
+     *
+     * @param embeddingRequest the embedding request to be sent.
+     * @return a CompletableFuture that represents the asynchronous operation
+     * and contains the client response of type `ClientResponse&lt;EmbeddingRequest, EmbeddingMatrix&gt;`.
+     */
+    default CompletableFuture<ClientResponse<EmbeddingRequest, EmbeddingMatrix>> embeddingMatrixAsync(EmbeddingRequest embeddingRequest) {
+        return embeddingAsync(embeddingRequest).thenApply(RequestResponseUtils::toEmbeddingMatrixResponse);
+    }
+
     /**
      * Asynchronously performs a transcription request.
      *
@@ -0,0 +1,320 @@
+package com.cloudurable.jai;
+
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Coalesces single-text embedding calls into batched embedding requests.
+ * <p>
+ * Each call to {@link #embed(String)} joins the current batch and returns a future for its own embedding. A batch is
+ * sent when it reaches the maximum number of inputs, when the next input would take it over the token budget, or when
+ * the linger time has passed since its first input arrived, whichever comes first. The embedding of each input is
+ * taken from the row of the response matrix given by its position in the batch, so callers never see each other's
+ * results. If the request fails, every future of the batch fails with the same exception.
+ * <p>
+ * Callers that embed one string at a time from many threads make one HTTP request per batch instead of one per
+ * string, which matters most when requests, not tokens, are the limiting rate.
+ */
+public class EmbeddingBatcher implements AutoCloseable {
+
+    private final ClientAsync client;
+    private final String model;
+    private final int maxItems;
+    private final int maxTokens;
+    private final Duration maxLinger;
+    private final ToIntFunction<String> tokenCounter;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+
+    private final Object lock = new Object();
+    private Batch current;
+    private boolean closed;
+
+    private EmbeddingBatcher(ClientAsync client, String model, int maxItems, int maxTokens, Duration maxLinger,
+                             ToIntFunction<String> tokenCounter, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.client = client;
+        this.model = model;
+        this.maxItems = maxItems;
+        this.maxTokens = maxTokens;
+        this.maxLinger = maxLinger;
+        this.tokenCounter = tokenCounter;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds a text to the current batch.
+     *
+     * @param text The text to embed.
+     * @return A future that completes with the embedding of the text.
+     */
+    public CompletableFuture<float[]> embed(final String text) {
+        final int tokens = tokenCounter.applyAsInt(text);
+        final CompletableFuture<float[]> future = new CompletableFuture<>();
+        Batch full = null;
+        Batch ready = null;
+        Batch started = null;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("EmbeddingBatcher is closed");
+            }
+            if (current != null && current.tokens + tokens > maxTokens) {
+                full = current;
+                current = null;
+            }
+            if (current == null) {
+                current = new Batch();
+                started = current;
+            }
+            current.add(text, tokens, future);
+            if (current.texts.size() >= maxItems) {
+                ready = current;
+                current = null;
+            }
+        }
+        // The linger timer is scheduled outside the lock, so a scheduler that runs tasks inline or blocks on submit
+        // cannot stall other callers; a batch sent before its timer fires makes the timer a no-op.
+        if (started != null && started != ready) {
+            final Batch lingering = started;
+            scheduler.schedule(() -> flush(lingering), maxLinger.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (full != null) {
+            send(full);
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the current batch without waiting for it to fill up or for the linger time to pass.
+     */
+    public void flush() {
+        final Batch batch;
+        synchronized (lock) {
+            batch = current;
+            current = null;
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Sends the pending batch and stops accepting texts. A scheduler created by the builder is shut down.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    private void flush(final Batch batch) {
+        synchronized (lock) {
+            if (current != batch) {
+                return;
+            }
+            current = null;
+        }
+        send(batch);
+    }
+
+    private void send(final Batch batch) {
+        final EmbeddingRequest request = EmbeddingRequest.builder().model(model).input(batch.texts).build();
+        try {
+            client.embeddingMatrixAsync(request).whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    batch.fail(throwable);
+                } else {
+                    batch.complete(response);
+                }
+            });
+        } catch (RuntimeException ex) {
+            batch.fail(ex);
+        }
+    }
+
+    /**
+     * The texts of one request and the futures of their callers, in the same order.
+     */
+    private static final class Batch {
+        private final List<String> texts = new ArrayList<>();
+        private final List<CompletableFuture<float[]>> futures = new ArrayList<>();
+        private int tokens;
+
+        void add(final String text, final int textTokens, final CompletableFuture<float[]> future) {
+            texts.add(text);
+            futures.add(future);
+            tokens += textTokens;
+        }
+
+        void complete(final ClientResponse<EmbeddingRequest, EmbeddingMatrix> response) {
+            if (response.getException().isPresent()) {
+                fail(response.getException().get());
+                return;
+            }
+            if (response.getResponse().isEmpty()) {
+                fail(new IllegalStateException("Embedding request failed with status " +
+                        response.getStatusCode().orElse(-1) + ": " + response.getStatusMessage().orElse("")));
+                return;
+            }
+            final EmbeddingMatrix matrix = response.getResponse().get();
+            for (int index = 0; index < futures.size(); index++) {
+                if (index < matrix.getRowCount()) {
+                    futures.get(index).complete(matrix.getRow(index));
+                } else {
+                    futures.get(index).completeExceptionally(
+                            new IllegalStateException("No embedding returned for input " + index));
+                }
+            }
+        }
+
+        void fail(final Throwable throwable) {
+            for (CompletableFuture<float[]> future : futures) {
+                future.completeExceptionally(throwable);
+            }
+        }
+    }
+
+    /**
+     * Builder for EmbeddingBatcher.
+     */
+    public static class Builder {
+        private ClientAsync client;
+        private String model = "text-embedding-ada-002";
+        private int maxItems = 256;
+        private int maxTokens = 100_000;
+        private Duration maxLinger = Duration.ofMillis(10);
+        private ToIntFunction<String> tokenCounter = text -> (text.length() + 3) / 4;
+        private ScheduledExecutorService scheduler;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the client used to send the batched requests.
+         *
+         * @param client The client.
+         * @return The builder instance.
+         */
+        public Builder setClient(ClientAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the embedding model. Defaults to text-embedding-ada-002.
+         *
+         * @param model The model.
+         * @return The builder instance.
+         */
+        public Builder setModel(String model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of inputs of one request. Defaults to 256.
+         *
+         * @param maxItems The maximum number of inputs.
+         * @return The builder instance.
+         */
+        public Builder setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of tokens of one request, as counted by the token counter. A single text over the
+         * budget is still sent, alone. Defaults to 100,000.
+         *
+         * @param maxTokens The maximum number of tokens.
+         * @return The builder instance.
+         */
+        public Builder setMaxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * Sets how long a batch waits for more inputs after its first input arrived. Defaults to 10 milliseconds.
+         *
+         * @param maxLinger The linger time.
+         * @return The builder instance.
+         */
+        public Builder setMaxLinger(Duration maxLinger) {
+            this.maxLinger = maxLinger;
+            return this;
+        }
+
+        /**
+         * Sets the function that counts the tokens of a text. Defaults to an estimate of four characters per token.
+         *
+         * @param tokenCounter The token counter.
+         * @return The builder instance.
+         */
+        public Builder setTokenCounter(ToIntFunction<String> tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that sends batches when their linger time has passed. If none is set, the batcher
+         * creates a single daemon thread and shuts it down on close.
+         *
+         * @param scheduler The scheduler.
+         * @return The builder instance.
+         */
+        public Builder setScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Builds the EmbeddingBatcher.
+         *
+         * @return The EmbeddingBatcher.
+         * @throws IllegalArgumentException If the client is missing or a limit is not positive.
+         */
+        public EmbeddingBatcher build() {
+            if (client == null) {
+                throw new IllegalArgumentException("client is required");
+            }
+            if (maxItems < 1 || maxTokens < 1 || maxLinger == null || maxLinger.isNegative()) {
+                throw new IllegalArgumentException("maxItems and maxTokens must be positive and maxLinger must not be negative");
+            }
+            final boolean ownsScheduler = scheduler == null;
+            final ScheduledExecutorService batchScheduler = ownsScheduler ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "jai-embedding-batcher");
+                thread.setDaemon(true);
+                return thread;
+            }) : scheduler;
+            return new EmbeddingBatcher(client, model, maxItems, maxTokens, maxLinger, tokenCounter, batchScheduler, ownsScheduler);
+        }
+    }
+}
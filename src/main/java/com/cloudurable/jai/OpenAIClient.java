@@ -3,9 +3,16 @@
  */
 package com.cloudurable.jai;
 
+import com.cloudurable.jai.cache.CachedHttpResponse;
+import com.cloudurable.jai.cache.ResponseCache;
+import com.cloudurable.jai.cost.BudgetExceededException;
+import com.cloudurable.jai.cost.CostAccountant;
+import com.cloudurable.jai.metrics.ClientMetrics;
+import com.cloudurable.jai.metrics.MeteredBodyHandler;
 import com.cloudurable.jai.model.ClientErrorResponse;
 import com.cloudurable.jai.model.ClientResponse;
 import com.cloudurable.jai.model.SecretHolder;
+import com.cloudurable.jai.model.Usage;
 import com.cloudurable.jai.model.audio.AudioResponse;
 import com.cloudurable.jai.model.audio.TranscriptionRequest;
 import com.cloudurable.jai.model.audio.TranslateRequest;
@@ -19,29 +26,67 @@ import com.cloudurable.jai.model.model.ModelListResponseDeserializer;
 import com.cloudurable.jai.model.moderation.CreateModerationRequest;
 import com.cloudurable.jai.model.moderation.CreateModerationRequestSerializer;
 import com.cloudurable.jai.model.moderation.CreateModerationResponse;
+import com.cloudurable.jai.model.text.TextRequest;
+import com.cloudurable.jai.model.text.completion.CommonCompletionRequest;
+import com.cloudurable.jai.model.text.completion.CompletionChunk;
+import com.cloudurable.jai.model.text.completion.CompletionChunkAggregator;
+import com.cloudurable.jai.model.text.completion.CompletionChunkDeserializer;
 import com.cloudurable.jai.model.text.completion.CompletionRequest;
 import com.cloudurable.jai.model.text.completion.CompletionRequestSerializer;
 import com.cloudurable.jai.model.text.completion.CompletionResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunk;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunkAggregator;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunkDeserializer;
 import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
 import com.cloudurable.jai.model.text.completion.chat.ChatRequestSerializer;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
 import com.cloudurable.jai.model.text.edit.EditRequest;
 import com.cloudurable.jai.model.text.edit.EditRequestSerializer;
 import com.cloudurable.jai.model.text.edit.EditResponse;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequestSerializer;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import com.cloudurable.jai.resilience.CircuitBreaker;
+import com.cloudurable.jai.resilience.CircuitOpenException;
+import com.cloudurable.jai.resilience.EndpointPool;
+import com.cloudurable.jai.resilience.HedgingPolicy;
+import com.cloudurable.jai.resilience.RateLimiter;
+import com.cloudurable.jai.resilience.RetryPolicy;
+import com.cloudurable.jai.tokenizer.BpeTokenizer;
+import com.cloudurable.jai.util.CharArrayBodySubscriber;
+import com.cloudurable.jai.util.FileRegionBodySubscriber;
+import com.cloudurable.jai.util.JsonParsers;
 import com.cloudurable.jai.util.MultipartEntityBuilder;
 import com.cloudurable.jai.util.RequestResponseUtils;
-import io.nats.jparse.parser.JsonParserBuilder;
+import com.cloudurable.jai.util.ServerSentEventSubscriber;
+import com.cloudurable.jai.util.VirtualThreads;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.cloudurable.jai.model.audio.AudioRequestSerializer.buildForm;
 import static com.cloudurable.jai.model.audio.AudioRequestSerializer.getEncodingContentType;
@@ -52,10 +97,31 @@ import static com.cloudurable.jai.util.RequestResponseUtils.*;
  */
 public class OpenAIClient implements Client, ClientAsync {
 
+    /**
+     * The smallest range a parallel download is split into, so small files are not fetched as many tiny requests.
+     */
+    private static final long MIN_DOWNLOAD_SEGMENT = 1024 * 1024;
+
+    /**
+     * The paths whose POSTs create something each time they are sent, so a retry after a lost response would create
+     * it twice.
+     */
+    private static final List<String> NON_IDEMPOTENT_PATHS = List.of("/files", "/fine-tunes", "/images", "/audio");
+
     private final SecretHolder apiKey;
     private final String apiEndpoint;
     private final HttpClient httpClient;
     private final boolean validateJson;
+    private final ResponseCache responseCache;
+    private final RateLimiter rateLimiter;
+    private final RetryPolicy retryPolicy;
+    private final Map<String, RetryPolicy> retryPolicies;
+    private final HedgingPolicy hedgingPolicy;
+    private final EndpointPool endpointPool;
+    private final CircuitBreaker circuitBreaker;
+    private final ClientMetrics metrics;
+    private final CostAccountant costAccountant;
+    private final BpeTokenizer tokenizer;
 
     /**
      * Constructs an OpenAIClient object.
@@ -66,10 +132,29 @@ public class OpenAIClient implements Client, ClientAsync {
      * @param validateJson
      */
     public OpenAIClient(SecretHolder apiKey, String apiEndpoint, HttpClient httpClient, boolean validateJson) {
+        this(apiKey, apiEndpoint, httpClient, validateJson, null, null, RetryPolicy.none(), Map.of(), null, null, null,
+                ClientMetrics.none(), null, null);
+    }
+
+    private OpenAIClient(SecretHolder apiKey, String apiEndpoint, HttpClient httpClient, boolean validateJson,
+                         ResponseCache responseCache, RateLimiter rateLimiter, RetryPolicy retryPolicy,
+                         Map<String, RetryPolicy> retryPolicies, HedgingPolicy hedgingPolicy,
+                         EndpointPool endpointPool, CircuitBreaker circuitBreaker, ClientMetrics metrics,
+                         CostAccountant costAccountant, BpeTokenizer tokenizer) {
         this.apiKey = apiKey;
         this.apiEndpoint = apiEndpoint;
         this.httpClient = httpClient;
         this.validateJson = validateJson;
+        this.responseCache = responseCache;
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy;
+        this.retryPolicies = retryPolicies;
+        this.hedgingPolicy = hedgingPolicy;
+        this.endpointPool = endpointPool;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+        this.costAccountant = costAccountant;
+        this.tokenizer = tokenizer;
     }
 
     /**
@@ -85,25 +170,70 @@ public class OpenAIClient implements Client, ClientAsync {
     /**
      * Sends a chat request to the OpenAI API and returns the client response.
      *
-     * @param chatRequest The chat request to be sent.
+     * @param requested The chat request to be sent.
      * @return The client response containing the chat request and the corresponding chat response.
      */
     @Override
-    public CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> chatAsync(final ChatRequest chatRequest) {
+    public CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> chatAsync(final ChatRequest requested) {
+        final ChatRequest chatRequest;
+        try {
+            chatRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return CompletableFuture.completedFuture(getErrorResponseForChatRequest(e, requested));
+        }
 
-        final HttpRequest request = buildGptRequest(ChatRequestSerializer.serialize(chatRequest), "/chat/completions");
+        final String body = ChatRequestSerializer.serialize(chatRequest);
+        final HttpRequest request = buildGptRequest(body, "/chat/completions");
+        final String cacheKey = cacheKey("/chat/completions", body, cachesCompletion(chatRequest));
+        final int estimatedTokens = estimateTokens(body, chatRequest.getMaxTokens());
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens, cacheKey, String::new, String::toCharArray,
+                isDeterministic(chatRequest) ? SendMode.HEDGED : SendMode.RETRY)
                 .thenApply((Function<HttpResponse<String>, ClientResponse<ChatRequest, ChatResponse>>) response ->
-                        getChatResponse(chatRequest, response)).exceptionally(e ->
+                        reconcile(request, estimatedTokens, response, getChatResponse(chatRequest, response), ChatResponse::getUsage))
+                .exceptionally(e ->
                         getErrorResponseForChatRequest(e, chatRequest));
 
     }
 
+    /**
+     * Sends a chat request and streams the response back as server-sent events.
+     * Each chunk is passed to the listener as soon as it arrives, and the returned future completes with the
+     * chat response assembled from all chunks.
+     *
+     * @param requested The chat request to be sent. It is streamed even if its stream flag is not set.
+     * @param listener  The listener that receives each chunk of the response.
+     * @return The client response containing the chat request and the assembled chat response.
+     */
+    @Override
+    public CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> chatStreamAsync(final ChatRequest requested,
+                                                                                        final Consumer<ChatChunk> listener) {
+        final ChatRequest chatRequest;
+        try {
+            chatRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return CompletableFuture.completedFuture(getErrorResponseForChatRequest(e, requested));
+        }
+        final String body = ChatRequestSerializer.serialize(chatRequest, true);
+        final HttpRequest request = buildGptRequest(body, "/chat/completions");
+        final ChatChunkAggregator aggregator = new ChatChunkAggregator(listener);
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(data ->
+                aggregator.accept(ChatChunkDeserializer.deserialize(data)));
+        final int promptTokens = countTokens(body);
+        final int estimatedTokens = promptTokens + chatRequest.getMaxTokens();
+        final CostAccountant.Reservation reservation = reserve(chatRequest, promptTokens);
+
+        return sendStreamAsync(request, subscriber.bodyHandler(), estimatedTokens)
+                .whenComplete((response, e) -> reconcileStream(request, estimatedTokens, promptTokens, reservation,
+                        chatRequest, response != null && isOk(response.statusCode()), aggregator.getStreamedText()))
+                .thenApply(response -> getChatStreamResponse(chatRequest, response, subscriber, aggregator))
+                .exceptionally(e -> getErrorResponseForChatRequest(e, chatRequest));
+    }
+
     private HttpRequest buildGptRequest(String jsonRequestBody, String path) {
         if (validateJson) {
             try {
-                JsonParserBuilder.builder().build().parse(jsonRequestBody);
+                JsonParsers.parser().parse(jsonRequestBody);
             } catch (Exception ex) {
                 throw new IllegalArgumentException(jsonRequestBody, ex);
             }
@@ -113,30 +243,561 @@ public class OpenAIClient implements Client, ClientAsync {
         return requestBuilder.build();
     }
 
+    /**
+     * Computes the response cache key of a request, or null if there is no cache or the request is not cacheable.
+     */
+    private String cacheKey(final String path, final String jsonRequestBody, final boolean cacheable) {
+        return responseCache != null && cacheable ? ResponseCache.key(path, jsonRequestBody) : null;
+    }
+
+    /**
+     * Checks whether a request asks for a temperature of zero. A request without a temperature is sampled at the
+     * API's default, so its answer is not repeatable.
+     */
+    private static boolean isDeterministic(final TextRequest textRequest) {
+        return textRequest.isTemperatureSet() && textRequest.getTemperature() == 0;
+    }
+
+    private boolean cachesCompletion(final TextRequest textRequest) {
+        return responseCache != null && responseCache.cachesCompletions() && isDeterministic(textRequest);
+    }
+
+    /**
+     * Sends a request that uses no tokens and is not cached.
+     */
+    private <T> HttpResponse<T> send(final HttpRequest request, final HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        return send(request, handler, 0, null, null, null);
+    }
+
+    /**
+     * Sends a request whose body is streamed to a listener. A stream that fails part way is not retried, because the
+     * listener has already seen some of its chunks.
+     */
+    private <T> HttpResponse<T> sendStream(final HttpRequest request, final HttpResponse.BodyHandler<T> handler,
+                                           final int estimatedTokens) throws IOException, InterruptedException {
+        return send(request, handler, estimatedTokens, null, null, null, SendMode.STREAM);
+    }
+
+    private <T> HttpResponse<T> send(final HttpRequest request, final HttpResponse.BodyHandler<T> handler,
+                                     final int estimatedTokens, final String cacheKey,
+                                     final Function<char[], T> fromCache, final Function<T, char[]> toCache)
+            throws IOException, InterruptedException {
+        return send(request, handler, estimatedTokens, cacheKey, fromCache, toCache, SendMode.RETRY);
+    }
+
+    /**
+     * Sends a request, answering it from the response cache if a cache key is given and its body is cached.
+     * Otherwise waits for the rate limiter and sends the request, retrying it as the retry policy of its path allows,
+     * and adds a successful body to the cache.
+     */
+    private <T> HttpResponse<T> send(final HttpRequest request, final HttpResponse.BodyHandler<T> handler,
+                                     final int estimatedTokens, final String cacheKey,
+                                     final Function<char[], T> fromCache, final Function<T, char[]> toCache,
+                                     final SendMode mode)
+            throws IOException, InterruptedException {
+        if (cacheKey != null) {
+            final Optional<char[]> cached = responseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return new CachedHttpResponse<>(request, fromCache.apply(cached.get()));
+            }
+        }
+        final RetryPolicy.Retries retries = retryPolicy(request).start();
+        while (true) {
+            if (rateLimiter != null) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.check(apiPath(request));
+                }
+                rateLimiter.acquire(estimatedTokens).join();
+            }
+            final HttpResponse<T> response;
+            try {
+                response = sendRouted(request, handler);
+            } catch (IOException e) {
+                final long delay = mode != SendMode.STREAM ? retries.delayAfter(e) : -1;
+                if (delay < 0) {
+                    throw e;
+                }
+                retryAfter(estimatedTokens, delay);
+                continue;
+            }
+            final long delay = retries.delayAfter(response.statusCode(), response.headers());
+            if (delay < 0) {
+                cache(cacheKey, response, toCache);
+                return response;
+            }
+            retryAfter(estimatedTokens, delay);
+        }
+    }
+
+    /**
+     * Refunds the tokens of a failed attempt and sleeps until the retry.
+     */
+    private void retryAfter(final int estimatedTokens, final long delayMillis) throws InterruptedException {
+        if (rateLimiter != null) {
+            rateLimiter.reconcile(estimatedTokens, 0);
+        }
+        Thread.sleep(delayMillis);
+    }
+
+    /**
+     * Sends a request asynchronously that uses no tokens and is not cached.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest request, final HttpResponse.BodyHandler<T> handler) {
+        return sendAsync(request, handler, 0, null, null, null);
+    }
+
+    /**
+     * Sends a request asynchronously whose body is streamed to a listener. A stream that fails part way is not
+     * retried.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendStreamAsync(final HttpRequest request,
+                                                                  final HttpResponse.BodyHandler<T> handler,
+                                                                  final int estimatedTokens) {
+        return sendAsync(request, handler, estimatedTokens, null, null, null, SendMode.STREAM);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest request, final HttpResponse.BodyHandler<T> handler,
+                                                            final int estimatedTokens, final String cacheKey,
+                                                            final Function<char[], T> fromCache,
+                                                            final Function<T, char[]> toCache) {
+        return sendAsync(request, handler, estimatedTokens, cacheKey, fromCache, toCache, SendMode.RETRY);
+    }
+
+    /**
+     * Sends a request asynchronously, answering it from the response cache if a cache key is given and its body is
+     * cached. Otherwise sends the request once the rate limiter allows it, retrying it as the retry policy of its path
+     * allows, and adds a successful body to the cache. Neither waiting for a permit nor waiting for a retry holds a
+     * thread. A hedged request is sent through the hedging policy, if one is set.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest request, final HttpResponse.BodyHandler<T> handler,
+                                                            final int estimatedTokens, final String cacheKey,
+                                                            final Function<char[], T> fromCache,
+                                                            final Function<T, char[]> toCache,
+                                                            final SendMode mode) {
+        if (cacheKey != null) {
+            final Optional<char[]> cached = responseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return CompletableFuture.completedFuture(new CachedHttpResponse<>(request, fromCache.apply(cached.get())));
+            }
+        }
+        final CompletableFuture<HttpResponse<T>> sent = mode == SendMode.HEDGED && hedgingPolicy != null
+                ? sendHedgedAsync(request, handler, estimatedTokens)
+                : attemptAsync(request, handler, rateLimiter, estimatedTokens, retryPolicy(request).start(),
+                mode != SendMode.STREAM);
+        return sent.thenApply(response -> {
+            cache(cacheKey, response, toCache);
+            return response;
+        });
+    }
+
+    /**
+     * Sends a request through the hedging policy. All copies of the request, and their retries, share one permit
+     * from the rate limiter, and the hedge delay starts once the permit is held. While other requests wait for the
+     * rate limiter, no second copy is sent.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendHedgedAsync(final HttpRequest request,
+                                                                  final HttpResponse.BodyHandler<T> handler,
+                                                                  final int estimatedTokens) {
+        final Supplier<CompletableFuture<HttpResponse<T>>> hedged = () -> hedgingPolicy.hedge(apiPath(request),
+                () -> attemptAsync(request, handler, null, estimatedTokens, retryPolicy(request).start(), true),
+                () -> rateLimiter == null || rateLimiter.waiting() == 0);
+        if (rateLimiter == null || isCircuitOpen(request)) {
+            return hedged.get();
+        }
+        return rateLimiter.acquire(estimatedTokens).thenCompose(permit -> hedged.get());
+    }
+
+    /**
+     * Sends one attempt of a request, waiting for the rate limiter if one is given, and retries it as the retry policy
+     * allows. Cancelling the returned future while it waits for the rate limiter gives up the permit.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> attemptAsync(final HttpRequest request,
+                                                               final HttpResponse.BodyHandler<T> handler,
+                                                               final RateLimiter limiter,
+                                                               final int estimatedTokens,
+                                                               final RetryPolicy.Retries retries,
+                                                               final boolean retryFailures) {
+        final CompletableFuture<Void> permit = limiter == null || isCircuitOpen(request) ? null
+                : limiter.acquire(estimatedTokens);
+        final CompletableFuture<HttpResponse<T>> sent = permit == null ? sendRoutedAsync(request, handler)
+                : permit.thenCompose(granted -> sendRoutedAsync(request, handler));
+        final CompletableFuture<HttpResponse<T>> attempt = sent.handle((response, error) -> {
+            final long delay = error != null ? (retryFailures ? retries.delayAfter(error) : -1)
+                    : retries.delayAfter(response.statusCode(), response.headers());
+            if (delay < 0) {
+                return error != null ? CompletableFuture.<HttpResponse<T>>failedFuture(error)
+                        : CompletableFuture.completedFuture(response);
+            }
+            if (permit != null) {
+                limiter.reconcile(estimatedTokens, 0);
+            }
+            final Executor timer = httpClient.executor()
+                    .map(executor -> CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor))
+                    .orElseGet(() -> CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+            return CompletableFuture.supplyAsync(() -> null, timer)
+                    .thenCompose(retry -> attemptAsync(request, handler, limiter, estimatedTokens, retries,
+                            retryFailures));
+        }).thenCompose(Function.identity());
+        if (permit != null) {
+            attempt.whenComplete((response, error) -> {
+                if (attempt.isCancelled()) {
+                    permit.cancel(false);
+                }
+            });
+        }
+        return attempt;
+    }
+
+    private boolean isCircuitOpen(final HttpRequest request) {
+        return circuitBreaker != null && circuitBreaker.getState(apiPath(request)) == CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Sends one attempt of a request through the circuit breaker, if there is one, to the endpoint the endpoint pool
+     * chooses, if there is one, measuring it for the client metrics.
+     */
+    private <T> HttpResponse<T> sendRouted(final HttpRequest request, final HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        if (endpointPool == null && circuitBreaker == null && metrics == ClientMetrics.none()) {
+            return httpClient.send(request, handler);
+        }
+        final String apiPath = apiPath(request);
+        final CircuitBreaker.Permit permit = circuitBreaker == null ? null : circuitBreaker.acquire(apiPath);
+        final EndpointPool.Lease lease = endpointPool == null ? null : endpointPool.acquire(apiPath);
+        MeteredBodyHandler<T> metered = null;
+        final long start = System.nanoTime();
+        try {
+            final HttpRequest routed = lease == null ? request : lease.route(request, apiPath);
+            metered = metered(apiPath, routed, handler);
+            final HttpResponse<T> response = httpClient.send(routed, metered == null ? handler : metered);
+            if (metered != null) {
+                metered.complete(response);
+            }
+            if (permit != null) {
+                permit.record(response.statusCode(), System.nanoTime() - start);
+            }
+            if (lease != null) {
+                lease.complete(response.statusCode(), response.headers());
+            }
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (metered != null) {
+                metered.fail(e);
+            }
+            if (permit != null) {
+                permit.record(e, System.nanoTime() - start);
+            }
+            if (lease != null) {
+                lease.fail(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sends one attempt of a request asynchronously through the circuit breaker, if there is one, to the endpoint the
+     * endpoint pool chooses, if there is one, measuring it for the client metrics. A rejection by the circuit breaker
+     * fails the returned future.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendRoutedAsync(final HttpRequest request,
+                                                                  final HttpResponse.BodyHandler<T> handler) {
+        if (endpointPool == null && circuitBreaker == null && metrics == ClientMetrics.none()) {
+            return httpClient.sendAsync(request, handler);
+        }
+        final String apiPath = apiPath(request);
+        final CircuitBreaker.Permit permit;
+        try {
+            permit = circuitBreaker == null ? null : circuitBreaker.acquire(apiPath);
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final EndpointPool.Lease lease = endpointPool == null ? null : endpointPool.acquire(apiPath);
+        final long start = System.nanoTime();
+        MeteredBodyHandler<T> meteredHandler = null;
+        CompletableFuture<HttpResponse<T>> sent;
+        try {
+            final HttpRequest routed = lease == null ? request : lease.route(request, apiPath);
+            meteredHandler = metered(apiPath, routed, handler);
+            sent = httpClient.sendAsync(routed, meteredHandler == null ? handler : meteredHandler);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        final MeteredBodyHandler<T> metered = meteredHandler;
+        return sent.whenComplete((response, error) -> {
+            final long latency = System.nanoTime() - start;
+            if (error != null) {
+                if (metered != null) {
+                    metered.fail(error);
+                }
+                if (permit != null) {
+                    permit.record(error, latency);
+                }
+                if (lease != null) {
+                    lease.fail(error);
+                }
+            } else {
+                if (metered != null) {
+                    metered.complete(response);
+                }
+                if (permit != null) {
+                    permit.record(response.statusCode(), latency);
+                }
+                if (lease != null) {
+                    lease.complete(response.statusCode(), response.headers());
+                }
+            }
+        });
+    }
+
+    /**
+     * Wraps the body handler of a request to measure it, or returns null if there are no client metrics.
+     */
+    private <T> MeteredBodyHandler<T> metered(final String apiPath, final HttpRequest request,
+                                              final HttpResponse.BodyHandler<T> handler) {
+        return metrics == ClientMetrics.none() ? null
+                : new MeteredBodyHandler<>(metrics, CircuitBreaker.circuitName(apiPath), request, handler);
+    }
+
+    /**
+     * Finds the retry policy of a request: the policy set for the longest path its URI starts with, or else no retries
+     * for a POST that creates something, or else the default policy.
+     */
+    private RetryPolicy retryPolicy(final HttpRequest request) {
+        final String path = apiPath(request);
+        RetryPolicy found = null;
+        int foundLength = -1;
+        for (Map.Entry<String, RetryPolicy> entry : retryPolicies.entrySet()) {
+            if (path.startsWith(entry.getKey()) && entry.getKey().length() > foundLength) {
+                found = entry.getValue();
+                foundLength = entry.getKey().length();
+            }
+        }
+        if (found != null) {
+            return found;
+        }
+        return "POST".equals(request.method()) && isNonIdempotent(path) ? RetryPolicy.none() : retryPolicy;
+    }
+
+    private static boolean isNonIdempotent(final String apiPath) {
+        for (String path : NON_IDEMPOTENT_PATHS) {
+            if (apiPath.startsWith(path) && (apiPath.length() == path.length()
+                    || apiPath.charAt(path.length()) == '/' || apiPath.charAt(path.length()) == '?')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the API path of a request, for example /chat/completions, without the API endpoint.
+     */
+    private String apiPath(final HttpRequest request) {
+        final String uri = request.uri().toString();
+        return "/" + stripLeadingSlashes(uri.startsWith(apiEndpoint) ? uri.substring(apiEndpoint.length())
+                : request.uri().getPath());
+    }
+
+    private static String stripLeadingSlashes(final String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        return path.substring(start);
+    }
+
+    /**
+     * How a request is sent. Streamed requests are not retried after an I/O error, because their listener may have
+     * seen part of the response. Hedged requests are idempotent and may be sent twice.
+     */
+    private enum SendMode {
+        RETRY, STREAM, HEDGED
+    }
+
+    /**
+     * Asks the cost accountant, if there is one, which model a chat request is sent to given its user's budget.
+     */
+    private ChatRequest admit(final ChatRequest chatRequest) {
+        if (costAccountant == null) {
+            return chatRequest;
+        }
+        final String model = costAccountant.admit(chatRequest.getUser(), chatRequest.getModel());
+        return Objects.equals(model, chatRequest.getModel()) ? chatRequest : chatRequest.withModel(model);
+    }
+
+    /**
+     * Asks the cost accountant, if there is one, which model a completion request is sent to given its user's budget.
+     */
+    private CompletionRequest admit(final CompletionRequest completionRequest) {
+        if (costAccountant == null) {
+            return completionRequest;
+        }
+        final String model = costAccountant.admit(completionRequest.getUser(), completionRequest.getModel());
+        return Objects.equals(model, completionRequest.getModel()) ? completionRequest
+                : completionRequest.withModel(model);
+    }
+
+    /**
+     * Estimates the tokens a request uses: the tokens of the JSON body, counted by the tokenizer if one is set and
+     * otherwise as four characters per token, plus the tokens the completion may use.
+     */
+    private int estimateTokens(final String jsonRequestBody, final int maxTokens) {
+        return countTokens(jsonRequestBody) + maxTokens;
+    }
+
+    private int countTokens(final String text) {
+        return tokenizer == null ? text.length() / 4 : tokenizer.countTokens(text);
+    }
+
+    /**
+     * Charges the cost accountant, if there is one, with the estimated cost of a streamed request before it is sent.
+     */
+    private CostAccountant.Reservation reserve(final CommonCompletionRequest request, final int promptTokens) {
+        return costAccountant == null ? null
+                : costAccountant.reserve(request.getUser(), request.getModel(), promptTokens, request.getMaxTokens());
+    }
+
+    /**
+     * Reports the tokens the API counted for a request to the rate limiter, the client metrics and the cost
+     * accountant. Cached responses were never charged.
+     */
+    private <Q, A> ClientResponse<Q, A> reconcile(final HttpRequest request, final int estimatedTokens,
+                                                  final HttpResponse<?> httpResponse,
+                                                  final ClientResponse<Q, A> response, final Function<A, Usage> usage) {
+        if (httpResponse instanceof CachedHttpResponse) {
+            return response;
+        }
+        reconcile(request, estimatedTokens, response.getRequest(), response.getResponse().map(usage).orElse(null),
+                null);
+        return response;
+    }
+
+    /**
+     * Reports the tokens a streamed request used. Streams carry no usage, so the prompt is counted from the request
+     * body and the completion from the text the stream delivered. A stream that was refused, or that failed before
+     * its first chunk, is reported as if it had no usage.
+     */
+    private void reconcileStream(final HttpRequest request, final int estimatedTokens, final int promptTokens,
+                                 final CostAccountant.Reservation reservation, final CommonCompletionRequest accounted,
+                                 final boolean answered, final String streamedText) {
+        final int completionTokens = countTokens(streamedText);
+        final Usage used = answered || !streamedText.isEmpty()
+                ? new Usage(promptTokens, completionTokens, promptTokens + completionTokens) : null;
+        reconcile(request, estimatedTokens, accounted, used, reservation);
+    }
+
+    /**
+     * Reports the tokens a request used to the rate limiter, the client metrics and the cost accountant, settling the
+     * reservation of a stream. If the usage is unknown the rate limiter keeps the estimate and the reservation is
+     * released.
+     */
+    private void reconcile(final HttpRequest request, final int estimatedTokens, final Object accounted,
+                           final Usage used, final CostAccountant.Reservation reservation) {
+        if (rateLimiter != null) {
+            rateLimiter.reconcile(estimatedTokens, used != null ? used.getTotalTokens() : estimatedTokens);
+        }
+        if (used != null && metrics != ClientMetrics.none()) {
+            metrics.tokensUsed(CircuitBreaker.circuitName(apiPath(request)), used.getPromptTokens(),
+                    used.getCompletionTokens());
+        }
+        if (reservation != null) {
+            if (used != null) {
+                reservation.settle(used.getPromptTokens(), used.getCompletionTokens());
+            } else {
+                reservation.release();
+            }
+        } else if (used != null && costAccountant != null) {
+            final String user = accounted instanceof CommonCompletionRequest
+                    ? ((CommonCompletionRequest) accounted).getUser() : null;
+            costAccountant.record(user, modelOf(accounted), used.getPromptTokens(), used.getCompletionTokens());
+        }
+    }
+
+    private static String modelOf(final Object request) {
+        if (request instanceof TextRequest) {
+            return ((TextRequest) request).getModel();
+        }
+        return request instanceof EmbeddingRequest ? ((EmbeddingRequest) request).getModel() : null;
+    }
+
+    private <T> void cache(final String cacheKey, final HttpResponse<T> response, final Function<T, char[]> toCache) {
+        if (cacheKey != null && isOk(response.statusCode())) {
+            responseCache.put(cacheKey, toCache.apply(response.body()));
+        }
+    }
+
     /**
      * Sends a completion request to the OpenAI API and returns the client response.
      *
-     * @param completionRequest The chat request to be sent.
+     * @param requested The chat request to be sent.
      * @return The client response containing the completion request and the corresponding completion response.
      */
     @Override
     public CompletableFuture<ClientResponse<CompletionRequest, CompletionResponse>> completionAsync(
-            final CompletionRequest completionRequest) {
-        final HttpRequest request = buildGptRequest(CompletionRequestSerializer.serialize(completionRequest), "/completions");
+            final CompletionRequest requested) {
+        final CompletionRequest completionRequest;
+        try {
+            completionRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return CompletableFuture.completedFuture(getErrorResponseForCompletionRequest(e, requested));
+        }
+        final String body = CompletionRequestSerializer.serialize(completionRequest);
+        final HttpRequest request = buildGptRequest(body, "/completions");
+        final String cacheKey = cacheKey("/completions", body, cachesCompletion(completionRequest));
+        final int estimatedTokens = estimateTokens(body, completionRequest.getMaxTokens());
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens, cacheKey, String::new, String::toCharArray)
                 .thenApply((Function<HttpResponse<String>, ClientResponse<CompletionRequest, CompletionResponse>>) response ->
-                        getCompletionResponse(completionRequest, response)).exceptionally(e ->
+                        reconcile(request, estimatedTokens, response, getCompletionResponse(completionRequest, response),
+                                CompletionResponse::getUsage)).exceptionally(e ->
                         getErrorResponseForCompletionRequest(e, completionRequest));
     }
 
+    /**
+     * Sends a completion request and streams the response back as server-sent events.
+     * Each chunk is passed to the listener as soon as it arrives, and the returned future completes with the
+     * completion response assembled from all chunks.
+     *
+     * @param requested The completion request to be sent. It is streamed even if its stream flag is not set.
+     * @param listener  The listener that receives each chunk of the response.
+     * @return The client response containing the completion request and the assembled completion response.
+     */
+    @Override
+    public CompletableFuture<ClientResponse<CompletionRequest, CompletionResponse>> completionStreamAsync(
+            final CompletionRequest requested, final Consumer<CompletionChunk> listener) {
+        final CompletionRequest completionRequest;
+        try {
+            completionRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return CompletableFuture.completedFuture(getErrorResponseForCompletionRequest(e, requested));
+        }
+        final String body = CompletionRequestSerializer.serialize(completionRequest, true);
+        final HttpRequest request = buildGptRequest(body, "/completions");
+        final CompletionChunkAggregator aggregator = new CompletionChunkAggregator(listener);
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(data ->
+                aggregator.accept(CompletionChunkDeserializer.deserialize(data)));
+        final int promptTokens = countTokens(body);
+        final int estimatedTokens = promptTokens + completionRequest.getMaxTokens();
+        final CostAccountant.Reservation reservation = reserve(completionRequest, promptTokens);
+
+        return sendStreamAsync(request, subscriber.bodyHandler(), estimatedTokens)
+                .whenComplete((response, e) -> reconcileStream(request, estimatedTokens, promptTokens, reservation,
+                        completionRequest, response != null && isOk(response.statusCode()),
+                        aggregator.getStreamedText()))
+                .thenApply(response -> getCompletionStreamResponse(completionRequest, response, subscriber, aggregator))
+                .exceptionally(e -> getErrorResponseForCompletionRequest(e, completionRequest));
+    }
+
 
     @Override
     public CompletableFuture<ClientResponse<CreateModerationRequest, CreateModerationResponse>> moderateAsync(CreateModerationRequest moderationRequest) {
-        final HttpRequest request = buildGptRequest(CreateModerationRequestSerializer.serialize(moderationRequest), "/moderations");
+        final String body = CreateModerationRequestSerializer.serialize(moderationRequest);
+        final HttpRequest request = buildGptRequest(body, "/moderations");
+        final String cacheKey = cacheKey("/moderations", body, true);
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenApply(response -> getCreateModerationResponse(moderationRequest, response));
+            return sendAsync(request, CharArrayBodySubscriber.bodyHandler(), 0, cacheKey, Function.identity(), Function.identity(),
+                    SendMode.HEDGED)
+                    .thenApply(response -> getCreateModerationCharResponse(moderationRequest, response));
 
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -147,10 +808,13 @@ public class OpenAIClient implements Client, ClientAsync {
     @Override
     public ClientResponse<CreateModerationRequest, CreateModerationResponse> moderate(CreateModerationRequest moderationRequest) {
 
-        final HttpRequest request = buildGptRequest(CreateModerationRequestSerializer.serialize(moderationRequest), "/moderations");
+        final String body = CreateModerationRequestSerializer.serialize(moderationRequest);
+        final HttpRequest request = buildGptRequest(body, "/moderations");
+        final String cacheKey = cacheKey("/moderations", body, true);
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return getCreateModerationResponse(moderationRequest, response);
+            final HttpResponse<char[]> response = send(request, CharArrayBodySubscriber.bodyHandler(), 0, cacheKey,
+                    Function.identity(), Function.identity());
+            return getCreateModerationCharResponse(moderationRequest, response);
         } catch (Exception e) {
             return getErrorResponseForCreateModerationRequest(e, moderationRequest);
         }
@@ -161,7 +825,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/models");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(r -> ModelListResponseDeserializer.deserialize(r.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -173,7 +837,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/models/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(r -> ModelDataDeserializer.deserialize(r.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -185,7 +849,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/files/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(r -> FileDataDeserializer.deserialize(r.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -198,7 +862,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/files");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(r -> FileListResponseDeserializer.deserialize(r.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -211,7 +875,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/models");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return ModelListResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -223,7 +887,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/files");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return FileListResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -235,7 +899,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/files/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return FileDataDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -251,8 +915,8 @@ public class OpenAIClient implements Client, ClientAsync {
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                    .POST(form.buildBodyPublisher()).build();
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             return RequestResponseUtils.getFileUploadResponse(uploadFileRequest, response);
         } catch (Exception e) {
             return RequestResponseUtils.getErrorResponseForUploadFileRequest(e, uploadFileRequest);
@@ -268,10 +932,10 @@ public class OpenAIClient implements Client, ClientAsync {
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
+                    .POST(form.buildBodyPublisher()).build();
 
 
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
                     .thenApply(r -> RequestResponseUtils.getFileUploadResponse(uploadFileRequest, r))
                     .exceptionally(e -> RequestResponseUtils.getErrorResponseForUploadFileRequest(e, uploadFileRequest));
 
@@ -286,7 +950,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGetNoContent("/files/" + id + "/content");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            final HttpResponse<byte[]> response = send(request, HttpResponse.BodyHandlers.ofByteArray());
             return response.body();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -298,7 +962,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGetNoContent("/files/" + id + "/content");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return response.body();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -311,7 +975,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGetNoContent("/files/" + id + "/content");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(HttpResponse::body);
+            return sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(HttpResponse::body);
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
         }
@@ -322,10 +986,231 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGetNoContent("/files/" + id + "/content");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body);
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public long downloadFile(FileDownloadRequest downloadRequest) {
+        if (downloadRequest.getSegments() > 1) {
+            try {
+                return downloadFileAsync(downloadRequest).get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        final String id = downloadRequest.getFileId();
+        try (FileChannel channel = FileChannel.open(downloadRequest.getTarget(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            final long start = downloadRequest.isResume() ? channel.size() : 0;
+            final HttpResponse<Long> response = send(createDownloadRequest(id, start, -1),
+                    downloadHandler(channel, start, true));
+            final long size = downloadedSize(id, response, start, -1, true);
+            channel.truncate(size);
+            return size;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> downloadFileAsync(FileDownloadRequest downloadRequest) {
+        final String id = downloadRequest.getFileId();
+        final FileChannel channel;
+        final CompletableFuture<Long> downloaded;
+        try {
+            channel = FileChannel.open(downloadRequest.getTarget(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (downloadRequest.getSegments() > 1) {
+                downloaded = getFileDataAsync(id).thenCompose(fileData ->
+                        downloadSegments(id, channel, fileData.getBytes(), downloadRequest.getSegments()));
+            } else {
+                final long start = downloadRequest.isResume() ? channel.size() : 0;
+                downloaded = sendAsync(createDownloadRequest(id, start, -1), downloadHandler(channel, start, true))
+                        .thenApply(response -> downloadedSize(id, response, start, -1, true));
+            }
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
         }
+        return downloaded.thenApply(size -> {
+            try {
+                channel.truncate(size);
+                return size;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((size, error) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the error of the download, if any, is the one to report
+            }
+        });
+    }
+
+    @Override
+    public long downloadFileContent(String id, OutputStream out) {
+        final HttpRequest request = createDownloadRequest(id, 0, -1);
+        try {
+            final HttpResponse<InputStream> response = send(request, responseInfo -> responseInfo.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.ofInputStream()
+                    : HttpResponse.BodySubscribers.replacing(InputStream.nullInputStream()));
+            try (InputStream in = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new IOException("Download of file " + id + " failed with status " + response.statusCode());
+                }
+                return in.transferTo(out);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Fetches the content of a file of a known size as range requests of at least {@link #MIN_DOWNLOAD_SEGMENT}
+     * bytes, each writing its own region of the file. The first range is sent alone; the others are sent as soon as it
+     * comes back as partial content. If the server ignores the Range header and answers with the whole content, that
+     * response is written as the whole file and no other range is requested.
+     */
+    private CompletableFuture<Long> downloadSegments(final String id, final FileChannel channel, final long size,
+                                                     final int segments) {
+        if (size <= 0) {
+            return sendAsync(createDownloadRequest(id, 0, -1), downloadHandler(channel, 0, true))
+                    .thenApply(response -> downloadedSize(id, response, 0, -1, true));
+        }
+        final long segmentSize = Math.max(MIN_DOWNLOAD_SEGMENT, (size + segments - 1) / segments);
+        final long firstLength = Math.min(segmentSize, size);
+        final CompletableFuture<Boolean> ranged = new CompletableFuture<>();
+        final HttpResponse.BodyHandler<Long> firstHandler = downloadHandler(channel, 0, true);
+        final CompletableFuture<HttpResponse<Long>> first = sendAsync(createDownloadRequest(id, 0, firstLength - 1),
+                responseInfo -> {
+                    // Decided by the headers of the first answer, so the other ranges do not wait for its body.
+                    if (responseInfo.statusCode() == 206) {
+                        ranged.complete(true);
+                    } else if (responseInfo.statusCode() == 200) {
+                        ranged.complete(false);
+                    }
+                    return firstHandler.apply(responseInfo);
+                });
+        final CompletableFuture<Void> rest = ranged.thenCompose(partial -> {
+            if (!partial) {
+                return CompletableFuture.completedFuture(null);
+            }
+            final List<CompletableFuture<Long>> parts = new ArrayList<>();
+            for (long start = firstLength; start < size; start += segmentSize) {
+                final long from = start;
+                final long length = Math.min(segmentSize, size - from);
+                parts.add(sendAsync(createDownloadRequest(id, from, from + length - 1),
+                        downloadHandler(channel, from, false))
+                        .thenApply(response -> downloadedSize(id, response, from, length, false)));
+            }
+            return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]));
+        });
+        return first.thenCompose(response -> {
+            if (response.statusCode() == 200) {
+                return CompletableFuture.completedFuture(downloadedSize(id, response, 0, -1, true));
+            }
+            downloadedSize(id, response, 0, firstLength, false);
+            return rest.thenApply(done -> size);
+        });
+    }
+
+    /**
+     * Creates a request for the content of a file, for the bytes from start to end inclusive. An end of -1 asks for
+     * the rest of the content, and no Range header is sent for the whole content.
+     */
+    private HttpRequest createDownloadRequest(final String id, final long start, final long end) {
+        final HttpRequest.Builder requestBuilder = createRequestBuilderGetNoContent("/files/" + id + "/content");
+        if (start > 0 || end >= 0) {
+            requestBuilder.header("Range", "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : ""));
+        }
+        return requestBuilder.build();
+    }
+
+    /**
+     * Writes the body of a download response to its region of the file: a partial response from start, or a whole
+     * response from the beginning of the file if whole responses are accepted. Any other body is discarded, and read
+     * as -1.
+     */
+    private static HttpResponse.BodyHandler<Long> downloadHandler(final FileChannel channel, final long start,
+                                                                  final boolean acceptWhole) {
+        return responseInfo -> {
+            final int status = responseInfo.statusCode();
+            if (status == 206 && contentRangeStart(responseInfo.headers()) == start) {
+                return new FileRegionBodySubscriber(channel, start);
+            }
+            if (status == 200 && acceptWhole) {
+                return new FileRegionBodySubscriber(channel, 0);
+            }
+            return HttpResponse.BodySubscribers.replacing(-1L);
+        };
+    }
+
+    /**
+     * Works out the size of the file after a download response was written: the end of the range for a partial
+     * response, the length of the body for a whole one, and the size of the content when the range starts at or past
+     * its end.
+     *
+     * @throws UncheckedIOException If the response was an error, or a range came back short or in the wrong place.
+     */
+    private static long downloadedSize(final String id, final HttpResponse<Long> response, final long start,
+                                       final long length, final boolean acceptWhole) {
+        final int status = response.statusCode();
+        final long written = response.body();
+        if (status == 206 && written >= 0 && (length < 0 || written == length)) {
+            return start + written;
+        }
+        if (status == 200 && acceptWhole && written >= 0) {
+            return written;
+        }
+        if (status == 416 && start > 0 && length < 0) {
+            // The file is complete; drop any bytes past the end of the content.
+            final long total = contentRangeTotal(response.headers());
+            return total >= 0 ? Math.min(start, total) : start;
+        }
+        throw new UncheckedIOException(new IOException("Download of file " + id + " from byte " + start
+                + " failed with status " + status + (written >= 0 ? ", " + written + " bytes received" : "")));
+    }
+
+    /**
+     * Reads the length of the content from a Content-Range header such as {@code bytes 100-199/1000}, which a 416
+     * response sends with an asterisk for the range.
+     *
+     * @return The length, or -1 if it is not known.
+     */
+    private static long contentRangeTotal(final HttpHeaders headers) {
+        final String range = headers.firstValue("Content-Range").orElse("");
+        final int slash = range.lastIndexOf('/');
+        if (!range.startsWith("bytes ") || slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the first byte position from a Content-Range header such as {@code bytes 100-199/1000}.
+     *
+     * @return The position, or -1 if there is no such header.
+     */
+    private static long contentRangeStart(final HttpHeaders headers) {
+        final String range = headers.firstValue("Content-Range").orElse("");
+        final int dash = range.indexOf('-');
+        if (!range.startsWith("bytes ") || dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
 
@@ -334,7 +1219,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/files/" + id).DELETE();
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return FileDeleteResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -346,7 +1231,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return ListFineTuneResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -359,7 +1244,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> ListFineTuneResponseDeserializer.deserialize(response.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -371,7 +1256,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes/" + id + "/events");
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> ListFineTuneEventResponseDeserializer.deserialize(response.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -384,7 +1269,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes/" + id + "/events");
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return ListFineTuneEventResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -396,7 +1281,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> FineTuneDataDeserializer.deserialize(response.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -409,7 +1294,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/fine-tunes/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return FineTuneDataDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -423,7 +1308,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/models/" + id).DELETE();
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return DeleteFineTuneResponseDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -435,7 +1320,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/models/" + id).DELETE();
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> DeleteFineTuneResponseDeserializer.deserialize(response.body()));
 
         } catch (Exception e) {
@@ -448,7 +1333,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/fine-tunes/" + id + "/cancel").POST(HttpRequest.BodyPublishers.ofString(""));
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> FineTuneDataDeserializer.deserialize(response.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -460,7 +1345,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/fine-tunes/" + id + "/cancel").POST(HttpRequest.BodyPublishers.ofString(""));
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return FineTuneDataDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -472,7 +1357,7 @@ public class OpenAIClient implements Client, ClientAsync {
     public CompletableFuture<ClientResponse<CreateFineTuneRequest, FineTuneData>> createFineTuneAsync(CreateFineTuneRequest createFineTuneRequest) {
         final HttpRequest request = buildGptRequest(CreateFineTuneRequestSerializer.serialize(createFineTuneRequest), "/fine-tunes");
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(response -> getCreateFineTuneResponse(createFineTuneRequest, response));
 
         } catch (Exception e) {
@@ -484,7 +1369,7 @@ public class OpenAIClient implements Client, ClientAsync {
     public ClientResponse<CreateFineTuneRequest, FineTuneData> createFineTune(CreateFineTuneRequest createFineTuneRequest) {
         final HttpRequest request = buildGptRequest(CreateFineTuneRequestSerializer.serialize(createFineTuneRequest), "/fine-tunes");
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return getCreateFineTuneResponse(createFineTuneRequest, response);
         } catch (Exception e) {
             return getErrorResponseForCreateFineTuneRequest(e, createFineTuneRequest);
@@ -497,7 +1382,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilder("/files/" + id).DELETE();
         final HttpRequest request = requestBuilder.build();
         try {
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                     .thenApply(r -> FileDeleteResponseDeserializer.deserialize(r.body()));
         } catch (Exception e) {
             return CompletableFuture.failedFuture(e);
@@ -510,7 +1395,7 @@ public class OpenAIClient implements Client, ClientAsync {
         final HttpRequest.Builder requestBuilder = createRequestBuilderGet("/models/" + id);
         final HttpRequest request = requestBuilder.build();
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return ModelDataDeserializer.deserialize(response.body());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -540,21 +1425,67 @@ public class OpenAIClient implements Client, ClientAsync {
     /**
      * Sends a chat request to the OpenAI API and returns the client response.
      *
-     * @param chatRequest The chat request to be sent.
+     * @param requested The chat request to be sent.
      * @return The client response containing the chat request and the corresponding chat response.
      */
     @Override
-    public ClientResponse<ChatRequest, ChatResponse> chat(final ChatRequest chatRequest) {
+    public ClientResponse<ChatRequest, ChatResponse> chat(final ChatRequest requested) {
+        final ChatRequest chatRequest;
+        try {
+            chatRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return getErrorResponseForChatRequest(e, requested);
+        }
 
-        final HttpRequest request = buildGptRequest(ChatRequestSerializer.serialize(chatRequest), "/chat/completions");
+        final String body = ChatRequestSerializer.serialize(chatRequest);
+        final HttpRequest request = buildGptRequest(body, "/chat/completions");
+        final String cacheKey = cacheKey("/chat/completions", body, cachesCompletion(chatRequest));
+        final int estimatedTokens = estimateTokens(body, chatRequest.getMaxTokens());
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return getChatResponse(chatRequest, response);
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens,
+                    cacheKey, String::new, String::toCharArray);
+            return reconcile(request, estimatedTokens, response, getChatResponse(chatRequest, response), ChatResponse::getUsage);
         } catch (Exception e) {
             return getErrorResponseForChatRequest(e, chatRequest);
         }
     }
 
+    /**
+     * Sends a chat request and streams the response back as server-sent events.
+     * Each chunk is passed to the listener as soon as it arrives, and the call returns once the stream has ended.
+     *
+     * @param requested The chat request to be sent. It is streamed even if its stream flag is not set.
+     * @param listener  The listener that receives each chunk of the response.
+     * @return The client response containing the chat request and the assembled chat response.
+     */
+    @Override
+    public ClientResponse<ChatRequest, ChatResponse> chatStream(final ChatRequest requested, final Consumer<ChatChunk> listener) {
+        final ChatRequest chatRequest;
+        try {
+            chatRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return getErrorResponseForChatRequest(e, requested);
+        }
+        final String body = ChatRequestSerializer.serialize(chatRequest, true);
+        final HttpRequest request = buildGptRequest(body, "/chat/completions");
+        final ChatChunkAggregator aggregator = new ChatChunkAggregator(listener);
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(data ->
+                aggregator.accept(ChatChunkDeserializer.deserialize(data)));
+        final int promptTokens = countTokens(body);
+        final int estimatedTokens = promptTokens + chatRequest.getMaxTokens();
+        final CostAccountant.Reservation reservation = reserve(chatRequest, promptTokens);
+        HttpResponse<String> response = null;
+        try {
+            response = sendStream(request, subscriber.bodyHandler(), estimatedTokens);
+            return getChatStreamResponse(chatRequest, response, subscriber, aggregator);
+        } catch (Exception e) {
+            return getErrorResponseForChatRequest(e, chatRequest);
+        } finally {
+            reconcileStream(request, estimatedTokens, promptTokens, reservation, chatRequest,
+                    response != null && isOk(response.statusCode()), aggregator.getStreamedText());
+        }
+    }
+
     /**
      * Creates an HTTP request builder with common headers and the specified path.
      *
@@ -577,26 +1508,77 @@ public class OpenAIClient implements Client, ClientAsync {
     /**
      * Sends a chat request to the OpenAI API and returns the client response.
      *
-     * @param completionRequest The completion request to be sent.
+     * @param requested The completion request to be sent.
      * @return The client response containing the completion request and the corresponding chat response.
      */
     @Override
-    public ClientResponse<CompletionRequest, CompletionResponse> completion(final CompletionRequest completionRequest) {
-        final HttpRequest request = buildGptRequest(CompletionRequestSerializer.serialize(completionRequest), "/completions");
+    public ClientResponse<CompletionRequest, CompletionResponse> completion(final CompletionRequest requested) {
+        final CompletionRequest completionRequest;
+        try {
+            completionRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return getErrorResponseForCompletionRequest(e, requested);
+        }
+        final String body = CompletionRequestSerializer.serialize(completionRequest);
+        final HttpRequest request = buildGptRequest(body, "/completions");
+        final String cacheKey = cacheKey("/completions", body, cachesCompletion(completionRequest));
+        final int estimatedTokens = estimateTokens(body, completionRequest.getMaxTokens());
+        try {
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens,
+                    cacheKey, String::new, String::toCharArray);
+            return reconcile(request, estimatedTokens, response, getCompletionResponse(completionRequest, response),
+                    CompletionResponse::getUsage);
+        } catch (Exception e) {
+            return getErrorResponseForCompletionRequest(e, completionRequest);
+        }
+    }
+
+    /**
+     * Sends a completion request and streams the response back as server-sent events.
+     * Each chunk is passed to the listener as soon as it arrives, and the call returns once the stream has ended.
+     *
+     * @param requested The completion request to be sent. It is streamed even if its stream flag is not set.
+     * @param listener  The listener that receives each chunk of the response.
+     * @return The client response containing the completion request and the assembled completion response.
+     */
+    @Override
+    public ClientResponse<CompletionRequest, CompletionResponse> completionStream(final CompletionRequest requested,
+                                                                                  final Consumer<CompletionChunk> listener) {
+        final CompletionRequest completionRequest;
+        try {
+            completionRequest = admit(requested);
+        } catch (BudgetExceededException e) {
+            return getErrorResponseForCompletionRequest(e, requested);
+        }
+        final String body = CompletionRequestSerializer.serialize(completionRequest, true);
+        final HttpRequest request = buildGptRequest(body, "/completions");
+        final CompletionChunkAggregator aggregator = new CompletionChunkAggregator(listener);
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(data ->
+                aggregator.accept(CompletionChunkDeserializer.deserialize(data)));
+        final int promptTokens = countTokens(body);
+        final int estimatedTokens = promptTokens + completionRequest.getMaxTokens();
+        final CostAccountant.Reservation reservation = reserve(completionRequest, promptTokens);
+        HttpResponse<String> response = null;
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return getCompletionResponse(completionRequest, response);
+            response = sendStream(request, subscriber.bodyHandler(), estimatedTokens);
+            return getCompletionStreamResponse(completionRequest, response, subscriber, aggregator);
         } catch (Exception e) {
             return getErrorResponseForCompletionRequest(e, completionRequest);
+        } finally {
+            reconcileStream(request, estimatedTokens, promptTokens, reservation, completionRequest,
+                    response != null && isOk(response.statusCode()), aggregator.getStreamedText());
         }
     }
 
     @Override
     public ClientResponse<EditRequest, EditResponse> edit(final EditRequest editRequest) {
-        final HttpRequest request = buildGptRequest(EditRequestSerializer.serialize(editRequest), "/edits");
+        final String body = EditRequestSerializer.serialize(editRequest);
+        final HttpRequest request = buildGptRequest(body, "/edits");
+        final int estimatedTokens = estimateTokens(body, 0);
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return getEditResponse(editRequest, response);
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens,
+                    null, null, null);
+            return reconcile(request, estimatedTokens, response, getEditResponse(editRequest, response), EditResponse::getUsage);
         } catch (Exception e) {
             return getErrorResponseForCreateFineTuneRequest(e, editRequest);
         }
@@ -604,15 +1586,42 @@ public class OpenAIClient implements Client, ClientAsync {
 
     @Override
     public ClientResponse<EmbeddingRequest, EmbeddingResponse> embedding(EmbeddingRequest embeddingRequest) {
-        final HttpRequest request = buildGptRequest(EmbeddingRequestSerializer.serialize(embeddingRequest), "/embeddings");
+        final String body = EmbeddingRequestSerializer.serialize(embeddingRequest);
+        final HttpRequest request = buildGptRequest(body, "/embeddings");
+        final String cacheKey = cacheKey("/embeddings", body, true);
+        final int estimatedTokens = estimateTokens(body, 0);
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return getEmbeddingResponse(embeddingRequest, response);
+            final HttpResponse<char[]> response = send(request, CharArrayBodySubscriber.bodyHandler(), estimatedTokens,
+                    cacheKey, Function.identity(), Function.identity());
+            return reconcile(request, estimatedTokens, response, getEmbeddingCharResponse(embeddingRequest, response),
+                    EmbeddingResponse::getUsage);
         } catch (Exception e) {
             return getErrorResponseForEmbeddingRequest(e, embeddingRequest);
         }
     }
 
+    /**
+     * Sends an embedding request and reads the embeddings into one contiguous matrix.
+     *
+     * @param embeddingRequest The embedding request to be sent.
+     * @return The client response containing the embedding request and the embedding matrix.
+     */
+    @Override
+    public ClientResponse<EmbeddingRequest, EmbeddingMatrix> embeddingMatrix(EmbeddingRequest embeddingRequest) {
+        final String body = EmbeddingRequestSerializer.serialize(embeddingRequest);
+        final HttpRequest request = buildGptRequest(body, "/embeddings");
+        final String cacheKey = cacheKey("/embeddings", body, true);
+        final int estimatedTokens = estimateTokens(body, 0);
+        try {
+            final HttpResponse<char[]> response = send(request, CharArrayBodySubscriber.bodyHandler(), estimatedTokens,
+                    cacheKey, Function.identity(), Function.identity());
+            return reconcile(request, estimatedTokens, response, getEmbeddingMatrixResponse(embeddingRequest, response),
+                    EmbeddingMatrix::getUsage);
+        } catch (Exception e) {
+            return getErrorResponseForEmbeddingMatrixRequest(e, embeddingRequest);
+        }
+    }
+
     @Override
     public ClientResponse<TranscriptionRequest, AudioResponse> transcribe(TranscriptionRequest transcriptionRequest) {
 
@@ -628,8 +1637,8 @@ public class OpenAIClient implements Client, ClientAsync {
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                    .POST(form.buildBodyPublisher()).build();
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             return RequestResponseUtils.getTranscriptionResponse(transcriptionRequest, response);
         } catch (Exception e) {
             return RequestResponseUtils.getErrorResponseForTranscriptionRequest(e, transcriptionRequest);
@@ -645,12 +1654,12 @@ public class OpenAIClient implements Client, ClientAsync {
             form.addTextBody("language", transcriptionRequest.getLanguage());
         }
         try {
-            final HttpRequest request = createRequestBuilderWithBody("/audio/translations")
+            final HttpRequest request = createRequestBuilderWithBody("/audio/transcriptions")
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).thenApply(response ->
+                    .POST(form.buildBodyPublisher()).build();
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).thenApply(response ->
                     RequestResponseUtils.getTranscriptionResponse(transcriptionRequest, response)
             ).exceptionally(e -> RequestResponseUtils.getErrorResponseForTranscriptionRequest(e, transcriptionRequest));
         } catch (Exception ex) {
@@ -667,8 +1676,8 @@ public class OpenAIClient implements Client, ClientAsync {
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).thenApply(response ->
+                    .POST(form.buildBodyPublisher()).build();
+            return sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).thenApply(response ->
                     RequestResponseUtils.getTranslateResponse(translateRequest, response)
             ).exceptionally(e -> RequestResponseUtils.getErrorResponseForTranslateRequest(e, translateRequest));
 
@@ -688,8 +1697,8 @@ public class OpenAIClient implements Client, ClientAsync {
                     // The Content-Type header is important, don't forget to set it.
                     .header("Content-Type", contentType)
                     // Reads data from a pipeline stream.
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build())).build();
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                    .POST(form.buildBodyPublisher()).build();
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             return RequestResponseUtils.getTranslateResponse(translateRequest, response);
         } catch (Exception e) {
             ClientErrorResponse.Builder<TranslateRequest, AudioResponse> builder = ClientErrorResponse.builder();
@@ -702,7 +1711,7 @@ public class OpenAIClient implements Client, ClientAsync {
     public ClientResponse<CreateImageRequest, ImageResponse> createImage(CreateImageRequest imageRequest) {
         final HttpRequest request = buildGptRequest(ImageRequestSerializer.buildJson(imageRequest), "/images/generations");
         try {
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return getCreateImageResponse(imageRequest, response);
         } catch (Exception e) {
             return getErrorResponseForCreateImageRequest(e, imageRequest);
@@ -716,9 +1725,9 @@ public class OpenAIClient implements Client, ClientAsync {
             final String contentType = getEncodingContentType(form);
             final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody("/images/edits")
                     .header("Content-Type", contentType)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build()));
+                    .POST(form.buildBodyPublisher());
             final HttpRequest request = requestBuilder.build();
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return getEditImageResponse(imageRequest, response);
         } catch (Exception e) {
             return getErrorResponseForEditImageRequest(e, imageRequest);
@@ -732,9 +1741,9 @@ public class OpenAIClient implements Client, ClientAsync {
             final String contentType = getEncodingContentType(form);
             final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody("/images/variations")
                     .header("Content-Type", contentType)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(form.build()));
+                    .POST(form.buildBodyPublisher());
             final HttpRequest request = requestBuilder.build();
-            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
             return getCreateVariationImageResponse(imageRequest, response);
         } catch (Exception e) {
             return getErrorResponseForCreateImageVariationRequest(e, imageRequest);
@@ -746,7 +1755,7 @@ public class OpenAIClient implements Client, ClientAsync {
     public CompletableFuture<ClientResponse<CreateImageRequest, ImageResponse>> createImageAsync(CreateImageRequest imageRequest) {
         final HttpRequest request = buildGptRequest(ImageRequestSerializer.buildJson(imageRequest), "/images/generations");
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response ->
                         getCreateImageResponse(imageRequest, response)).exceptionally(e ->
                         getErrorResponseForCreateImageRequest(e, imageRequest));
@@ -759,10 +1768,10 @@ public class OpenAIClient implements Client, ClientAsync {
         final String contentType = getEncodingContentType(form);
         final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody("/images/edits")
                 .header("Content-Type", contentType)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(form.build()));
+                .POST(form.buildBodyPublisher());
         final HttpRequest request = requestBuilder.build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response ->
                         getEditImageResponse(imageRequest, response)).exceptionally(e ->
                         getErrorResponseForEditImageRequest(e, imageRequest));
@@ -776,30 +1785,58 @@ public class OpenAIClient implements Client, ClientAsync {
         final String contentType = getEncodingContentType(form);
         final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody("/images/variations")
                 .header("Content-Type", contentType)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(form.build()));
+                .POST(form.buildBodyPublisher());
         final HttpRequest request = requestBuilder.build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response ->
                         getCreateVariationImageResponse(imageRequest, response)).exceptionally(e ->
                         getErrorResponseForCreateImageVariationRequest(e, imageRequest));
     }
 
     public CompletableFuture<ClientResponse<EmbeddingRequest, EmbeddingResponse>> embeddingAsync(final EmbeddingRequest embeddingRequest) {
-        final HttpRequest request = buildGptRequest(EmbeddingRequestSerializer.serialize(embeddingRequest), "/embeddings");
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply((Function<HttpResponse<String>, ClientResponse<EmbeddingRequest, EmbeddingResponse>>) response ->
-                        getEmbeddingResponse(embeddingRequest, response)).exceptionally(e ->
+        final String body = EmbeddingRequestSerializer.serialize(embeddingRequest);
+        final HttpRequest request = buildGptRequest(body, "/embeddings");
+        final String cacheKey = cacheKey("/embeddings", body, true);
+        final int estimatedTokens = estimateTokens(body, 0);
+        return sendAsync(request, CharArrayBodySubscriber.bodyHandler(), estimatedTokens, cacheKey, Function.identity(), Function.identity(),
+                SendMode.HEDGED)
+                .thenApply((Function<HttpResponse<char[]>, ClientResponse<EmbeddingRequest, EmbeddingResponse>>) response ->
+                        reconcile(request, estimatedTokens, response, getEmbeddingCharResponse(embeddingRequest, response),
+                                EmbeddingResponse::getUsage)).exceptionally(e ->
                         getErrorResponseForEmbeddingRequest(e, embeddingRequest));
     }
 
+    /**
+     * Sends an embedding request and reads the embeddings into one contiguous matrix.
+     *
+     * @param embeddingRequest The embedding request to be sent.
+     * @return The client response containing the embedding request and the embedding matrix.
+     */
+    @Override
+    public CompletableFuture<ClientResponse<EmbeddingRequest, EmbeddingMatrix>> embeddingMatrixAsync(final EmbeddingRequest embeddingRequest) {
+        final String body = EmbeddingRequestSerializer.serialize(embeddingRequest);
+        final HttpRequest request = buildGptRequest(body, "/embeddings");
+        final String cacheKey = cacheKey("/embeddings", body, true);
+        final int estimatedTokens = estimateTokens(body, 0);
+        return sendAsync(request, CharArrayBodySubscriber.bodyHandler(), estimatedTokens, cacheKey, Function.identity(), Function.identity(),
+                SendMode.HEDGED)
+                .thenApply((Function<HttpResponse<char[]>, ClientResponse<EmbeddingRequest, EmbeddingMatrix>>) response ->
+                        reconcile(request, estimatedTokens, response, getEmbeddingMatrixResponse(embeddingRequest, response),
+                                EmbeddingMatrix::getUsage)).exceptionally(e ->
+                        getErrorResponseForEmbeddingMatrixRequest(e, embeddingRequest));
+    }
+
 
     @Override
     public CompletableFuture<ClientResponse<EditRequest, EditResponse>> editAsync(EditRequest editRequest) {
-        final HttpRequest request = buildGptRequest(EditRequestSerializer.serialize(editRequest), "/edits");
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        final String body = EditRequestSerializer.serialize(editRequest);
+        final HttpRequest request = buildGptRequest(body, "/edits");
+        final int estimatedTokens = estimateTokens(body, 0);
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString(), estimatedTokens, null, null, null)
                 .thenApply((Function<HttpResponse<String>, ClientResponse<EditRequest, EditResponse>>) response ->
-                        getEditResponse(editRequest, response)).exceptionally(e ->
+                        reconcile(request, estimatedTokens, response, getEditResponse(editRequest, response), EditResponse::getUsage))
+                .exceptionally(e ->
                         getErrorResponseForCreateFineTuneRequest(e, editRequest));
     }
 
@@ -814,8 +1851,34 @@ public class OpenAIClient implements Client, ClientAsync {
 
         private HttpClient.Builder httpClientBuilder;
 
+        private boolean httpClientBuilderSupplied;
+
+        private Executor executor;
+
+        private boolean virtualThreads;
+
         private boolean validateJson;
 
+        private ResponseCache responseCache;
+
+        private RateLimiter rateLimiter;
+
+        private RetryPolicy retryPolicy = RetryPolicy.none();
+
+        private final Map<String, RetryPolicy> retryPolicies = new HashMap<>();
+
+        private HedgingPolicy hedgingPolicy;
+
+        private EndpointPool endpointPool;
+
+        private CircuitBreaker circuitBreaker;
+
+        private ClientMetrics metrics = ClientMetrics.none();
+
+        private CostAccountant costAccountant;
+
+        private BpeTokenizer tokenizer;
+
         private Builder() {
         }
 
@@ -839,21 +1902,57 @@ public class OpenAIClient implements Client, ClientAsync {
          */
         public Builder setHttpClientBuilder(HttpClient.Builder httpClientBuilder) {
             this.httpClientBuilder = httpClientBuilder;
+            this.httpClientBuilderSupplied = httpClientBuilder != null;
             return this;
         }
 
         /**
-         * HttpClient
+         * HttpClient. The executor is only applied to an HTTP client builder this builder created; a builder set with
+         * {@link #setHttpClientBuilder(HttpClient.Builder)} is built as it is.
          *
          * @return HttpClient
          */
         public HttpClient getHttpClient() {
             if (httpClient == null) {
-                httpClient = getHttpClientBuilder().build();
+                final HttpClient.Builder builder = getHttpClientBuilder();
+                if (!httpClientBuilderSupplied) {
+                    if (executor != null) {
+                        builder.executor(executor);
+                    } else if (virtualThreads && VirtualThreads.isSupported()) {
+                        builder.executor(VirtualThreads.newVirtualThreadPerTaskExecutor());
+                    }
+                }
+                httpClient = builder.build();
             }
             return httpClient;
         }
 
+        /**
+         * Sets the executor the HTTP client runs its asynchronous tasks on, which is also where the async methods
+         * complete and where retries are scheduled. By default the HTTP client creates a cached thread pool. Ignored
+         * if the HTTP client or the HTTP client builder is set.
+         *
+         * @param executor The executor.
+         * @return The builder instance.
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets whether the HTTP client runs its asynchronous tasks on virtual threads, one per task. Virtual threads
+         * need Java 21; on older runtimes the setting is ignored, see {@link VirtualThreads}. Ignored if the executor,
+         * the HTTP client or the HTTP client builder is set.
+         *
+         * @param virtualThreads true to use virtual threads.
+         * @return The builder instance.
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
         /**
          * Sets the HTTP client used for making API requests.
          *
@@ -892,6 +1991,141 @@ public class OpenAIClient implements Client, ClientAsync {
             return this;
         }
 
+        /**
+         * Sets the cache that answers repeated embedding, moderation and deterministic chat and completion requests.
+         * By default nothing is cached.
+         *
+         * @param responseCache The response cache.
+         * @return The builder instance.
+         */
+        public Builder setResponseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter that every request waits for before it is sent, for example a
+         * {@link com.cloudurable.jai.resilience.TokenBucketRateLimiter} shared by all clients using the same API key.
+         * By default requests are sent as soon as they are made.
+         *
+         * @param rateLimiter The rate limiter.
+         * @return The builder instance.
+         */
+        public Builder setRateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy of requests whose path has no policy of its own. By default requests are not retried.
+         * <p>
+         * POSTs to /files, /fine-tunes, /images and /audio are not retried under this policy, since a response lost
+         * after the request was sent would upload the file, start the fine-tune or bill the generation twice. Set a
+         * policy for the path with {@link #setRetryPolicy(String, RetryPolicy)} to retry them anyway.
+         *
+         * @param retryPolicy The retry policy.
+         * @return The builder instance.
+         */
+        public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy of requests to an API path, for example {@code RetryPolicy.none()} for /models. A path
+         * also covers the paths below it, and the longest matching path wins. A policy set here also applies to the
+         * POSTs to /files, /fine-tunes, /images and /audio, which are otherwise never retried.
+         *
+         * @param path        The API path, for example /chat/completions.
+         * @param retryPolicy The retry policy.
+         * @return The builder instance.
+         */
+        public Builder setRetryPolicy(String path, RetryPolicy retryPolicy) {
+            this.retryPolicies.put("/" + stripLeadingSlashes(path), retryPolicy);
+            return this;
+        }
+
+        /**
+         * Sets the hedging policy of the idempotent async calls: embeddingAsync, embeddingMatrixAsync, moderateAsync,
+         * and chatAsync with a temperature explicitly set to zero. A chat without a temperature is sampled at the API's
+         * default and is never hedged. By default requests are not hedged.
+         *
+         * @param hedgingPolicy The hedging policy.
+         * @return The builder instance.
+         */
+        public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Sets a pool of endpoints, each with its own API key, to spread requests over and fail over between. Each
+         * attempt of a stateless request is sent to the endpoint the pool chooses, with that endpoint's key; file,
+         * fine-tune and model requests always go to the first endpoint, which owns them, see
+         * {@link EndpointPool#isPooled(String)}. If no API key is set, the key of the first endpoint is used to build
+         * requests. By default every request goes to the API endpoint.
+         *
+         * @param endpointPool The endpoint pool.
+         * @return The builder instance.
+         */
+        public Builder setEndpointPool(EndpointPool endpointPool) {
+            this.endpointPool = endpointPool;
+            return this;
+        }
+
+        /**
+         * Sets the circuit breaker that rejects requests to an API path while it is failing or slow. Rejected calls
+         * return a ClientErrorResponse whose exception is a
+         * {@link com.cloudurable.jai.resilience.CircuitOpenException}. By default every request is sent.
+         *
+         * @param circuitBreaker The circuit breaker.
+         * @return The builder instance.
+         */
+        public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Sets the metrics that measure every request: latency, time to first byte, requests in flight, status codes,
+         * body sizes and token usage, by API path. By default nothing is measured.
+         *
+         * @param metrics The client metrics, for example a bridge to a metrics library or a
+         *                {@link com.cloudurable.jai.metrics.SimpleClientMetrics}.
+         * @return The builder instance.
+         */
+        public Builder setMetrics(ClientMetrics metrics) {
+            this.metrics = metrics == null ? ClientMetrics.none() : metrics;
+            return this;
+        }
+
+        /**
+         * Sets the cost accountant that adds up the tokens and dollars each user spends and enforces their budgets.
+         * Chat and completion requests of a user over budget are sent to a cheaper model or return a
+         * ClientErrorResponse whose exception is a {@link com.cloudurable.jai.cost.BudgetExceededException}. By
+         * default costs are not tracked.
+         *
+         * @param costAccountant The cost accountant.
+         * @return The builder instance.
+         */
+        public Builder setCostAccountant(CostAccountant costAccountant) {
+            this.costAccountant = costAccountant;
+            return this;
+        }
+
+        /**
+         * Sets the tokenizer the rate limiter's estimate of the tokens of a request is counted with, for example
+         * {@code BpeTokenizer.load(Encoding.CL100K_BASE)}. The JSON of the request is counted, which is a few tokens
+         * more than the API charges for. By default a token is estimated as four characters.
+         *
+         * @param tokenizer The tokenizer.
+         * @return The builder instance.
+         */
+        public Builder setTokenizer(BpeTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            return this;
+        }
+
         /**
          * Builds the OpenAIClient object.
          *
@@ -899,8 +2133,13 @@ public class OpenAIClient implements Client, ClientAsync {
          * @throws IllegalArgumentException If any of the required parameters are missing.
          */
         public OpenAIClient build() {
+            if (apiKey == null && endpointPool != null) {
+                apiKey = endpointPool.getEndpoints().get(0).getApiKey();
+            }
             validateParameters();
-            return new OpenAIClient(apiKey, apiEndpoint, getHttpClient(), validateJson);
+            return new OpenAIClient(apiKey, apiEndpoint, getHttpClient(), validateJson, responseCache, rateLimiter,
+                    retryPolicy, Map.copyOf(retryPolicies), hedgingPolicy, endpointPool,
+                    circuitBreaker, metrics, costAccountant, tokenizer);
         }
 
 
@@ -0,0 +1,324 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.ClientAsync;
+import com.cloudurable.jai.model.ClientErrorResponse;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.FileSource;
+import com.cloudurable.jai.model.audio.AudioResponse;
+import com.cloudurable.jai.model.audio.AudioResponseFormat;
+import com.cloudurable.jai.model.audio.TranscriptionRequest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transcribes audio longer than the transcription endpoint accepts by cutting it into chunks and transcribing the
+ * chunks at once.
+ * <p>
+ * The audio must be a WAV file of PCM samples, or raw PCM samples of a format given to the builder. It is cut at the
+ * quietest moment near the end of each chunk, so words are not split between chunks. Chunks are views of the original
+ * samples behind a new WAV header, so a file is mapped rather than read onto the heap. At most a bounded number of
+ * chunks are sent at once, and their transcripts are joined in order into one response in the requested format: text
+ * is concatenated, and the segments of verbose JSON and the cues of SRT and VTT subtitles are renumbered and moved by
+ * the start of their chunk.
+ * <p>
+ * Audio that fits in one chunk is sent as it is, so any format the endpoint accepts can be passed through. If any chunk
+ * fails, no further chunks are sent and the response is the failure of that chunk, made against the original request.
+ */
+public class LongAudioTranscriber {
+
+    private final ClientAsync client;
+    private final int maxParallel;
+    private final long maxChunkBytes;
+    private final int maxChunkSeconds;
+    private final int silenceSearchSeconds;
+    private final PcmFormat pcmFormat;
+
+    private LongAudioTranscriber(ClientAsync client, int maxParallel, long maxChunkBytes, int maxChunkSeconds,
+                                 int silenceSearchSeconds, PcmFormat pcmFormat) {
+        this.client = client;
+        this.maxParallel = maxParallel;
+        this.maxChunkBytes = maxChunkBytes;
+        this.maxChunkSeconds = maxChunkSeconds;
+        this.silenceSearchSeconds = silenceSearchSeconds;
+        this.pcmFormat = pcmFormat;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Transcribes audio, waiting for the transcript.
+     *
+     * @param request The transcription request, with the whole audio as its file.
+     * @return The transcript of the whole audio, or the failure of the first chunk that failed.
+     */
+    public ClientResponse<TranscriptionRequest, AudioResponse> transcribe(final TranscriptionRequest request) {
+        return transcribeAsync(request).join();
+    }
+
+    /**
+     * Transcribes audio.
+     *
+     * @param request The transcription request, with the whole audio as its file.
+     * @return A future of the transcript of the whole audio, or of the failure of the first chunk that failed.
+     */
+    public CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> transcribeAsync(
+            final TranscriptionRequest request) {
+        final FileSource source = request.getFileSource();
+        final WavAudio audio;
+        try {
+            audio = audio(source);
+            if (audio == null) {
+                return client.transcribeAsync(request);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new ClientErrorResponse<>(request, e));
+        }
+        final int frameSize = audio.getFormat().getFrameSize();
+        final int maxFrames = (int) Math.max(1, Math.min((maxChunkBytes - WavAudio.HEADER_SIZE) / frameSize,
+                (long) maxChunkSeconds * audio.getFormat().getSampleRate()));
+        final List<Integer> cuts = SilenceSplitter.split(audio, maxFrames,
+                silenceSearchSeconds * audio.getFormat().getSampleRate());
+        if (cuts.isEmpty() && pcmFormat == null) {
+            return client.transcribeAsync(request);
+        }
+        return new Run(request, audio, cuts).start();
+    }
+
+    /**
+     * Reads the audio to cut, or returns null if it is small enough to send as it is and is not raw PCM.
+     */
+    private WavAudio audio(final FileSource source) {
+        final ByteBuffer buffer = source.toBuffer();
+        if (pcmFormat != null) {
+            return WavAudio.ofPcm(buffer, pcmFormat);
+        }
+        if (WavAudio.isWav(buffer)) {
+            return WavAudio.read(buffer);
+        }
+        if (source.length() <= maxChunkBytes) {
+            return null;
+        }
+        throw new IllegalArgumentException("Audio of more than " + maxChunkBytes
+                + " bytes must be a PCM WAV file, or raw PCM with a format set on the transcriber");
+    }
+
+    /**
+     * The chunks of one transcription. Each completed chunk sends the next unsent one, so at most the bound are in
+     * flight.
+     */
+    private final class Run {
+        private final TranscriptionRequest request;
+        private final AudioResponseFormat format;
+        private final double[] offsets;
+        private final double duration;
+        private final List<TranscriptionRequest> chunks = new ArrayList<>();
+        private final AudioResponse[] responses;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> done =
+                new CompletableFuture<>();
+
+        private Run(final TranscriptionRequest request, final WavAudio audio, final List<Integer> cuts) {
+            this.request = request;
+            // The endpoint answers JSON when no format is asked for.
+            this.format = request.getResponseFormat() == null ? AudioResponseFormat.JSON : request.getResponseFormat();
+            this.duration = audio.getDuration();
+            final int[] bounds = new int[cuts.size() + 2];
+            for (int index = 0; index < cuts.size(); index++) {
+                bounds[index + 1] = cuts.get(index);
+            }
+            bounds[bounds.length - 1] = audio.getFrameCount();
+            this.offsets = new double[bounds.length - 1];
+            final String name = baseName(request.getFileName());
+            for (int index = 0; index < offsets.length; index++) {
+                offsets[index] = (double) bounds[index] / audio.getFormat().getSampleRate();
+                chunks.add(new TranscriptionRequest(audio.toWav(bounds[index], bounds[index + 1]),
+                        name + "-" + index + ".wav", request.getModel(), request.getPrompt(), format,
+                        request.getTemperature(), request.getLanguage()));
+            }
+            this.responses = new AudioResponse[chunks.size()];
+            this.remaining = new AtomicInteger(chunks.size());
+        }
+
+        CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> start() {
+            for (int index = 0; index < Math.min(maxParallel, chunks.size()); index++) {
+                sendNext();
+            }
+            return done;
+        }
+
+        private void sendNext() {
+            final int index = next.getAndIncrement();
+            if (index >= chunks.size() || done.isDone()) {
+                return;
+            }
+            CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> sent;
+            try {
+                sent = client.transcribeAsync(chunks.get(index));
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((response, error) -> complete(index, response, error));
+        }
+
+        private void complete(final int index, final ClientResponse<TranscriptionRequest, AudioResponse> response,
+                              final Throwable error) {
+            if (error != null || response.getException().isPresent()) {
+                final Throwable cause = error != null ? error : response.getException().get();
+                done.complete(new ClientErrorResponse<>(request, cause instanceof CompletionException
+                        && cause.getCause() != null ? cause.getCause() : cause));
+                return;
+            }
+            if (response.getResponse().isEmpty()) {
+                final ClientSuccessResponse.Builder<TranscriptionRequest, AudioResponse> builder =
+                        ClientSuccessResponse.builder();
+                done.complete(builder.request(request).statusCode(response.getStatusCode().orElse(0))
+                        .statusMessage(response.getStatusMessage().orElse(null)).build());
+                return;
+            }
+            responses[index] = response.getResponse().get();
+            if (remaining.decrementAndGet() == 0) {
+                finish();
+            } else {
+                sendNext();
+            }
+        }
+
+        private void finish() {
+            try {
+                final String body = TranscriptStitcher.stitch(format, Arrays.asList(responses), offsets, duration);
+                final ClientSuccessResponse.Builder<TranscriptionRequest, AudioResponse> builder =
+                        ClientSuccessResponse.builder();
+                done.complete(builder.request(request)
+                        .response(AudioResponse.builder().body(body).responseFormat(format).build())
+                        .statusCode(200).build());
+            } catch (RuntimeException e) {
+                done.complete(new ClientErrorResponse<>(request, e));
+            }
+        }
+    }
+
+    private static String baseName(final String fileName) {
+        if (fileName == null) {
+            return "audio";
+        }
+        final int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * Builder for LongAudioTranscriber.
+     */
+    public static class Builder {
+        private ClientAsync client;
+        private int maxParallel = 8;
+        private long maxChunkBytes = 24L * 1024 * 1024;
+        private int maxChunkSeconds = 300;
+        private int silenceSearchSeconds = 30;
+        private PcmFormat pcmFormat;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the client used to transcribe the chunks.
+         *
+         * @param client The client.
+         * @return The builder instance.
+         */
+        public Builder setClient(ClientAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the most chunks transcribed at once. Defaults to 8.
+         *
+         * @param maxParallel The most chunks in flight.
+         * @return The builder instance.
+         */
+        public Builder setMaxParallel(int maxParallel) {
+            this.maxParallel = maxParallel;
+            return this;
+        }
+
+        /**
+         * Sets the largest chunk, header included, in bytes. Defaults to 24 MiB, under the 25 MB limit of the
+         * endpoint.
+         *
+         * @param maxChunkBytes The most bytes in a chunk.
+         * @return The builder instance.
+         */
+        public Builder setMaxChunkBytes(long maxChunkBytes) {
+            this.maxChunkBytes = maxChunkBytes;
+            return this;
+        }
+
+        /**
+         * Sets the longest chunk in seconds. Shorter chunks are transcribed with more parallelism. Defaults to 300.
+         *
+         * @param maxChunkSeconds The most seconds in a chunk.
+         * @return The builder instance.
+         */
+        public Builder setMaxChunkSeconds(int maxChunkSeconds) {
+            this.maxChunkSeconds = maxChunkSeconds;
+            return this;
+        }
+
+        /**
+         * Sets how far back from the longest possible chunk to look for a quiet moment to cut at, at most half a
+         * chunk. Defaults to 30 seconds.
+         *
+         * @param silenceSearchSeconds The seconds searched.
+         * @return The builder instance.
+         */
+        public Builder setSilenceSearchSeconds(int silenceSearchSeconds) {
+            this.silenceSearchSeconds = silenceSearchSeconds;
+            return this;
+        }
+
+        /**
+         * Sets the format of raw PCM audio, which has no header to read it from. By default audio must be a WAV
+         * file.
+         *
+         * @param pcmFormat The format of the samples.
+         * @return The builder instance.
+         */
+        public Builder setPcmFormat(PcmFormat pcmFormat) {
+            this.pcmFormat = pcmFormat;
+            return this;
+        }
+
+        /**
+         * Builds the LongAudioTranscriber.
+         *
+         * @return The LongAudioTranscriber.
+         * @throws IllegalArgumentException If the client is missing or a limit is not positive.
+         */
+        public LongAudioTranscriber build() {
+            if (client == null) {
+                throw new IllegalArgumentException("client is required");
+            }
+            if (maxParallel < 1 || maxChunkBytes <= WavAudio.HEADER_SIZE || maxChunkSeconds < 1
+                    || silenceSearchSeconds < 0) {
+                throw new IllegalArgumentException("maxParallel, maxChunkBytes and maxChunkSeconds must be positive");
+            }
+            return new LongAudioTranscriber(client, maxParallel, maxChunkBytes, maxChunkSeconds,
+                    silenceSearchSeconds, pcmFormat);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.cloudurable.jai.audio;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * The layout of uncompressed PCM audio: sample rate, channels, and the size and kind of each sample. Samples are
+ * little-endian and the channels of a frame are interleaved, as in a WAV file. Integer samples of 8 bits are unsigned;
+ * wider ones are signed. Samples of 32 or 64 bits can also be IEEE floats.
+ */
+public final class PcmFormat {
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final boolean floatingPoint;
+
+    private PcmFormat(int sampleRate, int channels, int bitsPerSample, boolean floatingPoint) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.floatingPoint = floatingPoint;
+    }
+
+    /**
+     * Creates the format of integer PCM.
+     *
+     * @param sampleRate    The frames per second, for example 16000.
+     * @param channels      The number of channels, 1 for mono.
+     * @param bitsPerSample 8, 16, 24 or 32.
+     * @return The format.
+     * @throws IllegalArgumentException If the format is not supported.
+     */
+    public static PcmFormat of(int sampleRate, int channels, int bitsPerSample) {
+        return of(sampleRate, channels, bitsPerSample, false);
+    }
+
+    /**
+     * Creates the format of integer or floating point PCM.
+     *
+     * @param sampleRate    The frames per second, for example 16000.
+     * @param channels      The number of channels, 1 for mono.
+     * @param bitsPerSample 8, 16, 24 or 32 for integers; 32 or 64 for floats.
+     * @param floatingPoint Whether samples are IEEE floats.
+     * @return The format.
+     * @throws IllegalArgumentException If the format is not supported.
+     */
+    public static PcmFormat of(int sampleRate, int channels, int bitsPerSample, boolean floatingPoint) {
+        final boolean supported = floatingPoint ? bitsPerSample == 32 || bitsPerSample == 64
+                : bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32;
+        if (sampleRate <= 0 || channels <= 0 || !supported) {
+            throw new IllegalArgumentException("Unsupported PCM format: " + sampleRate + " Hz, " + channels
+                    + " channels, " + bitsPerSample + " bit" + (floatingPoint ? " float" : ""));
+        }
+        return new PcmFormat(sampleRate, channels, bitsPerSample, floatingPoint);
+    }
+
+    /**
+     * Gets the frames per second.
+     *
+     * @return The sample rate.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets the number of channels.
+     *
+     * @return The channels.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the size of a sample in bits.
+     *
+     * @return The bits per sample.
+     */
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * Gets whether samples are IEEE floats.
+     *
+     * @return true for floating point samples.
+     */
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    /**
+     * Gets the size of a frame, one sample of every channel, in bytes.
+     *
+     * @return The frame size.
+     */
+    public int getFrameSize() {
+        return channels * (bitsPerSample / 8);
+    }
+
+    /**
+     * Gets the bytes of audio per second.
+     *
+     * @return The byte rate.
+     */
+    public int getByteRate() {
+        return sampleRate * getFrameSize();
+    }
+
+    /**
+     * Reads a sample scaled to the range of a 16-bit sample, -32768 to 32767.
+     *
+     * @param buffer The audio, in little-endian order.
+     * @param offset The offset of the sample in the buffer.
+     * @return The sample.
+     */
+    int sample(final ByteBuffer buffer, final int offset) {
+        if (floatingPoint) {
+            final double value = bitsPerSample == 32 ? buffer.getFloat(offset) : buffer.getDouble(offset);
+            return (int) Math.max(-32768, Math.min(32767, Math.round(value * 32768)));
+        }
+        switch (bitsPerSample) {
+            case 8:
+                return ((buffer.get(offset) & 0xFF) - 128) << 8;
+            case 16:
+                return buffer.getShort(offset);
+            case 24:
+                return (buffer.get(offset + 1) & 0xFF) | (buffer.get(offset + 2) << 8);
+            default:
+                return buffer.getInt(offset) >> 16;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PcmFormat)) return false;
+        PcmFormat that = (PcmFormat) o;
+        return sampleRate == that.sampleRate && channels == that.channels && bitsPerSample == that.bitsPerSample
+                && floatingPoint == that.floatingPoint;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sampleRate, channels, bitsPerSample, floatingPoint);
+    }
+
+    @Override
+    public String toString() {
+        return "PcmFormat{" +
+                "sampleRate=" + sampleRate +
+                ", channels=" + channels +
+                ", bitsPerSample=" + bitsPerSample +
+                ", floatingPoint=" + floatingPoint +
+                '}';
+    }
+}
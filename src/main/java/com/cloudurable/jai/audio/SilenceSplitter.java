@@ -0,0 +1,70 @@
+package com.cloudurable.jai.audio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds where to cut audio into chunks no longer than a limit, preferring the quietest moment near the end of each
+ * chunk, so a cut falls in a pause between words rather than through one.
+ * <p>
+ * Loudness is the mean absolute sample of short windows, across all channels. Only the end of each chunk is scanned,
+ * so finding the cuts reads a fraction of the audio.
+ */
+final class SilenceSplitter {
+
+    /**
+     * The length of the windows loudness is measured over, in seconds.
+     */
+    private static final double WINDOW_SECONDS = 0.02;
+
+    private SilenceSplitter() {
+    }
+
+    /**
+     * Finds the frames to cut the audio at.
+     *
+     * @param audio        The audio.
+     * @param maxFrames    The most frames in a chunk.
+     * @param searchFrames How far back from the longest possible chunk to look for a quiet moment.
+     * @return The first frame of every chunk after the first, in order; empty if the audio fits in one chunk.
+     */
+    static List<Integer> split(final WavAudio audio, final int maxFrames, final int searchFrames) {
+        final List<Integer> cuts = new ArrayList<>();
+        final int frameCount = audio.getFrameCount();
+        final int window = Math.max(1, (int) (audio.getFormat().getSampleRate() * WINDOW_SECONDS));
+        final int search = Math.max(0, Math.min(searchFrames, maxFrames / 2));
+        int start = 0;
+        while (frameCount - start > maxFrames) {
+            final int end = start + maxFrames;
+            start = quietest(audio, end - search, end, window);
+            cuts.add(start);
+        }
+        return cuts;
+    }
+
+    /**
+     * Finds the start of the quietest window that fits between two frames, or the last frame if no window fits.
+     */
+    private static int quietest(final WavAudio audio, final int from, final int to, final int window) {
+        final PcmFormat format = audio.getFormat();
+        final ByteBuffer data = audio.getData();
+        final int frameSize = format.getFrameSize();
+        final int sampleSize = format.getBitsPerSample() / 8;
+        int best = to;
+        long bestLoudness = Long.MAX_VALUE;
+        // The last window ends exactly at the limit, so the chunk can be as long as allowed when it is quiet there.
+        for (int windowEnd = to; windowEnd - window >= from; windowEnd -= window) {
+            final int windowStart = windowEnd - window;
+            long loudness = 0;
+            for (int offset = windowStart * frameSize; offset < windowEnd * frameSize; offset += sampleSize) {
+                loudness += Math.abs(format.sample(data, offset));
+            }
+            if (loudness < bestLoudness) {
+                bestLoudness = loudness;
+                best = windowStart + window / 2;
+            }
+        }
+        return best;
+    }
+}
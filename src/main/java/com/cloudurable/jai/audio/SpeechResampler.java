@@ -0,0 +1,256 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.model.FileSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * Converts PCM audio to 16-bit mono at a lower sample rate before it is uploaded, in plain Java.
+ * <p>
+ * Speech is transcribed from 16 kHz mono, so audio recorded at a higher rate or in stereo carries bytes the model
+ * throws away: a stereo 48 kHz WAV file is six times the size of the same speech at 16 kHz mono. Channels are averaged
+ * and the samples are resampled with a polyphase windowed-sinc filter, which filters out what cannot be represented at
+ * the new rate before decimating. The conversion is streamed: the converted audio is produced block by block as the
+ * request body is written, from a view of the original samples, so neither version is held on the heap.
+ */
+public final class SpeechResampler {
+
+    /**
+     * The sample rate speech is transcribed at.
+     */
+    public static final int SAMPLE_RATE = 16000;
+
+    /**
+     * The zero crossings of the sinc on each side of a sample, at the lower of the two rates. More is sharper and
+     * slower.
+     */
+    private static final int ZERO_CROSSINGS = 8;
+
+    /**
+     * The output frames converted at a time.
+     */
+    private static final int BLOCK_FRAMES = 4096;
+
+    /**
+     * The bytes read from the start of a source to find its format and its samples.
+     */
+    private static final int HEAD_BYTES = 64 * 1024;
+
+    private SpeechResampler() {
+    }
+
+    /**
+     * Converts a PCM WAV file to 16-bit mono at {@link #SAMPLE_RATE}, or at its own rate if that is lower. Sources that
+     * are not PCM WAV files, or that are already 16-bit mono at no more than that rate, are returned as they are, so
+     * this can be applied to any audio that is about to be uploaded.
+     * <p>
+     * Only the start of the source is read here, to find its format; the samples are read, and converted, each time
+     * the converted file is read. WAV files whose samples start more than {@value #HEAD_BYTES} bytes in are returned
+     * as they are.
+     *
+     * @param source The audio.
+     * @return The converted audio, or the source.
+     * @throws UncheckedIOException If the start of the source cannot be read.
+     */
+    public static FileSource toSpeechWav(final FileSource source) {
+        final long length = source.length();
+        final ByteBuffer head = readHead(source);
+        if (!WavAudio.isWav(head)) {
+            return source;
+        }
+        final WavAudio.Header header;
+        try {
+            header = WavAudio.readHeader(head, length);
+        } catch (IllegalArgumentException e) {
+            // Compressed audio in a WAV container is left to the endpoint.
+            return source;
+        }
+        final PcmFormat format = header.getFormat();
+        if (format.getChannels() == 1 && format.getBitsPerSample() == 16 && !format.isFloatingPoint()
+                && format.getSampleRate() <= SAMPLE_RATE) {
+            return source;
+        }
+        return resample(format, header.getFrameCount(), Math.min(SAMPLE_RATE, format.getSampleRate()),
+                () -> WavAudio.read(source.toBuffer()));
+    }
+
+    /**
+     * Converts audio to a WAV file of 16-bit mono at a sample rate. The conversion runs each time the file is read.
+     *
+     * @param audio      The audio.
+     * @param sampleRate The sample rate of the converted audio.
+     * @return The WAV file.
+     */
+    public static FileSource resample(final WavAudio audio, final int sampleRate) {
+        return resample(audio.getFormat(), audio.getFrameCount(), sampleRate, () -> audio);
+    }
+
+    private static FileSource resample(final PcmFormat format, final long frameCount, final int sampleRate,
+                                       final Supplier<WavAudio> audio) {
+        final Kernel kernel = new Kernel(format.getSampleRate(), sampleRate);
+        final long frames = frameCount * kernel.up / kernel.down;
+        return FileSource.concat(FileSource.ofBytes(WavAudio.header(PcmFormat.of(sampleRate, 1, 16), frames * 2)),
+                FileSource.ofStream(frames * 2, () -> new ResamplingInputStream(audio.get(), kernel, frames)));
+    }
+
+    private static ByteBuffer readHead(final FileSource source) {
+        try (InputStream stream = source.openStream()) {
+            return ByteBuffer.wrap(stream.readNBytes(HEAD_BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The coefficients of the filter, one set per phase. Output frame n falls at source frame n * down / up, between
+     * two source frames; the phase is where it falls between them, in steps of 1 / up.
+     */
+    private static final class Kernel {
+        private final int up;
+        private final int down;
+        private final int half;
+        private final float[][] phases;
+
+        private Kernel(final int from, final int to) {
+            final int divisor = gcd(from, to);
+            this.up = to / divisor;
+            this.down = from / divisor;
+            // The cutoff is the Nyquist frequency of the lower rate, relative to that of the source.
+            final double cutoff = Math.min(1.0, (double) up / down);
+            this.half = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+            this.phases = new float[up][2 * half];
+            for (int phase = 0; phase < up; phase++) {
+                double sum = 0;
+                final double[] taps = new double[2 * half];
+                for (int tap = 0; tap < taps.length; tap++) {
+                    // The distance from the source frame of this tap to the output frame.
+                    final double x = (double) phase / up + half - 1 - tap;
+                    taps[tap] = cutoff * sinc(cutoff * x) * blackman(x / half);
+                    sum += taps[tap];
+                }
+                for (int tap = 0; tap < taps.length; tap++) {
+                    // Unity gain at DC for every phase.
+                    phases[phase][tap] = (float) (taps[tap] / sum);
+                }
+            }
+        }
+
+        private static double sinc(final double x) {
+            return x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+        }
+
+        private static double blackman(final double u) {
+            return Math.abs(u) >= 1 ? 0 : 0.42 + 0.5 * Math.cos(Math.PI * u) + 0.08 * Math.cos(2 * Math.PI * u);
+        }
+
+        private static int gcd(final int a, final int b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+    }
+
+    /**
+     * Produces the converted samples a block at a time, mixing down only the source frames the block needs.
+     */
+    private static final class ResamplingInputStream extends InputStream {
+        private final ByteBuffer data;
+        private final PcmFormat format;
+        private final int frameCount;
+        private final Kernel kernel;
+        private final long frames;
+        private final byte[] block = new byte[BLOCK_FRAMES * 2];
+        private float[] mono = new float[0];
+        private long next;
+        private int position;
+        private int limit;
+
+        private ResamplingInputStream(final WavAudio audio, final Kernel kernel, final long frames) {
+            this.data = audio.getData();
+            this.format = audio.getFormat();
+            this.frameCount = audio.getFrameCount();
+            this.kernel = kernel;
+            this.frames = frames;
+        }
+
+        @Override
+        public int read() {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            final int count = Math.min(length, limit - position);
+            System.arraycopy(block, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        private boolean fill() {
+            if (next >= frames) {
+                return false;
+            }
+            final int count = (int) Math.min(BLOCK_FRAMES, frames - next);
+            final long first = next * kernel.down / kernel.up - kernel.half + 1;
+            final long last = (next + count - 1) * kernel.down / kernel.up + kernel.half;
+            mix(first, (int) (last - first + 1));
+            for (int frame = 0; frame < count; frame++) {
+                final long at = (next + frame) * kernel.down;
+                final float[] taps = kernel.phases[(int) (at % kernel.up)];
+                final int start = (int) (at / kernel.up - kernel.half + 1 - first);
+                float sum = 0;
+                for (int tap = 0; tap < taps.length; tap++) {
+                    sum += taps[tap] * mono[start + tap];
+                }
+                final int sample = Math.max(-32768, Math.min(32767, Math.round(sum)));
+                block[frame * 2] = (byte) sample;
+                block[frame * 2 + 1] = (byte) (sample >> 8);
+            }
+            next += count;
+            position = 0;
+            limit = count * 2;
+            return true;
+        }
+
+        /**
+         * Averages the channels of source frames, with silence before the start and after the end.
+         */
+        private void mix(final long first, final int count) {
+            if (mono.length < count) {
+                mono = new float[count];
+            }
+            final int frameSize = format.getFrameSize();
+            final int sampleSize = format.getBitsPerSample() / 8;
+            final int channels = format.getChannels();
+            for (int index = 0; index < count; index++) {
+                final long frame = first + index;
+                if (frame < 0 || frame >= frameCount) {
+                    mono[index] = 0;
+                    continue;
+                }
+                final int offset = (int) frame * frameSize;
+                int sum = 0;
+                for (int channel = 0; channel < channels; channel++) {
+                    sum += format.sample(data, offset + channel * sampleSize);
+                }
+                mono[index] = (float) sum / channels;
+            }
+        }
+    }
+}
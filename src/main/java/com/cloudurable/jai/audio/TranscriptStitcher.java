@@ -0,0 +1,192 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.model.audio.AudioResponse;
+import com.cloudurable.jai.model.audio.AudioResponseFormat;
+import com.cloudurable.jai.util.JsonSerializer;
+import io.nats.jparse.node.ArrayNode;
+import io.nats.jparse.node.ObjectNode;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Joins the transcripts of consecutive chunks of audio into the transcript of the whole, in the response format they
+ * were requested in. Timestamps of segments and cues are moved by the offset of their chunk, and segments and cues are
+ * numbered again from the start.
+ */
+final class TranscriptStitcher {
+
+    private TranscriptStitcher() {
+    }
+
+    /**
+     * Joins transcripts.
+     *
+     * @param format    The response format of every transcript.
+     * @param responses The transcripts, in order.
+     * @param offsets   The start of the chunk of each transcript in the audio, in seconds.
+     * @param duration  The length of the audio, in seconds.
+     * @return The body of the joined transcript.
+     */
+    static String stitch(final AudioResponseFormat format, final List<AudioResponse> responses,
+                         final double[] offsets, final double duration) {
+        switch (format) {
+            case JSON:
+                return json(responses);
+            case VERBOSE_JSON:
+                return verboseJson(responses, offsets, duration);
+            case SRT:
+                return cues(responses, offsets, false);
+            case VTT:
+                return cues(responses, offsets, true);
+            default:
+                return text(responses);
+        }
+    }
+
+    private static String text(final List<AudioResponse> responses) {
+        final StringBuilder text = new StringBuilder();
+        for (AudioResponse response : responses) {
+            final String chunk = response.getText().trim();
+            if (!chunk.isEmpty()) {
+                text.append(text.length() == 0 ? "" : " ").append(chunk);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String json(final List<AudioResponse> responses) {
+        final JsonSerializer json = new JsonSerializer();
+        json.startObject();
+        json.addAttribute("text", text(responses));
+        json.endObject();
+        return json.toString();
+    }
+
+    private static String verboseJson(final List<AudioResponse> responses, final double[] offsets,
+                                      final double duration) {
+        final JsonSerializer json = new JsonSerializer();
+        json.startObject();
+        json.addAttribute("task", "transcribe");
+        final Optional<ObjectNode> first = responses.isEmpty() ? Optional.empty() : responses.get(0).getObjectNode();
+        if (first.isPresent() && first.get().containsKey("language")) {
+            json.addAttribute("language", first.get().getString("language"));
+        }
+        json.addAttribute("duration", seconds(duration));
+        json.addAttribute("text", text(responses));
+        json.startNestedArrayAttribute("segments");
+        int id = 0;
+        for (int index = 0; index < responses.size(); index++) {
+            final Optional<ObjectNode> transcript = responses.get(index).getObjectNode();
+            if (transcript.isEmpty() || !transcript.get().containsKey("segments")) {
+                continue;
+            }
+            final ArrayNode segments = transcript.get().getArrayNode("segments");
+            for (int segment = 0; segment < segments.size(); segment++) {
+                writeSegment(json, segments.getObjectNode(segment), id++, offsets[index]);
+            }
+        }
+        json.endArray();
+        json.endObject();
+        return json.toString();
+    }
+
+    private static void writeSegment(final JsonSerializer json, final ObjectNode segment, final int id,
+                                     final double offset) {
+        json.startNestedObjectElement();
+        json.addAttribute("id", id);
+        if (segment.containsKey("seek")) {
+            // Seek is in 10 ms frames of the model's input.
+            json.addAttribute("seek", segment.getInt("seek") + Math.round(offset * 100));
+        }
+        json.addAttribute("start", seconds(segment.getDouble("start") + offset));
+        json.addAttribute("end", seconds(segment.getDouble("end") + offset));
+        json.addAttribute("text", segment.getString("text"));
+        if (segment.containsKey("tokens")) {
+            json.startNestedArrayAttribute("tokens");
+            for (int token : segment.getArrayNode("tokens").getIntArray()) {
+                json.addElement(token);
+            }
+            json.endArray();
+        }
+        for (String name : new String[]{"temperature", "avg_logprob", "compression_ratio", "no_speech_prob"}) {
+            if (segment.containsKey(name)) {
+                json.addAttribute(name, segment.getDouble(name));
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Joins SRT or VTT subtitles: cues are blocks separated by blank lines, and the line with an arrow holds the
+     * times of a cue.
+     */
+    private static String cues(final List<AudioResponse> responses, final double[] offsets, final boolean vtt) {
+        final StringBuilder out = new StringBuilder(vtt ? "WEBVTT\n\n" : "");
+        int number = 0;
+        for (int index = 0; index < responses.size(); index++) {
+            final long offsetMillis = Math.round(offsets[index] * 1000);
+            final String body = responses.get(index).getBody();
+            if (body == null) {
+                continue;
+            }
+            for (String block : body.replace("\r\n", "\n").split("\n\\s*\n")) {
+                final String[] lines = block.strip().split("\n");
+                int timing = -1;
+                for (int line = 0; line < lines.length && timing < 0; line++) {
+                    if (lines[line].contains("-->")) {
+                        timing = line;
+                    }
+                }
+                if (timing < 0) {
+                    // the WEBVTT header, or a note
+                    continue;
+                }
+                number++;
+                if (!vtt) {
+                    out.append(number).append('\n');
+                }
+                out.append(shift(lines[timing], offsetMillis, vtt)).append('\n');
+                for (int line = timing + 1; line < lines.length; line++) {
+                    out.append(lines[line]).append('\n');
+                }
+                out.append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String shift(final String timing, final long offsetMillis, final boolean vtt) {
+        final int arrow = timing.indexOf("-->");
+        final String start = timing.substring(0, arrow).trim();
+        final String rest = timing.substring(arrow + 3).trim();
+        final int space = rest.indexOf(' ');
+        final String end = space < 0 ? rest : rest.substring(0, space);
+        final String settings = space < 0 ? "" : rest.substring(space);
+        return timestamp(millis(start) + offsetMillis, vtt) + " --> " + timestamp(millis(end) + offsetMillis, vtt)
+                + settings;
+    }
+
+    /**
+     * Reads a timestamp such as 01:02:03,456 or 02:03.456.
+     */
+    private static long millis(final String timestamp) {
+        final String[] parts = timestamp.replace(',', '.').split(":");
+        long millis = Math.round(Double.parseDouble(parts[parts.length - 1]) * 1000);
+        long scale = 60_000;
+        for (int part = parts.length - 2; part >= 0; part--) {
+            millis += Long.parseLong(parts[part].trim()) * scale;
+            scale *= 60;
+        }
+        return millis;
+    }
+
+    private static String timestamp(final long millis, final boolean vtt) {
+        return String.format("%02d:%02d:%02d%c%03d", millis / 3_600_000, millis / 60_000 % 60, millis / 1000 % 60,
+                vtt ? '.' : ',', millis % 1000);
+    }
+
+    private static double seconds(final double seconds) {
+        return Math.round(seconds * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,231 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.model.FileSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PCM audio in a buffer, read from a WAV file or from raw samples of a known format.
+ * <p>
+ * Only the header is parsed; the samples stay in the buffer they came in, which is usually a file mapped into memory,
+ * so hours of audio can be cut into pieces without reading them onto the heap. Pieces are written back out as WAV
+ * sources that put a new header in front of a view of the samples.
+ */
+public final class WavAudio {
+
+    /**
+     * The size of the canonical WAV header {@link #header} writes.
+     */
+    public static final int HEADER_SIZE = 44;
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final PcmFormat format;
+    private final ByteBuffer data;
+
+    private WavAudio(final PcmFormat format, final ByteBuffer data) {
+        this.format = format;
+        this.data = data;
+    }
+
+    /**
+     * Checks whether a buffer starts like a WAV file.
+     *
+     * @param buffer The buffer, from position 0.
+     * @return true if the buffer starts with a RIFF WAVE header.
+     */
+    public static boolean isWav(final ByteBuffer buffer) {
+        return buffer.limit() >= 12 && tag(buffer, 0).equals("RIFF") && tag(buffer, 8).equals("WAVE");
+    }
+
+    /**
+     * Reads the header of a WAV file.
+     *
+     * @param buffer The whole file, from position 0. It is not copied.
+     * @return The audio.
+     * @throws IllegalArgumentException If the buffer is not a WAV file of PCM audio.
+     */
+    public static WavAudio read(final ByteBuffer buffer) {
+        final Header header = readHeader(buffer, buffer.limit());
+        return new WavAudio(header.format, slice(buffer.duplicate(), (int) header.offset, (int) header.length));
+    }
+
+    /**
+     * Reads the format of a WAV file and where its samples are from the start of the file, so a file can be
+     * inspected without reading or mapping all of it.
+     *
+     * @param head   The start of the file, from position 0, up to at least the header of the data chunk.
+     * @param length The length of the whole file.
+     * @return The header.
+     * @throws IllegalArgumentException If the file is not a WAV file of PCM audio, or its data chunk starts past the
+     *                                  end of the head.
+     */
+    static Header readHeader(final ByteBuffer head, final long length) {
+        final ByteBuffer wav = head.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (!isWav(wav)) {
+            throw new IllegalArgumentException("Not a WAV file");
+        }
+        PcmFormat format = null;
+        long position = 12;
+        while (position + 8 <= wav.limit()) {
+            final String id = tag(wav, (int) position);
+            final long size = wav.getInt((int) position + 4) & 0xFFFFFFFFL;
+            final long body = position + 8;
+            if (id.equals("fmt ")) {
+                format = readFormat(wav, (int) body, size);
+            } else if (id.equals("data")) {
+                if (format == null) {
+                    throw new IllegalArgumentException("WAV data comes before its format");
+                }
+                // Streaming writers leave the size unset, so trust the end of the file over a size that overruns it.
+                final long end = Math.min(length, body + size);
+                final long frames = (end - body) / format.getFrameSize();
+                return new Header(format, body, frames * format.getFrameSize());
+            }
+            position = body + size + (size & 1);
+        }
+        throw new IllegalArgumentException("WAV file has no " + (format == null ? "format" : "data"));
+    }
+
+    /**
+     * Wraps raw PCM samples.
+     *
+     * @param buffer The samples, from position 0. They are not copied.
+     * @param format The format of the samples.
+     * @return The audio.
+     */
+    public static WavAudio ofPcm(final ByteBuffer buffer, final PcmFormat format) {
+        final int frames = buffer.limit() / format.getFrameSize();
+        return new WavAudio(format, slice(buffer.duplicate(), 0, frames * format.getFrameSize()));
+    }
+
+    /**
+     * Writes a canonical 44 byte WAV header.
+     *
+     * @param format     The format of the samples that follow.
+     * @param dataLength The number of bytes of samples that follow.
+     * @return The header.
+     */
+    public static byte[] header(final PcmFormat format, final long dataLength) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt((int) (36 + dataLength))
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) (format.isFloatingPoint() ? FORMAT_FLOAT : FORMAT_PCM))
+                .putShort((short) format.getChannels())
+                .putInt(format.getSampleRate())
+                .putInt(format.getByteRate())
+                .putShort((short) format.getFrameSize())
+                .putShort((short) format.getBitsPerSample())
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt((int) dataLength);
+        return header.array();
+    }
+
+    /**
+     * Gets the format of the samples.
+     *
+     * @return The format.
+     */
+    public PcmFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the samples.
+     *
+     * @return A read-only, little-endian view of the samples.
+     */
+    public ByteBuffer getData() {
+        return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets the number of frames, one sample of every channel.
+     *
+     * @return The frame count.
+     */
+    public int getFrameCount() {
+        return data.limit() / format.getFrameSize();
+    }
+
+    /**
+     * Gets the length of the audio.
+     *
+     * @return The duration in seconds.
+     */
+    public double getDuration() {
+        return (double) getFrameCount() / format.getSampleRate();
+    }
+
+    /**
+     * Creates a WAV file of some of the frames: a new header followed by a view of the samples, which are not copied.
+     *
+     * @param fromFrame The first frame, inclusive.
+     * @param toFrame   The last frame, exclusive.
+     * @return The WAV file.
+     */
+    public FileSource toWav(final int fromFrame, final int toFrame) {
+        final int frameSize = format.getFrameSize();
+        final int length = (toFrame - fromFrame) * frameSize;
+        return FileSource.concat(FileSource.ofBytes(header(format, length)),
+                FileSource.ofBuffer(slice(data.duplicate(), fromFrame * frameSize, length)));
+    }
+
+    /**
+     * The format of a WAV file and the extent of its samples.
+     */
+    static final class Header {
+        private final PcmFormat format;
+        private final long offset;
+        private final long length;
+
+        private Header(final PcmFormat format, final long offset, final long length) {
+            this.format = format;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        PcmFormat getFormat() {
+            return format;
+        }
+
+        long getFrameCount() {
+            return length / format.getFrameSize();
+        }
+    }
+
+    private static PcmFormat readFormat(final ByteBuffer wav, final int body, final long size) {
+        if (size < 16 || body + 16 > wav.limit()) {
+            throw new IllegalArgumentException("WAV format chunk is too short");
+        }
+        int code = wav.getShort(body) & 0xFFFF;
+        final int channels = wav.getShort(body + 2) & 0xFFFF;
+        final int sampleRate = wav.getInt(body + 4);
+        final int bitsPerSample = wav.getShort(body + 14) & 0xFFFF;
+        if (code == FORMAT_EXTENSIBLE && size >= 26 && body + 26 <= wav.limit()) {
+            // The sub-format GUID starts with the format code.
+            code = wav.getShort(body + 24) & 0xFFFF;
+        }
+        if (code != FORMAT_PCM && code != FORMAT_FLOAT) {
+            throw new IllegalArgumentException("WAV file is not PCM audio, format " + code);
+        }
+        return PcmFormat.of(sampleRate, channels, bitsPerSample, code == FORMAT_FLOAT);
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
+        buffer.limit(offset + length).position(offset);
+        return buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String tag(final ByteBuffer buffer, final int offset) {
+        final byte[] tag = new byte[4];
+        for (int index = 0; index < 4; index++) {
+            tag[index] = buffer.get(offset + index);
+        }
+        return new String(tag, StandardCharsets.US_ASCII);
+    }
+}
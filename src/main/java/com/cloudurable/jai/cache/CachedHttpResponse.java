@@ -0,0 +1,76 @@
+package com.cloudurable.jai.cache;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A successful HTTP response rebuilt from a cached body, so a cache hit goes through the same response handling as
+ * a response from the network. Its headers hold {@code x-jai-cache: hit}.
+ *
+ * @param <T> The type of the body.
+ */
+public class CachedHttpResponse<T> implements HttpResponse<T> {
+
+    private static final HttpHeaders HEADERS = HttpHeaders.of(Map.of("x-jai-cache", List.of("hit")), (name, value) -> true);
+
+    private final HttpRequest request;
+    private final T body;
+
+    /**
+     * Constructs a CachedHttpResponse.
+     *
+     * @param request The request that was answered from the cache.
+     * @param body    The cached body.
+     */
+    public CachedHttpResponse(final HttpRequest request, final T body) {
+        this.request = request;
+        this.body = body;
+    }
+
+    @Override
+    public int statusCode() {
+        return 200;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return request;
+    }
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return HEADERS;
+    }
+
+    @Override
+    public T body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return request.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+    }
+}
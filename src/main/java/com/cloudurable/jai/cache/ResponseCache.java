@@ -0,0 +1,388 @@
+package com.cloudurable.jai.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A cache of response bodies for requests whose answer depends only on the request body.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the API path and the JSON body produced by the request serializers, which
+ * write fields in a fixed order, so equal requests share a key. Only bodies of successful responses are stored.
+ * <p>
+ * The memory tier is a least-recently-used map bounded by the number of entries and the number of characters it holds.
+ * The optional disk tier keeps one file per entry in a directory and refills the memory tier on a hit, so it survives
+ * restarts. Entries expire after the time to live, if one is set. A disk tier that cannot be read or written is
+ * treated as a miss; the cache never fails a request.
+ * <p>
+ * Embedding and moderation requests are always cached. Chat and completion requests are cached only when
+ * {@link Builder#setCacheCompletions(boolean)} is set and their temperature was explicitly set to zero, see
+ * {@link com.cloudurable.jai.model.text.TextRequest#isTemperatureSet()}. A request without a temperature is sampled at
+ * the API's default temperature and is never cached.
+ */
+public class ResponseCache {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final Duration ttl;
+    private final Path directory;
+    private final Clock clock;
+    private final boolean cacheCompletions;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+
+    private ResponseCache(int maxEntries, long maxChars, Duration ttl, Path directory, Clock clock, boolean cacheCompletions) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.ttl = ttl;
+        this.directory = directory;
+        this.clock = clock;
+        this.cacheCompletions = cacheCompletions;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Computes the cache key of a request.
+     *
+     * @param path The API path, for example /embeddings.
+     * @param body The JSON request body.
+     * @return The key, a hex encoded SHA-256 hash.
+     */
+    public static String key(final String path, final String body) {
+        final MessageDigest digest = SHA_256.get();
+        digest.reset();
+        digest.update(path.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        final byte[] hash = digest.digest(body.getBytes(StandardCharsets.UTF_8));
+        final char[] hex = new char[hash.length * 2];
+        for (int index = 0; index < hash.length; index++) {
+            hex[index * 2] = HEX[(hash[index] >> 4) & 0xF];
+            hex[index * 2 + 1] = HEX[hash[index] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Checks whether chat and completion requests with a temperature set to zero may be cached.
+     *
+     * @return True if they may be cached.
+     */
+    public boolean cachesCompletions() {
+        return cacheCompletions;
+    }
+
+    /**
+     * Gets a cached response body. The returned array is shared and must not be modified.
+     *
+     * @param key The cache key.
+     * @return The response body, or empty if it is not cached or has expired.
+     */
+    public Optional<char[]> get(final String key) {
+        final long now = clock.millis();
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(now)) {
+                    return Optional.of(entry.body);
+                }
+                remove(key);
+            }
+        }
+        if (directory == null) {
+            return Optional.empty();
+        }
+        final Entry entry = readFile(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(now)) {
+            deleteFile(key);
+            return Optional.empty();
+        }
+        store(key, entry);
+        return Optional.of(entry.body);
+    }
+
+    /**
+     * Caches a response body. The array is kept, not copied.
+     *
+     * @param key  The cache key.
+     * @param body The response body.
+     */
+    public void put(final String key, final char[] body) {
+        final Entry entry = new Entry(body, ttl == null ? 0 : clock.millis() + ttl.toMillis());
+        store(key, entry);
+        if (directory != null) {
+            writeFile(key, entry);
+        }
+    }
+
+    /**
+     * Removes a response body from both tiers.
+     *
+     * @param key The cache key.
+     */
+    public void invalidate(final String key) {
+        synchronized (entries) {
+            remove(key);
+        }
+        if (directory != null) {
+            deleteFile(key);
+        }
+    }
+
+    /**
+     * Removes every response body from both tiers.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            chars = 0;
+        }
+        if (directory != null) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> path.getFileName().toString().endsWith(".cache")).forEach(path -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        // Left for the next clear.
+                    }
+                });
+            } catch (IOException e) {
+                // Nothing to clear.
+            }
+        }
+    }
+
+    /**
+     * Gets the number of response bodies in the memory tier.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void store(final String key, final Entry entry) {
+        if (entry.body.length > maxChars) {
+            return;
+        }
+        synchronized (entries) {
+            final Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                chars -= previous.body.length;
+            }
+            chars += entry.body.length;
+            final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries || chars > maxChars) {
+                chars -= eldest.next().getValue().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove(final String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            chars -= removed.body.length;
+        }
+    }
+
+    /**
+     * Reads an entry file: the expiry time in epoch milliseconds, zero for none, followed by the UTF-8 body.
+     */
+    private Entry readFile(final String key) {
+        try {
+            final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file(key)));
+            final long expiresAt = bytes.getLong();
+            final CharBuffer decoded = StandardCharsets.UTF_8.decode(bytes);
+            return new Entry(Arrays.copyOf(decoded.array(), decoded.remaining()), expiresAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            deleteFile(key);
+            return null;
+        }
+    }
+
+    private void writeFile(final String key, final Entry entry) {
+        try {
+            final ByteBuffer body = StandardCharsets.UTF_8.encode(CharBuffer.wrap(entry.body));
+            final ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES + body.remaining());
+            bytes.putLong(entry.expiresAt).put(body);
+            final Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes.array());
+            Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The memory tier still holds the entry.
+        }
+    }
+
+    private void deleteFile(final String key) {
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            // Expired entries are checked again on the next read.
+        }
+    }
+
+    private Path file(final String key) {
+        return directory.resolve(key + ".cache");
+    }
+
+    private static final class Entry {
+        private final char[] body;
+        private final long expiresAt;
+
+        Entry(final char[] body, final long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(final long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+    }
+
+    /**
+     * Builder for ResponseCache.
+     */
+    public static class Builder {
+        private int maxEntries = 10_000;
+        private long maxChars = 32L * 1024 * 1024;
+        private Duration ttl;
+        private Path directory;
+        private Clock clock = Clock.systemUTC();
+        private boolean cacheCompletions;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of response bodies in the memory tier. Defaults to 10,000.
+         *
+         * @param maxEntries The maximum number of entries.
+         * @return The builder instance.
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of characters of all response bodies in the memory tier. Defaults to 32 M.
+         *
+         * @param maxChars The maximum number of characters.
+         * @return The builder instance.
+         */
+        public Builder setMaxChars(long maxChars) {
+            this.maxChars = maxChars;
+            return this;
+        }
+
+        /**
+         * Sets how long a response body stays valid. If not set, entries do not expire.
+         *
+         * @param ttl The time to live.
+         * @return The builder instance.
+         */
+        public Builder setTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * Sets the directory of the disk tier. If not set, the cache only keeps entries in memory.
+         *
+         * @param directory The directory; it is created if it does not exist.
+         * @return The builder instance.
+         */
+        public Builder setDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the clock used for expiry. Defaults to the system clock.
+         *
+         * @param clock The clock.
+         * @return The builder instance.
+         */
+        public Builder setClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets whether chat and completion requests with a temperature set to zero are cached. Requests that do not
+         * set a temperature are sampled and never cached. Defaults to false.
+         *
+         * @param cacheCompletions True to cache them.
+         * @return The builder instance.
+         */
+        public Builder setCacheCompletions(boolean cacheCompletions) {
+            this.cacheCompletions = cacheCompletions;
+            return this;
+        }
+
+        /**
+         * Builds the ResponseCache.
+         *
+         * @return The ResponseCache.
+         * @throws IllegalArgumentException If a limit is not positive, the time to live is not positive, or the
+         *                                  directory cannot be created.
+         */
+        public ResponseCache build() {
+            if (maxEntries < 1 || maxChars < 1) {
+                throw new IllegalArgumentException("maxEntries and maxChars must be positive");
+            }
+            if (ttl != null && (ttl.isZero() || ttl.isNegative())) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+            if (directory != null) {
+                try {
+                    Files.createDirectories(directory);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Unable to create cache directory " + directory, e);
+                }
+            }
+            return new ResponseCache(maxEntries, maxChars, ttl, directory, clock, cacheCompletions);
+        }
+    }
+}
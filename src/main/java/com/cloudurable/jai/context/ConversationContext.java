@@ -0,0 +1,316 @@
+package com.cloudurable.jai.context;
+
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.Message;
+import com.cloudurable.jai.model.text.completion.chat.Role;
+import com.cloudurable.jai.tokenizer.BpeTokenizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the messages of a chat conversation within a token budget, so requests built from it fit the context window
+ * of the model.
+ * <p>
+ * Messages are added as the conversation goes on. When the prompt would exceed the budget, the oldest turns are
+ * evicted: the oldest message, and any assistant and function messages that answered it. System messages are pinned
+ * by default, so they are never evicted and are always sent first. If a {@link Summarizer} is set, the evicted
+ * messages are handed to it and the summary it returns is sent after the pinned messages, in the space reserved for
+ * it.
+ * <p>
+ * Each message is counted with the {@link BpeTokenizer} once, when it is added, and the totals are kept as messages
+ * come and go, so adding a turn costs the same however long the conversation has been. A context is not thread safe.
+ */
+public class ConversationContext {
+
+    /**
+     * Tokens the API adds to prime the reply of the assistant.
+     */
+    private static final int TOKENS_PER_REPLY = 3;
+
+    private final BpeTokenizer tokenizer;
+    private final int maxTokens;
+    private final boolean pinSystemMessages;
+    private final Summarizer summarizer;
+    private final int summaryTokens;
+    private final List<Message> pinned = new ArrayList<>();
+    private final ArrayDeque<Entry> window = new ArrayDeque<>();
+    private int pinnedTokenCount;
+    private int windowTokenCount;
+    private Message summary;
+    private int summaryTokenCount;
+
+    private ConversationContext(BpeTokenizer tokenizer, int maxTokens, boolean pinSystemMessages,
+                                Summarizer summarizer, int summaryTokens) {
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.pinSystemMessages = pinSystemMessages;
+        this.summarizer = summarizer;
+        this.summaryTokens = summarizer == null ? 0 : summaryTokens;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds a message to the conversation, evicting the oldest turns if the conversation no longer fits its budget.
+     *
+     * @param message The message.
+     * @return This context.
+     * @throws IllegalArgumentException If the message does not fit the budget even with every other unpinned message
+     *                                  evicted.
+     */
+    public ConversationContext add(final Message message) {
+        final int tokens = tokenizer.countTokens(message);
+        final boolean pin = pinSystemMessages && message.getRole() == Role.SYSTEM;
+        final int windowBudget = windowBudget() - (pin ? tokens : 0);
+        if (pin ? windowBudget < 0 : tokens > windowBudget) {
+            throw new IllegalArgumentException("The message has " + tokens + " tokens; only "
+                    + Math.max(pin ? windowBudget + tokens : windowBudget, 0) + " are left in the context");
+        }
+        if (pin) {
+            pinned.add(message);
+            pinnedTokenCount += tokens;
+        } else {
+            window.addLast(new Entry(message, tokens));
+            windowTokenCount += tokens;
+        }
+        evict(windowBudget());
+        return this;
+    }
+
+    /**
+     * Adds messages to the conversation in order.
+     *
+     * @param messages The messages.
+     * @return This context.
+     */
+    public ConversationContext addAll(final List<Message> messages) {
+        messages.forEach(this::add);
+        return this;
+    }
+
+    /**
+     * Gets the messages to send: the pinned messages, the summary of the evicted messages, and the messages that have
+     * not been evicted, in the order they were added.
+     *
+     * @return The messages.
+     */
+    public List<Message> getMessages() {
+        final List<Message> messages = new ArrayList<>(pinned.size() + 1 + window.size());
+        messages.addAll(pinned);
+        if (summary != null) {
+            messages.add(summary);
+        }
+        for (Entry entry : window) {
+            messages.add(entry.message);
+        }
+        return messages;
+    }
+
+    /**
+     * Gets the summary of the evicted messages.
+     *
+     * @return The summary, or empty if nothing was summarized.
+     */
+    public Optional<Message> getSummary() {
+        return Optional.ofNullable(summary);
+    }
+
+    /**
+     * Gets the prompt tokens the messages use, including the tokens the API adds per message and to prime the reply.
+     *
+     * @return The number of tokens, at most the budget.
+     */
+    public int getTokenCount() {
+        return TOKENS_PER_REPLY + pinnedTokenCount + summaryTokenCount + windowTokenCount;
+    }
+
+    /**
+     * Starts a chat request with the messages of the conversation.
+     *
+     * @param model The model.
+     * @return The request builder, which further settings and functions can be added to.
+     */
+    public ChatRequest.Builder newRequest(final String model) {
+        return ChatRequest.builder().model(model).messages(getMessages());
+    }
+
+    /**
+     * The tokens left for unpinned messages once the pinned messages and the summary reserve are taken out.
+     */
+    private int windowBudget() {
+        return maxTokens - TOKENS_PER_REPLY - pinnedTokenCount - summaryTokens;
+    }
+
+    private void evict(final int windowBudget) {
+        if (windowTokenCount <= windowBudget) {
+            return;
+        }
+        final List<Message> evicted = new ArrayList<>();
+        while (windowTokenCount > windowBudget && !window.isEmpty()) {
+            evicted.add(evictOldest());
+            // answers to the evicted message go with it
+            while (window.size() > 1 && window.peekFirst().message.getRole() != Role.USER
+                    && window.peekFirst().message.getRole() != Role.SYSTEM) {
+                evicted.add(evictOldest());
+            }
+        }
+        if (summarizer != null) {
+            summarize(evicted);
+        }
+    }
+
+    private Message evictOldest() {
+        final Entry entry = window.removeFirst();
+        windowTokenCount -= entry.tokens;
+        return entry.message;
+    }
+
+    /**
+     * Replaces the summary with one that also covers the evicted messages, cutting its content to the reserved
+     * tokens if it is longer.
+     */
+    private void summarize(final List<Message> evicted) {
+        Message next = summarizer.summarize(summary, evicted);
+        int tokens = next == null ? 0 : tokenizer.countTokens(next);
+        if (tokens > summaryTokens && next.getContent() != null) {
+            final int[] content = tokenizer.encode(next.getContent());
+            final int keep = Math.max(content.length - (tokens - summaryTokens), 0);
+            next = Message.builder().role(next.getRole()).name(next.getName())
+                    .content(tokenizer.decode(Arrays.copyOf(content, keep))).build();
+            tokens = tokenizer.countTokens(next);
+        }
+        if (tokens > summaryTokens) {
+            next = null;
+            tokens = 0;
+        }
+        summary = next;
+        summaryTokenCount = tokens;
+    }
+
+    private static final class Entry {
+        private final Message message;
+        private final int tokens;
+
+        private Entry(final Message message, final int tokens) {
+            this.message = message;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Builder for ConversationContext.
+     */
+    public static class Builder {
+        private BpeTokenizer tokenizer;
+        private int maxTokens;
+        private int replyTokens;
+        private boolean pinSystemMessages = true;
+        private Summarizer summarizer;
+        private int summaryTokens = 256;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the tokenizer of the model, for example {@code BpeTokenizer.load(Encoding.forModel(model))}. Required.
+         *
+         * @param tokenizer The tokenizer.
+         * @return The builder instance.
+         */
+        public Builder setTokenizer(BpeTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            return this;
+        }
+
+        /**
+         * Sets the context window of the model, for example 4096 for gpt-3.5-turbo. Required.
+         *
+         * @param maxTokens The number of tokens the prompt and the reply can use together.
+         * @return The builder instance.
+         */
+        public Builder setMaxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * Sets the tokens kept free for the reply; set the max tokens of requests to the same number. Defaults to 0,
+         * which leaves the reply whatever the prompt does not use.
+         *
+         * @param replyTokens The tokens kept for the reply.
+         * @return The builder instance.
+         */
+        public Builder setReplyTokens(int replyTokens) {
+            this.replyTokens = replyTokens;
+            return this;
+        }
+
+        /**
+         * Sets whether system messages are pinned, so they are never evicted. Defaults to true. Pinned messages are
+         * sent before all others, even when they were added later in the conversation.
+         *
+         * @param pinSystemMessages true to pin system messages.
+         * @return The builder instance.
+         */
+        public Builder setPinSystemMessages(boolean pinSystemMessages) {
+            this.pinSystemMessages = pinSystemMessages;
+            return this;
+        }
+
+        /**
+         * Sets the summarizer evicted messages are condensed with. By default evicted messages are dropped, which
+         * makes the context a sliding window over the conversation.
+         *
+         * @param summarizer The summarizer.
+         * @return The builder instance.
+         */
+        public Builder setSummarizer(Summarizer summarizer) {
+            this.summarizer = summarizer;
+            return this;
+        }
+
+        /**
+         * Sets the tokens reserved for the summary when there is a summarizer. Longer summaries are cut to fit.
+         * Defaults to 256.
+         *
+         * @param summaryTokens The tokens reserved for the summary.
+         * @return The builder instance.
+         */
+        public Builder setSummaryTokens(int summaryTokens) {
+            this.summaryTokens = summaryTokens;
+            return this;
+        }
+
+        /**
+         * Builds the ConversationContext.
+         *
+         * @return The ConversationContext.
+         * @throws IllegalArgumentException If the tokenizer is missing or the reply and summary leave no room for
+         *                                  messages.
+         */
+        public ConversationContext build() {
+            if (tokenizer == null) {
+                throw new IllegalArgumentException("tokenizer is required");
+            }
+            final int messageTokens = maxTokens - replyTokens - TOKENS_PER_REPLY
+                    - (summarizer == null ? 0 : summaryTokens);
+            if (replyTokens < 0 || summaryTokens < 0 || messageTokens <= 0) {
+                throw new IllegalArgumentException("maxTokens must leave room for messages after the reply and "
+                        + "summary tokens");
+            }
+            return new ConversationContext(tokenizer, maxTokens - replyTokens, pinSystemMessages, summarizer,
+                    summaryTokens);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cloudurable.jai.context;
+
+import com.cloudurable.jai.Client;
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+import com.cloudurable.jai.model.text.completion.chat.Message;
+import com.cloudurable.jai.model.text.completion.chat.Role;
+
+import java.util.List;
+
+/**
+ * Condenses the messages a {@link ConversationContext} evicts into a summary that is kept in their place.
+ */
+@FunctionalInterface
+public interface Summarizer {
+
+    /**
+     * Creates a summarizer that asks a chat model to summarize. If the request fails the previous summary is kept,
+     * so the evicted messages are dropped without being summarized.
+     *
+     * @param client The client to send the summary requests with.
+     * @param model  The model, for example gpt-3.5-turbo.
+     * @return The summarizer.
+     */
+    static Summarizer using(final Client client, final String model) {
+        return (previous, evicted) -> {
+            final ChatRequest.Builder builder = ChatRequest.builder().model(model)
+                    .addMessage(Message.builder().role(Role.SYSTEM).content("Summarize the conversation so far in a "
+                            + "few sentences. Keep names, facts, decisions and open questions.").build());
+            if (previous != null) {
+                builder.addMessage(previous);
+            }
+            evicted.forEach(builder::addMessage);
+            return client.chat(builder.build()).getResponse()
+                    .map(ChatResponse::getChoices)
+                    .filter(choices -> !choices.isEmpty())
+                    .map(choices -> choices.get(0).getMessage().getContent())
+                    .map(content -> Message.builder().role(Role.SYSTEM)
+                            .content("Summary of the earlier conversation: " + content).build())
+                    .orElse(previous);
+        };
+    }
+
+    /**
+     * Summarizes evicted messages.
+     *
+     * @param previous The summary of the messages evicted before, or null if there is none.
+     * @param evicted  The messages evicted now, oldest first.
+     * @return The summary of all the evicted messages, usually a system message, or null for no summary.
+     */
+    Message summarize(Message previous, List<Message> evicted);
+}
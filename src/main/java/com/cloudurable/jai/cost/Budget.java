@@ -0,0 +1,111 @@
+package com.cloudurable.jai.cost;
+
+/**
+ * The spending limit of a user in each window of a {@link CostAccountant}. Once the user has spent the downgrade
+ * amount, requests for a model that has a cheaper replacement are sent to the cheaper model; once the user has spent
+ * the limit, requests are rejected until the next window.
+ */
+public class Budget {
+
+    private final long limitNanoDollars;
+    private final long downgradeAtNanoDollars;
+
+    private Budget(final long limitNanoDollars, final long downgradeAtNanoDollars) {
+        this.limitNanoDollars = limitNanoDollars;
+        this.downgradeAtNanoDollars = downgradeAtNanoDollars;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the amount after which requests are rejected.
+     *
+     * @return The limit in dollars.
+     */
+    public double getLimit() {
+        return CostAccountant.toDollars(limitNanoDollars);
+    }
+
+    /**
+     * Gets the amount after which requests are downgraded to cheaper models.
+     *
+     * @return The downgrade amount in dollars.
+     */
+    public double getDowngradeAt() {
+        return CostAccountant.toDollars(downgradeAtNanoDollars);
+    }
+
+    long getLimitNanoDollars() {
+        return limitNanoDollars;
+    }
+
+    long getDowngradeAtNanoDollars() {
+        return downgradeAtNanoDollars;
+    }
+
+    @Override
+    public String toString() {
+        return "Budget{" +
+                "limit=" + getLimit() +
+                ", downgradeAt=" + getDowngradeAt() +
+                '}';
+    }
+
+    /**
+     * Builder for Budget.
+     */
+    public static class Builder {
+        private double limit = -1;
+        private double downgradeAt = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the amount a user may spend in a window before requests are rejected. Required.
+         *
+         * @param limit The limit in dollars.
+         * @return The builder instance.
+         */
+        public Builder setLimit(double limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Sets the amount a user may spend in a window before requests are downgraded to cheaper models. Defaults to
+         * the limit, so requests are never downgraded.
+         *
+         * @param downgradeAt The downgrade amount in dollars.
+         * @return The builder instance.
+         */
+        public Builder setDowngradeAt(double downgradeAt) {
+            this.downgradeAt = downgradeAt;
+            return this;
+        }
+
+        /**
+         * Builds the Budget.
+         *
+         * @return The Budget.
+         * @throws IllegalArgumentException If the limit is not set or the downgrade amount is above it.
+         */
+        public Budget build() {
+            if (limit < 0) {
+                throw new IllegalArgumentException("Budget limit is required");
+            }
+            final double downgrade = downgradeAt < 0 ? limit : downgradeAt;
+            if (downgrade > limit) {
+                throw new IllegalArgumentException("Budget downgradeAt must not be above the limit");
+            }
+            return new Budget(CostAccountant.toNanoDollars(limit), CostAccountant.toNanoDollars(downgrade));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cloudurable.jai.cost;
+
+/**
+ * Thrown instead of sending a request when its user has spent their budget for the current window. The client
+ * returns it as the exception of a {@link com.cloudurable.jai.model.ClientErrorResponse}.
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    private final String user;
+    private final double spent;
+    private final double limit;
+
+    /**
+     * Constructs a BudgetExceededException.
+     *
+     * @param user  The user, empty for requests without a user.
+     * @param spent The amount the user has spent in the current window, in dollars.
+     * @param limit The budget limit, in dollars.
+     */
+    public BudgetExceededException(final String user, final double spent, final double limit) {
+        super("Budget exceeded for user '" + user + "': spent $" + spent + " of $" + limit);
+        this.user = user;
+        this.spent = spent;
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the user whose budget is spent.
+     *
+     * @return The user, empty for requests without a user.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the amount the user has spent in the current window.
+     *
+     * @return The amount in dollars.
+     */
+    public double getSpent() {
+        return spent;
+    }
+
+    /**
+     * Gets the budget limit.
+     *
+     * @return The limit in dollars.
+     */
+    public double getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,432 @@
+package com.cloudurable.jai.cost;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Adds up the tokens and dollars used by each user and model in fixed time windows, and enforces a budget per user.
+ * <p>
+ * The {@link com.cloudurable.jai.OpenAIClient} records the usage the API reports for every response, under the user
+ * of the request: the user field of chat and completion requests, or the empty user for requests without one. Before
+ * sending a chat or completion request it asks the accountant to admit it. A user who has spent their budget's
+ * downgrade amount gets the request sent to the cheaper model set for the requested one, and a user who has spent
+ * their limit gets a {@link BudgetExceededException} until the next window starts. Requests already in flight when
+ * a limit is reached still complete and are charged, so a user can overrun the limit by the cost of those.
+ * <p>
+ * Streamed responses carry no usage, so a stream is charged with a {@link #reserve reservation} of its estimated cost
+ * when it is sent, which counts against the budget while the stream runs, and the reservation is settled with the
+ * tokens counted once the stream has ended.
+ * <p>
+ * Windows are aligned to the epoch, so with the default of one day each window is a UTC day. Counting is done with
+ * {@link LongAdder}s found through concurrent maps, so recording and admitting take no locks except once per user per
+ * window, when the window rolls over.
+ */
+public class CostAccountant {
+
+    private static final Map<String, double[]> DEFAULT_PRICES = Map.of(
+            "gpt-4-32k", new double[]{0.06, 0.12},
+            "gpt-4", new double[]{0.03, 0.06},
+            "gpt-3.5-turbo-16k", new double[]{0.003, 0.004},
+            "gpt-3.5-turbo", new double[]{0.0015, 0.002},
+            "text-davinci", new double[]{0.02, 0.02},
+            "text-curie", new double[]{0.002, 0.002},
+            "text-babbage", new double[]{0.0005, 0.0005},
+            "text-ada", new double[]{0.0004, 0.0004},
+            "text-embedding-ada-002", new double[]{0.0001, 0});
+
+    private static final long[] FREE = {0, 0};
+
+    private final Map<String, long[]> prices;
+    private final Map<String, String> downgrades;
+    private final Budget defaultBudget;
+    private final long windowMillis;
+    private final int retainedWindows;
+    private final LongSupplier currentTimeMillis;
+    private final ConcurrentHashMap<String, long[]> modelPrices = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    CostAccountant(Map<String, long[]> prices, Map<String, String> downgrades, Budget defaultBudget,
+                   long windowMillis, int retainedWindows, LongSupplier currentTimeMillis) {
+        this.prices = prices;
+        this.downgrades = downgrades;
+        this.defaultBudget = defaultBudget;
+        this.windowMillis = windowMillis;
+        this.retainedWindows = retainedWindows;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    static long toNanoDollars(final double dollars) {
+        return Math.round(dollars * 1_000_000_000d);
+    }
+
+    static double toDollars(final long nanoDollars) {
+        return nanoDollars / 1_000_000_000d;
+    }
+
+    /**
+     * Sets the budget of a user, replacing the default budget for them.
+     *
+     * @param user   The user.
+     * @param budget The budget, or null to give the user the default budget again.
+     */
+    public void setBudget(final String user, final Budget budget) {
+        if (budget == null) {
+            budgets.remove(userKey(user));
+        } else {
+            budgets.put(userKey(user), budget);
+        }
+    }
+
+    /**
+     * Decides which model a request of a user is sent to.
+     *
+     * @param user  The user of the request, or null.
+     * @param model The model the request asks for.
+     * @return The model to send the request to: the requested model, or its cheaper replacement if the user has spent
+     * the downgrade amount of their budget.
+     * @throws BudgetExceededException If the user has spent the limit of their budget.
+     */
+    public String admit(final String user, final String model) {
+        final String key = userKey(user);
+        final Budget budget = budgets.getOrDefault(key, defaultBudget);
+        if (budget == null) {
+            return model;
+        }
+        final long spent = spentNanoDollars(key);
+        if (spent >= budget.getLimitNanoDollars()) {
+            throw new BudgetExceededException(key, toDollars(spent), budget.getLimit());
+        }
+        if (spent >= budget.getDowngradeAtNanoDollars() && model != null) {
+            final String cheaper = matchPrefix(downgrades, model);
+            if (cheaper != null) {
+                return cheaper;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Records the tokens the API counted for a request.
+     *
+     * @param user             The user of the request, or null.
+     * @param model            The model of the request.
+     * @param promptTokens     The number of prompt tokens.
+     * @param completionTokens The number of completion tokens.
+     * @return The cost of the request in dollars.
+     */
+    public double record(final String user, final String model, final int promptTokens, final int completionTokens) {
+        final String modelKey = model == null ? "" : model;
+        final long[] price = price(modelKey);
+        final long cost = promptTokens * price[0] + completionTokens * price[1];
+        final Totals totals = account(userKey(user)).window(currentTimeMillis.getAsLong()).totals(modelKey);
+        totals.requests.increment();
+        totals.promptTokens.add(promptTokens);
+        totals.completionTokens.add(completionTokens);
+        totals.nanoDollars.add(cost);
+        return toDollars(cost);
+    }
+
+    /**
+     * Charges the estimated cost of a request that is about to be sent, before its usage is known. The estimate counts
+     * against the user's budget until the reservation is settled with the tokens the request used, or released.
+     *
+     * @param user             The user of the request, or null.
+     * @param model            The model of the request.
+     * @param promptTokens     The estimated number of prompt tokens.
+     * @param completionTokens The estimated number of completion tokens.
+     * @return The reservation.
+     */
+    public Reservation reserve(final String user, final String model, final int promptTokens,
+                               final int completionTokens) {
+        final String modelKey = model == null ? "" : model;
+        final long[] price = price(modelKey);
+        final long cost = promptTokens * price[0] + completionTokens * price[1];
+        final Totals totals = account(userKey(user)).window(currentTimeMillis.getAsLong()).totals(modelKey);
+        totals.nanoDollars.add(cost);
+        return new Reservation(user, model, totals, cost);
+    }
+
+    /**
+     * Gets the amount a user has spent in the current window.
+     *
+     * @param user The user, or null for requests without a user.
+     * @return The amount in dollars.
+     */
+    public double getSpent(final String user) {
+        return toDollars(spentNanoDollars(userKey(user)));
+    }
+
+    /**
+     * Gets the usage and cost of every user and model in the current window and the retained windows before it.
+     *
+     * @return The reports, newest window first.
+     */
+    public List<CostReport> getReports() {
+        final List<CostReport> reports = new ArrayList<>();
+        accounts.forEach((user, account) -> {
+            for (Window window : account.windows()) {
+                window.models.forEach((model, totals) -> reports.add(new CostReport(Instant.ofEpochMilli(window.start),
+                        user, model, totals.requests.sum(), totals.promptTokens.sum(),
+                        totals.completionTokens.sum(), toDollars(totals.nanoDollars.sum()))));
+            }
+        });
+        reports.sort((first, second) -> second.getWindowStart().compareTo(first.getWindowStart()));
+        return reports;
+    }
+
+    private long spentNanoDollars(final String user) {
+        final Account account = accounts.get(user);
+        if (account == null) {
+            return 0;
+        }
+        long spent = 0;
+        for (Totals totals : account.window(currentTimeMillis.getAsLong()).models.values()) {
+            spent += totals.nanoDollars.sum();
+        }
+        return spent;
+    }
+
+    private static String userKey(final String user) {
+        return user == null ? "" : user;
+    }
+
+    private Account account(final String user) {
+        final Account account = accounts.get(user);
+        return account != null ? account : accounts.computeIfAbsent(user, key -> new Account());
+    }
+
+    /**
+     * Gets the price per token of a model, in nano-dollars for prompt and completion tokens, from the longest price
+     * prefix the model starts with. Models without a price are free.
+     */
+    private long[] price(final String model) {
+        final long[] price = modelPrices.get(model);
+        if (price != null) {
+            return price;
+        }
+        final long[] found = matchPrefix(prices, model);
+        modelPrices.putIfAbsent(model, found == null ? FREE : found);
+        return found == null ? FREE : found;
+    }
+
+    private static <V> V matchPrefix(final Map<String, V> byPrefix, final String model) {
+        V found = null;
+        int foundLength = -1;
+        for (Map.Entry<String, V> entry : byPrefix.entrySet()) {
+            if (model.startsWith(entry.getKey()) && entry.getKey().length() > foundLength) {
+                found = entry.getValue();
+                foundLength = entry.getKey().length();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The windows of one user. The current window is read without locking; a new one is created under the account's
+     * lock when time passes into the next window.
+     */
+    private final class Account {
+        private final List<Window> history = new ArrayList<>();
+        private volatile Window current = new Window(Long.MIN_VALUE);
+
+        Window window(final long now) {
+            final long start = now - Math.floorMod(now, windowMillis);
+            final Window window = current;
+            return window.start >= start ? window : roll(start);
+        }
+
+        private synchronized Window roll(final long start) {
+            if (current.start >= start) {
+                return current;
+            }
+            final Window window = new Window(start);
+            history.add(0, window);
+            while (history.size() > retainedWindows + 1) {
+                history.remove(history.size() - 1);
+            }
+            current = window;
+            return window;
+        }
+
+        synchronized List<Window> windows() {
+            return new ArrayList<>(history);
+        }
+    }
+
+    private static final class Window {
+        private final long start;
+        private final ConcurrentHashMap<String, Totals> models = new ConcurrentHashMap<>();
+
+        private Window(final long start) {
+            this.start = start;
+        }
+
+        Totals totals(final String model) {
+            final Totals totals = models.get(model);
+            return totals != null ? totals : models.computeIfAbsent(model, key -> new Totals());
+        }
+    }
+
+    private static final class Totals {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder nanoDollars = new LongAdder();
+    }
+
+    /**
+     * The estimated cost of a request in flight. Only the first settle or release takes effect.
+     */
+    public final class Reservation {
+        private final String user;
+        private final String model;
+        private final Totals totals;
+        private final long cost;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Reservation(final String user, final String model, final Totals totals, final long cost) {
+            this.user = user;
+            this.model = model;
+            this.totals = totals;
+            this.cost = cost;
+        }
+
+        /**
+         * Replaces the estimate with the tokens the request used.
+         *
+         * @param promptTokens     The number of prompt tokens.
+         * @param completionTokens The number of completion tokens.
+         * @return The cost of the request in dollars.
+         */
+        public double settle(final int promptTokens, final int completionTokens) {
+            if (!release()) {
+                return 0;
+            }
+            return record(user, model, promptTokens, completionTokens);
+        }
+
+        /**
+         * Takes the estimate back, for a request that used no tokens.
+         *
+         * @return true if the reservation was still open.
+         */
+        public boolean release() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            // Taken from the window it was charged to, even if a new window has started since.
+            totals.nanoDollars.add(-cost);
+            return true;
+        }
+    }
+
+    /**
+     * Builder for CostAccountant.
+     */
+    public static class Builder {
+        private final Map<String, double[]> prices = new HashMap<>(DEFAULT_PRICES);
+        private final Map<String, String> downgrades = new HashMap<>();
+        private Budget defaultBudget;
+        private Duration window = Duration.ofDays(1);
+        private int retainedWindows = 7;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the price of the models whose name starts with a prefix. The longest matching prefix wins, so
+         * gpt-4-32k can be priced apart from gpt-4. Prices for the OpenAI models of mid 2023 are set by default;
+         * models without a price are counted as free.
+         *
+         * @param modelPrefix          The model prefix, for example gpt-3.5-turbo.
+         * @param promptPer1kTokens     The price of 1000 prompt tokens in dollars.
+         * @param completionPer1kTokens The price of 1000 completion tokens in dollars.
+         * @return The builder instance.
+         */
+        public Builder setPrice(String modelPrefix, double promptPer1kTokens, double completionPer1kTokens) {
+            this.prices.put(modelPrefix, new double[]{promptPer1kTokens, completionPer1kTokens});
+            return this;
+        }
+
+        /**
+         * Sets the cheaper model that requests for the models whose name starts with a prefix are sent to once their
+         * user has spent the downgrade amount of their budget.
+         *
+         * @param modelPrefix The model prefix, for example gpt-4.
+         * @param cheaper     The cheaper model, for example gpt-3.5-turbo.
+         * @return The builder instance.
+         */
+        public Builder setDowngrade(String modelPrefix, String cheaper) {
+            this.downgrades.put(modelPrefix, cheaper);
+            return this;
+        }
+
+        /**
+         * Sets the budget of users that have no budget of their own. By default their spending is not limited.
+         *
+         * @param defaultBudget The default budget.
+         * @return The builder instance.
+         */
+        public Builder setDefaultBudget(Budget defaultBudget) {
+            this.defaultBudget = defaultBudget;
+            return this;
+        }
+
+        /**
+         * Sets the length of a window; budgets apply to the spending in one window. Defaults to one day.
+         *
+         * @param window The window length.
+         * @return The builder instance.
+         */
+        public Builder setWindow(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Sets the number of past windows kept for reports besides the current one. Defaults to 7.
+         *
+         * @param retainedWindows The number of past windows.
+         * @return The builder instance.
+         */
+        public Builder setRetainedWindows(int retainedWindows) {
+            this.retainedWindows = retainedWindows;
+            return this;
+        }
+
+        /**
+         * Builds the CostAccountant.
+         *
+         * @return The CostAccountant.
+         * @throws IllegalArgumentException If the window is not positive or the retained windows are negative.
+         */
+        public CostAccountant build() {
+            if (window.toMillis() <= 0 || retainedWindows < 0) {
+                throw new IllegalArgumentException("window must be positive and retainedWindows must not be negative");
+            }
+            final Map<String, long[]> perToken = new HashMap<>();
+            prices.forEach((prefix, price) -> perToken.put(prefix,
+                    new long[]{toNanoDollars(price[0] / 1000), toNanoDollars(price[1] / 1000)}));
+            return new CostAccountant(Map.copyOf(perToken), Map.copyOf(downgrades), defaultBudget, window.toMillis(),
+                    retainedWindows, System::currentTimeMillis);
+        }
+    }
+}
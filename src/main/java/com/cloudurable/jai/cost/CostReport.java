@@ -0,0 +1,115 @@
+package com.cloudurable.jai.cost;
+
+import java.time.Instant;
+
+/**
+ * The usage and cost of one user and model in one window of a {@link CostAccountant}.
+ */
+public class CostReport {
+
+    private final Instant windowStart;
+    private final String user;
+    private final String model;
+    private final long requests;
+    private final long promptTokens;
+    private final long completionTokens;
+    private final double cost;
+
+    /**
+     * Constructs a CostReport.
+     *
+     * @param windowStart      The start of the window.
+     * @param user             The user, empty for requests without a user.
+     * @param model            The model.
+     * @param requests         The number of requests.
+     * @param promptTokens     The number of prompt tokens.
+     * @param completionTokens The number of completion tokens.
+     * @param cost             The cost in dollars.
+     */
+    public CostReport(final Instant windowStart, final String user, final String model, final long requests,
+                      final long promptTokens, final long completionTokens, final double cost) {
+        this.windowStart = windowStart;
+        this.user = user;
+        this.model = model;
+        this.requests = requests;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.cost = cost;
+    }
+
+    /**
+     * Gets the start of the window.
+     *
+     * @return The window start.
+     */
+    public Instant getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Gets the user.
+     *
+     * @return The user, empty for requests without a user.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the model.
+     *
+     * @return The model.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of prompt tokens.
+     *
+     * @return The number of prompt tokens.
+     */
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * Gets the number of completion tokens.
+     *
+     * @return The number of completion tokens.
+     */
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    /**
+     * Gets the cost.
+     *
+     * @return The cost in dollars.
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return "CostReport{" +
+                "windowStart=" + windowStart +
+                ", user='" + user + '\'' +
+                ", model='" + model + '\'' +
+                ", requests=" + requests +
+                ", promptTokens=" + promptTokens +
+                ", completionTokens=" + completionTokens +
+                ", cost=" + cost +
+                '}';
+    }
+}
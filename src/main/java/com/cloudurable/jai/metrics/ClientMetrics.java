@@ -0,0 +1,77 @@
+package com.cloudurable.jai.metrics;
+
+/**
+ * Receives measurements of the requests an {@link com.cloudurable.jai.OpenAIClient} sends, so they can be recorded
+ * in a metrics library such as Micrometer or Dropwizard Metrics without the client depending on one.
+ * <p>
+ * Every method has an empty default, so an implementation only overrides what it records. Each attempt of a request
+ * is measured, so a retried or hedged call is reported once per attempt; responses answered from the response cache
+ * are not reported. Requests are named by their API path with IDs replaced by {id}, for example
+ * /files/{id}/content, which keeps the number of names small enough to tag metrics with.
+ * <p>
+ * Methods are called on the threads that send requests and complete responses, so implementations must be thread
+ * safe and should not block.
+ */
+public interface ClientMetrics {
+
+    /**
+     * Gets the metrics that record nothing, which the client uses when none are set. The client skips measuring
+     * requests when it has these.
+     *
+     * @return The no-op metrics.
+     */
+    static ClientMetrics none() {
+        return NoClientMetrics.INSTANCE;
+    }
+
+    /**
+     * Called when an attempt of a request is sent.
+     *
+     * @param path         The API path of the request.
+     * @param requestBytes The size of the request body, or -1 if it is not known up front.
+     */
+    default void requestStarted(String path, long requestBytes) {
+    }
+
+    /**
+     * Called when the status line and headers of a response arrive, before its body is read.
+     *
+     * @param path                 The API path of the request.
+     * @param statusCode           The status code of the response.
+     * @param timeToFirstByteNanos The time from sending the request to receiving the response headers.
+     */
+    default void responseStarted(String path, int statusCode, long timeToFirstByteNanos) {
+    }
+
+    /**
+     * Called when the body of a response has been read.
+     *
+     * @param path          The API path of the request.
+     * @param statusCode    The status code of the response.
+     * @param latencyNanos  The time from sending the request to reading the whole response.
+     * @param responseBytes The number of bytes in the response body.
+     */
+    default void requestCompleted(String path, int statusCode, long latencyNanos, long responseBytes) {
+    }
+
+    /**
+     * Called when an attempt of a request fails without a complete response, for example on an I/O error or a
+     * timeout.
+     *
+     * @param path         The API path of the request.
+     * @param error        The error.
+     * @param latencyNanos The time from sending the request to the error.
+     */
+    default void requestFailed(String path, Throwable error, long latencyNanos) {
+    }
+
+    /**
+     * Called with the token usage the API reported in a response.
+     *
+     * @param path             The API path of the request.
+     * @param promptTokens     The number of tokens in the prompt.
+     * @param completionTokens The number of tokens in the completion.
+     */
+    default void tokensUsed(String path, int promptTokens, int completionTokens) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.cloudurable.jai.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies with buckets about 25% wide, from 1 microsecond to about 25 days.
+ * <p>
+ * Each power of two of microseconds is split into four buckets, so a percentile is accurate to within a quarter of
+ * its value while the histogram keeps a fixed 160 counters however many latencies it records.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 160;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(final long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos) / 1000));
+        count.increment();
+        totalNanos.add(Math.max(0, nanos));
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of the latencies recorded.
+     *
+     * @return The total time.
+     */
+    public Duration getTotalTime() {
+        return Duration.ofNanos(totalNanos.sum());
+    }
+
+    /**
+     * Gets the mean of the latencies recorded.
+     *
+     * @return The mean, zero if none were recorded.
+     */
+    public Duration getMean() {
+        final long recorded = count.sum();
+        return recorded == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / recorded);
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the latencies recorded: the upper end of the bucket the percentile
+     * falls in.
+     *
+     * @param percentile The percentile, from 0 to 1, for example 0.99.
+     * @return The latency, zero if none were recorded.
+     */
+    public Duration getPercentile(final double percentile) {
+        long total = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            total += counts.get(index);
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Duration.ofNanos(upperBoundMicros(index) * 1000);
+            }
+        }
+        return Duration.ofNanos(upperBoundMicros(BUCKETS - 1) * 1000);
+    }
+
+    /**
+     * Gets the bucket of a latency: the value itself below 4 microseconds, then four buckets per power of two.
+     */
+    static int bucket(final long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int index = (exponent - 1) * 4 + (int) ((micros >>> (exponent - 2)) & 3);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBoundMicros(final int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        final int exponent = bucket / 4 + 1;
+        final long lower = (4L + bucket % 4) << (exponent - 2);
+        return lower + (1L << (exponent - 2)) - 1;
+    }
+}
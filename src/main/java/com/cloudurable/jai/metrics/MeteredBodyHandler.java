@@ -0,0 +1,122 @@
+package com.cloudurable.jai.metrics;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Measures one attempt of a request for {@link ClientMetrics}. It wraps the body handler the request is sent with,
+ * so it sees when the response headers arrive and counts the bytes of the body as they are read.
+ * <p>
+ * Creating it reports the request as started. The sender must then call {@link #complete(HttpResponse)} or
+ * {@link #fail(Throwable)} once; later calls are ignored.
+ *
+ * @param <T> The type of the response body.
+ */
+public final class MeteredBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+
+    private final ClientMetrics metrics;
+    private final String path;
+    private final HttpResponse.BodyHandler<T> handler;
+    private final long start;
+    private volatile long responseBytes;
+    private boolean done;
+
+    /**
+     * Constructs a MeteredBodyHandler and reports the request as started.
+     *
+     * @param metrics The metrics to report to.
+     * @param path    The API path of the request, with IDs replaced by {id}.
+     * @param request The request being sent.
+     * @param handler The body handler the request is sent with.
+     */
+    public MeteredBodyHandler(final ClientMetrics metrics, final String path, final HttpRequest request,
+                              final HttpResponse.BodyHandler<T> handler) {
+        this.metrics = metrics;
+        this.path = path;
+        this.handler = handler;
+        metrics.requestStarted(path, request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+        this.start = System.nanoTime();
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(final HttpResponse.ResponseInfo responseInfo) {
+        metrics.responseStarted(path, responseInfo.statusCode(), System.nanoTime() - start);
+        return new CountingSubscriber(handler.apply(responseInfo));
+    }
+
+    /**
+     * Reports the response to the request.
+     *
+     * @param response The response.
+     */
+    public void complete(final HttpResponse<?> response) {
+        if (finish()) {
+            metrics.requestCompleted(path, response.statusCode(), System.nanoTime() - start, responseBytes);
+        }
+    }
+
+    /**
+     * Reports that the request failed without a complete response.
+     *
+     * @param error The error.
+     */
+    public void fail(final Throwable error) {
+        if (finish()) {
+            metrics.requestFailed(path, error, System.nanoTime() - start);
+        }
+    }
+
+    private synchronized boolean finish() {
+        if (done) {
+            return false;
+        }
+        done = true;
+        return true;
+    }
+
+    /**
+     * Passes the body through to the wrapped subscriber, counting its bytes. The HTTP client calls onNext from one
+     * thread at a time, so the count needs no atomic update.
+     */
+    private final class CountingSubscriber implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> subscriber;
+
+        private CountingSubscriber(final HttpResponse.BodySubscriber<T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> buffers) {
+            long bytes = responseBytes;
+            for (int index = 0; index < buffers.size(); index++) {
+                bytes += buffers.get(index).remaining();
+            }
+            responseBytes = bytes;
+            subscriber.onNext(buffers);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.cloudurable.jai.metrics;
+
+/**
+ * Metrics that record nothing.
+ */
+final class NoClientMetrics implements ClientMetrics {
+
+    static final NoClientMetrics INSTANCE = new NoClientMetrics();
+
+    private NoClientMetrics() {
+    }
+}
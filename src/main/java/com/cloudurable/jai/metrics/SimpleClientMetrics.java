@@ -0,0 +1,211 @@
+package com.cloudurable.jai.metrics;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client metrics kept in memory, for applications that do not use a metrics library, for tests, and as an example
+ * of implementing {@link ClientMetrics}. Each API path gets its own counters and latency histograms. Recording takes
+ * no locks, so many threads can share one instance.
+ */
+public class SimpleClientMetrics implements ClientMetrics {
+
+    private final ConcurrentHashMap<String, PathMetrics> paths = new ConcurrentHashMap<>();
+
+    private PathMetrics path(final String path) {
+        final PathMetrics metrics = paths.get(path);
+        return metrics != null ? metrics : paths.computeIfAbsent(path, key -> new PathMetrics());
+    }
+
+    /**
+     * Gets the API paths that have been measured.
+     *
+     * @return The API paths, with IDs replaced by {id}.
+     */
+    public Set<String> getPaths() {
+        return Set.copyOf(paths.keySet());
+    }
+
+    /**
+     * Gets the metrics of an API path.
+     *
+     * @param path The API path, with IDs replaced by {id}, for example /chat/completions.
+     * @return The metrics, or empty if no request to the path has been measured.
+     */
+    public Optional<PathMetrics> getPath(final String path) {
+        return Optional.ofNullable(paths.get(path));
+    }
+
+    @Override
+    public void requestStarted(final String path, final long requestBytes) {
+        final PathMetrics metrics = path(path);
+        metrics.requests.increment();
+        metrics.inFlight.increment();
+        if (requestBytes > 0) {
+            metrics.requestBytes.add(requestBytes);
+        }
+    }
+
+    @Override
+    public void responseStarted(final String path, final int statusCode, final long timeToFirstByteNanos) {
+        path(path).timeToFirstByte.record(timeToFirstByteNanos);
+    }
+
+    @Override
+    public void requestCompleted(final String path, final int statusCode, final long latencyNanos,
+                                 final long responseBytes) {
+        final PathMetrics metrics = path(path);
+        metrics.inFlight.decrement();
+        metrics.latency.record(latencyNanos);
+        metrics.responseBytes.add(responseBytes);
+        if (statusCode >= 100 && statusCode < 600) {
+            metrics.statusCounts.incrementAndGet(statusCode - 100);
+        }
+    }
+
+    @Override
+    public void requestFailed(final String path, final Throwable error, final long latencyNanos) {
+        final PathMetrics metrics = path(path);
+        metrics.inFlight.decrement();
+        metrics.failures.increment();
+        metrics.latency.record(latencyNanos);
+    }
+
+    @Override
+    public void tokensUsed(final String path, final int promptTokens, final int completionTokens) {
+        final PathMetrics metrics = path(path);
+        metrics.promptTokens.add(promptTokens);
+        metrics.completionTokens.add(completionTokens);
+    }
+
+    /**
+     * The metrics of one API path.
+     */
+    public static final class PathMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final AtomicLongArray statusCounts = new AtomicLongArray(500);
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+
+        private PathMetrics() {
+        }
+
+        /**
+         * Gets the number of requests sent, counting each attempt.
+         *
+         * @return The number of requests.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Gets the number of requests sent that have neither completed nor failed.
+         *
+         * @return The number of requests in flight.
+         */
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * Gets the number of requests that failed without a complete response.
+         *
+         * @return The number of failures.
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Gets the number of responses with a status code.
+         *
+         * @param statusCode The status code.
+         * @return The number of responses.
+         */
+        public long getStatusCount(final int statusCode) {
+            return statusCode >= 100 && statusCode < 600 ? statusCounts.get(statusCode - 100) : 0;
+        }
+
+        /**
+         * Gets the number of responses by status code, leaving out status codes that were not received.
+         *
+         * @return The counts, ordered by status code.
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            final Map<Integer, Long> counts = new TreeMap<>();
+            for (int index = 0; index < statusCounts.length(); index++) {
+                final long count = statusCounts.get(index);
+                if (count > 0) {
+                    counts.put(index + 100, count);
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Gets the bytes sent in request bodies whose size was known up front.
+         *
+         * @return The number of bytes.
+         */
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        /**
+         * Gets the bytes received in response bodies.
+         *
+         * @return The number of bytes.
+         */
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        /**
+         * Gets the prompt tokens the API reported.
+         *
+         * @return The number of prompt tokens.
+         */
+        public long getPromptTokens() {
+            return promptTokens.sum();
+        }
+
+        /**
+         * Gets the completion tokens the API reported.
+         *
+         * @return The number of completion tokens.
+         */
+        public long getCompletionTokens() {
+            return completionTokens.sum();
+        }
+
+        /**
+         * Gets the histogram of the time from sending a request to reading its whole response or failing.
+         *
+         * @return The latency histogram.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Gets the histogram of the time from sending a request to receiving the response headers.
+         *
+         * @return The time to first byte histogram.
+         */
+        public LatencyHistogram getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+    }
+}
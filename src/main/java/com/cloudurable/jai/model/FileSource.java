@@ -0,0 +1,442 @@
+package com.cloudurable.jai.model;
+
+import com.cloudurable.jai.util.ByteBufferInputStream;
+import com.cloudurable.jai.util.MultipartEntityBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The contents of a file sent with a request: a byte array, a file that is opened lazily each time the request is
+ * sent, or a region of a file mapped into memory.
+ * <p>
+ * Requests that carry files, such as uploads, transcriptions and image edits, hold a {@code FileSource} rather than
+ * the bytes of the file, so building a request from a file does not read it, and sending the request streams the file
+ * into the multipart form instead of copying it onto the heap. Mapped regions let large files be sent in pieces without
+ * reading them, since each piece is a view of the same mapping, and {@link #concat} puts a header in front of such a
+ * piece without copying it. Contents computed as they are read, such as converted audio, are streamed the same way.
+ */
+public abstract class FileSource {
+
+    private FileSource() {
+    }
+
+    /**
+     * Creates a source holding a byte array. The array is not copied.
+     *
+     * @param bytes The contents.
+     * @return The source.
+     */
+    public static FileSource ofBytes(final byte[] bytes) {
+        return new BytesSource(bytes);
+    }
+
+    /**
+     * Creates a source for a file that is opened each time the contents are read. The file is not touched until then,
+     * so an unreadable file fails when the request is sent rather than when it is built.
+     *
+     * @param path The file.
+     * @return The source.
+     */
+    public static FileSource ofPath(final Path path) {
+        return new PathSource(path);
+    }
+
+    /**
+     * Creates a source holding the remaining bytes of a buffer, for example a slice of a mapped file. The buffer's
+     * position is not changed by reading the source.
+     *
+     * @param buffer The contents.
+     * @return The source.
+     */
+    public static FileSource ofBuffer(final ByteBuffer buffer) {
+        return new BufferSource(buffer.slice());
+    }
+
+    /**
+     * Maps a whole file into memory.
+     *
+     * @param path The file.
+     * @return The source.
+     * @throws UncheckedIOException If the file cannot be mapped.
+     */
+    public static FileSource ofMapped(final Path path) {
+        try {
+            return ofMapped(path, 0, Files.size(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps a region of a file into memory. The mapping stays valid after the file is closed, and the pages are read
+     * by the operating system as the region is sent.
+     *
+     * @param path     The file.
+     * @param position The offset of the region in the file.
+     * @param size     The number of bytes of the region, at most {@link Integer#MAX_VALUE}.
+     * @return The source.
+     * @throws UncheckedIOException If the file cannot be mapped.
+     */
+    public static FileSource ofMapped(final Path path, final long position, final long size) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            return new BufferSource(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a source whose contents are the contents of other sources, one after the other, for example a header
+     * followed by a region of a mapped file. The sources are read as the combined source is read.
+     *
+     * @param sources The sources.
+     * @return The source.
+     */
+    public static FileSource concat(final FileSource... sources) {
+        return new ConcatSource(List.of(sources));
+    }
+
+    /**
+     * Creates a source whose contents are produced as they are read, for example by converting another source. Each
+     * read opens a new stream, which must produce exactly the given number of bytes, so the contents can be sent more
+     * than once and their length is known before they are produced.
+     *
+     * @param length The number of bytes each stream produces.
+     * @param stream Opens a new stream of the contents.
+     * @return The source.
+     */
+    public static FileSource ofStream(final long length, final Supplier<InputStream> stream) {
+        return new StreamSource(length, stream);
+    }
+
+    /**
+     * Returns the number of bytes of the contents.
+     *
+     * @return The length.
+     * @throws UncheckedIOException If the size of a file cannot be read.
+     */
+    public abstract long length();
+
+    /**
+     * Opens a new stream of the contents.
+     *
+     * @return The stream.
+     * @throws UncheckedIOException If a file cannot be opened.
+     */
+    public abstract InputStream openStream();
+
+    /**
+     * Returns the contents as a byte array, reading a file or copying a buffer if needed. A source created from a
+     * byte array returns that array.
+     *
+     * @return The contents.
+     * @throws UncheckedIOException If a file cannot be read.
+     */
+    public abstract byte[] toBytes();
+
+    /**
+     * Returns the contents as a read-only buffer for random access. A file is mapped into memory rather than read,
+     * and a byte array is wrapped rather than copied.
+     *
+     * @return The contents, from position 0 to the limit.
+     * @throws UncheckedIOException If a file cannot be mapped or read.
+     */
+    public abstract ByteBuffer toBuffer();
+
+    /**
+     * Adds the contents to a multipart form as a binary part, without reading them into memory.
+     *
+     * @param form        The form.
+     * @param name        The name of the part.
+     * @param contentType The content type of the part.
+     * @param filename    The filename of the part.
+     * @return The form.
+     * @throws UncheckedIOException If the size of a file cannot be read.
+     */
+    public abstract MultipartEntityBuilder addTo(MultipartEntityBuilder form, String name, String contentType,
+                                                 String filename);
+
+    private static final class BytesSource extends FileSource {
+        private final byte[] bytes;
+
+        private BytesSource(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public byte[] toBytes() {
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        @Override
+        public MultipartEntityBuilder addTo(MultipartEntityBuilder form, String name, String contentType,
+                                            String filename) {
+            return form.addBinaryBody(name, bytes, contentType, filename);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BytesSource)) return false;
+            return Arrays.equals(bytes, ((BytesSource) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return "FileSource{bytes=" + bytes.length + '}';
+        }
+    }
+
+    private static final class PathSource extends FileSource {
+        private final Path path;
+
+        private PathSource(final Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public long length() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public InputStream openStream() {
+            try {
+                return Files.newInputStream(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public byte[] toBytes() {
+            try {
+                return Files.readAllBytes(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ByteBuffer toBuffer() {
+            return ofMapped(path).toBuffer();
+        }
+
+        @Override
+        public MultipartEntityBuilder addTo(MultipartEntityBuilder form, String name, String contentType,
+                                            String filename) {
+            return form.addBinaryBody(name, path, contentType, filename);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PathSource)) return false;
+            return path.equals(((PathSource) o).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "FileSource{path=" + path + '}';
+        }
+    }
+
+    private static final class BufferSource extends FileSource {
+        private final ByteBuffer buffer;
+
+        private BufferSource(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long length() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteBufferInputStream(buffer.duplicate());
+        }
+
+        @Override
+        public byte[] toBytes() {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer toBuffer() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public MultipartEntityBuilder addTo(MultipartEntityBuilder form, String name, String contentType,
+                                            String filename) {
+            return form.addBinaryBody(name, buffer, contentType, filename);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BufferSource)) return false;
+            return buffer.equals(((BufferSource) o).buffer);
+        }
+
+        @Override
+        public int hashCode() {
+            return buffer.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "FileSource{buffer=" + buffer.remaining() + '}';
+        }
+    }
+
+    /**
+     * A source that is only ever read as a stream.
+     */
+    private abstract static class StreamedSource extends FileSource {
+
+        @Override
+        public byte[] toBytes() {
+            try (InputStream stream = openStream()) {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(toBytes()).asReadOnlyBuffer();
+        }
+
+        @Override
+        public MultipartEntityBuilder addTo(MultipartEntityBuilder form, String name, String contentType,
+                                            String filename) {
+            return form.addBinaryBody(name, this::openStream, length(), contentType, filename);
+        }
+    }
+
+    private static final class ConcatSource extends StreamedSource {
+        private final List<FileSource> sources;
+
+        private ConcatSource(final List<FileSource> sources) {
+            this.sources = sources;
+        }
+
+        @Override
+        public long length() {
+            long length = 0;
+            for (FileSource source : sources) {
+                length += source.length();
+            }
+            return length;
+        }
+
+        @Override
+        public InputStream openStream() {
+            final Iterator<FileSource> next = sources.iterator();
+            return new SequenceInputStream(new Enumeration<>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return next.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return next.next().openStream();
+                }
+            });
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ConcatSource)) return false;
+            return sources.equals(((ConcatSource) o).sources);
+        }
+
+        @Override
+        public int hashCode() {
+            return sources.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "FileSource{concat=" + sources + '}';
+        }
+    }
+
+    private static final class StreamSource extends StreamedSource {
+        private final long length;
+        private final Supplier<InputStream> stream;
+
+        private StreamSource(final long length, final Supplier<InputStream> stream) {
+            this.length = length;
+            this.stream = stream;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return stream.get();
+        }
+
+        @Override
+        public String toString() {
+            return "FileSource{stream, length=" + length + '}';
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.cloudurable.jai.model.audio;
 
+import com.cloudurable.jai.model.FileSource;
 import com.cloudurable.jai.model.Request;
 
 /**
@@ -10,7 +11,7 @@ public abstract class AudioRequest implements Request {
     /**
      * The audio file object (not file name) to transcribe, in one of these formats: mp3, mp4, mpeg, mpga, m4a, wav, or webm.
      */
-    private final byte[] file;
+    private final FileSource file;
 
     /**
      * The name of the audio file.
@@ -48,6 +49,20 @@ public abstract class AudioRequest implements Request {
      * @param temperature    The sampling temperature for generating the output.
      */
     public AudioRequest(byte[] file, String fileName, String model, String prompt, AudioResponseFormat responseFormat, float temperature) {
+        this(file == null ? null : FileSource.ofBytes(file), fileName, model, prompt, responseFormat, temperature);
+    }
+
+    /**
+     * Constructs an AudioRequest object whose audio is read from a file source when the request is sent.
+     *
+     * @param file           The source of the audio file to transcribe.
+     * @param fileName       The name of the audio file.
+     * @param model          The ID of the model to use.
+     * @param prompt         An optional text to guide the model's style or continue a previous audio segment.
+     * @param responseFormat The format of the transcript output.
+     * @param temperature    The sampling temperature for generating the output.
+     */
+    public AudioRequest(FileSource file, String fileName, String model, String prompt, AudioResponseFormat responseFormat, float temperature) {
         this.file = file;
         this.fileName = fileName;
         this.model = model;
@@ -57,11 +72,21 @@ public abstract class AudioRequest implements Request {
     }
 
     /**
-     * Returns the audio file object.
+     * Returns the audio file object, reading the file if the request was built from one.
+     * Use {@link #getFileSource()} to send the audio without reading it into memory.
      *
      * @return The audio file object.
      */
     public byte[] getFile() {
+        return file == null ? null : file.toBytes();
+    }
+
+    /**
+     * Returns the source of the audio file.
+     *
+     * @return The source of the audio file.
+     */
+    public FileSource getFileSource() {
         return file;
     }
 
@@ -35,7 +35,7 @@ public class AudioRequestSerializer {
         }
 
         // Add the audio file as binary body
-        form.addBinaryBody("file", audioRequest.getFile(), "application/binary", audioRequest.getFileName());
+        audioRequest.getFileSource().addTo(form, "file", "application/binary", audioRequest.getFileName());
 
         return form;
     }
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.audio;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.util.Objects;
 import java.util.Optional;
@@ -82,7 +82,7 @@ public class AudioResponse {
             switch (this.responseFormat) {
                 case JSON:
                 case VERBOSE_JSON:
-                    JsonParser jsonParser = JsonParserBuilder.builder().build();
+                    JsonParser jsonParser = JsonParsers.parser();
                     this.objectNode = jsonParser.parse(this.body).getObjectNode();
                     break;
                 default:
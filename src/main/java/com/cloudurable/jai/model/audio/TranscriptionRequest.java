@@ -1,9 +1,10 @@
 package com.cloudurable.jai.model.audio;
 
 
+import com.cloudurable.jai.audio.SpeechResampler;
+import com.cloudurable.jai.model.FileSource;
+
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 
 /**
  * Represents a transcription request for audio processing.
@@ -32,6 +33,22 @@ public class TranscriptionRequest extends AudioRequest {
         this.language = language;
     }
 
+    /**
+     * Constructs a new TranscriptionRequest object whose audio is read from a file source.
+     *
+     * @param file           The source of the audio file.
+     * @param fileName       The file name of the audio file.
+     * @param model          The model to use for transcription.
+     * @param prompt         The prompt for the transcription.
+     * @param responseFormat The format of the response.
+     * @param temperature    The temperature for the transcription.
+     * @param language       The language for the transcription.
+     */
+    public TranscriptionRequest(FileSource file, String fileName, String model, String prompt, AudioResponseFormat responseFormat, float temperature, String language) {
+        super(file, fileName, model, prompt, responseFormat, temperature);
+        this.language = language;
+    }
+
     /**
      * Builder
      *
@@ -54,13 +71,14 @@ public class TranscriptionRequest extends AudioRequest {
      * Builder class for constructing TranscriptionRequest objects.
      */
     public static class Builder {
-        private byte[] file;
+        private FileSource file;
         private String fileName = "foo.m4a";
         private String model;
         private String prompt;
         private AudioResponseFormat responseFormat;
         private float temperature;
         private String language;
+        private boolean downsample;
 
         private Builder() {
         }
@@ -72,6 +90,17 @@ public class TranscriptionRequest extends AudioRequest {
          * @return The Builder instance.
          */
         public Builder file(byte[] file) {
+            this.file = file == null ? null : FileSource.ofBytes(file);
+            return this;
+        }
+
+        /**
+         * Sets the source of the audio file for the transcription.
+         *
+         * @param file The source of the audio file.
+         * @return The Builder instance.
+         */
+        public Builder file(FileSource file) {
             this.file = file;
             return this;
         }
@@ -88,18 +117,14 @@ public class TranscriptionRequest extends AudioRequest {
         }
 
         /**
-         * Creates binary and fileName from this File.
+         * Sets the audio file and fileName from this File. The file is read when the request is sent.
          *
          * @param file file
          * @return this
          */
         public Builder file(File file) {
-            try {
-                this.file = Files.readAllBytes(file.toPath());
-                this.fileName = file.toString();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.file = FileSource.ofPath(file.toPath());
+            this.fileName = file.toString();
             return this;
         }
 
@@ -158,13 +183,28 @@ public class TranscriptionRequest extends AudioRequest {
             return this;
         }
 
+        /**
+         * Sets whether PCM WAV audio is converted to 16 kHz mono before it is uploaded, which is the rate the model
+         * transcribes at, so the upload is smaller without losing anything the model hears. Building the request reads
+         * the start of the file to find its format, and the samples are converted as the request is sent. Other audio
+         * is uploaded as it is. Defaults to false.
+         *
+         * @param downsample true to convert PCM WAV audio.
+         * @return The Builder instance.
+         */
+        public Builder downsample(boolean downsample) {
+            this.downsample = downsample;
+            return this;
+        }
+
         /**
          * Builds and returns a new TranscriptionRequest object.
          *
          * @return A new TranscriptionRequest object.
          */
         public TranscriptionRequest build() {
-            return new TranscriptionRequest(file, fileName, model, prompt, responseFormat, temperature, language);
+            final FileSource source = downsample && file != null ? SpeechResampler.toSpeechWav(file) : file;
+            return new TranscriptionRequest(source, fileName, model, prompt, responseFormat, temperature, language);
         }
     }
 }
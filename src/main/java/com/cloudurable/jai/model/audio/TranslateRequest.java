@@ -1,8 +1,9 @@
 package com.cloudurable.jai.model.audio;
 
+import com.cloudurable.jai.audio.SpeechResampler;
+import com.cloudurable.jai.model.FileSource;
+
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 
 /**
  * Represents a translate request for audio processing.
@@ -23,6 +24,20 @@ public class TranslateRequest extends AudioRequest {
         super(file, fileName, model, prompt, responseFormat, temperature);
     }
 
+    /**
+     * Constructs a new TranslateRequest object whose audio is read from a file source.
+     *
+     * @param file           The source of the audio file.
+     * @param fileName       The file name of the audio file.
+     * @param model          The model to use for translation.
+     * @param prompt         The prompt for the translation.
+     * @param responseFormat The format of the response.
+     * @param temperature    The temperature for the translation.
+     */
+    public TranslateRequest(FileSource file, String fileName, String model, String prompt, AudioResponseFormat responseFormat, float temperature) {
+        super(file, fileName, model, prompt, responseFormat, temperature);
+    }
+
     /**
      * Builder
      *
@@ -37,12 +52,13 @@ public class TranslateRequest extends AudioRequest {
      */
     public static class Builder {
 
-        private byte[] file;
+        private FileSource file;
         private String fileName = "foo.m4a";
         private String model = "whisper-1";
         private String prompt;
         private AudioResponseFormat responseFormat;
         private float temperature;
+        private boolean downsample;
 
         private Builder() {
         }
@@ -54,6 +70,17 @@ public class TranslateRequest extends AudioRequest {
          * @return The Builder instance.
          */
         public Builder file(byte[] file) {
+            this.file = file == null ? null : FileSource.ofBytes(file);
+            return this;
+        }
+
+        /**
+         * Sets the source of the audio file for the translation.
+         *
+         * @param file The source of the audio file.
+         * @return The Builder instance.
+         */
+        public Builder file(FileSource file) {
             this.file = file;
             return this;
         }
@@ -70,18 +97,14 @@ public class TranslateRequest extends AudioRequest {
         }
 
         /**
-         * Creates binary and fileName from this File.
+         * Sets the audio file and fileName from this File. The file is read when the request is sent.
          *
          * @param file file
          * @return this
          */
         public Builder file(File file) {
-            try {
-                this.file = Files.readAllBytes(file.toPath());
-                this.fileName = file.toString();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.file = FileSource.ofPath(file.toPath());
+            this.fileName = file.toString();
             return this;
         }
 
@@ -129,13 +152,26 @@ public class TranslateRequest extends AudioRequest {
             return this;
         }
 
+        /**
+         * Sets whether PCM WAV audio is uploaded as 16 kHz mono, see {@link SpeechResampler}. Building the request
+         * reads the start of the file. Other audio is uploaded as it is. Defaults to false.
+         *
+         * @param downsample true to convert PCM WAV audio.
+         * @return The Builder instance.
+         */
+        public Builder downsample(boolean downsample) {
+            this.downsample = downsample;
+            return this;
+        }
+
         /**
          * Builds and returns a new TranslateRequest object.
          *
          * @return A new TranslateRequest object.
          */
         public TranslateRequest build() {
-            return new TranslateRequest(file, fileName, model, prompt, responseFormat, temperature);
+            final FileSource source = downsample && file != null ? SpeechResampler.toSpeechWav(file) : file;
+            return new TranslateRequest(source, fileName, model, prompt, responseFormat, temperature);
         }
     }
 }
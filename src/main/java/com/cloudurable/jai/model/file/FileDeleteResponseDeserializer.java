@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.file;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 /**
  * The FileDeleteResponseDeserializer class provides a utility method for deserializing JSON into a FileDeleteResponse object.
@@ -19,7 +19,7 @@ public class FileDeleteResponseDeserializer {
      */
     public static FileDeleteResponse deserialize(final String json) {
         final FileDeleteResponse.Builder builder = FileDeleteResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode node = jsonParser.parse(json).getObjectNode();
 
         builder.id(node.getString("id"))
@@ -0,0 +1,186 @@
+package com.cloudurable.jai.model.file;
+
+import com.cloudurable.jai.model.Request;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Represents a request to download the content of a file, such as a fine-tune result file, into a local file.
+ * The content is written to disk as it arrives, so it is never held in memory.
+ * <p>
+ * A download can resume: the bytes already in the target file are kept and only the rest of the content is requested
+ * with an HTTP Range header. A large file can instead be fetched as several range requests at once, each filling its
+ * own region of the target file. A parallel download that fails leaves gaps in the file, so it cannot be resumed.
+ */
+public class FileDownloadRequest implements Request {
+    private final String fileId;
+    private final Path target;
+    private final boolean resume;
+    private final int segments;
+
+    /**
+     * Constructs a new FileDownloadRequest.
+     *
+     * @param fileId   the ID of the file to download
+     * @param target   the local file the content is written to
+     * @param resume   whether to keep the bytes already in the target file and download only the rest
+     * @param segments the most range requests to fetch the content with at once
+     */
+    private FileDownloadRequest(String fileId, Path target, boolean resume, int segments) {
+        this.fileId = fileId;
+        this.target = target;
+        this.resume = resume;
+        this.segments = segments;
+    }
+
+    /**
+     * Returns a new instance of the Builder for constructing FileDownloadRequest objects.
+     *
+     * @return a new instance of the Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the ID of the file to download.
+     *
+     * @return the file ID
+     */
+    public String getFileId() {
+        return fileId;
+    }
+
+    /**
+     * Returns the local file the content is written to.
+     *
+     * @return the target file
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns whether the bytes already in the target file are kept and only the rest of the content is downloaded.
+     *
+     * @return true to resume a download
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Returns the most range requests the content is fetched with at once.
+     *
+     * @return the number of segments
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileDownloadRequest)) return false;
+        FileDownloadRequest that = (FileDownloadRequest) o;
+        return resume == that.resume && segments == that.segments && Objects.equals(fileId, that.fileId) && Objects.equals(target, that.target);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileId, target, resume, segments);
+    }
+
+    @Override
+    public String toString() {
+        return "FileDownloadRequest{" +
+                "fileId='" + fileId + '\'' +
+                ", target=" + target +
+                ", resume=" + resume +
+                ", segments=" + segments +
+                '}';
+    }
+
+    /**
+     * Builder for constructing FileDownloadRequest instances.
+     */
+    public static class Builder {
+
+        private String fileId;
+        private Path target;
+        private boolean resume;
+        private int segments = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the ID of the file to download.
+         *
+         * @param fileId the file ID
+         * @return the builder instance
+         */
+        public Builder fileId(String fileId) {
+            this.fileId = fileId;
+            return this;
+        }
+
+        /**
+         * Sets the local file the content is written to. It is created if it does not exist.
+         *
+         * @param target the target file
+         * @return the builder instance
+         */
+        public Builder target(Path target) {
+            this.target = target;
+            return this;
+        }
+
+        /**
+         * Sets whether to keep the bytes already in the target file and download only the rest, for example after a
+         * download was interrupted. If the server ignores the Range header the whole content is downloaded again.
+         * Defaults to false, which overwrites the target file.
+         *
+         * @param resume true to resume a download
+         * @return the builder instance
+         */
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * Sets the most range requests to fetch the content with at once. Segments are at least a mebibyte, so small
+         * files are fetched with fewer requests. The size of the file is looked up first, and the server must answer
+         * Range requests with partial content. Defaults to 1, a single sequential download.
+         *
+         * @param segments the number of segments
+         * @return the builder instance
+         */
+        public Builder segments(int segments) {
+            this.segments = segments;
+            return this;
+        }
+
+        /**
+         * Builds a new instance of FileDownloadRequest using the configured values.
+         *
+         * @return a new instance of FileDownloadRequest
+         * @throws IllegalArgumentException if the file ID or target is missing, the number of segments is not
+         *                                  positive, or a parallel download is asked to resume
+         */
+        public FileDownloadRequest build() {
+            if (fileId == null || target == null) {
+                throw new IllegalArgumentException("fileId and target are required");
+            }
+            if (segments < 1) {
+                throw new IllegalArgumentException("segments must be positive");
+            }
+            if (resume && segments > 1) {
+                throw new IllegalArgumentException("only a download of one segment can resume");
+            }
+            return new FileDownloadRequest(fileId, target, resume, segments);
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.file;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.time.Instant;
 import java.util.List;
@@ -23,7 +23,7 @@ public class FileListResponseDeserializer {
      */
     public static FileListResponse deserialize(final String json) {
         final FileListResponse.Builder builder = FileListResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode objectNode = jsonParser.parse(json).getObjectNode();
 
         builder.object(objectNode.getString("object"));
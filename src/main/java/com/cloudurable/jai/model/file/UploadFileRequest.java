@@ -1,11 +1,9 @@
 package com.cloudurable.jai.model.file;
 
+import com.cloudurable.jai.model.FileSource;
 import com.cloudurable.jai.model.Request;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -14,7 +12,7 @@ import java.util.Objects;
  */
 public class UploadFileRequest implements Request {
     private final String fileName;
-    private final byte[] fileContents;
+    private final FileSource fileSource;
     private final String purpose;
 
     /**
@@ -25,8 +23,19 @@ public class UploadFileRequest implements Request {
      * @param purpose      the intended purpose of the uploaded file
      */
     public UploadFileRequest(String fileName, byte[] fileContents, String purpose) {
+        this(fileName, fileContents == null ? null : FileSource.ofBytes(fileContents), purpose);
+    }
+
+    /**
+     * Constructs a new UploadFileRequest with the specified file name, file source, and purpose.
+     *
+     * @param fileName   the name of the file to be uploaded
+     * @param fileSource the contents of the file to be uploaded
+     * @param purpose    the intended purpose of the uploaded file
+     */
+    public UploadFileRequest(String fileName, FileSource fileSource, String purpose) {
         this.fileName = fileName;
-        this.fileContents = fileContents;
+        this.fileSource = fileSource;
         this.purpose = purpose;
     }
 
@@ -49,12 +58,22 @@ public class UploadFileRequest implements Request {
     }
 
     /**
-     * Returns the contents of the file.
+     * Returns the contents of the file, reading the file if the request was built from one.
+     * Use {@link #getFileSource()} to send the contents without reading them into memory.
      *
      * @return the contents of the file
      */
     public byte[] getFileContents() {
-        return fileContents;
+        return fileSource == null ? null : fileSource.toBytes();
+    }
+
+    /**
+     * Returns the source of the contents of the file.
+     *
+     * @return the source of the file contents
+     */
+    public FileSource getFileSource() {
+        return fileSource;
     }
 
     /**
@@ -71,21 +90,19 @@ public class UploadFileRequest implements Request {
         if (this == o) return true;
         if (!(o instanceof UploadFileRequest)) return false;
         UploadFileRequest that = (UploadFileRequest) o;
-        return Objects.equals(fileName, that.fileName) && Arrays.equals(fileContents, that.fileContents) && Objects.equals(purpose, that.purpose);
+        return Objects.equals(fileName, that.fileName) && Objects.equals(fileSource, that.fileSource) && Objects.equals(purpose, that.purpose);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(fileName, purpose);
-        result = 31 * result + Arrays.hashCode(fileContents);
-        return result;
+        return Objects.hash(fileName, fileSource, purpose);
     }
 
     @Override
     public String toString() {
         return "UploadFileRequest{" +
                 "fileName='" + fileName + '\'' +
-                ", fileContents=" + Arrays.toString(fileContents) +
+                ", fileSource=" + fileSource +
                 ", purpose='" + purpose + '\'' +
                 '}';
     }
@@ -97,7 +114,7 @@ public class UploadFileRequest implements Request {
 
         private Builder(){}
         private String fileName;
-        private byte[] fileContents;
+        private FileSource fileSource;
         private String purpose;
 
         /**
@@ -118,23 +135,30 @@ public class UploadFileRequest implements Request {
          * @return the builder instance
          */
         public Builder file(byte[] fileContents) {
-            this.fileContents = fileContents;
+            this.fileSource = fileContents == null ? null : FileSource.ofBytes(fileContents);
+            return this;
+        }
+
+        /**
+         * Sets the source of the contents of the file to be uploaded.
+         *
+         * @param fileSource the source of the file contents
+         * @return the builder instance
+         */
+        public Builder file(FileSource fileSource) {
+            this.fileSource = fileSource;
             return this;
         }
 
         /**
-         * Sets the contents of the file to be uploaded from a File object.
+         * Sets the file to be uploaded from a File object. The file is read when the request is sent.
          *
          * @param file the File object representing the file to be uploaded
          * @return the builder instance
          */
         public Builder file(File file) {
-            try {
-                this.fileContents = Files.readAllBytes(file.toPath());
-                this.fileName = file.toString();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.fileSource = FileSource.ofPath(file.toPath());
+            this.fileName = file.toString();
             return this;
         }
 
@@ -155,7 +179,7 @@ public class UploadFileRequest implements Request {
          * @return a new instance of UploadFileRequest
          */
         public UploadFileRequest build() {
-            return new UploadFileRequest(fileName, fileContents, purpose);
+            return new UploadFileRequest(fileName, fileSource, purpose);
         }
     }
 }
@@ -18,7 +18,7 @@ public class UploadFileRequestSerializer {
     public static MultipartEntityBuilder buildForm(UploadFileRequest uploadFileRequest) {
         MultipartEntityBuilder form = MultipartEntityBuilder.create();
         form.addTextBody("purpose", uploadFileRequest.getPurpose());
-        form.addBinaryBody("file", uploadFileRequest.getFileContents(), "application/binary", uploadFileRequest.getFileName());
+        uploadFileRequest.getFileSource().addTo(form, "file", "application/binary", uploadFileRequest.getFileName());
 
         return form;
     }
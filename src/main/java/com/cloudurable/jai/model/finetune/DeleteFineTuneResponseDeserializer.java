@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.finetune;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 /**
  * The DeleteFineTuneResponseDeserializer class provides a utility method for deserializing JSON into a DeleteFineTuneResponse object.
@@ -19,7 +19,7 @@ public class DeleteFineTuneResponseDeserializer {
      */
     public static DeleteFineTuneResponse deserialize(final String json) {
         final DeleteFineTuneResponse.Builder builder = DeleteFineTuneResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode node = jsonParser.parse(json).getObjectNode();
 
         builder.id(node.getString("id"))
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.finetune;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.time.Instant;
 
@@ -21,7 +21,7 @@ public class FineTuneDataDeserializer {
      */
     public static FineTuneData deserialize(final String json) {
 
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode objectNode = jsonParser.parse(json).getObjectNode();
 
         return getFineTuneData(objectNode);
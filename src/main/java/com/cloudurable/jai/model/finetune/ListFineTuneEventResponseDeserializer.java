@@ -1,9 +1,9 @@
 package com.cloudurable.jai.model.finetune;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ArrayNode;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.time.Instant;
 import java.util.List;
@@ -24,7 +24,7 @@ public class ListFineTuneEventResponseDeserializer {
      */
     public static ListFineTuneEventResponse deserialize(final String json) {
         final ListFineTuneEventResponse.Builder builder = ListFineTuneEventResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode objectNode = jsonParser.parse(json).getObjectNode();
 
         builder.object(objectNode.getString("object"));
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.image;
 
+import com.cloudurable.jai.model.FileSource;
+
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Objects;
 
 /**
@@ -10,7 +10,7 @@ import java.util.Objects;
  */
 public class CreateImageVariationRequest extends ImageRequest {
 
-    private final byte[] imageBody;
+    private final FileSource imageBody;
     private final String imageFileName;
 
     /**
@@ -24,6 +24,20 @@ public class CreateImageVariationRequest extends ImageRequest {
      * @param imageFileName  the image file name
      */
     public CreateImageVariationRequest(int n, ImageSize size, ImageResponseFormat responseFormat, String user, byte[] imageBody, String imageFileName) {
+        this(n, size, responseFormat, user, imageBody == null ? null : FileSource.ofBytes(imageBody), imageFileName);
+    }
+
+    /**
+     * Constructs a CreateImageVariationRequest object whose image is read from a file source when the request is sent.
+     *
+     * @param n              the value of n
+     * @param size           the image size
+     * @param responseFormat the image response format
+     * @param user           the user
+     * @param imageBody      the source of the image body
+     * @param imageFileName  the image file name
+     */
+    public CreateImageVariationRequest(int n, ImageSize size, ImageResponseFormat responseFormat, String user, FileSource imageBody, String imageFileName) {
         super(n, size, responseFormat, user);
         this.imageBody = imageBody;
         this.imageFileName = imageFileName;
@@ -44,6 +58,15 @@ public class CreateImageVariationRequest extends ImageRequest {
      * @return the image body
      */
     public byte[] getImageBody() {
+        return imageBody == null ? null : imageBody.toBytes();
+    }
+
+    /**
+     * Returns the source of the image body of the image variation request.
+     *
+     * @return the source of the image body
+     */
+    public FileSource getImageSource() {
         return imageBody;
     }
 
@@ -104,7 +127,7 @@ public class CreateImageVariationRequest extends ImageRequest {
         private ImageResponseFormat responseFormat;
         private String user;
 
-        private byte[] imageBody;
+        private FileSource imageBody;
         private String imageFileName;
 
         private Builder() {
@@ -117,6 +140,17 @@ public class CreateImageVariationRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder imageBody(byte[] imageBody) {
+            this.imageBody = imageBody == null ? null : FileSource.ofBytes(imageBody);
+            return this;
+        }
+
+        /**
+         * Sets the source of the image body for the CreateImageVariationRequest being built.
+         *
+         * @param imageBody the source of the image body
+         * @return the Builder instance
+         */
+        public Builder imageBody(FileSource imageBody) {
             this.imageBody = imageBody;
             return this;
         }
@@ -139,12 +173,8 @@ public class CreateImageVariationRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder imageFile(final File imageFile) {
-            try {
-                this.imageBody(Files.readAllBytes(imageFile.toPath()));
-                this.imageFileName(imageFile.toString());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.imageBody(FileSource.ofPath(imageFile.toPath()));
+            this.imageFileName(imageFile.toString());
             return this;
         }
 
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.image;
 
+import com.cloudurable.jai.model.FileSource;
+
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Objects;
 
 /**
@@ -12,10 +12,10 @@ public class EditImageRequest extends ImageRequest {
 
     private final String prompt;
 
-    private final byte[] imageBody;
+    private final FileSource imageBody;
     private final String imageFileName;
 
-    private final byte[] maskBody;
+    private final FileSource maskBody;
     private final String maskImageFileName;
 
     /**
@@ -32,6 +32,24 @@ public class EditImageRequest extends ImageRequest {
      * @param maskImageFileName the mask image file name
      */
     public EditImageRequest(int n, ImageSize size, ImageResponseFormat responseFormat, String user, String prompt, byte[] imageBody, String imageFileName, byte[] maskBody, String maskImageFileName) {
+        this(n, size, responseFormat, user, prompt, imageBody == null ? null : FileSource.ofBytes(imageBody), imageFileName,
+                maskBody == null ? null : FileSource.ofBytes(maskBody), maskImageFileName);
+    }
+
+    /**
+     * Constructs an EditImageRequest object whose image and mask are read from file sources when the request is sent.
+     *
+     * @param n                 the value of n
+     * @param size              the image size
+     * @param responseFormat    the image response format
+     * @param user              the user
+     * @param prompt            the prompt
+     * @param imageBody         the source of the image body
+     * @param imageFileName     the image file name
+     * @param maskBody          the source of the mask body, or null for no mask
+     * @param maskImageFileName the mask image file name
+     */
+    public EditImageRequest(int n, ImageSize size, ImageResponseFormat responseFormat, String user, String prompt, FileSource imageBody, String imageFileName, FileSource maskBody, String maskImageFileName) {
         super(n, size, responseFormat, user);
         this.prompt = prompt;
         this.imageBody = imageBody;
@@ -64,6 +82,15 @@ public class EditImageRequest extends ImageRequest {
      * @return the image body
      */
     public byte[] getImageBody() {
+        return imageBody == null ? null : imageBody.toBytes();
+    }
+
+    /**
+     * Returns the source of the image body of the image edit request.
+     *
+     * @return the source of the image body
+     */
+    public FileSource getImageSource() {
         return imageBody;
     }
 
@@ -82,6 +109,15 @@ public class EditImageRequest extends ImageRequest {
      * @return the mask body
      */
     public byte[] getMaskBody() {
+        return maskBody == null ? null : maskBody.toBytes();
+    }
+
+    /**
+     * Returns the source of the mask body of the image edit request.
+     *
+     * @return the source of the mask body
+     */
+    public FileSource getMaskSource() {
         return maskBody;
     }
 
@@ -146,10 +182,10 @@ public class EditImageRequest extends ImageRequest {
         private String user;
         private String prompt;
 
-        private byte[] imageBody;
+        private FileSource imageBody;
         private String imageFileName;
 
-        private byte[] maskBody;
+        private FileSource maskBody;
         private String maskImageFileName;
 
         private Builder() {
@@ -162,6 +198,17 @@ public class EditImageRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder imageBody(byte[] imageBody) {
+            this.imageBody = imageBody == null ? null : FileSource.ofBytes(imageBody);
+            return this;
+        }
+
+        /**
+         * Sets the source of the image body for the EditImageRequest being built.
+         *
+         * @param imageBody the source of the image body
+         * @return the Builder instance
+         */
+        public Builder imageBody(FileSource imageBody) {
             this.imageBody = imageBody;
             return this;
         }
@@ -184,12 +231,8 @@ public class EditImageRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder imageFile(final File imageFile) {
-            try {
-                this.imageBody(Files.readAllBytes(imageFile.toPath()));
-                this.imageFileName(imageFile.toString());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.imageBody(FileSource.ofPath(imageFile.toPath()));
+            this.imageFileName(imageFile.toString());
             return this;
         }
 
@@ -200,6 +243,17 @@ public class EditImageRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder maskBody(byte[] maskBody) {
+            this.maskBody = maskBody == null ? null : FileSource.ofBytes(maskBody);
+            return this;
+        }
+
+        /**
+         * Sets the source of the mask body for the EditImageRequest being built.
+         *
+         * @param maskBody the source of the mask body
+         * @return the Builder instance
+         */
+        public Builder maskBody(FileSource maskBody) {
             this.maskBody = maskBody;
             return this;
         }
@@ -222,12 +276,8 @@ public class EditImageRequest extends ImageRequest {
          * @return the Builder instance
          */
         public Builder maskFile(final File maskFile) {
-            try {
-                this.maskBody(Files.readAllBytes(maskFile.toPath()));
-                this.maskImageFileName(maskFile.toString());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.maskBody(FileSource.ofPath(maskFile.toPath()));
+            this.maskImageFileName(maskFile.toString());
             return this;
         }
 
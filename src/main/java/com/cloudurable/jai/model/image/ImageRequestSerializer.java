@@ -33,10 +33,10 @@ public class ImageRequestSerializer {
         MultipartEntityBuilder form = buildForm(imageRequest);
         form.addTextBody("prompt", imageRequest.getPrompt());
 
-        form.addBinaryBody("image", imageRequest.getImageBody(), "application/binary", imageRequest.getImageFileName());
+        imageRequest.getImageSource().addTo(form, "image", "application/binary", imageRequest.getImageFileName());
 
-        if (imageRequest.getMaskBody() != null) {
-            form.addBinaryBody("mask", imageRequest.getMaskBody(), "application/binary", imageRequest.getMaskImageFileName());
+        if (imageRequest.getMaskSource() != null) {
+            imageRequest.getMaskSource().addTo(form, "mask", "application/binary", imageRequest.getMaskImageFileName());
         }
         return form;
     }
@@ -50,7 +50,7 @@ public class ImageRequestSerializer {
     public static MultipartEntityBuilder buildVariationForm(CreateImageVariationRequest imageRequest) {
         MultipartEntityBuilder form = buildForm(imageRequest);
 
-        form.addBinaryBody("image", imageRequest.getImageBody(), "application/binary", imageRequest.getImageFileName());
+        imageRequest.getImageSource().addTo(form, "image", "application/binary", imageRequest.getImageFileName());
         return form;
     }
 
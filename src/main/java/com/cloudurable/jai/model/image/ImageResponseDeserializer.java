@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.image;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.net.URI;
 import java.time.Instant;
@@ -23,7 +23,7 @@ public class ImageResponseDeserializer {
      */
     public static ImageResponse deserialize(final String json) {
         final ImageResponse.Builder builder = ImageResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode objectNode = jsonParser.parse(json).getObjectNode();
         builder.created(Instant.ofEpochSecond(objectNode.getInt("created")));
         final List<ImageResponseData> imageResponseData = objectNode.getArrayNode("data")
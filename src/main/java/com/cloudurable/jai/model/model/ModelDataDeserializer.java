@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.model;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 /**
  * The ModelDataDeserializer class provides a utility method for deserializing JSON into a ModelData object.
@@ -19,7 +19,7 @@ public class ModelDataDeserializer {
      */
     public static ModelData deserialize(final String json) {
         final ModelData.Builder builder = ModelData.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode node = jsonParser.parse(json).getObjectNode();
 
         builder.object(node.getString("object"));
@@ -1,8 +1,8 @@
 package com.cloudurable.jai.model.model;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.util.List;
 
@@ -22,7 +22,7 @@ public class ModelListResponseDeserializer {
      */
     public static ModelListResponse deserialize(final String json) {
         final ModelListResponse.Builder builder = ModelListResponse.builder();
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
+        final JsonParser jsonParser = JsonParsers.parser();
         final ObjectNode objectNode = jsonParser.parse(json).getObjectNode();
 
         builder.object(objectNode.getString("object"));
@@ -1,15 +1,30 @@
 package com.cloudurable.jai.model.moderation;
 
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 public class CreateModerationResponseDeserializer {
 
     public static CreateModerationResponse deserialize(String jsonBody) {
 
-        final JsonParser jsonParser = JsonParserBuilder.builder().build();
-        final ObjectNode objectNode = jsonParser.parse(jsonBody).getObjectNode();
+        final JsonParser jsonParser = JsonParsers.parser();
+        return deserialize(jsonParser.parse(jsonBody).getObjectNode());
+    }
+
+    /**
+     * Deserializes a JSON body that was read straight into a char array, without an intermediate String.
+     *
+     * @param jsonBody The JSON representation of the CreateModerationResponse.
+     * @return The deserialized CreateModerationResponse object.
+     */
+    public static CreateModerationResponse deserialize(char[] jsonBody) {
+
+        final JsonParser jsonParser = JsonParsers.parser();
+        return deserialize(jsonParser.parse(jsonBody).getObjectNode());
+    }
+
+    private static CreateModerationResponse deserialize(ObjectNode objectNode) {
         final CreateModerationResponse.Builder builder = CreateModerationResponse.builder();
 
         builder.id(objectNode.getString("id"));
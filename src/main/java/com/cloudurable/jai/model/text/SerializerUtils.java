@@ -30,9 +30,8 @@ public class SerializerUtils {
      * @param jsonBodyBuilder The JSON body builder.
      */
     public static void outputTextParams(TextRequest chatRequest, JsonSerializer jsonBodyBuilder) {
-        final float temperature = chatRequest.getTemperature();
-        if (temperature != 0) {
-            jsonBodyBuilder.addAttribute("temperature", temperature);
+        if (chatRequest.isTemperatureSet()) {
+            jsonBodyBuilder.addAttribute("temperature", chatRequest.getTemperature());
         }
         final float topP = chatRequest.getTopP();
         if (topP != 0) {
@@ -34,6 +34,11 @@ public abstract class TextRequest implements Request {
      */
     protected final float temperature;
 
+    /**
+     * Whether the temperature was set, so it is sent even when it is zero.
+     */
+    protected final boolean temperatureSet;
+
     /**
      * The cumulative probability for choosing a token during text generation.
      */
@@ -53,8 +58,22 @@ public abstract class TextRequest implements Request {
      * @param completionCount The number of completions to generate for each prompt.
      */
     public TextRequest(String model, float temperature, float topP, int completionCount) {
+        this(model, temperature, temperature != 0, topP, completionCount);
+    }
+
+    /**
+     * Constructs a TextRequest object whose temperature may be set to zero.
+     *
+     * @param model           The model used for the text request.
+     * @param temperature     The temperature value for the text request.
+     * @param temperatureSet  Whether the temperature was set; an unset temperature is left to the API's default.
+     * @param topP            The top-p value for the text request.
+     * @param completionCount The number of completions to generate for each prompt.
+     */
+    protected TextRequest(String model, float temperature, boolean temperatureSet, float topP, int completionCount) {
         this.model = model;
         this.temperature = temperature;
+        this.temperatureSet = temperatureSet;
         this.topP = topP;
         this.completionCount = completionCount;
     }
@@ -95,6 +114,16 @@ public abstract class TextRequest implements Request {
         return temperature;
     }
 
+    /**
+     * Returns whether the temperature was set. A request without one is sampled at the API's default temperature,
+     * not at zero.
+     *
+     * @return True if the temperature is sent with the request.
+     */
+    public boolean isTemperatureSet() {
+        return temperatureSet;
+    }
+
     /**
      * Returns the top-p value for the text request.
      *
@@ -110,6 +139,7 @@ public abstract class TextRequest implements Request {
         if (!(o instanceof TextRequest)) return false;
         TextRequest that = (TextRequest) o;
         return Float.compare(that.temperature, temperature) == 0 &&
+                temperatureSet == that.temperatureSet &&
                 Float.compare(that.topP, topP) == 0 &&
                 completionCount == that.completionCount &&
                 Objects.equals(model, that.model);
@@ -117,7 +147,7 @@ public abstract class TextRequest implements Request {
 
     @Override
     public int hashCode() {
-        return Objects.hash(model, temperature, topP, completionCount);
+        return Objects.hash(model, temperature, temperatureSet, topP, completionCount);
     }
 
 }
@@ -62,7 +62,27 @@ public abstract class CommonCompletionRequest extends TextRequest {
      * @param user             The user associated with the request.
      */
     public CommonCompletionRequest(String model, float temperature, float topP, int completionCount, boolean stream, List<String> stop, int maxTokens, float presencePenalty, float frequencyPenalty, Map<Integer, Float> logitBias, String user) {
-        super(model, temperature, topP, completionCount);
+        this(model, temperature, temperature != 0, topP, completionCount, stream, stop, maxTokens, presencePenalty, frequencyPenalty, logitBias, user);
+    }
+
+    /**
+     * Constructs a CommonCompletionRequest object whose temperature may be set to zero.
+     *
+     * @param model            The model for the completion request.
+     * @param temperature      The temperature for sampling.
+     * @param temperatureSet   Whether the temperature was set; an unset temperature is left to the API's default.
+     * @param topP             The top-p value for nucleus sampling.
+     * @param completionCount  The number of completions to generate.
+     * @param stream           Indicates if the request should be streamed.
+     * @param stop             The list of stop tokens.
+     * @param maxTokens        The maximum number of tokens to generate.
+     * @param presencePenalty  The presence penalty value.
+     * @param frequencyPenalty The frequency penalty value.
+     * @param logitBias        The logit bias map.
+     * @param user             The user associated with the request.
+     */
+    protected CommonCompletionRequest(String model, float temperature, boolean temperatureSet, float topP, int completionCount, boolean stream, List<String> stop, int maxTokens, float presencePenalty, float frequencyPenalty, Map<Integer, Float> logitBias, String user) {
+        super(model, temperature, temperatureSet, topP, completionCount);
         this.stream = stream;
         this.stop = stop;
         this.maxTokens = maxTokens;
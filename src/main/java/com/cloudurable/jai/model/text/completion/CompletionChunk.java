@@ -0,0 +1,173 @@
+package com.cloudurable.jai.model.text.completion;
+
+import com.cloudurable.jai.model.text.TextResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents one streamed chunk of a completion response.
+ * <p>
+ * Each choice of a chunk carries the next fragment of the generated text, and the last chunk of a choice
+ * holds its finish reason. Chunks do not carry usage statistics.
+ */
+public class CompletionChunk extends TextResponse {
+    private final List<CompletionChoice> choices;
+
+    /**
+     * Constructs a CompletionChunk object.
+     *
+     * @param id      The ID of the completion response the chunk belongs to.
+     * @param object  The object of the chunk.
+     * @param created The creation time of the chunk.
+     * @param choices The list of completion choices holding text fragments.
+     */
+    public CompletionChunk(String id, String object, Instant created, List<CompletionChoice> choices) {
+        super(id, object, created, null);
+        this.choices = choices;
+    }
+
+    /**
+     * Builder builder
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the list of completion choices. The text of each choice is a fragment.
+     *
+     * @return The list of completion choices.
+     */
+    public List<CompletionChoice> getChoices() {
+        return choices;
+    }
+
+    /**
+     * Generates a string representation of the CompletionChunk object.
+     *
+     * @return The string representation of the CompletionChunk object.
+     */
+    @Override
+    public String toString() {
+        return "CompletionChunk{" +
+                "id='" + getId() + '\'' +
+                ", object='" + getObject() + '\'' +
+                ", created=" + getCreated() +
+                ", choices=" + choices +
+                '}';
+    }
+
+    /**
+     * Checks if the CompletionChunk object is equal to another object.
+     *
+     * @param o The object to compare with.
+     * @return True if the objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompletionChunk that = (CompletionChunk) o;
+        return Objects.equals(getId(), that.getId()) && Objects.equals(getObject(), that.getObject()) &&
+                Objects.equals(getCreated(), that.getCreated()) && Objects.equals(choices, that.choices);
+    }
+
+    /**
+     * Computes the hash code of the CompletionChunk object.
+     *
+     * @return The hash code of the CompletionChunk object.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getObject(), getCreated(), choices);
+    }
+
+    /**
+     * Builder pattern for constructing CompletionChunk objects.
+     */
+    public static class Builder {
+        private String id;
+        private String object;
+        private Instant created;
+        private List<CompletionChoice> choices;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the ID of the completion response the chunk belongs to.
+         *
+         * @param id The ID of the completion response.
+         * @return The Builder instance.
+         */
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the object of the chunk.
+         *
+         * @param object The object of the chunk.
+         * @return The Builder instance.
+         */
+        public Builder object(String object) {
+            this.object = object;
+            return this;
+        }
+
+        /**
+         * Sets the creation time of the chunk.
+         *
+         * @param created The creation time of the chunk.
+         * @return The Builder instance.
+         */
+        public Builder created(Instant created) {
+            this.created = created;
+            return this;
+        }
+
+        /**
+         * Add Choice
+         *
+         * @param choice choice
+         * @return this
+         */
+        public Builder addChoice(CompletionChoice choice) {
+            this.getChoices().add(choice);
+            return this;
+        }
+
+        private List<CompletionChoice> getChoices() {
+            if (choices == null) {
+                choices = new ArrayList<>();
+            }
+            return choices;
+        }
+
+        /**
+         * Sets the list of completion choices.
+         *
+         * @param choices The list of completion choices.
+         * @return The Builder instance.
+         */
+        public Builder choices(List<CompletionChoice> choices) {
+            this.choices = choices;
+            return this;
+        }
+
+        /**
+         * Builds a CompletionChunk object.
+         *
+         * @return The constructed CompletionChunk object.
+         */
+        public CompletionChunk build() {
+            return new CompletionChunk(id, object, created, getChoices());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.cloudurable.jai.model.text.completion;
+
+import com.cloudurable.jai.model.FinishReason;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Receives the chunks of a streamed completion response, forwards each one to a listener, and assembles the text
+ * fragments into a complete {@link CompletionResponse} once the stream has ended.
+ * <p>
+ * Chunks must be passed in the order they arrive. The aggregator is not thread safe; a stream delivers its chunks
+ * one at a time, and {@link #toCompletionResponse()} is called after the last one.
+ */
+public class CompletionChunkAggregator implements Consumer<CompletionChunk> {
+
+    private final Consumer<CompletionChunk> listener;
+    private final List<ChoiceState> choices = new ArrayList<>();
+    private String id;
+    private String object;
+    private Instant created;
+
+    /**
+     * Constructs a CompletionChunkAggregator.
+     *
+     * @param listener The listener that receives each chunk as it arrives.
+     */
+    public CompletionChunkAggregator(final Consumer<CompletionChunk> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(final CompletionChunk chunk) {
+        if (id == null) {
+            id = chunk.getId();
+            object = chunk.getObject();
+            created = chunk.getCreated();
+        }
+        for (CompletionChoice choice : chunk.getChoices()) {
+            getChoiceState(choice.getIndex()).add(choice);
+        }
+        listener.accept(chunk);
+    }
+
+    /**
+     * Builds the completion response from the chunks received so far. Streamed responses do not carry usage statistics.
+     *
+     * @return The assembled completion response.
+     */
+    public CompletionResponse toCompletionResponse() {
+        final List<CompletionChoice> completionChoices = new ArrayList<>(choices.size());
+        for (int index = 0; index < choices.size(); index++) {
+            final ChoiceState state = choices.get(index);
+            if (state != null) {
+                completionChoices.add(state.toCompletionChoice(index));
+            }
+        }
+        return CompletionResponse.builder().id(id).object(object).created(created).choices(completionChoices).build();
+    }
+
+    /**
+     * Gets the text received so far in every choice, for counting the tokens the stream used.
+     *
+     * @return The text of all choices.
+     */
+    public String getStreamedText() {
+        final StringBuilder text = new StringBuilder();
+        for (ChoiceState state : choices) {
+            if (state != null) {
+                text.append(state.text);
+            }
+        }
+        return text.toString();
+    }
+
+    private ChoiceState getChoiceState(final int index) {
+        while (choices.size() <= index) {
+            choices.add(null);
+        }
+        ChoiceState state = choices.get(index);
+        if (state == null) {
+            state = new ChoiceState();
+            choices.set(index, state);
+        }
+        return state;
+    }
+
+    /**
+     * The text assembled so far for one choice.
+     */
+    private static final class ChoiceState {
+        private final StringBuilder text = new StringBuilder();
+        private final List<Integer> logprobs = new ArrayList<>();
+        private FinishReason finishReason = FinishReason.NULL;
+
+        void add(final CompletionChoice choice) {
+            if (choice.getText() != null) {
+                text.append(choice.getText());
+            }
+            if (choice.getLogprobs() != null) {
+                logprobs.addAll(choice.getLogprobs());
+            }
+            if (choice.getFinishReason() != null && choice.getFinishReason() != FinishReason.NULL) {
+                finishReason = choice.getFinishReason();
+            }
+        }
+
+        CompletionChoice toCompletionChoice(final int index) {
+            return CompletionChoice.builder().index(index).text(text.toString())
+                    .logprobs(logprobs).finishReason(finishReason).build();
+        }
+    }
+}
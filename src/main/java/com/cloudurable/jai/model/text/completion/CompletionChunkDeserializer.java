@@ -0,0 +1,58 @@
+package com.cloudurable.jai.model.text.completion;
+
+import com.cloudurable.jai.model.FinishReason;
+import com.cloudurable.jai.model.text.DeserializerUtils;
+import com.cloudurable.jai.util.JsonParsers;
+import io.nats.jparse.node.ArrayNode;
+import io.nats.jparse.node.Node;
+import io.nats.jparse.node.NullNode;
+import io.nats.jparse.node.ObjectNode;
+import io.nats.jparse.parser.JsonParser;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class provides deserialization functionality for the streamed chunks of a completion response.
+ * <p>
+ * A streamed completion response is a series of objects with the same shape as a completion response, except that
+ * each choice holds the next fragment of text, the finish reason is null until the last chunk of the choice, and
+ * there are no usage statistics.
+ */
+public class CompletionChunkDeserializer {
+
+    private CompletionChunkDeserializer() {
+    }
+
+    /**
+     * Deserializes the data payload of one server-sent event into a CompletionChunk object.
+     *
+     * @param jsonBody The data payload to be deserialized.
+     * @return The deserialized CompletionChunk object.
+     */
+    public static CompletionChunk deserialize(final String jsonBody) {
+        final JsonParser parser = JsonParsers.parser();
+        final ObjectNode objectNode = parser.parse(jsonBody).asObject();
+        final List<CompletionChoice> choices = objectNode.getArrayNode("choices")
+                .mapObjectNode(CompletionChunkDeserializer::deserializeChoice);
+
+        return CompletionChunk.builder().id(objectNode.getString("id"))
+                .object(objectNode.getString("object"))
+                .created(Instant.ofEpochSecond(objectNode.getInt("created")))
+                .choices(choices).build();
+    }
+
+    private static CompletionChoice deserializeChoice(final ObjectNode choiceNode) {
+        final Node finishReason = choiceNode.getNode("finish_reason");
+        final Node logprobs = choiceNode.getNode("logprobs");
+        return CompletionChoice.builder()
+                .index(choiceNode.getInt("index"))
+                .finishReason(finishReason == null || finishReason instanceof NullNode ? FinishReason.NULL :
+                        DeserializerUtils.deserializeFinishReason(choiceNode.getString("finish_reason")))
+                .text(choiceNode.getString("text"))
+                .logprobs(logprobs instanceof ArrayNode ?
+                        ((ArrayNode) logprobs).map(node -> node.asScalar().intValue()) : Collections.emptyList())
+                .build();
+    }
+}
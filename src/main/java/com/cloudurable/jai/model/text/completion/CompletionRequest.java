@@ -64,7 +64,17 @@ public class CompletionRequest extends CommonCompletionRequest {
                              float presencePenalty, float frequencyPenalty,
                              Map<Integer, Float> logitBias, String user,
                              Integer logprobs, boolean echo) {
-        super(model, temperature, topP, completionCount, stream, stop, maxTokens,
+        this(model, prompt, suffix, bestOf, temperature, temperature != 0, topP, completionCount, stream, stop,
+                maxTokens, presencePenalty, frequencyPenalty, logitBias, user, logprobs, echo);
+    }
+
+    private CompletionRequest(String model, String prompt, String suffix, int bestOf,
+                              float temperature, boolean temperatureSet, float topP, int completionCount,
+                              boolean stream, List<String> stop, int maxTokens,
+                              float presencePenalty, float frequencyPenalty,
+                              Map<Integer, Float> logitBias, String user,
+                              Integer logprobs, boolean echo) {
+        super(model, temperature, temperatureSet, topP, completionCount, stream, stop, maxTokens,
                 presencePenalty, frequencyPenalty, logitBias, user);
         this.prompt = prompt;
         this.suffix = suffix;
@@ -127,6 +137,18 @@ public class CompletionRequest extends CommonCompletionRequest {
         return echo;
     }
 
+    /**
+     * Returns a copy of this completion request for another model.
+     *
+     * @param model The model for the copy.
+     * @return The copy.
+     */
+    public CompletionRequest withModel(String model) {
+        return new CompletionRequest(model, prompt, suffix, bestOf, getTemperature(), isTemperatureSet(), getTopP(), getCompletionCount(),
+                isStream(), getStop(), getMaxTokens(), getPresencePenalty(), getFrequencyPenalty(), getLogitBias(),
+                getUser(), logprobs, echo);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -151,6 +173,7 @@ public class CompletionRequest extends CommonCompletionRequest {
         private String prompt;
         private String suffix;
         private float temperature;
+        private boolean temperatureSet;
         private float topP;
         private int completionCount;
         private boolean stream;
@@ -208,6 +231,7 @@ public class CompletionRequest extends CommonCompletionRequest {
          */
         public Builder temperature(float temperature) {
             this.temperature = temperature;
+            this.temperatureSet = true;
             return this;
         }
 
@@ -349,7 +373,7 @@ public class CompletionRequest extends CommonCompletionRequest {
          * @return The constructed CompletionRequest object.
          */
         public CompletionRequest build() {
-            return new CompletionRequest(model, prompt, suffix, bestOf, temperature, topP, completionCount,
+            return new CompletionRequest(model, prompt, suffix, bestOf, temperature, temperatureSet, topP, completionCount,
                     stream, stop, maxTokens, presencePenalty, frequencyPenalty, logitBias, user,
                     logprobs, echo);
         }
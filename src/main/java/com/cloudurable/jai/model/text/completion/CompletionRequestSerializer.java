@@ -28,6 +28,17 @@ public class CompletionRequestSerializer {
      * @return JSON
      */
     public static String serialize(CompletionRequest request) {
+        return serialize(request, request.isStream());
+    }
+
+    /**
+     * Serialize request into JSON, overriding the stream flag of the request.
+     *
+     * @param request Completion Request
+     * @param stream  true to ask for the response to be streamed as server-sent events
+     * @return JSON
+     */
+    public static String serialize(CompletionRequest request, boolean stream) {
 
         final JsonSerializer jsonBodyBuilder = new JsonSerializer();
         // start JSON request body for an open ai API chat request
@@ -39,7 +50,7 @@ public class CompletionRequestSerializer {
         jsonBodyBuilder.addAttribute("suffix", request.getSuffix());
         jsonBodyBuilder.addAttribute("echo", request.isEcho());
         jsonBodyBuilder.addAttribute("logprobs", request.getLogprobs());
-        jsonBodyBuilder.addAttribute("stream", request.isStream());
+        jsonBodyBuilder.addAttribute("stream", stream);
         jsonBodyBuilder.addAttribute("best_of", request.getBestOf());
 
         SerializerUtils.outputTextParams(request, jsonBodyBuilder);
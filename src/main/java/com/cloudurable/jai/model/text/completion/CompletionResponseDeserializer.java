@@ -2,10 +2,10 @@ package com.cloudurable.jai.model.text.completion;
 
 import com.cloudurable.jai.model.Usage;
 import com.cloudurable.jai.model.text.DeserializerUtils;
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ArrayNode;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -29,7 +29,7 @@ public class CompletionResponseDeserializer {
      * @return The deserialized CompletionResponse object.
      */
     public static CompletionResponse deserialize(final String jsonBody) {
-        final JsonParser parser = JsonParserBuilder.builder().build();
+        final JsonParser parser = JsonParsers.parser();
         final ObjectNode objectNode = parser.parse(jsonBody).asObject();
         final String id = objectNode.getString("id");
         final String object = objectNode.getString("object");
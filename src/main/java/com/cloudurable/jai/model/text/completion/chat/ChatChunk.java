@@ -0,0 +1,174 @@
+package com.cloudurable.jai.model.text.completion.chat;
+
+import com.cloudurable.jai.model.text.TextResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents one streamed chunk of a chat response (a {@code chat.completion.chunk} object).
+ * <p>
+ * Each choice of a chunk carries a delta message: the first chunk of a choice holds its role, later chunks
+ * hold the next fragment of content or function call arguments, and the last chunk holds the finish reason.
+ * Chunks do not carry usage statistics.
+ */
+public class ChatChunk extends TextResponse {
+    private final List<ChatChoice> choices;
+
+    /**
+     * Constructs a ChatChunk object.
+     *
+     * @param id      The ID of the chat response the chunk belongs to.
+     * @param object  The object of the chunk.
+     * @param created The creation time of the chunk.
+     * @param choices The list of chat choices holding delta messages.
+     */
+    public ChatChunk(String id, String object, Instant created, List<ChatChoice> choices) {
+        super(id, object, created, null);
+        this.choices = choices;
+    }
+
+    /**
+     * Builder builder
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the list of chat choices. The message of each choice is a delta.
+     *
+     * @return The list of chat choices.
+     */
+    public List<ChatChoice> getChoices() {
+        return choices;
+    }
+
+    /**
+     * Generates a string representation of the ChatChunk object.
+     *
+     * @return The string representation of the ChatChunk object.
+     */
+    @Override
+    public String toString() {
+        return "ChatChunk{" +
+                "id='" + getId() + '\'' +
+                ", object='" + getObject() + '\'' +
+                ", created=" + getCreated() +
+                ", choices=" + choices +
+                '}';
+    }
+
+    /**
+     * Checks if the ChatChunk object is equal to another object.
+     *
+     * @param o The object to compare with.
+     * @return True if the objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChatChunk that = (ChatChunk) o;
+        return Objects.equals(getId(), that.getId()) && Objects.equals(getObject(), that.getObject()) &&
+                Objects.equals(getCreated(), that.getCreated()) && Objects.equals(choices, that.choices);
+    }
+
+    /**
+     * Computes the hash code of the ChatChunk object.
+     *
+     * @return The hash code of the ChatChunk object.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getObject(), getCreated(), choices);
+    }
+
+    /**
+     * Builder pattern for constructing ChatChunk objects.
+     */
+    public static class Builder {
+        private String id;
+        private String object;
+        private Instant created;
+        private List<ChatChoice> choices;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the ID of the chat response the chunk belongs to.
+         *
+         * @param id The ID of the chat response.
+         * @return The Builder instance.
+         */
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the object of the chunk.
+         *
+         * @param object The object of the chunk.
+         * @return The Builder instance.
+         */
+        public Builder object(String object) {
+            this.object = object;
+            return this;
+        }
+
+        /**
+         * Sets the creation time of the chunk.
+         *
+         * @param created The creation time of the chunk.
+         * @return The Builder instance.
+         */
+        public Builder created(Instant created) {
+            this.created = created;
+            return this;
+        }
+
+        /**
+         * Add Choice
+         *
+         * @param choice choice
+         * @return this
+         */
+        public Builder addChoice(ChatChoice choice) {
+            this.getChoices().add(choice);
+            return this;
+        }
+
+        private List<ChatChoice> getChoices() {
+            if (choices == null) {
+                choices = new ArrayList<>();
+            }
+            return choices;
+        }
+
+        /**
+         * Sets the list of chat choices.
+         *
+         * @param choices The list of chat choices.
+         * @return The Builder instance.
+         */
+        public Builder choices(List<ChatChoice> choices) {
+            this.choices = choices;
+            return this;
+        }
+
+        /**
+         * Builds a ChatChunk object.
+         *
+         * @return The constructed ChatChunk object.
+         */
+        public ChatChunk build() {
+            return new ChatChunk(id, object, created, getChoices());
+        }
+    }
+}
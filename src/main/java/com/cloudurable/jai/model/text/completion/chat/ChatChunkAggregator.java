@@ -0,0 +1,151 @@
+package com.cloudurable.jai.model.text.completion.chat;
+
+import com.cloudurable.jai.model.FinishReason;
+import com.cloudurable.jai.model.text.completion.chat.function.FunctionalCall;
+
+import com.cloudurable.jai.util.JsonParsers;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Receives the chunks of a streamed chat response, forwards each one to a listener, and assembles the deltas
+ * into a complete {@link ChatResponse} once the stream has ended.
+ * <p>
+ * Chunks must be passed in the order they arrive. The aggregator is not thread safe; a stream delivers its chunks
+ * one at a time, and {@link #toChatResponse()} is called after the last one.
+ */
+public class ChatChunkAggregator implements Consumer<ChatChunk> {
+
+    private final Consumer<ChatChunk> listener;
+    private final List<ChoiceState> choices = new ArrayList<>();
+    private String id;
+    private Instant created;
+
+    /**
+     * Constructs a ChatChunkAggregator.
+     *
+     * @param listener The listener that receives each chunk as it arrives.
+     */
+    public ChatChunkAggregator(final Consumer<ChatChunk> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(final ChatChunk chunk) {
+        if (id == null) {
+            id = chunk.getId();
+            created = chunk.getCreated();
+        }
+        for (ChatChoice choice : chunk.getChoices()) {
+            getChoiceState(choice.getIndex()).add(choice);
+        }
+        listener.accept(chunk);
+    }
+
+    /**
+     * Builds the chat response from the chunks received so far. Streamed responses do not carry usage statistics.
+     *
+     * @return The assembled chat response.
+     */
+    public ChatResponse toChatResponse() {
+        final ChatResponse.Builder builder = ChatResponse.builder().id(id).object("chat.completion").created(created);
+        for (int index = 0; index < choices.size(); index++) {
+            final ChoiceState state = choices.get(index);
+            if (state != null) {
+                builder.addChoice(state.toChatChoice(index));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the text received so far in every choice, the content and any function call, for counting the tokens the
+     * stream used.
+     *
+     * @return The text of all choices.
+     */
+    public String getStreamedText() {
+        final StringBuilder text = new StringBuilder();
+        for (ChoiceState state : choices) {
+            if (state != null) {
+                text.append(state.content);
+                if (state.functionName != null) {
+                    text.append(state.functionName);
+                }
+                if (state.functionArguments != null) {
+                    text.append(state.functionArguments);
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private ChoiceState getChoiceState(final int index) {
+        while (choices.size() <= index) {
+            choices.add(null);
+        }
+        ChoiceState state = choices.get(index);
+        if (state == null) {
+            state = new ChoiceState();
+            choices.set(index, state);
+        }
+        return state;
+    }
+
+    /**
+     * The message assembled so far for one choice.
+     */
+    private static final class ChoiceState {
+        private final StringBuilder content = new StringBuilder();
+        private Role role;
+        private String name;
+        private String functionName;
+        private StringBuilder functionArguments;
+        private FinishReason finishReason = FinishReason.NULL;
+        private boolean hasContent;
+
+        void add(final ChatChoice choice) {
+            final Message delta = choice.getMessage();
+            if (delta.getRole() != null) {
+                role = delta.getRole();
+            }
+            if (delta.getName() != null) {
+                name = delta.getName();
+            }
+            if (delta.getContent() != null) {
+                content.append(delta.getContent());
+                hasContent = true;
+            }
+            final FunctionalCall functionCall = delta.getFunctionCall();
+            if (functionCall != null) {
+                if (functionCall.getName() != null) {
+                    functionName = functionCall.getName();
+                }
+                if (functionArguments == null) {
+                    functionArguments = new StringBuilder();
+                }
+                if (functionCall instanceof FunctionCallDelta && ((FunctionCallDelta) functionCall).getArgumentsFragment() != null) {
+                    functionArguments.append(((FunctionCallDelta) functionCall).getArgumentsFragment());
+                }
+            }
+            if (choice.getFinishReason() != null && choice.getFinishReason() != FinishReason.NULL) {
+                finishReason = choice.getFinishReason();
+            }
+        }
+
+        ChatChoice toChatChoice(final int index) {
+            final Message.Builder message = Message.builder().role(role).name(name)
+                    .content(hasContent ? content.toString() : null);
+            if (functionName != null) {
+                final FunctionalCall.Builder functionCall = FunctionalCall.builder().name(functionName);
+                if (functionArguments.length() > 0) {
+                    functionCall.arguments(JsonParsers.parser().parse(functionArguments.toString()).getObjectNode());
+                }
+                message.functionCall(functionCall.build());
+            }
+            return ChatChoice.builder().index(index).message(message.build()).finishReason(finishReason).build();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cloudurable.jai.model.text.completion.chat;
+
+import com.cloudurable.jai.model.FinishReason;
+import com.cloudurable.jai.model.text.DeserializerUtils;
+import com.cloudurable.jai.util.JsonParsers;
+import io.nats.jparse.node.Node;
+import io.nats.jparse.node.NullNode;
+import io.nats.jparse.node.ObjectNode;
+import io.nats.jparse.parser.JsonParser;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This class provides deserialization functionality for the streamed chunks of a chat response.
+ * <p>
+ * A streamed chat response is a series of {@code chat.completion.chunk} objects. They have the same shape as a chat
+ * response except that each choice holds a {@code delta} message instead of a full {@code message}, any field of the
+ * delta may be missing or null, and the finish reason is null until the last chunk of the choice.
+ * <p>
+ * Function call arguments arrive as fragments of a JSON string, so they are not parsed here. Each fragment is kept in a
+ * {@link FunctionCallDelta}, and {@link ChatChunkAggregator} parses the arguments once the whole string has arrived.
+ */
+public class ChatChunkDeserializer {
+
+    private ChatChunkDeserializer() {
+    }
+
+    /**
+     * Deserializes the data payload of one server-sent event into a ChatChunk object.
+     *
+     * @param jsonBody The data payload to be deserialized.
+     * @return The deserialized ChatChunk object.
+     */
+    public static ChatChunk deserialize(final String jsonBody) {
+        final JsonParser parser = JsonParsers.parser();
+        final ObjectNode objectNode = parser.parse(jsonBody).asObject();
+        final List<ChatChoice> choices = objectNode.getArrayNode("choices")
+                .mapObjectNode(ChatChunkDeserializer::deserializeChoice);
+
+        return ChatChunk.builder().id(objectNode.getString("id"))
+                .object(objectNode.getString("object"))
+                .created(Instant.ofEpochSecond(objectNode.getInt("created")))
+                .choices(choices).build();
+    }
+
+    private static ChatChoice deserializeChoice(final ObjectNode choiceNode) {
+        final String finishReason = getString(choiceNode, "finish_reason");
+        return ChatChoice.builder()
+                .index(choiceNode.getInt("index"))
+                .finishReason(finishReason == null ? FinishReason.NULL : DeserializerUtils.deserializeFinishReason(finishReason))
+                .message(deserializeDelta(getObject(choiceNode, "delta")))
+                .build();
+    }
+
+    private static Message deserializeDelta(final ObjectNode delta) {
+        final Message.Builder builder = Message.builder();
+        if (delta == null) {
+            return builder.build();
+        }
+        final String role = getString(delta, "role");
+        if (role != null) {
+            builder.role(ChatResponseDeserializer.deserializeRole(role));
+        }
+        builder.content(getString(delta, "content"));
+        builder.name(getString(delta, "name"));
+
+        final ObjectNode functionCall = getObject(delta, "function_call");
+        if (functionCall != null) {
+            builder.functionCall(new FunctionCallDelta(getString(functionCall, "name"), getString(functionCall, "arguments")));
+        }
+        return builder.build();
+    }
+
+    private static String getString(final ObjectNode objectNode, final String key) {
+        final Node node = objectNode.getNode(key);
+        return node == null || node instanceof NullNode ? null : objectNode.getString(key);
+    }
+
+    private static ObjectNode getObject(final ObjectNode objectNode, final String key) {
+        final Node node = objectNode.getNode(key);
+        return node == null || node instanceof NullNode ? null : objectNode.getObjectNode(key);
+    }
+}
@@ -85,7 +85,16 @@ public class ChatRequest extends CommonCompletionRequest {
                        boolean stream, List<String> stop, int maxTokens,
                        float presencePenalty, float frequencyPenalty,
                        Map<Integer, Float> logitBias, String user, int completionCount) {
-        super(model, temperature, topP, completionCount, stream, stop, maxTokens, presencePenalty, frequencyPenalty, logitBias, user);
+        this(model, messages, functions, functionalCall, temperature, temperature != 0, topP, stream, stop, maxTokens,
+                presencePenalty, frequencyPenalty, logitBias, user, completionCount);
+    }
+
+    private ChatRequest(String model, List<Message> messages, List<FunctionDef> functions,
+                        FunctionalCall functionalCall, float temperature, boolean temperatureSet, float topP,
+                        boolean stream, List<String> stop, int maxTokens,
+                        float presencePenalty, float frequencyPenalty,
+                        Map<Integer, Float> logitBias, String user, int completionCount) {
+        super(model, temperature, temperatureSet, topP, completionCount, stream, stop, maxTokens, presencePenalty, frequencyPenalty, logitBias, user);
         this.messages = messages;
         this.functions = functions;
         this.functionalCall = functionalCall;
@@ -127,6 +136,18 @@ public class ChatRequest extends CommonCompletionRequest {
         return functionalCall;
     }
 
+    /**
+     * Returns a copy of this chat request for another model.
+     *
+     * @param model the model for the copy
+     * @return the copy
+     */
+    public ChatRequest withModel(String model) {
+        return new ChatRequest(model, messages, functions, functionalCall, getTemperature(), isTemperatureSet(), getTopP(), isStream(),
+                getStop(), getMaxTokens(), getPresencePenalty(), getFrequencyPenalty(), getLogitBias(), getUser(),
+                getCompletionCount());
+    }
+
     /**
      * Returns a string representation of the ChatRequest.
      *
@@ -163,6 +184,7 @@ public class ChatRequest extends CommonCompletionRequest {
         if (!(o instanceof ChatRequest)) return false;
         ChatRequest that = (ChatRequest) o;
         return Float.compare(that.getTemperature(), getTemperature()) == 0 &&
+                isTemperatureSet() == that.isTemperatureSet() &&
                 Float.compare(that.getTopP(), getTopP()) == 0 &&
                 isStream() == that.isStream() &&
                 getMaxTokens() == that.getMaxTokens() &&
@@ -184,7 +206,7 @@ public class ChatRequest extends CommonCompletionRequest {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(getModel(), messages, functions, functionalCall, getTemperature(), getTopP(),
+        return Objects.hash(getModel(), messages, functions, functionalCall, getTemperature(), isTemperatureSet(), getTopP(),
                 isStream(), getStop(), getMaxTokens(), getPresencePenalty(), getFrequencyPenalty(), getLogitBias(), getUser());
     }
 
@@ -200,6 +222,7 @@ public class ChatRequest extends CommonCompletionRequest {
         private List<FunctionDef> functions;
         private FunctionalCall functionalCall;
         private float temperature;
+        private boolean temperatureSet;
         private float topP;
         private boolean stream;
         private List<String> stop;
@@ -371,6 +394,7 @@ public class ChatRequest extends CommonCompletionRequest {
          */
         public Builder temperature(float temperature) {
             this.temperature = temperature;
+            this.temperatureSet = true;
             return this;
         }
 
@@ -557,7 +581,7 @@ public class ChatRequest extends CommonCompletionRequest {
          * @return a new ChatRequest object
          */
         public ChatRequest build() {
-            return new ChatRequest(getModel(), getMessages(), getFunctions(), functionalCall, getTemperature(), getTopP(),
+            return new ChatRequest(getModel(), getMessages(), getFunctions(), functionalCall, getTemperature(), temperatureSet, getTopP(),
                     isStream(), getStop(), getMaxTokens(), getPresencePenalty(), getFrequencyPenalty(), getLogitBias(),
                     getUser(), getCompletionCount());
         }
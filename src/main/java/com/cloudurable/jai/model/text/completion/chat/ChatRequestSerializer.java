@@ -47,6 +47,18 @@ public class ChatRequestSerializer {
      * @return The serialized JSON string representation of the ChatRequest object.
      */
     public static String serialize(ChatRequest chatRequest) {
+        return serialize(chatRequest, chatRequest.isStream());
+    }
+
+    /**
+     * Serializes the provided ChatRequest object, overriding its stream flag.
+     * The streaming client methods use this so a request built without {@code stream(true)} can still be streamed.
+     *
+     * @param chatRequest The ChatRequest object to be serialized.
+     * @param stream      true to ask the API to stream the response as server-sent events.
+     * @return The serialized JSON string representation of the ChatRequest object.
+     */
+    public static String serialize(ChatRequest chatRequest, boolean stream) {
 
         final JsonSerializer jsonBodyBuilder = new JsonSerializer();
         // start JSON request body for an open ai API chat request
@@ -102,6 +114,9 @@ public class ChatRequestSerializer {
             jsonBodyBuilder.endArray();
         }
         SerializerUtils.outputCompletionParams(chatRequest, jsonBodyBuilder);
+        if (stream) {
+            jsonBodyBuilder.addAttribute("stream", true);
+        }
         // end JSON request body for an open ai API chat request
         jsonBodyBuilder.endObject();
 
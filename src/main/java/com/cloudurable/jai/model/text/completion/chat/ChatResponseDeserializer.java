@@ -3,12 +3,12 @@ package com.cloudurable.jai.model.text.completion.chat;
 import com.cloudurable.jai.model.Usage;
 import com.cloudurable.jai.model.text.DeserializerUtils;
 import com.cloudurable.jai.model.text.completion.chat.function.FunctionalCall;
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ArrayNode;
 import io.nats.jparse.node.Node;
 import io.nats.jparse.node.NullNode;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.time.Instant;
 import java.util.List;
@@ -61,7 +61,7 @@ public class ChatResponseDeserializer {
 
         //ystem.out.println(jsonBody);
 
-        final JsonParser parser = JsonParserBuilder.builder().build();
+        final JsonParser parser = JsonParsers.parser();
         final ObjectNode objectNode = parser.parse(jsonBody).asObject();
         final String id = objectNode.getString("id");
         final String object = objectNode.getString("object");
@@ -100,14 +100,14 @@ public class ChatResponseDeserializer {
             FunctionalCall.Builder funcBuilder = FunctionalCall.builder().name(functionCallNode.getString("name"));
 
             if (functionCallNode.getString("arguments") != null) {
-                funcBuilder.arguments(JsonParserBuilder.builder().build().parse(functionCallNode.getString("arguments")).getObjectNode());
+                funcBuilder.arguments(JsonParsers.parser().parse(functionCallNode.getString("arguments")).getObjectNode());
             }
             builder.functionCall(funcBuilder.build());
         }
         return builder.build();
     }
 
-    private static Role deserializeRole(final String role) {
+    static Role deserializeRole(final String role) {
         switch (role) {
             case "system":
                 return Role.SYSTEM;
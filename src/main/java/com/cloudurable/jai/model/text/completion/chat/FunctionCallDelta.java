@@ -0,0 +1,57 @@
+package com.cloudurable.jai.model.text.completion.chat;
+
+import com.cloudurable.jai.model.text.completion.chat.function.FunctionalCall;
+
+import java.util.Objects;
+
+/**
+ * The function call of a streamed delta message.
+ * <p>
+ * The name of the function arrives in the first chunk of a function call and the arguments arrive as fragments of a
+ * JSON string in the chunks that follow. The fragment is not valid JSON on its own, so it is held as text and
+ * {@link #getArguments()} returns null.
+ */
+public class FunctionCallDelta extends FunctionalCall {
+    private final String argumentsFragment;
+
+    /**
+     * Constructs a FunctionCallDelta.
+     *
+     * @param name              The function name, or null if this chunk does not carry it.
+     * @param argumentsFragment The next fragment of the arguments JSON string, or null.
+     */
+    public FunctionCallDelta(String name, String argumentsFragment) {
+        super(name, null);
+        this.argumentsFragment = argumentsFragment;
+    }
+
+    /**
+     * Returns the next fragment of the arguments JSON string.
+     *
+     * @return The arguments fragment, or null.
+     */
+    public String getArgumentsFragment() {
+        return argumentsFragment;
+    }
+
+    @Override
+    public String toString() {
+        return "FunctionCallDelta{" +
+                "name='" + getName() + '\'' +
+                ", argumentsFragment='" + argumentsFragment + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FunctionCallDelta)) return false;
+        FunctionCallDelta that = (FunctionCallDelta) o;
+        return Objects.equals(getName(), that.getName()) && Objects.equals(argumentsFragment, that.argumentsFragment);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getName(), argumentsFragment);
+    }
+}
@@ -30,7 +30,12 @@ public class EditRequest extends TextRequest {
      * @param instruction     The instruction that tells the model how to edit the prompt.
      */
     public EditRequest(String model, float temperature, float topP, int completionCount, String input, String instruction) {
-        super(model, temperature, topP, completionCount);
+        this(model, temperature, temperature != 0, topP, completionCount, input, instruction);
+    }
+
+    private EditRequest(String model, float temperature, boolean temperatureSet, float topP, int completionCount,
+                        String input, String instruction) {
+        super(model, temperature, temperatureSet, topP, completionCount);
         this.input = input;
         this.instruction = instruction;
     }
@@ -101,6 +106,11 @@ public class EditRequest extends TextRequest {
          */
         private float temperature;
 
+        /**
+         * Whether the temperature was set.
+         */
+        private boolean temperatureSet;
+
         /**
          * The cumulative probability for choosing a token in the output.
          */
@@ -155,6 +165,7 @@ public class EditRequest extends TextRequest {
          */
         public Builder temperature(float temperature) {
             this.temperature = temperature;
+            this.temperatureSet = true;
             return this;
         }
 
@@ -186,7 +197,7 @@ public class EditRequest extends TextRequest {
          * @return A new {@link EditRequest} instance.
          */
         public EditRequest build() {
-            return new EditRequest(model, temperature, topP, completionCount, input, instruction);
+            return new EditRequest(model, temperature, temperatureSet, topP, completionCount, input, instruction);
         }
 
     }
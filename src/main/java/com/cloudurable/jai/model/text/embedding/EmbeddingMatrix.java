@@ -0,0 +1,221 @@
+package com.cloudurable.jai.model.text.embedding;
+
+import com.cloudurable.jai.model.Response;
+import com.cloudurable.jai.model.Usage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A batch of embeddings stored as one row-major {@code float[]}.
+ * <p>
+ * Row {@code i} holds the embedding of input {@code i} of the request, and starts at {@code i * getDimensions()} in
+ * the array returned by {@link #getValues()}. Unlike {@link EmbeddingResponse}, which holds one {@link Embedding}
+ * object and one array per input, a matrix is a single allocation however many inputs the batch has.
+ */
+public class EmbeddingMatrix implements Response {
+
+    private final String object;
+    private final String model;
+    private final Usage usage;
+    private final int rowCount;
+    private final int dimensions;
+    private final float[] values;
+
+    /**
+     * Constructs an EmbeddingMatrix.
+     *
+     * @param object     The object type of the response.
+     * @param model      The model used to create the embeddings.
+     * @param usage      The usage statistics.
+     * @param rowCount   The number of embeddings.
+     * @param dimensions The number of dimensions of each embedding.
+     * @param values     The embeddings, row-major. Must hold at least {@code rowCount * dimensions} values.
+     */
+    public EmbeddingMatrix(String object, String model, Usage usage, int rowCount, int dimensions, float[] values) {
+        if (values.length < rowCount * dimensions) {
+            throw new IllegalArgumentException("values holds " + values.length + " floats, expected " + rowCount * dimensions);
+        }
+        this.object = object;
+        this.model = model;
+        this.usage = usage;
+        this.rowCount = rowCount;
+        this.dimensions = dimensions;
+        this.values = values;
+    }
+
+    /**
+     * Creates an EmbeddingMatrix from the embeddings of an EmbeddingResponse.
+     * Each embedding is copied to the row given by its index.
+     *
+     * @param response The embedding response.
+     * @return The embedding matrix.
+     */
+    public static EmbeddingMatrix of(EmbeddingResponse response) {
+        final List<Embedding> data = response.getData();
+        int rowCount = 0;
+        int dimensions = 0;
+        for (Embedding embedding : data) {
+            rowCount = Math.max(rowCount, embedding.getIndex() + 1);
+            dimensions = embedding.getEmbedding().length;
+        }
+        final float[] values = new float[rowCount * dimensions];
+        for (Embedding embedding : data) {
+            System.arraycopy(embedding.getEmbedding(), 0, values, embedding.getIndex() * dimensions, dimensions);
+        }
+        return new EmbeddingMatrix(response.getObject(), response.getModel(), response.getUsage(), rowCount, dimensions, values);
+    }
+
+    /**
+     * Gets the object type of the response.
+     *
+     * @return The object type.
+     */
+    public String getObject() {
+        return object;
+    }
+
+    /**
+     * Gets the model used to create the embeddings.
+     *
+     * @return The model.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the usage statistics.
+     *
+     * @return The usage statistics.
+     */
+    public Usage getUsage() {
+        return usage;
+    }
+
+    /**
+     * Gets the number of embeddings.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of dimensions of each embedding.
+     *
+     * @return The number of columns.
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Gets the backing array, row-major. The array is not copied, so changes to it are visible to the matrix.
+     *
+     * @return The backing array.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    /**
+     * Gets the offset of a row in the backing array.
+     *
+     * @param row The row.
+     * @return The offset of the first value of the row.
+     */
+    public int offset(int row) {
+        Objects.checkIndex(row, rowCount);
+        return row * dimensions;
+    }
+
+    /**
+     * Gets one value of the matrix.
+     *
+     * @param row    The row.
+     * @param column The column.
+     * @return The value.
+     */
+    public float get(int row, int column) {
+        Objects.checkIndex(column, dimensions);
+        return values[offset(row) + column];
+    }
+
+    /**
+     * Copies a row into a new array.
+     *
+     * @param row The row.
+     * @return A copy of the embedding.
+     */
+    public float[] getRow(int row) {
+        final int offset = offset(row);
+        return Arrays.copyOfRange(values, offset, offset + dimensions);
+    }
+
+    /**
+     * Computes the dot product of a row with a vector. For the unit-length embeddings returned by OpenAI this is the
+     * cosine similarity.
+     *
+     * @param row    The row.
+     * @param vector The vector, with {@link #getDimensions()} values.
+     * @return The dot product.
+     */
+    public float dot(int row, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("vector has " + vector.length + " dimensions, expected " + dimensions);
+        }
+        final int offset = offset(row);
+        float sum = 0;
+        for (int index = 0; index < dimensions; index++) {
+            sum += values[offset + index] * vector[index];
+        }
+        return sum;
+    }
+
+    /**
+     * Converts the matrix to a list of Embedding objects, copying each row.
+     *
+     * @return The embeddings.
+     */
+    public List<Embedding> toEmbeddings() {
+        final List<Embedding> embeddings = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            embeddings.add(Embedding.builder().index(row).embedding(getRow(row)).build());
+        }
+        return embeddings;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EmbeddingMatrix)) return false;
+        EmbeddingMatrix that = (EmbeddingMatrix) o;
+        return rowCount == that.rowCount && dimensions == that.dimensions && Objects.equals(object, that.object) &&
+                Objects.equals(model, that.model) && Objects.equals(usage, that.usage) &&
+                Arrays.equals(values, 0, rowCount * dimensions, that.values, 0, rowCount * dimensions);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(object, model, usage, rowCount, dimensions);
+        for (int index = 0; index < rowCount * dimensions; index++) {
+            result = 31 * result + Float.floatToIntBits(values[index]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingMatrix{" +
+                "object='" + object + '\'' +
+                ", model='" + model + '\'' +
+                ", usage=" + usage +
+                ", rowCount=" + rowCount +
+                ", dimensions=" + dimensions +
+                '}';
+    }
+}
@@ -0,0 +1,469 @@
+package com.cloudurable.jai.model.text.embedding;
+
+import com.cloudurable.jai.model.Usage;
+
+import java.util.Arrays;
+
+/**
+ * Reads an embedding response straight into an {@link EmbeddingMatrix}.
+ * <p>
+ * {@link EmbeddingResponseDeserializer} parses the body into a jparse node tree and then copies each
+ * {@code embedding} array out of it. For large batches the node tree, the per-row arrays and the Embedding objects
+ * dominate the garbage created. This deserializer scans the JSON characters once and writes each number into the
+ * matrix as it is read, so the only large allocation is the matrix itself. When the number of rows is known in
+ * advance (it is the number of inputs of the request) the matrix is allocated once, at its final size, as soon as
+ * the first row has given the number of dimensions.
+ * <p>
+ * Only the fields of an embedding response are read: {@code object}, {@code model}, {@code usage} and {@code data};
+ * any other field is skipped.
+ */
+public class EmbeddingMatrixDeserializer {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private EmbeddingMatrixDeserializer() {
+    }
+
+    /**
+     * Deserializes a JSON string into an EmbeddingMatrix.
+     *
+     * @param jsonBody The JSON representation of the embedding response.
+     * @return The embedding matrix.
+     */
+    public static EmbeddingMatrix deserialize(final String jsonBody) {
+        return deserialize(jsonBody.toCharArray(), 0);
+    }
+
+    /**
+     * Deserializes a JSON body into an EmbeddingMatrix.
+     *
+     * @param jsonBody     The JSON representation of the embedding response.
+     * @param expectedRows The number of embeddings expected, usually the number of inputs of the request, or 0 if
+     *                     unknown. It is only used to size the matrix.
+     * @return The embedding matrix.
+     */
+    public static EmbeddingMatrix deserialize(final char[] jsonBody, final int expectedRows) {
+        return new Scanner(jsonBody, expectedRows).readResponse();
+    }
+
+    /**
+     * Reads one response. A scanner is used once.
+     */
+    private static final class Scanner {
+        private final char[] json;
+        private final int expectedRows;
+        private int position;
+
+        private String object;
+        private String model;
+        private Usage usage;
+        private float[] values;
+        private int dimensions = -1;
+        private int rowCount;
+        private int[] rowIndexes;
+
+        Scanner(final char[] json, final int expectedRows) {
+            this.json = json;
+            this.expectedRows = expectedRows;
+            this.rowIndexes = new int[Math.max(expectedRows, 1)];
+        }
+
+        EmbeddingMatrix readResponse() {
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    final String key = readString();
+                    expect(':');
+                    switch (key) {
+                        case "object":
+                            object = readStringOrNull();
+                            break;
+                        case "model":
+                            model = readStringOrNull();
+                            break;
+                        case "usage":
+                            usage = readUsage();
+                            break;
+                        case "data":
+                            readData();
+                            break;
+                        default:
+                            skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            return toMatrix();
+        }
+
+        private void readData() {
+            expect('[');
+            if (consume(']')) {
+                return;
+            }
+            do {
+                readEmbedding();
+            } while (consume(','));
+            expect(']');
+        }
+
+        private void readEmbedding() {
+            final int row = rowCount;
+            int index = row;
+            boolean hasEmbedding = false;
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    final String key = readString();
+                    expect(':');
+                    if (key.equals("index")) {
+                        index = readInt();
+                    } else if (key.equals("embedding")) {
+                        readVector(row);
+                        hasEmbedding = true;
+                    } else {
+                        skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (!hasEmbedding) {
+                throw new IllegalStateException("Embedding " + index + " has no embedding array");
+            }
+            if (rowIndexes.length == row) {
+                rowIndexes = Arrays.copyOf(rowIndexes, row * 2);
+            }
+            rowIndexes[row] = index;
+            rowCount++;
+        }
+
+        private void readVector(final int row) {
+            expect('[');
+            if (dimensions < 0) {
+                // The first row gives the number of dimensions.
+                values = new float[1024];
+                int count = 0;
+                if (!consume(']')) {
+                    do {
+                        if (count == values.length) {
+                            values = Arrays.copyOf(values, count * 2);
+                        }
+                        values[count++] = readFloat();
+                    } while (consume(','));
+                    expect(']');
+                }
+                dimensions = count;
+                values = Arrays.copyOf(values, Math.max(expectedRows, 1) * dimensions);
+                return;
+            }
+            final int offset = row * dimensions;
+            if (values.length < offset + dimensions) {
+                values = Arrays.copyOf(values, Math.max(offset + dimensions, values.length * 2));
+            }
+            int count = 0;
+            if (!consume(']')) {
+                do {
+                    if (count == dimensions) {
+                        throw new IllegalStateException("Embedding row " + row + " has more than " + dimensions + " dimensions");
+                    }
+                    values[offset + count++] = readFloat();
+                } while (consume(','));
+                expect(']');
+            }
+            if (count != dimensions) {
+                throw new IllegalStateException("Embedding row " + row + " has " + count + " dimensions, expected " + dimensions);
+            }
+        }
+
+        private EmbeddingMatrix toMatrix() {
+            final int columns = Math.max(dimensions, 0);
+            int rows = rowCount;
+            boolean inOrder = true;
+            for (int row = 0; row < rowCount; row++) {
+                if (rowIndexes[row] != row) {
+                    inOrder = false;
+                }
+                rows = Math.max(rows, rowIndexes[row] + 1);
+            }
+            float[] matrix = values == null ? new float[0] : values;
+            if (!inOrder) {
+                matrix = new float[rows * columns];
+                for (int row = 0; row < rowCount; row++) {
+                    System.arraycopy(values, row * columns, matrix, rowIndexes[row] * columns, columns);
+                }
+            } else if (matrix.length != rows * columns) {
+                matrix = Arrays.copyOf(matrix, rows * columns);
+            }
+            return new EmbeddingMatrix(object, model, usage, rows, columns, matrix);
+        }
+
+        private Usage readUsage() {
+            if (consumeLiteral("null")) {
+                return null;
+            }
+            final Usage.Builder builder = Usage.builder();
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    final String key = readString();
+                    expect(':');
+                    switch (key) {
+                        case "prompt_tokens":
+                            builder.promptTokens(readInt());
+                            break;
+                        case "completion_tokens":
+                            builder.completionTokens(readInt());
+                            break;
+                        case "total_tokens":
+                            builder.totalTokens(readInt());
+                            break;
+                        default:
+                            skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            return builder.build();
+        }
+
+        /**
+         * Reads a JSON number as a float without creating a String. The digits are accumulated into a long and scaled
+         * by an exact power of ten, which is exact to well within float precision; numbers with an exponent outside
+         * the table fall back to Double.parseDouble.
+         */
+        private float readFloat() {
+            skipWhitespace();
+            final int start = position;
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean sawDigit = false;
+            while (position < json.length && isDigit(json[position])) {
+                final int digit = json[position++] - '0';
+                sawDigit = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exponent++;
+                }
+            }
+            if (position < json.length && json[position] == '.') {
+                position++;
+                while (position < json.length && isDigit(json[position])) {
+                    final int digit = json[position++] - '0';
+                    sawDigit = true;
+                    if (digits < MAX_MANTISSA_DIGITS) {
+                        mantissa = mantissa * 10 + digit;
+                        exponent--;
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                    }
+                }
+            }
+            if (!sawDigit) {
+                throw error("number");
+            }
+            if (position < json.length && (json[position] == 'e' || json[position] == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (peek() == '-' || peek() == '+') {
+                    negativeExponent = json[position++] == '-';
+                }
+                int value = 0;
+                boolean sawExponentDigit = false;
+                while (position < json.length && isDigit(json[position])) {
+                    sawExponentDigit = true;
+                    value = Math.min(value * 10 + (json[position++] - '0'), 10_000);
+                }
+                if (!sawExponentDigit) {
+                    throw error("exponent");
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            final double value;
+            if (mantissa == 0) {
+                value = 0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return (float) Double.parseDouble(new String(json, start, position - start));
+            }
+            return (float) (negative ? -value : value);
+        }
+
+        private int readInt() {
+            skipWhitespace();
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                position++;
+            }
+            if (position >= json.length || !isDigit(json[position])) {
+                throw error("integer");
+            }
+            int value = 0;
+            while (position < json.length && isDigit(json[position])) {
+                value = value * 10 + (json[position++] - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        private String readStringOrNull() {
+            return consumeLiteral("null") ? null : readString();
+        }
+
+        private String readString() {
+            expect('"');
+            final int start = position;
+            while (position < json.length && json[position] != '"' && json[position] != '\\') {
+                position++;
+            }
+            if (position < json.length && json[position] == '"') {
+                return new String(json, start, position++ - start);
+            }
+            final StringBuilder builder = new StringBuilder().append(json, start, position - start);
+            while (position < json.length) {
+                final char c = json[position++];
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= json.length) {
+                    break;
+                }
+                final char escaped = json[position++];
+                switch (escaped) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length) {
+                            throw error("unicode escape");
+                        }
+                        builder.append((char) Integer.parseInt(new String(json, position, 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        builder.append(escaped);
+                }
+            }
+            throw error("end of string");
+        }
+
+        private void skipValue() {
+            skipWhitespace();
+            final char c = peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '{') {
+                position++;
+                if (!consume('}')) {
+                    do {
+                        readString();
+                        expect(':');
+                        skipValue();
+                    } while (consume(','));
+                    expect('}');
+                }
+            } else if (c == '[') {
+                position++;
+                if (!consume(']')) {
+                    do {
+                        skipValue();
+                    } while (consume(','));
+                    expect(']');
+                }
+            } else {
+                final int start = position;
+                while (position < json.length && ",}] \t\r\n".indexOf(json[position]) < 0) {
+                    position++;
+                }
+                if (start == position) {
+                    throw error("value");
+                }
+            }
+        }
+
+        private boolean consumeLiteral(final String literal) {
+            skipWhitespace();
+            if (position + literal.length() > json.length) {
+                return false;
+            }
+            for (int index = 0; index < literal.length(); index++) {
+                if (json[position + index] != literal.charAt(index)) {
+                    return false;
+                }
+            }
+            position += literal.length();
+            return true;
+        }
+
+        private void expect(final char c) {
+            if (!consume(c)) {
+                throw error("'" + c + "'");
+            }
+        }
+
+        private boolean consume(final char c) {
+            skipWhitespace();
+            if (position < json.length && json[position] == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            return position < json.length ? json[position] : '\0';
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length) {
+                final char c = json[position];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return;
+                }
+                position++;
+            }
+        }
+
+        private static boolean isDigit(final char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private IllegalStateException error(final String expected) {
+            return new IllegalStateException("Expected " + expected + " at position " + position + " of embedding response");
+        }
+    }
+}
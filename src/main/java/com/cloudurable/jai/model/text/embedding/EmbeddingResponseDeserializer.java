@@ -2,10 +2,10 @@ package com.cloudurable.jai.model.text.embedding;
 
 import com.cloudurable.jai.model.Usage;
 import com.cloudurable.jai.model.text.DeserializerUtils;
+import com.cloudurable.jai.util.JsonParsers;
 import io.nats.jparse.node.ArrayNode;
 import io.nats.jparse.node.ObjectNode;
 import io.nats.jparse.parser.JsonParser;
-import io.nats.jparse.parser.JsonParserBuilder;
 
 import java.util.List;
 
@@ -23,8 +23,22 @@ public class EmbeddingResponseDeserializer {
      * @return The deserialized EditResponse object.
      */
     public static EmbeddingResponse deserialize(final String jsonBody) {
-        final JsonParser parser = JsonParserBuilder.builder().build();
-        final ObjectNode objectNode = parser.parse(jsonBody).asObject();
+        final JsonParser parser = JsonParsers.parser();
+        return deserialize(parser.parse(jsonBody).asObject());
+    }
+
+    /**
+     * Deserializes a JSON body that was read straight into a char array, without an intermediate String.
+     *
+     * @param jsonBody The JSON representation of the EmbeddingResponse.
+     * @return The deserialized EmbeddingResponse object.
+     */
+    public static EmbeddingResponse deserialize(final char[] jsonBody) {
+        final JsonParser parser = JsonParsers.parser();
+        return deserialize(parser.parse(jsonBody).asObject());
+    }
+
+    private static EmbeddingResponse deserialize(final ObjectNode objectNode) {
         final String object = objectNode.getString("object");
         final Usage usage = DeserializerUtils.deserializeUsage(objectNode.getObjectNode("usage"));
 
@@ -0,0 +1,429 @@
+package com.cloudurable.jai.resilience;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to an API path that is failing or slow, so callers fail fast instead of waiting on doomed
+ * requests.
+ * <p>
+ * Each API path has its own circuit; IDs in the path, segments after the first that contain a digit or a dash, are
+ * replaced by {id}, so /files/file-abc/content and /files/file-xyz/content share a circuit. A closed circuit keeps the
+ * outcome of the last requests in a window. Once the window holds the minimum number of calls, the circuit opens when
+ * the share of failed calls reaches the failure rate threshold, or the share of calls slower than the slow call
+ * duration reaches the slow call rate threshold. A failure is an I/O error or a 5xx response; other responses,
+ * including 429, are answered by a healthy API.
+ * <p>
+ * An open circuit rejects requests with a {@link CircuitOpenException} for the open duration. It then turns half-open
+ * and lets a few probe requests through. If they all succeed quickly the circuit closes with an empty window; if one
+ * fails or is slow the circuit opens again.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of a circuit.
+     */
+    public enum State {
+        /**
+         * Requests are sent and their outcomes recorded.
+         */
+        CLOSED,
+        /**
+         * Requests are rejected.
+         */
+        OPEN,
+        /**
+         * A few probe requests are sent to test whether the API has recovered.
+         */
+        HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final int windowSize;
+    private final int minCalls;
+    private final long openNanos;
+    private final int probes;
+    private final LongSupplier nanoTime;
+    private final ConcurrentHashMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    CircuitBreaker(double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration, int windowSize,
+                   int minCalls, Duration openDuration, int probes, LongSupplier nanoTime) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration == null ? Long.MAX_VALUE : slowCallDuration.toNanos();
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.openNanos = openDuration.toNanos();
+        this.probes = probes;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the circuit name of an API path: the path without its query, with IDs replaced by {id}.
+     *
+     * @param apiPath The API path, for example /files/file-abc/content.
+     * @return The circuit name, for example /files/{id}/content.
+     */
+    public static String circuitName(final String apiPath) {
+        final int query = apiPath.indexOf('?');
+        final String[] segments = (query < 0 ? apiPath : apiPath.substring(0, query)).split("/");
+        final StringBuilder name = new StringBuilder(apiPath.length());
+        boolean first = true;
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            name.append('/');
+            if (!first && isId(segment)) {
+                name.append("{id}");
+            } else {
+                name.append(segment);
+            }
+            first = false;
+        }
+        return name.length() == 0 ? "/" : name.toString();
+    }
+
+    private static boolean isId(final String segment) {
+        for (int index = 0; index < segment.length(); index++) {
+            final char c = segment.charAt(index);
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the state of the circuit of an API path.
+     *
+     * @param apiPath The API path.
+     * @return The state; CLOSED for a path that has not been used.
+     */
+    public State getState(final String apiPath) {
+        final Circuit circuit = circuits.get(circuitName(apiPath));
+        return circuit == null ? State.CLOSED : circuit.state(nanoTime.getAsLong());
+    }
+
+    /**
+     * Fails fast if the circuit of an API path is open, without taking a permit. Used before waiting for something
+     * else, such as a rate limiter, that the request would not need if it is going to be rejected.
+     *
+     * @param apiPath The API path.
+     * @throws CircuitOpenException If the circuit is open.
+     */
+    public void check(final String apiPath) {
+        final String name = circuitName(apiPath);
+        final Circuit circuit = circuits.get(name);
+        if (circuit != null) {
+            circuit.check(name, nanoTime.getAsLong());
+        }
+    }
+
+    /**
+     * Takes a permit to send one request to an API path. The permit must be given the outcome of the request, or
+     * released if it was not sent.
+     *
+     * @param apiPath The API path.
+     * @return The permit.
+     * @throws CircuitOpenException If the circuit is open or has no probes left.
+     */
+    public Permit acquire(final String apiPath) {
+        final String name = circuitName(apiPath);
+        return circuits.computeIfAbsent(name, key -> new Circuit()).acquire(name, nanoTime.getAsLong());
+    }
+
+    private static boolean isIOFailure(final Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException;
+    }
+
+    /**
+     * The state and window of one API path.
+     */
+    private final class Circuit {
+        private final boolean[] failed = new boolean[windowSize];
+        private final boolean[] slow = new boolean[windowSize];
+        private int count;
+        private int next;
+        private int failures;
+        private int slowCalls;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int generation;
+        private int probesInFlight;
+        private int probeSuccesses;
+
+        synchronized State state(final long now) {
+            return state == State.OPEN && now - openedAt >= openNanos ? State.HALF_OPEN : state;
+        }
+
+        synchronized void check(final String name, final long now) {
+            if (state == State.OPEN && now - openedAt < openNanos) {
+                throw new CircuitOpenException(name, Duration.ofNanos(openNanos - (now - openedAt)));
+            }
+        }
+
+        synchronized Permit acquire(final String name, final long now) {
+            if (state == State.OPEN) {
+                if (now - openedAt < openNanos) {
+                    throw new CircuitOpenException(name, Duration.ofNanos(openNanos - (now - openedAt)));
+                }
+                transition(State.HALF_OPEN, now);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= probes) {
+                    throw new CircuitOpenException(name, Duration.ZERO);
+                }
+                probesInFlight++;
+                return new Permit(this, generation, true);
+            }
+            return new Permit(this, generation, false);
+        }
+
+        synchronized void record(final Permit permit, final boolean failure, final boolean slowCall) {
+            if (permit.generation != generation) {
+                return;
+            }
+            final long now = nanoTime.getAsLong();
+            if (permit.probe) {
+                probesInFlight--;
+                if (failure || slowCall) {
+                    transition(State.OPEN, now);
+                } else if (++probeSuccesses >= probes) {
+                    transition(State.CLOSED, now);
+                }
+                return;
+            }
+            if (count == windowSize) {
+                failures -= failed[next] ? 1 : 0;
+                slowCalls -= slow[next] ? 1 : 0;
+            } else {
+                count++;
+            }
+            failed[next] = failure;
+            slow[next] = slowCall;
+            failures += failure ? 1 : 0;
+            slowCalls += slowCall ? 1 : 0;
+            next = (next + 1) % windowSize;
+            if (count >= minCalls && (failures >= failureRateThreshold * count
+                    || slowCalls >= slowCallRateThreshold * count)) {
+                transition(State.OPEN, now);
+            }
+        }
+
+        synchronized void release(final Permit permit) {
+            if (permit.probe && permit.generation == generation) {
+                probesInFlight--;
+            }
+        }
+
+        private void transition(final State to, final long now) {
+            state = to;
+            generation++;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            if (to == State.OPEN) {
+                openedAt = now;
+            } else if (to == State.CLOSED) {
+                count = 0;
+                next = 0;
+                failures = 0;
+                slowCalls = 0;
+            }
+        }
+    }
+
+    /**
+     * Permission to send one request. Only the first outcome given to a permit counts.
+     */
+    public final class Permit {
+        private final Circuit circuit;
+        private final int generation;
+        private final boolean probe;
+        private boolean done;
+
+        private Permit(final Circuit circuit, final int generation, final boolean probe) {
+            this.circuit = circuit;
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        /**
+         * Records the response to the request.
+         *
+         * @param statusCode   The status code.
+         * @param latencyNanos The time from sending the request to receiving the response.
+         */
+        public void record(final int statusCode, final long latencyNanos) {
+            if (finish()) {
+                circuit.record(this, statusCode >= 500, latencyNanos >= slowCallNanos);
+            }
+        }
+
+        /**
+         * Records that the request failed without a response. Only I/O errors count as failures; other errors
+         * release the permit.
+         *
+         * @param error        The error.
+         * @param latencyNanos The time from sending the request to the error.
+         */
+        public void record(final Throwable error, final long latencyNanos) {
+            if (!finish()) {
+                return;
+            }
+            if (isIOFailure(error)) {
+                circuit.record(this, true, latencyNanos >= slowCallNanos);
+            } else {
+                circuit.release(this);
+            }
+        }
+
+        /**
+         * Releases the permit of a request that was not sent.
+         */
+        public void release() {
+            if (finish()) {
+                circuit.release(this);
+            }
+        }
+
+        private synchronized boolean finish() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+    }
+
+    /**
+     * Builder for CircuitBreaker.
+     */
+    public static class Builder {
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 0.5;
+        private Duration slowCallDuration;
+        private int windowSize = 100;
+        private int minCalls = 20;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int probes = 3;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the share of failed calls in the window that opens the circuit. Defaults to 0.5.
+         *
+         * @param failureRateThreshold The failure rate, greater than 0 and at most 1.
+         * @return The builder instance.
+         */
+        public Builder setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the share of slow calls in the window that opens the circuit. Defaults to 0.5.
+         *
+         * @param slowCallRateThreshold The slow call rate, greater than 0 and at most 1.
+         * @return The builder instance.
+         */
+        public Builder setSlowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the latency from which a call counts as slow. If not set, latency does not open the circuit.
+         *
+         * @param slowCallDuration The slow call duration.
+         * @return The builder instance.
+         */
+        public Builder setSlowCallDuration(Duration slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * Sets the number of recent calls kept in the window of each circuit. Defaults to 100.
+         *
+         * @param windowSize The window size.
+         * @return The builder instance.
+         */
+        public Builder setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of calls the window must hold before the circuit can open. Defaults to 20.
+         *
+         * @param minCalls The minimum number of calls.
+         * @return The builder instance.
+         */
+        public Builder setMinCalls(int minCalls) {
+            this.minCalls = minCalls;
+            return this;
+        }
+
+        /**
+         * Sets how long an open circuit rejects requests before letting probes through. Defaults to 30 seconds.
+         *
+         * @param openDuration The open duration.
+         * @return The builder instance.
+         */
+        public Builder setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Sets the number of probe requests a half-open circuit lets through, all of which must succeed to close it.
+         * Defaults to 3.
+         *
+         * @param probes The number of probes.
+         * @return The builder instance.
+         */
+        public Builder setProbes(int probes) {
+            this.probes = probes;
+            return this;
+        }
+
+        /**
+         * Builds the CircuitBreaker.
+         *
+         * @return The CircuitBreaker.
+         * @throws IllegalArgumentException If a setting is out of range.
+         */
+        public CircuitBreaker build() {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1
+                    || slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+                throw new IllegalArgumentException("Rate thresholds must be greater than 0 and at most 1");
+            }
+            if (windowSize < 1 || minCalls < 1 || minCalls > windowSize || probes < 1 || openDuration.isNegative()) {
+                throw new IllegalArgumentException("windowSize, minCalls, probes or openDuration is out of range");
+            }
+            return new CircuitBreaker(failureRateThreshold, slowCallRateThreshold, slowCallDuration, windowSize,
+                    minCalls, openDuration, probes, System::nanoTime);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cloudurable.jai.resilience;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending a request while the circuit of its API path is open. The client returns it as the
+ * exception of a {@link com.cloudurable.jai.model.ClientErrorResponse}.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private final String path;
+    private final Duration retryAfter;
+
+    /**
+     * Constructs a CircuitOpenException.
+     *
+     * @param path       The circuit's API path.
+     * @param retryAfter The time until the circuit lets probe requests through.
+     */
+    public CircuitOpenException(final String path, final Duration retryAfter) {
+        super("Circuit open for " + path + ", retry after " + retryAfter.toMillis() + " ms");
+        this.path = path;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets the API path whose circuit is open, with IDs replaced by {id}.
+     *
+     * @return The API path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the time until the circuit lets probe requests through.
+     *
+     * @return The time to wait.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
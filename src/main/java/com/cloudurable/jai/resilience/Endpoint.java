@@ -0,0 +1,125 @@
+package com.cloudurable.jai.resilience;
+
+import com.cloudurable.jai.model.SecretHolder;
+
+import java.util.Optional;
+
+/**
+ * An API endpoint and the key used with it, for example one organization's key or a regional proxy. Requests sent to
+ * an endpoint keep their API path, so {@code https://proxy.example.com/v1/} receives /chat/completions as
+ * {@code https://proxy.example.com/v1//chat/completions}, as the default endpoint does.
+ */
+public class Endpoint {
+
+    private final String url;
+    private final SecretHolder apiKey;
+    private final String organization;
+
+    private Endpoint(String url, SecretHolder apiKey, String organization) {
+        this.url = url;
+        this.apiKey = apiKey;
+        this.organization = organization;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the endpoint URL.
+     *
+     * @return The URL.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the API key used with the endpoint.
+     *
+     * @return The API key.
+     */
+    public SecretHolder getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Gets the organization sent in the OpenAI-Organization header.
+     *
+     * @return The organization, or empty if the header is not sent.
+     */
+    public Optional<String> getOrganization() {
+        return Optional.ofNullable(organization);
+    }
+
+    @Override
+    public String toString() {
+        return organization == null ? url : url + " (" + organization + ")";
+    }
+
+    /**
+     * Builder for Endpoint.
+     */
+    public static class Builder {
+        private String url = "https://api.openai.com/v1/";
+        private SecretHolder apiKey;
+        private String organization;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the endpoint URL. Defaults to https://api.openai.com/v1/.
+         *
+         * @param url The URL.
+         * @return The builder instance.
+         */
+        public Builder setUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * Sets the API key used with the endpoint.
+         *
+         * @param apiKey The API key.
+         * @return The builder instance.
+         */
+        public Builder setApiKey(String apiKey) {
+            this.apiKey = new SecretHolder(apiKey);
+            return this;
+        }
+
+        /**
+         * Sets the organization sent in the OpenAI-Organization header.
+         *
+         * @param organization The organization ID.
+         * @return The builder instance.
+         */
+        public Builder setOrganization(String organization) {
+            this.organization = organization;
+            return this;
+        }
+
+        /**
+         * Builds the Endpoint.
+         *
+         * @return The Endpoint.
+         * @throws IllegalArgumentException If the URL or the API key is missing.
+         */
+        public Endpoint build() {
+            if (url == null || url.isEmpty()) {
+                throw new IllegalArgumentException("Endpoint URL is required");
+            }
+            if (apiKey == null || apiKey.isEmpty()) {
+                throw new IllegalArgumentException("API key is required");
+            }
+            return new Endpoint(url, apiKey, organization);
+        }
+    }
+}
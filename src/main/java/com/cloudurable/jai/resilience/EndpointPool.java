@@ -0,0 +1,452 @@
+package com.cloudurable.jai.resilience;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads requests over several endpoints, each with its own API key, and stops sending to endpoints that keep
+ * failing.
+ * <p>
+ * Each request is sent to the best endpoint at the time it is sent, so a retry can go to a different endpoint than
+ * the attempt it follows. With {@link Strategy#LEAST_OUTSTANDING} the best endpoint is the one with the fewest
+ * requests in flight. With {@link Strategy#MOST_REMAINING_RATE_LIMIT} it is the one with the largest share of its rate
+ * limit left, read from the {@code x-ratelimit-*} headers of its last response and divided by the requests in flight.
+ * An endpoint that answered 429 is skipped until its limit resets, as long as another endpoint is available.
+ * <p>
+ * An endpoint is ejected after a number of consecutive failures: I/O errors, 5xx responses, and 401 or 403 responses
+ * from a revoked key. It gets no requests for the ejection time, which doubles with each ejection in a row up to the
+ * maximum. After that it is tried again, and a single failure ejects it again. If every endpoint is ejected, the one
+ * whose ejection ends first is used.
+ * <p>
+ * Only stateless API paths are spread over the pool: chat, completions, edits, embeddings, moderations, images and
+ * audio. Files, fine-tunes and models belong to the organization and key that created them, so a file uploaded through
+ * one endpoint is not found through another; requests to those paths always go to the primary endpoint, the first one
+ * added, whatever its health.
+ */
+public class EndpointPool {
+
+    /**
+     * How the endpoint of a request is chosen.
+     */
+    public enum Strategy {
+        /**
+         * The endpoint with the fewest requests in flight.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * The endpoint with the largest share of its rate limit left per request in flight.
+         */
+        MOST_REMAINING_RATE_LIMIT
+    }
+
+    /**
+     * The API paths whose requests carry everything needed to answer them, so any endpoint can.
+     */
+    private static final List<String> POOLED_PATHS = List.of("/chat/completions", "/completions", "/edits",
+            "/embeddings", "/moderations", "/images", "/audio");
+
+    private final List<State> states;
+    private final Strategy strategy;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+    private final LongSupplier nanoTime;
+    private int next;
+
+    EndpointPool(List<Endpoint> endpoints, Strategy strategy, int failureThreshold, Duration ejectionTime,
+                 Duration maxEjectionTime, LongSupplier nanoTime) {
+        this.states = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            states.add(new State(endpoint));
+        }
+        this.strategy = strategy;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = ejectionTime.toNanos();
+        this.maxEjectionNanos = maxEjectionTime.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the endpoints of the pool.
+     *
+     * @return The endpoints, in the order they were added.
+     */
+    public List<Endpoint> getEndpoints() {
+        final List<Endpoint> endpoints = new ArrayList<>(states.size());
+        for (State state : states) {
+            endpoints.add(state.endpoint);
+        }
+        return endpoints;
+    }
+
+    /**
+     * Checks whether an endpoint is currently ejected.
+     *
+     * @param endpoint The endpoint.
+     * @return True if it gets no requests until its ejection ends.
+     */
+    public synchronized boolean isEjected(final Endpoint endpoint) {
+        final long now = nanoTime.getAsLong();
+        return find(endpoint).map(state -> state.isEjected(now)).orElse(false);
+    }
+
+    /**
+     * Gets the number of requests in flight to an endpoint.
+     *
+     * @param endpoint The endpoint.
+     * @return The number of requests in flight.
+     */
+    public synchronized int getOutstanding(final Endpoint endpoint) {
+        return find(endpoint).map(state -> state.outstanding).orElse(0);
+    }
+
+    /**
+     * Checks whether requests to an API path are spread over the pool, or pinned to the primary endpoint because they
+     * refer to files, fine-tunes or models of one organization.
+     *
+     * @param apiPath The API path, starting with a slash, optionally with a query.
+     * @return True if any endpoint can answer the request.
+     */
+    public static boolean isPooled(final String apiPath) {
+        for (String pooled : POOLED_PATHS) {
+            if (apiPath.startsWith(pooled) && (apiPath.length() == pooled.length()
+                    || apiPath.charAt(pooled.length()) == '/' || apiPath.charAt(pooled.length()) == '?')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses the endpoint of a request to an API path: the best endpoint if the path is pooled, or else the primary
+     * endpoint. The lease must be completed or failed once the request is done.
+     *
+     * @param apiPath The API path of the request, starting with a slash.
+     * @return The lease of the chosen endpoint.
+     */
+    public synchronized Lease acquire(final String apiPath) {
+        if (isPooled(apiPath)) {
+            return acquire();
+        }
+        final State primary = states.get(0);
+        primary.outstanding++;
+        return new Lease(primary);
+    }
+
+    /**
+     * Chooses the best endpoint for a stateless request. The lease must be completed or failed once the request is
+     * done.
+     *
+     * @return The lease of the chosen endpoint.
+     */
+    public synchronized Lease acquire() {
+        final long now = nanoTime.getAsLong();
+        final int start = next;
+        next = (next + 1) % states.size();
+        State best = null;
+        int bestTier = Integer.MAX_VALUE;
+        double bestScore = 0;
+        for (int offset = 0; offset < states.size(); offset++) {
+            final State state = states.get((start + offset) % states.size());
+            final int tier = state.isEjected(now) ? 2 : state.isThrottled(now) ? 1 : 0;
+            final double score = tier == 2 ? -(double) (state.ejectedUntil - now)
+                    : strategy == Strategy.LEAST_OUTSTANDING ? -state.outstanding
+                    : state.remaining(now) / (1 + state.outstanding);
+            if (tier < bestTier || (tier == bestTier && score > bestScore)) {
+                best = state;
+                bestTier = tier;
+                bestScore = score;
+            }
+        }
+        best.outstanding++;
+        return new Lease(best);
+    }
+
+    private Optional<State> find(final Endpoint endpoint) {
+        return states.stream().filter(state -> state.endpoint == endpoint).findFirst();
+    }
+
+    private static boolean isIOFailure(final Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException;
+    }
+
+    private static long parseLong(final Optional<String> value) {
+        try {
+            return value.map(String::trim).map(Long::parseLong).orElse(-1L);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The health and rate limit of one endpoint. Guarded by the pool.
+     */
+    private static final class State {
+        private final Endpoint endpoint;
+        private int outstanding;
+        private int consecutiveFailures;
+        private int ejections;
+        private boolean probing;
+        private long ejectedUntil;
+        private double remaining = 1;
+        private long resetAt;
+
+        State(final Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        boolean isEjected(final long now) {
+            return ejections > 0 && ejectedUntil - now > 0;
+        }
+
+        boolean isThrottled(final long now) {
+            return remaining(now) <= 0;
+        }
+
+        double remaining(final long now) {
+            return now - resetAt >= 0 ? 1 : remaining;
+        }
+    }
+
+    /**
+     * One request's use of an endpoint.
+     */
+    public final class Lease {
+        private final State state;
+        private boolean released;
+
+        private Lease(final State state) {
+            this.state = state;
+        }
+
+        /**
+         * Gets the chosen endpoint.
+         *
+         * @return The endpoint.
+         */
+        public Endpoint getEndpoint() {
+            return state.endpoint;
+        }
+
+        /**
+         * Copies a request to the chosen endpoint, replacing its Authorization and OpenAI-Organization headers.
+         *
+         * @param request The request, built for any endpoint.
+         * @param apiPath The API path of the request, starting with a slash.
+         * @return The request for the chosen endpoint.
+         */
+        public HttpRequest route(final HttpRequest request, final String apiPath) {
+            final Endpoint endpoint = state.endpoint;
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint.getUrl() + apiPath))
+                    .expectContinue(request.expectContinue())
+                    .method(request.method(), request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()));
+            request.timeout().ifPresent(builder::timeout);
+            request.version().ifPresent(builder::version);
+            request.headers().map().forEach((name, values) -> {
+                if (!name.equalsIgnoreCase("Authorization") && !name.equalsIgnoreCase("OpenAI-Organization")) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+            builder.header("Authorization", "Bearer " + endpoint.getApiKey().getSecret());
+            endpoint.getOrganization().ifPresent(organization -> builder.header("OpenAI-Organization", organization));
+            return builder.build();
+        }
+
+        /**
+         * Records the response of the request and releases the lease.
+         *
+         * @param statusCode The status code.
+         * @param headers    The response headers.
+         */
+        public void complete(final int statusCode, final HttpHeaders headers) {
+            final long now = nanoTime.getAsLong();
+            synchronized (EndpointPool.this) {
+                if (!release()) {
+                    return;
+                }
+                readRateLimit(now, statusCode, headers);
+                if (statusCode >= 500 || statusCode == 401 || statusCode == 403) {
+                    failure(now);
+                } else {
+                    success();
+                }
+            }
+        }
+
+        /**
+         * Records that the request failed without a response and releases the lease. Only I/O errors count against
+         * the endpoint.
+         *
+         * @param error The error.
+         */
+        public void fail(final Throwable error) {
+            final long now = nanoTime.getAsLong();
+            synchronized (EndpointPool.this) {
+                if (release() && isIOFailure(error)) {
+                    failure(now);
+                }
+            }
+        }
+
+        private boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            state.outstanding--;
+            return true;
+        }
+
+        private void readRateLimit(final long now, final int statusCode, final HttpHeaders headers) {
+            if (statusCode == 429) {
+                final long delayMillis = RetryPolicy.serverDelayMillis(statusCode, headers, System.currentTimeMillis());
+                state.remaining = 0;
+                state.resetAt = now + TimeUnit.MILLISECONDS.toNanos(delayMillis > 0 ? delayMillis : 1000);
+                return;
+            }
+            double remaining = Double.MAX_VALUE;
+            long resetMillis = 0;
+            for (String limit : new String[]{"requests", "tokens"}) {
+                final long max = parseLong(headers.firstValue("x-ratelimit-limit-" + limit));
+                final long left = parseLong(headers.firstValue("x-ratelimit-remaining-" + limit));
+                if (max > 0 && left >= 0 && (double) left / max < remaining) {
+                    remaining = (double) left / max;
+                    resetMillis = headers.firstValue("x-ratelimit-reset-" + limit).map(RetryPolicy::parseDuration).orElse(0L);
+                }
+            }
+            if (remaining != Double.MAX_VALUE) {
+                state.remaining = remaining;
+                state.resetAt = now + TimeUnit.MILLISECONDS.toNanos(resetMillis);
+            }
+        }
+
+        private void failure(final long now) {
+            state.consecutiveFailures++;
+            if (state.probing || state.consecutiveFailures >= failureThreshold) {
+                state.ejections++;
+                state.consecutiveFailures = 0;
+                state.probing = true;
+                long ejection = ejectionNanos;
+                for (int doubling = 1; doubling < state.ejections && ejection < maxEjectionNanos; doubling++) {
+                    ejection *= 2;
+                }
+                state.ejectedUntil = now + Math.min(maxEjectionNanos, ejection);
+            }
+        }
+
+        private void success() {
+            state.consecutiveFailures = 0;
+            state.probing = false;
+            state.ejections = 0;
+        }
+    }
+
+    /**
+     * Builder for EndpointPool.
+     */
+    public static class Builder {
+        private final List<Endpoint> endpoints = new ArrayList<>();
+        private Strategy strategy = Strategy.LEAST_OUTSTANDING;
+        private int failureThreshold = 5;
+        private Duration ejectionTime = Duration.ofSeconds(10);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an endpoint to the pool.
+         *
+         * @param endpoint The endpoint.
+         * @return The builder instance.
+         */
+        public Builder addEndpoint(Endpoint endpoint) {
+            this.endpoints.add(endpoint);
+            return this;
+        }
+
+        /**
+         * Sets how the endpoint of a request is chosen. Defaults to {@link Strategy#LEAST_OUTSTANDING}.
+         *
+         * @param strategy The strategy.
+         * @return The builder instance.
+         */
+        public Builder setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets the number of consecutive failures that eject an endpoint. Defaults to 5.
+         *
+         * @param failureThreshold The number of failures.
+         * @return The builder instance.
+         */
+        public Builder setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long an endpoint is ejected the first time. Defaults to 10 seconds.
+         *
+         * @param ejectionTime The ejection time.
+         * @return The builder instance.
+         */
+        public Builder setEjectionTime(Duration ejectionTime) {
+            this.ejectionTime = ejectionTime;
+            return this;
+        }
+
+        /**
+         * Sets the longest time an endpoint is ejected. Defaults to 5 minutes.
+         *
+         * @param maxEjectionTime The maximum ejection time.
+         * @return The builder instance.
+         */
+        public Builder setMaxEjectionTime(Duration maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        /**
+         * Builds the EndpointPool.
+         *
+         * @return The EndpointPool.
+         * @throws IllegalArgumentException If there are no endpoints or a setting is out of range.
+         */
+        public EndpointPool build() {
+            if (endpoints.isEmpty()) {
+                throw new IllegalArgumentException("At least one endpoint is required");
+            }
+            if (failureThreshold < 1 || ejectionTime.isNegative() || maxEjectionTime.compareTo(ejectionTime) < 0) {
+                throw new IllegalArgumentException("failureThreshold, ejectionTime or maxEjectionTime is out of range");
+            }
+            return new EndpointPool(endpoints, strategy, failureThreshold, ejectionTime, maxEjectionTime,
+                    System::nanoTime);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.cloudurable.jai.resilience;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of a slow idempotent request and takes whichever copy answers successfully first.
+ * <p>
+ * The policy keeps a window of recent latencies for each API path. When a request has not answered within the
+ * configured percentile of that window, a second copy is sent. The first successful response completes the call, and
+ * the other copy's future is cancelled. If both copies fail, the call completes with the copy that finished last.
+ * Until a path has enough samples, its requests are not hedged.
+ * <p>
+ * Every hedge must be allowed by a {@link RetryBudget}, by default one hedge for every ten requests, so a slow API
+ * does not get twice the load. With the HTTP client of Java 11, cancelling a future does not abort the exchange, so the
+ * losing copy may still be read to the end and charged by the API.
+ */
+public class HedgingPolicy {
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final int windowSize;
+    private final RetryBudget budget;
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private HedgingPolicy(double percentile, Duration minDelay, int minSamples, int windowSize, RetryBudget budget) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = minSamples;
+        this.windowSize = windowSize;
+        this.budget = budget;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sends a request, and a second copy of it if the first is slower than the percentile of its path.
+     *
+     * @param path The API path, whose latencies decide when to hedge.
+     * @param send Sends one copy of the request.
+     * @param <T>  The type of the response body.
+     * @return A future that completes with the first successful response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> hedge(final String path,
+                                                        final Supplier<CompletableFuture<HttpResponse<T>>> send) {
+        return hedge(path, send, () -> true);
+    }
+
+    /**
+     * Sends a request, and a second copy of it if the first is slower than the percentile of its path and the caller
+     * still allows it, for example because no other request is waiting for a rate limiter.
+     *
+     * @param path     The API path, whose latencies decide when to hedge.
+     * @param send     Sends one copy of the request.
+     * @param mayHedge Tells, when the hedge delay has passed, whether a second copy may be sent.
+     * @param <T>      The type of the response body.
+     * @return A future that completes with the first successful response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> hedge(final String path,
+                                                        final Supplier<CompletableFuture<HttpResponse<T>>> send,
+                                                        final BooleanSupplier mayHedge) {
+        final LatencyWindow window = windows.computeIfAbsent(path, key -> new LatencyWindow(windowSize));
+        budget.recordRequest();
+        final long delay = window.percentileNanos();
+        final Hedge<T> hedge = new Hedge<>(window, send, mayHedge);
+        hedge.launch();
+        if (delay >= 0) {
+            CompletableFuture.runAsync(hedge::launchHedge,
+                    CompletableFuture.delayedExecutor(Math.max(delay, minDelayNanos), TimeUnit.NANOSECONDS));
+        }
+        return hedge.result;
+    }
+
+    /**
+     * Gets the delay after which a request to the path is hedged.
+     *
+     * @param path The API path.
+     * @return The delay, or empty if the path does not have enough samples yet.
+     */
+    public Optional<Duration> getHedgeDelay(final String path) {
+        final LatencyWindow window = windows.get(path);
+        final long delay = window == null ? -1 : window.percentileNanos();
+        return delay < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(Math.max(delay, minDelayNanos)));
+    }
+
+    /**
+     * Records the latency of a response to a path, for example one that was sent without hedging.
+     *
+     * @param path    The API path.
+     * @param latency The time from sending the request to receiving the response.
+     */
+    public void recordLatency(final String path, final Duration latency) {
+        windows.computeIfAbsent(path, key -> new LatencyWindow(windowSize)).record(latency.toNanos());
+    }
+
+    private static boolean isOk(final HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    /**
+     * The copies of one hedged request.
+     */
+    private final class Hedge<T> {
+        private final LatencyWindow window;
+        private final Supplier<CompletableFuture<HttpResponse<T>>> send;
+        private final BooleanSupplier mayHedge;
+        private final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        private final List<CompletableFuture<HttpResponse<T>>> copies = new ArrayList<>(2);
+        private int launched;
+        private int finished;
+        private boolean closed;
+
+        Hedge(final LatencyWindow window, final Supplier<CompletableFuture<HttpResponse<T>>> send,
+              final BooleanSupplier mayHedge) {
+            this.window = window;
+            this.send = send;
+            this.mayHedge = mayHedge;
+            result.whenComplete((response, error) -> cancelCopies());
+        }
+
+        void launch() {
+            synchronized (this) {
+                launched++;
+            }
+            sendCopy();
+        }
+
+        void launchHedge() {
+            synchronized (this) {
+                if (closed || result.isDone() || finished == launched || !mayHedge.getAsBoolean()
+                        || !budget.tryRetry()) {
+                    return;
+                }
+                launched++;
+            }
+            sendCopy();
+        }
+
+        /**
+         * Sends one copy. A copy that was sent after the result completed is cancelled at once. The latency of every
+         * copy that was not cancelled is recorded, failed or not, so the hedge delay is not biased low.
+         */
+        private void sendCopy() {
+            final long startedAt = System.nanoTime();
+            final CompletableFuture<HttpResponse<T>> copy;
+            try {
+                copy = send.get();
+            } catch (RuntimeException e) {
+                complete(null, e);
+                return;
+            }
+            final boolean late;
+            synchronized (this) {
+                late = closed;
+                if (!late) {
+                    copies.add(copy);
+                }
+            }
+            if (late) {
+                copy.cancel(true);
+                return;
+            }
+            copy.whenComplete((response, error) -> {
+                if (!copy.isCancelled()) {
+                    window.record(System.nanoTime() - startedAt);
+                }
+                if (error == null && isOk(response)) {
+                    result.complete(response);
+                } else {
+                    complete(response, error);
+                }
+            });
+        }
+
+        private void complete(final HttpResponse<T> response, final Throwable error) {
+            synchronized (this) {
+                finished++;
+                if (finished < launched) {
+                    return;
+                }
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(response);
+            }
+        }
+
+        private void cancelCopies() {
+            final List<CompletableFuture<HttpResponse<T>>> sent;
+            synchronized (this) {
+                closed = true;
+                sent = new ArrayList<>(copies);
+            }
+            for (CompletableFuture<HttpResponse<T>> copy : sent) {
+                copy.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A ring of recent latencies and the percentile computed from it. The percentile is recomputed every few samples
+     * rather than on every request.
+     */
+    private final class LatencyWindow {
+        private final long[] samples;
+        private int count;
+        private int next;
+        private int sinceComputed;
+        private volatile long percentileNanos = -1;
+
+        LatencyWindow(final int size) {
+            this.samples = new long[size];
+        }
+
+        long percentileNanos() {
+            return percentileNanos;
+        }
+
+        synchronized void record(final long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            if (count >= minSamples && (++sinceComputed >= RECOMPUTE_EVERY || percentileNanos < 0)) {
+                sinceComputed = 0;
+                final long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                percentileNanos = sorted[Math.max(0, (int) Math.ceil(percentile * count) - 1)];
+            }
+        }
+    }
+
+    /**
+     * Builder for HedgingPolicy.
+     */
+    public static class Builder {
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(10);
+        private int minSamples = 20;
+        private int windowSize = 1000;
+        private RetryBudget budget;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the latency percentile after which a second copy is sent. Defaults to 0.95.
+         *
+         * @param percentile The percentile, greater than 0 and at most 1.
+         * @return The builder instance.
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets the shortest delay before a second copy is sent. Defaults to 10 milliseconds.
+         *
+         * @param minDelay The minimum delay.
+         * @return The builder instance.
+         */
+        public Builder setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * Sets the number of latencies a path needs before its requests are hedged. Defaults to 20.
+         *
+         * @param minSamples The minimum number of samples.
+         * @return The builder instance.
+         */
+        public Builder setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Sets the number of recent latencies kept for each path. Defaults to 1000.
+         *
+         * @param windowSize The window size.
+         * @return The builder instance.
+         */
+        public Builder setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets the budget that limits how many requests are hedged. Defaults to a ratio of 0.1 with one hedge per
+         * second in reserve.
+         *
+         * @param budget The hedge budget.
+         * @return The builder instance.
+         */
+        public Builder setBudget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Builds the HedgingPolicy.
+         *
+         * @return The HedgingPolicy.
+         * @throws IllegalArgumentException If a setting is out of range.
+         */
+        public HedgingPolicy build() {
+            if (percentile <= 0 || percentile > 1) {
+                throw new IllegalArgumentException("percentile must be greater than 0 and at most 1");
+            }
+            if (minDelay.isNegative() || minSamples < 1 || windowSize < minSamples) {
+                throw new IllegalArgumentException("minDelay, minSamples or windowSize is out of range");
+            }
+            return new HedgingPolicy(percentile, minDelay, minSamples, windowSize, budget != null ? budget
+                    : RetryBudget.builder().setRatio(0.1).setMinRetriesPerSecond(1).build());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.cloudurable.jai.resilience;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gates the requests an {@link com.cloudurable.jai.OpenAIClient} sends, so that a group of callers sharing an API key
+ * stays under its requests-per-minute and tokens-per-minute limits instead of running into 429 responses.
+ * <p>
+ * Before each request the client asks for a permit with an estimate of the tokens the request will use. Async calls
+ * continue when the returned future completes, so no thread waits for a permit; sync calls wait for it. Once the
+ * response has been read, the client reports the tokens the API counted, so the limiter can correct its estimate.
+ */
+public interface RateLimiter {
+
+    /**
+     * Asks for permission to send one request.
+     *
+     * @param estimatedTokens The number of tokens the request is expected to use, zero for requests that do not use
+     *                        tokens.
+     * @return A future that completes when the request may be sent. Cancelling it gives up the permit.
+     */
+    CompletableFuture<Void> acquire(int estimatedTokens);
+
+    /**
+     * Corrects the tokens charged for a request once the API has reported its usage.
+     *
+     * @param estimatedTokens The estimate the permit was acquired with.
+     * @param usedTokens      The number of tokens the API counted.
+     */
+    void reconcile(int estimatedTokens, int usedTokens);
+
+    /**
+     * Gets the number of callers waiting for a permit. A limiter that does not queue callers returns zero.
+     *
+     * @return The number of waiting callers.
+     */
+    default int waiting() {
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.cloudurable.jai.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits retries to a fraction of the requests made, so that during an outage retries cannot multiply the load on
+ * the API.
+ * <p>
+ * Every request deposits the ratio into the budget and every retry withdraws one. The deposits of at most the last
+ * thousand requests are kept. On top of that, a small reserve that refills every second lets a client that makes few
+ * requests still retry now and then.
+ */
+public class RetryBudget {
+
+    private static final int REQUESTS_KEPT = 1000;
+
+    private final double ratio;
+    private final double minRetriesPerSecond;
+    private final LongSupplier nanoTime;
+
+    private double balance;
+    private double reserve;
+    private long refilledAt;
+
+    RetryBudget(double ratio, double minRetriesPerSecond, LongSupplier nanoTime) {
+        this.ratio = ratio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.nanoTime = nanoTime;
+        this.reserve = minRetriesPerSecond;
+        this.refilledAt = nanoTime.getAsLong();
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Records that a request was made.
+     */
+    public synchronized void recordRequest() {
+        balance = Math.min(ratio * REQUESTS_KEPT, balance + ratio);
+    }
+
+    /**
+     * Withdraws one retry from the budget.
+     *
+     * @return True if the budget allowed the retry, false if it is used up.
+     */
+    public synchronized boolean tryRetry() {
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        final long now = nanoTime.getAsLong();
+        final long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            refilledAt = now;
+            reserve = Math.min(minRetriesPerSecond,
+                    reserve + elapsed * minRetriesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        }
+        if (reserve >= 1) {
+            reserve -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builder for RetryBudget.
+     */
+    public static class Builder {
+        private double ratio = 0.2;
+        private double minRetriesPerSecond = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of retries each request earns. Defaults to 0.2, one retry for every five requests.
+         *
+         * @param ratio The retries per request.
+         * @return The builder instance.
+         */
+        public Builder setRatio(double ratio) {
+            this.ratio = ratio;
+            return this;
+        }
+
+        /**
+         * Sets the number of retries allowed every second regardless of the ratio. Defaults to 10.
+         *
+         * @param minRetriesPerSecond The retries per second.
+         * @return The builder instance.
+         */
+        public Builder setMinRetriesPerSecond(double minRetriesPerSecond) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+            return this;
+        }
+
+        /**
+         * Builds the RetryBudget.
+         *
+         * @return The RetryBudget.
+         * @throws IllegalArgumentException If the ratio or the retries per second are negative.
+         */
+        public RetryBudget build() {
+            if (ratio < 0 || minRetriesPerSecond < 0) {
+                throw new IllegalArgumentException("ratio and minRetriesPerSecond must not be negative");
+            }
+            return new RetryBudget(ratio, minRetriesPerSecond, System::nanoTime);
+        }
+    }
+}
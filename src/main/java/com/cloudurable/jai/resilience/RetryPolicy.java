@@ -0,0 +1,337 @@
+package com.cloudurable.jai.resilience;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether and when a failed request is sent again.
+ * <p>
+ * A request is retried when it fails with an I/O error or when the response has one of the retry statuses, by
+ * default 408, 409, 429 and 5xx gateway and server errors. The delay before a retry uses decorrelated jitter: a random
+ * time between the base delay and three times the previous delay, capped at the maximum delay. A retry is never sent
+ * sooner than the server asks with a {@code retry-after-ms} or {@code Retry-After} header or, for a 429, with the
+ * {@code x-ratelimit-reset-requests} or {@code x-ratelimit-reset-tokens} header of the exhausted limit. If the server
+ * asks for more than the maximum delay, the response is returned instead. Every retry must also be allowed by the
+ * {@link RetryBudget}.
+ */
+public class RetryPolicy {
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO, Set.of(),
+            RetryBudget.builder().setRatio(0).setMinRetriesPerSecond(0).build());
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Set<Integer> retryStatuses;
+    private final RetryBudget retryBudget;
+
+    private RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Set<Integer> retryStatuses,
+                        RetryBudget retryBudget) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.retryStatuses = retryStatuses;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the policy that never retries.
+     *
+     * @return The policy.
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Gets the maximum number of attempts, including the first one.
+     *
+     * @return The maximum number of attempts.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Checks whether a response with the status code may be retried.
+     *
+     * @param statusCode The status code.
+     * @return True if it may be retried.
+     */
+    public boolean isRetryable(final int statusCode) {
+        return retryStatuses.contains(statusCode);
+    }
+
+    /**
+     * Checks whether a request that failed with the error may be retried.
+     *
+     * @param error The error, possibly wrapped in a CompletionException.
+     * @return True if it may be retried.
+     */
+    public boolean isRetryable(final Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException;
+    }
+
+    /**
+     * Starts the retries of one request and records the request in the retry budget.
+     *
+     * @return The retries of the request.
+     */
+    public Retries start() {
+        if (maxAttempts > 1) {
+            retryBudget.recordRequest();
+        }
+        return new Retries();
+    }
+
+    /**
+     * Reads the delay the server asks for before the next request, in milliseconds.
+     *
+     * @param statusCode The status code of the response.
+     * @param headers    The headers of the response.
+     * @param nowMillis  The current time, used for a Retry-After date.
+     * @return The delay, zero if the server does not ask for one.
+     */
+    static long serverDelayMillis(final int statusCode, final HttpHeaders headers, final long nowMillis) {
+        final Optional<String> retryAfterMillis = headers.firstValue("retry-after-ms");
+        if (retryAfterMillis.isPresent()) {
+            try {
+                return (long) Math.ceil(Double.parseDouble(retryAfterMillis.get().trim()));
+            } catch (NumberFormatException e) {
+                // Fall back to the other headers.
+            }
+        }
+        final Optional<String> retryAfter = headers.firstValue("retry-after");
+        if (retryAfter.isPresent()) {
+            final String value = retryAfter.get().trim();
+            try {
+                return (long) Math.ceil(Double.parseDouble(value) * 1000);
+            } catch (NumberFormatException e) {
+                try {
+                    return Math.max(0, ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().toEpochMilli() - nowMillis);
+                } catch (DateTimeParseException dateException) {
+                    // Fall back to the rate limit headers.
+                }
+            }
+        }
+        if (statusCode != 429) {
+            return 0;
+        }
+        long exhausted = 0;
+        long soonest = Long.MAX_VALUE;
+        for (String limit : new String[]{"requests", "tokens"}) {
+            final Optional<String> reset = headers.firstValue("x-ratelimit-reset-" + limit);
+            if (reset.isEmpty()) {
+                continue;
+            }
+            final long resetMillis = parseDuration(reset.get());
+            soonest = Math.min(soonest, resetMillis);
+            if (headers.firstValue("x-ratelimit-remaining-" + limit).filter("0"::equals).isPresent()) {
+                exhausted = Math.max(exhausted, resetMillis);
+            }
+        }
+        return exhausted > 0 ? exhausted : soonest == Long.MAX_VALUE ? 0 : soonest;
+    }
+
+    /**
+     * Parses a duration in the form the rate limit headers use, for example 20ms, 1.5s or 6m0s, into milliseconds.
+     */
+    static long parseDuration(final String value) {
+        final Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        while (matcher.find()) {
+            final double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    millis += amount * 3_600_000;
+                    break;
+                case "m":
+                    millis += amount * 60_000;
+                    break;
+                case "s":
+                    millis += amount * 1000;
+                    break;
+                default:
+                    millis += amount;
+            }
+        }
+        return (long) Math.ceil(millis);
+    }
+
+    /**
+     * The retries of one request. Not thread safe; the attempts of a request run one after another.
+     */
+    public final class Retries {
+        private int attempts = 1;
+        private long previousDelayMillis = baseDelayMillis;
+
+        private Retries() {
+        }
+
+        /**
+         * Gets the number of attempts made so far.
+         *
+         * @return The number of attempts.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Decides whether to retry after a response.
+         *
+         * @param statusCode The status code of the response.
+         * @param headers    The headers of the response.
+         * @return The delay before the retry in milliseconds, or -1 if the response is to be returned.
+         */
+        public long delayAfter(final int statusCode, final HttpHeaders headers) {
+            if (!isRetryable(statusCode)) {
+                return -1;
+            }
+            return nextDelay(serverDelayMillis(statusCode, headers, System.currentTimeMillis()));
+        }
+
+        /**
+         * Decides whether to retry after an error.
+         *
+         * @param error The error.
+         * @return The delay before the retry in milliseconds, or -1 if the error is to be returned.
+         */
+        public long delayAfter(final Throwable error) {
+            if (!isRetryable(error)) {
+                return -1;
+            }
+            return nextDelay(0);
+        }
+
+        private long nextDelay(final long serverDelayMillis) {
+            if (attempts >= maxAttempts || serverDelayMillis > maxDelayMillis) {
+                return -1;
+            }
+            final long jitter = Math.min(maxDelayMillis,
+                    ThreadLocalRandom.current().nextLong(baseDelayMillis, previousDelayMillis * 3 + 1));
+            if (!retryBudget.tryRetry()) {
+                return -1;
+            }
+            attempts++;
+            previousDelayMillis = Math.max(jitter, serverDelayMillis);
+            return previousDelayMillis;
+        }
+    }
+
+    /**
+     * Builder for RetryPolicy.
+     */
+    public static class Builder {
+        private int maxAttempts = 3;
+        private Duration baseDelay = Duration.ofMillis(500);
+        private Duration maxDelay = Duration.ofSeconds(30);
+        private Set<Integer> retryStatuses = Set.of(408, 409, 429, 500, 502, 503, 504);
+        private RetryBudget retryBudget;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of attempts, including the first one. Defaults to 3.
+         *
+         * @param maxAttempts The maximum number of attempts.
+         * @return The builder instance.
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the shortest delay before a retry. Defaults to 500 milliseconds.
+         *
+         * @param baseDelay The base delay.
+         * @return The builder instance.
+         */
+        public Builder setBaseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        /**
+         * Sets the longest delay before a retry. Defaults to 30 seconds.
+         *
+         * @param maxDelay The maximum delay.
+         * @return The builder instance.
+         */
+        public Builder setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Sets the status codes of responses that are retried. Defaults to 408, 409, 429, 500, 502, 503 and 504.
+         *
+         * @param retryStatuses The status codes.
+         * @return The builder instance.
+         */
+        public Builder setRetryStatuses(Set<Integer> retryStatuses) {
+            this.retryStatuses = new HashSet<>(retryStatuses);
+            return this;
+        }
+
+        /**
+         * Sets the retry budget. Policies sharing a budget share its retries. If none is set, the policy gets a budget
+         * with the default settings.
+         *
+         * @param retryBudget The retry budget.
+         * @return The builder instance.
+         */
+        public Builder setRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Builds the RetryPolicy.
+         *
+         * @return The RetryPolicy.
+         * @throws IllegalArgumentException If the maximum attempts are less than one or the delays are negative or
+         *                                  out of order.
+         */
+        public RetryPolicy build() {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+                throw new IllegalArgumentException("baseDelay must not be negative or greater than maxDelay");
+            }
+            return new RetryPolicy(maxAttempts, baseDelay, maxDelay, retryStatuses,
+                    retryBudget != null ? retryBudget : RetryBudget.builder().build());
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.cloudurable.jai.resilience;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A rate limiter with one token bucket for requests per minute and one for tokens per minute.
+ * <p>
+ * Each bucket holds up to one minute of its limit and refills continuously. A request is let through when the
+ * request bucket holds one request and the token bucket holds its estimated tokens; both are then taken. Requests
+ * are let through in the order they asked, so a large request is not starved by small ones. When the head of the
+ * queue has to wait, a single timer is set for the moment both buckets will hold enough; no thread sleeps. A caller
+ * that cancels its future leaves the queue, and a permit granted to a cancelled future is refunded.
+ * <p>
+ * A request estimated at more tokens than the per-minute limit is let through once the token bucket is full, and
+ * leaves the bucket in debt. Reconciling with the reported usage refunds an overestimate or charges an
+ * underestimate.
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final double requestsPerMinute;
+    private final double tokensPerMinute;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoTime;
+
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private double requests;
+    private double tokens;
+    private long refilledAt;
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpAt;
+
+    TokenBucketRateLimiter(double requestsPerMinute, double tokensPerMinute, ScheduledExecutorService scheduler,
+                           LongSupplier nanoTime) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.scheduler = scheduler;
+        this.nanoTime = nanoTime;
+        this.requests = requestsPerMinute;
+        this.tokens = tokensPerMinute;
+        this.refilledAt = nanoTime.getAsLong();
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public CompletableFuture<Void> acquire(final int estimatedTokens) {
+        final Waiter waiter = new Waiter(Math.max(estimatedTokens, 0));
+        synchronized (this) {
+            waiters.add(waiter);
+        }
+        waiter.future.whenComplete((ignored, error) -> {
+            if (waiter.future.isCancelled()) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+                drain();
+            }
+        });
+        drain();
+        return waiter.future;
+    }
+
+    @Override
+    public void reconcile(final int estimatedTokens, final int usedTokens) {
+        if (tokensPerMinute <= 0 || usedTokens < 0 || usedTokens == estimatedTokens) {
+            return;
+        }
+        synchronized (this) {
+            refill(nanoTime.getAsLong());
+            tokens = Math.min(tokensPerMinute, tokens + estimatedTokens - usedTokens);
+        }
+        if (usedTokens < estimatedTokens) {
+            drain();
+        }
+    }
+
+    /**
+     * Lets through every waiter at the head of the queue that the buckets can pay for, and sets a timer for the
+     * first one they cannot.
+     */
+    void drain() {
+        final List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            final long now = nanoTime.getAsLong();
+            refill(now);
+            while (!waiters.isEmpty()) {
+                final Waiter head = waiters.peek();
+                final long wait = waitNanos(head.tokens);
+                if (wait > 0) {
+                    schedule(now, wait);
+                    break;
+                }
+                waiters.poll();
+                if (requestsPerMinute > 0) {
+                    requests -= 1;
+                }
+                if (tokensPerMinute > 0) {
+                    tokens -= head.tokens;
+                }
+                admitted.add(head);
+            }
+        }
+        for (Waiter waiter : admitted) {
+            if (!waiter.future.complete(null)) {
+                refund(waiter);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+
+    /**
+     * Gives back the request and tokens taken for a waiter that was cancelled as it was let through.
+     */
+    private void refund(final Waiter waiter) {
+        synchronized (this) {
+            refill(nanoTime.getAsLong());
+            if (requestsPerMinute > 0) {
+                requests = Math.min(requestsPerMinute, requests + 1);
+            }
+            if (tokensPerMinute > 0) {
+                tokens = Math.min(tokensPerMinute, tokens + waiter.tokens);
+            }
+        }
+        drain();
+    }
+
+    private void refill(final long now) {
+        final long elapsed = now - refilledAt;
+        if (elapsed <= 0) {
+            return;
+        }
+        refilledAt = now;
+        requests = Math.min(requestsPerMinute, requests + elapsed * requestsPerMinute / NANOS_PER_MINUTE);
+        tokens = Math.min(tokensPerMinute, tokens + elapsed * tokensPerMinute / NANOS_PER_MINUTE);
+    }
+
+    private long waitNanos(final int estimatedTokens) {
+        double wait = 0;
+        if (requestsPerMinute > 0 && requests < 1) {
+            wait = (1 - requests) * NANOS_PER_MINUTE / requestsPerMinute;
+        }
+        if (tokensPerMinute > 0) {
+            final double needed = Math.min(estimatedTokens, tokensPerMinute);
+            if (tokens < needed) {
+                wait = Math.max(wait, (needed - tokens) * NANOS_PER_MINUTE / tokensPerMinute);
+            }
+        }
+        return wait == 0 ? 0 : (long) Math.ceil(wait);
+    }
+
+    private void schedule(final long now, final long wait) {
+        final long at = now + wait;
+        if (wakeUp != null && wakeUpAt - now > 0 && wakeUpAt - at <= 0) {
+            return;
+        }
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUpAt = at;
+        wakeUp = scheduler.schedule(this::drain, wait, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Waiter {
+        private final int tokens;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(final int tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Builder for TokenBucketRateLimiter.
+     */
+    public static class Builder {
+        private double requestsPerMinute;
+        private double tokensPerMinute;
+        private ScheduledExecutorService scheduler;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of requests allowed per minute. Zero, the default, means no request limit.
+         *
+         * @param requestsPerMinute The requests per minute.
+         * @return The builder instance.
+         */
+        public Builder setRequestsPerMinute(double requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+            return this;
+        }
+
+        /**
+         * Sets the number of tokens allowed per minute. Zero, the default, means no token limit.
+         *
+         * @param tokensPerMinute The tokens per minute.
+         * @return The builder instance.
+         */
+        public Builder setTokensPerMinute(double tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that wakes up waiting requests. If none is set, the limiter creates a single daemon
+         * thread.
+         *
+         * @param scheduler The scheduler.
+         * @return The builder instance.
+         */
+        public Builder setScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Builds the TokenBucketRateLimiter.
+         *
+         * @return The TokenBucketRateLimiter.
+         * @throws IllegalArgumentException If no limit is set or a limit is negative.
+         */
+        public TokenBucketRateLimiter build() {
+            if (requestsPerMinute < 0 || tokensPerMinute < 0 || (requestsPerMinute == 0 && tokensPerMinute == 0)) {
+                throw new IllegalArgumentException("requestsPerMinute or tokensPerMinute must be positive");
+            }
+            final ScheduledExecutorService limiterScheduler = scheduler != null ? scheduler :
+                    Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "jai-rate-limiter");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            return new TokenBucketRateLimiter(requestsPerMinute, tokensPerMinute, limiterScheduler, System::nanoTime);
+        }
+    }
+}
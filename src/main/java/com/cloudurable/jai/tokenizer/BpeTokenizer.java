@@ -0,0 +1,544 @@
+package com.cloudurable.jai.tokenizer;
+
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.ChatRequestSerializer;
+import com.cloudurable.jai.model.text.completion.chat.Message;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts and encodes tokens the way the OpenAI API does, so requests can be sized before they are sent.
+ * <p>
+ * The tokenizer is built from the .tiktoken file OpenAI publishes for an encoding, for example
+ * https://openaipublic.blob.core.windows.net/encodings/cl100k_base.tiktoken. The files are not shipped with the
+ * library; {@link #load(Encoding)} reads one from the classpath, and {@link #load(Encoding, InputStream)} from a
+ * stream. Each line of the file holds the base64 bytes of a token and its rank, which is also its token id.
+ * <p>
+ * Text is split into pieces with the pattern of the encoding, and each piece that is not a token itself is merged
+ * from its bytes, always merging the adjacent pair whose merged token has the lowest rank. The merge table is keyed
+ * by the pair of token ids packed in a long, and the vocabulary by the bytes of the token, both in open addressing
+ * tables of primitive arrays. Counting tokens allocates nothing once the working buffers of the calling thread have
+ * grown to fit the longest piece.
+ * <p>
+ * Special tokens such as {@code <|endoftext|>} are encoded as ordinary text. A tokenizer is immutable and thread
+ * safe.
+ */
+public final class BpeTokenizer {
+
+    /**
+     * Tokens every chat message adds besides its role and content.
+     */
+    private static final int TOKENS_PER_MESSAGE = 3;
+    /**
+     * Tokens that prime the reply of the assistant.
+     */
+    private static final int TOKENS_PER_REPLY = 3;
+
+    private static final Map<Encoding, BpeTokenizer> LOADED = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Encoding encoding;
+    private final Vocabulary vocabulary;
+    private final MergeTable merges;
+    private final int[] byteTokens = new int[256];
+
+    private BpeTokenizer(final Encoding encoding, final Vocabulary vocabulary) {
+        this.encoding = encoding;
+        this.vocabulary = vocabulary;
+        final byte[] single = new byte[1];
+        for (int value = 0; value < 256; value++) {
+            single[0] = (byte) value;
+            byteTokens[value] = vocabulary.find(single, 0, 1);
+            if (byteTokens[value] < 0) {
+                throw new IllegalArgumentException("The vocabulary has no token for byte " + value);
+            }
+        }
+        this.merges = MergeTable.of(vocabulary);
+    }
+
+    /**
+     * Loads the tokenizer of an encoding from the file named after the encoding, for example cl100k_base.tiktoken, at
+     * the root of the classpath. Each encoding is loaded once and shared.
+     *
+     * @param encoding The encoding.
+     * @return The tokenizer.
+     * @throws UncheckedIOException If the file is not on the classpath or cannot be read.
+     */
+    public static BpeTokenizer load(final Encoding encoding) {
+        return LOADED.computeIfAbsent(encoding, key -> {
+            final String resource = "/" + key.getName() + ".tiktoken";
+            try (InputStream ranks = BpeTokenizer.class.getResourceAsStream(resource)) {
+                if (ranks == null) {
+                    throw new IOException(resource + " is not on the classpath; download it from "
+                            + "https://openaipublic.blob.core.windows.net/encodings" + resource);
+                }
+                return load(key, ranks);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Loads the tokenizer of an encoding from a .tiktoken file.
+     *
+     * @param encoding The encoding, which selects the pattern text is split with.
+     * @param ranks    The .tiktoken file; it is read to the end but not closed.
+     * @return The tokenizer.
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a valid vocabulary.
+     */
+    public static BpeTokenizer load(final Encoding encoding, final InputStream ranks) throws IOException {
+        final List<byte[]> tokens = new ArrayList<>(100_000);
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(ranks, StandardCharsets.US_ASCII));
+        final Base64.Decoder decoder = Base64.getDecoder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            final int space = line.indexOf(' ');
+            if (space < 0) {
+                throw new IllegalArgumentException("Not a token and rank: " + line);
+            }
+            final int rank = Integer.parseInt(line.substring(space + 1).trim());
+            while (tokens.size() <= rank) {
+                tokens.add(null);
+            }
+            tokens.set(rank, decoder.decode(line.substring(0, space)));
+        }
+        return new BpeTokenizer(encoding, Vocabulary.of(tokens));
+    }
+
+    /**
+     * Gets the encoding of the tokenizer.
+     *
+     * @return The encoding.
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Counts the tokens of a text.
+     *
+     * @param text The text.
+     * @return The number of tokens.
+     */
+    public int countTokens(final CharSequence text) {
+        return encode(text, SCRATCH.get(), false);
+    }
+
+    /**
+     * Counts the tokens a chat request uses for its prompt: the tokens of each message's role, content, name and
+     * function call, plus the tokens the API adds for each message and to prime the reply. Function definitions are
+     * counted as the tokens of the JSON they are sent as, which overestimates them slightly.
+     *
+     * @param chatRequest The chat request.
+     * @return The number of prompt tokens.
+     */
+    public int countTokens(final ChatRequest chatRequest) {
+        int count = TOKENS_PER_REPLY;
+        if (chatRequest.getMessages() != null) {
+            for (Message message : chatRequest.getMessages()) {
+                count += countTokens(message);
+            }
+        }
+        if (chatRequest.getFunctions() != null && !chatRequest.getFunctions().isEmpty()) {
+            count += countTokens(ChatRequestSerializer.serialize(ChatRequest.builder().model("")
+                    .functions(chatRequest.getFunctions()).build()));
+        }
+        return count;
+    }
+
+    /**
+     * Counts the tokens one chat message adds to a prompt.
+     *
+     * @param message The message.
+     * @return The number of tokens.
+     */
+    public int countTokens(final Message message) {
+        int count = TOKENS_PER_MESSAGE;
+        if (message.getRole() != null) {
+            count += countTokens(message.getRole().toString().toLowerCase());
+        }
+        if (message.getContent() != null) {
+            count += countTokens(message.getContent());
+        }
+        if (message.getName() != null) {
+            count += 1 + countTokens(message.getName());
+        }
+        if (message.getFunctionCall() != null) {
+            count += countTokens(message.getFunctionCall().getName());
+            if (message.getFunctionCall().getArguments() != null) {
+                count += countTokens(message.getFunctionCall().getArguments().toString());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Encodes a text into token ids.
+     *
+     * @param text The text.
+     * @return The token ids.
+     */
+    public int[] encode(final CharSequence text) {
+        final Scratch scratch = SCRATCH.get();
+        final int count = encode(text, scratch, true);
+        return Arrays.copyOf(scratch.tokens, count);
+    }
+
+    /**
+     * Decodes token ids into text. Token sequences that end inside a multi-byte character decode to a replacement
+     * character.
+     *
+     * @param tokens The token ids.
+     * @return The text.
+     * @throws IllegalArgumentException If a token id is not in the vocabulary.
+     */
+    public String decode(final int[] tokens) {
+        int length = 0;
+        for (int token : tokens) {
+            length += vocabulary.length(token);
+        }
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        for (int token : tokens) {
+            offset = vocabulary.copy(token, bytes, offset);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int encode(final CharSequence text, final Scratch scratch, final boolean collect) {
+        scratch.tokenCount = 0;
+        int count = 0;
+        int start = 0;
+        final int length = text.length();
+        while (start < length) {
+            final int end = encoding.pieceEnd(text, start);
+            count += encodePiece(scratch, scratch.utf8(text, start, end), collect);
+            start = end;
+        }
+        return count;
+    }
+
+    /**
+     * Encodes the piece held in the bytes of the scratch, returning the number of its tokens.
+     */
+    private int encodePiece(final Scratch scratch, final int length, final boolean collect) {
+        final int whole = vocabulary.find(scratch.bytes, 0, length);
+        if (whole >= 0) {
+            if (collect) {
+                scratch.add(whole);
+            }
+            return 1;
+        }
+        final int[] parts = scratch.parts(length);
+        final int[] ranks = scratch.ranks;
+        final byte[] bytes = scratch.bytes;
+        int size = length;
+        for (int index = 0; index < size; index++) {
+            parts[index] = byteTokens[bytes[index] & 0xFF];
+        }
+        for (int index = 0; index < size - 1; index++) {
+            ranks[index] = merges.get(parts[index], parts[index + 1]);
+        }
+        while (size > 1) {
+            int lowest = Integer.MAX_VALUE;
+            int at = -1;
+            for (int index = 0; index < size - 1; index++) {
+                if (ranks[index] < lowest) {
+                    lowest = ranks[index];
+                    at = index;
+                }
+            }
+            if (at < 0) {
+                break;
+            }
+            parts[at] = lowest;
+            System.arraycopy(parts, at + 2, parts, at + 1, size - at - 2);
+            System.arraycopy(ranks, at + 2, ranks, at + 1, Math.max(size - at - 3, 0));
+            size--;
+            if (at > 0) {
+                ranks[at - 1] = merges.get(parts[at - 1], parts[at]);
+            }
+            if (at < size - 1) {
+                ranks[at] = merges.get(parts[at], parts[at + 1]);
+            }
+        }
+        if (collect) {
+            for (int index = 0; index < size; index++) {
+                scratch.add(parts[index]);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The working buffers of one thread.
+     */
+    private static final class Scratch {
+        private byte[] bytes = new byte[256];
+        private int[] parts = new int[256];
+        private int[] ranks = new int[256];
+        private int[] tokens = new int[1024];
+        private int tokenCount;
+
+        /**
+         * Writes the UTF-8 bytes of a range of text into the byte buffer, returning their number. An unpaired
+         * surrogate is written as '?', as {@link String#getBytes} does.
+         */
+        int utf8(final CharSequence text, final int start, final int end) {
+            if (bytes.length < (end - start) * 3) {
+                bytes = new byte[(end - start) * 3 * 2];
+            }
+            final byte[] out = bytes;
+            int length = 0;
+            for (int index = start; index < end; index++) {
+                final char c = text.charAt(index);
+                if (c < 0x80) {
+                    out[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[length++] = (byte) (0xC0 | c >> 6);
+                    out[length++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && index + 1 < end
+                        && Character.isLowSurrogate(text.charAt(index + 1))) {
+                    final int codePoint = Character.toCodePoint(c, text.charAt(++index));
+                    out[length++] = (byte) (0xF0 | codePoint >> 18);
+                    out[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    out[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    out[length++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    out[length++] = '?';
+                } else {
+                    out[length++] = (byte) (0xE0 | c >> 12);
+                    out[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    out[length++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return length;
+        }
+
+        int[] parts(final int length) {
+            if (parts.length < length) {
+                parts = new int[length * 2];
+                ranks = new int[length * 2];
+            }
+            return parts;
+        }
+
+        void add(final int token) {
+            if (tokenCount == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            }
+            tokens[tokenCount++] = token;
+        }
+    }
+
+    /**
+     * The bytes of every token, stored end to end, with an open addressing table from bytes to token id.
+     */
+    private static final class Vocabulary {
+        private final byte[] data;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final int[] slots;
+        private final int mask;
+
+        private Vocabulary(final byte[] data, final int[] offsets, final int[] lengths, final int[] slots) {
+            this.data = data;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.slots = slots;
+            this.mask = slots.length - 1;
+        }
+
+        static Vocabulary of(final List<byte[]> tokens) {
+            int total = 0;
+            int count = 0;
+            for (byte[] token : tokens) {
+                if (token != null) {
+                    total += token.length;
+                    count++;
+                }
+            }
+            final byte[] data = new byte[total];
+            final int[] offsets = new int[tokens.size()];
+            final int[] lengths = new int[tokens.size()];
+            final int[] slots = new int[Integer.highestOneBit(Math.max(count, 1) * 2) * 2];
+            final int mask = slots.length - 1;
+            int offset = 0;
+            for (int token = 0; token < tokens.size(); token++) {
+                final byte[] bytes = tokens.get(token);
+                if (bytes == null) {
+                    lengths[token] = -1;
+                    continue;
+                }
+                System.arraycopy(bytes, 0, data, offset, bytes.length);
+                offsets[token] = offset;
+                lengths[token] = bytes.length;
+                offset += bytes.length;
+                int slot = hash(bytes, 0, bytes.length) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = token + 1;
+            }
+            return new Vocabulary(data, offsets, lengths, slots);
+        }
+
+        private static int hash(final byte[] bytes, final int from, final int to) {
+            int hash = 0x811C9DC5;
+            for (int index = from; index < to; index++) {
+                hash = (hash ^ bytes[index]) * 0x01000193;
+            }
+            return hash ^ hash >>> 16;
+        }
+
+        /**
+         * Finds the token of a range of bytes, returning -1 if there is none.
+         */
+        int find(final byte[] bytes, final int from, final int to) {
+            int slot = hash(bytes, from, to) & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                final int token = entry - 1;
+                if (lengths[token] == to - from
+                        && Arrays.equals(data, offsets[token], offsets[token] + to - from, bytes, from, to)) {
+                    return token;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        int size() {
+            return lengths.length;
+        }
+
+        int length(final int token) {
+            if (token < 0 || token >= lengths.length || lengths[token] < 0) {
+                throw new IllegalArgumentException("Unknown token " + token);
+            }
+            return lengths[token];
+        }
+
+        int copy(final int token, final byte[] to, final int offset) {
+            final int length = length(token);
+            System.arraycopy(data, offsets[token], to, offset, length);
+            return offset + length;
+        }
+
+        boolean contains(final int token) {
+            return lengths[token] >= 0;
+        }
+
+        byte[] data() {
+            return data;
+        }
+
+        int offset(final int token) {
+            return offsets[token];
+        }
+    }
+
+    /**
+     * Maps a pair of adjacent tokens, packed into a long, to the token of their bytes joined, for every way a token
+     * can be split into two tokens. The merged token's id is its rank, so the lowest id is merged first.
+     */
+    private static final class MergeTable {
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        private MergeTable(final long[] keys, final int[] values) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+        }
+
+        static MergeTable of(final Vocabulary vocabulary) {
+            long[] pairs = new long[vocabulary.size()];
+            int[] merged = new int[vocabulary.size()];
+            int count = 0;
+            final byte[] data = vocabulary.data();
+            for (int token = 0; token < vocabulary.size(); token++) {
+                if (!vocabulary.contains(token)) {
+                    continue;
+                }
+                final int offset = vocabulary.offset(token);
+                final int length = vocabulary.length(token);
+                for (int split = 1; split < length; split++) {
+                    final int left = vocabulary.find(data, offset, offset + split);
+                    if (left < 0) {
+                        continue;
+                    }
+                    final int right = vocabulary.find(data, offset + split, offset + length);
+                    if (right < 0) {
+                        continue;
+                    }
+                    if (count == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, count * 2);
+                        merged = Arrays.copyOf(merged, count * 2);
+                    }
+                    pairs[count] = pack(left, right);
+                    merged[count++] = token;
+                }
+            }
+            final int capacity = Integer.highestOneBit(Math.max(count, 1) * 2) * 2;
+            final long[] keys = new long[capacity];
+            final int[] values = new int[capacity];
+            Arrays.fill(keys, -1L);
+            final int mask = capacity - 1;
+            for (int index = 0; index < count; index++) {
+                int slot = mix(pairs[index]) & mask;
+                while (keys[slot] != -1L && keys[slot] != pairs[index]) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == -1L || merged[index] < values[slot]) {
+                    keys[slot] = pairs[index];
+                    values[slot] = merged[index];
+                }
+            }
+            return new MergeTable(keys, values);
+        }
+
+        private static long pack(final int left, final int right) {
+            return (long) left << 32 | right & 0xFFFFFFFFL;
+        }
+
+        private static int mix(final long key) {
+            final long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32);
+        }
+
+        /**
+         * Gets the token the pair merges into, or Integer.MAX_VALUE if the pair does not merge.
+         */
+        int get(final int left, final int right) {
+            final long key = pack(left, right);
+            int slot = mix(key) & mask;
+            long found;
+            while ((found = keys[slot]) != -1L) {
+                if (found == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+}
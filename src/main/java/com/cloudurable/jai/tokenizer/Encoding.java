@@ -0,0 +1,65 @@
+package com.cloudurable.jai.tokenizer;
+
+/**
+ * The byte pair encodings of the OpenAI models. An encoding is a vocabulary of token byte sequences, published by
+ * OpenAI as a .tiktoken file, and a pattern that splits text into pieces before the pieces are encoded.
+ */
+public enum Encoding {
+    /**
+     * The encoding of gpt-4, gpt-3.5-turbo and text-embedding-ada-002.
+     */
+    CL100K_BASE("cl100k_base"),
+    /**
+     * The encoding of text-davinci-002, text-davinci-003, the edit models and the codex models.
+     */
+    P50K_BASE("p50k_base"),
+    /**
+     * The encoding of the GPT-3 models davinci, curie, babbage and ada.
+     */
+    R50K_BASE("r50k_base");
+
+    private final String name;
+
+    Encoding(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the encoding a model uses. Models the library does not know are assumed to use cl100k_base, the encoding
+     * of the current chat and embedding models.
+     *
+     * @param model The model, for example gpt-3.5-turbo-0613.
+     * @return The encoding.
+     */
+    public static Encoding forModel(final String model) {
+        if (model == null) {
+            return CL100K_BASE;
+        }
+        if (model.startsWith("text-davinci-002") || model.startsWith("text-davinci-003")
+                || model.startsWith("text-davinci-edit") || model.startsWith("code-")) {
+            return P50K_BASE;
+        }
+        if (model.startsWith("davinci") || model.startsWith("curie") || model.startsWith("babbage")
+                || model.startsWith("ada") || model.startsWith("text-davinci") || model.startsWith("text-curie")
+                || model.startsWith("text-babbage") || model.startsWith("text-ada")) {
+            return R50K_BASE;
+        }
+        return CL100K_BASE;
+    }
+
+    /**
+     * Gets the name OpenAI gives the encoding, which is also the name of its .tiktoken file without the extension.
+     *
+     * @return The name, for example cl100k_base.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Finds the end of the piece of text that starts at an index.
+     */
+    int pieceEnd(final CharSequence text, final int start) {
+        return this == CL100K_BASE ? PieceSplitter.cl100kEnd(text, start) : PieceSplitter.gpt2End(text, start);
+    }
+}
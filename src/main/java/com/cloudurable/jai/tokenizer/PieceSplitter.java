@@ -0,0 +1,207 @@
+package com.cloudurable.jai.tokenizer;
+
+/**
+ * Splits text into the pieces the byte pair encoding is applied to, the way the split patterns of tiktoken do, but
+ * by scanning the text instead of running a regular expression, so splitting allocates nothing.
+ * <p>
+ * The cl100k_base pattern is
+ * {@code (?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\r\n\p{L}\p{N}]?\p{L}+|\p{N}{1,3}| ?[^\s\p{L}\p{N}]+[\r\n]*|\s*[\r\n]+|\s+(?!\S)|\s+}
+ * and the pattern of the GPT-2 based encodings is
+ * {@code 's|'t|'re|'ve|'m|'ll|'d| ?\p{L}+| ?\p{N}+| ?[^\s\p{L}\p{N}]+|\s+(?!\S)|\s+}. Each method returns the end of
+ * the match of the first alternative that matches at the start index.
+ */
+final class PieceSplitter {
+
+    private PieceSplitter() {
+    }
+
+    static int cl100kEnd(final CharSequence text, final int start) {
+        final int length = text.length();
+        final int first = Character.codePointAt(text, start);
+        final int afterFirst = start + Character.charCount(first);
+
+        if (first == '\'' && afterFirst < length) {
+            final int contraction = contractionEnd(text, afterFirst, true);
+            if (contraction > 0) {
+                return contraction;
+            }
+        }
+        if (isLetter(first)) {
+            return skipLetters(text, afterFirst);
+        }
+        if (first != '\r' && first != '\n' && !isNumber(first) && afterFirst < length
+                && isLetter(Character.codePointAt(text, afterFirst))) {
+            return skipLetters(text, afterFirst);
+        }
+        if (isNumber(first)) {
+            int end = afterFirst;
+            for (int count = 1; count < 3 && end < length; count++) {
+                final int next = Character.codePointAt(text, end);
+                if (!isNumber(next)) {
+                    break;
+                }
+                end += Character.charCount(next);
+            }
+            return end;
+        }
+        final int punctuationStart = first == ' ' && afterFirst < length
+                && isPunctuation(Character.codePointAt(text, afterFirst)) ? afterFirst : start;
+        if (isPunctuation(Character.codePointAt(text, punctuationStart))) {
+            int end = skipPunctuation(text, punctuationStart);
+            while (end < length && (text.charAt(end) == '\r' || text.charAt(end) == '\n')) {
+                end++;
+            }
+            return end;
+        }
+        // first is whitespace
+        int end = start;
+        int afterLastNewline = -1;
+        while (end < length) {
+            final int next = Character.codePointAt(text, end);
+            if (!isWhitespace(next)) {
+                break;
+            }
+            end += Character.charCount(next);
+            if (next == '\r' || next == '\n') {
+                afterLastNewline = end;
+            }
+        }
+        if (afterLastNewline > 0) {
+            return afterLastNewline;
+        }
+        return whitespaceEnd(text, start, end);
+    }
+
+    static int gpt2End(final CharSequence text, final int start) {
+        final int length = text.length();
+        final int first = Character.codePointAt(text, start);
+        final int afterFirst = start + Character.charCount(first);
+
+        if (first == '\'' && afterFirst < length) {
+            final int contraction = contractionEnd(text, afterFirst, false);
+            if (contraction > 0) {
+                return contraction;
+            }
+        }
+        final int bodyStart = first == ' ' && afterFirst < length
+                && !isWhitespace(Character.codePointAt(text, afterFirst)) ? afterFirst : start;
+        final int body = Character.codePointAt(text, bodyStart);
+        if (isLetter(body)) {
+            return skipLetters(text, bodyStart);
+        }
+        if (isNumber(body)) {
+            int end = bodyStart;
+            while (end < length) {
+                final int next = Character.codePointAt(text, end);
+                if (!isNumber(next)) {
+                    break;
+                }
+                end += Character.charCount(next);
+            }
+            return end;
+        }
+        if (isPunctuation(body)) {
+            return skipPunctuation(text, bodyStart);
+        }
+        int end = start;
+        while (end < length) {
+            final int next = Character.codePointAt(text, end);
+            if (!isWhitespace(next)) {
+                break;
+            }
+            end += Character.charCount(next);
+        }
+        return whitespaceEnd(text, start, end);
+    }
+
+    /**
+     * Matches {@code \s+(?!\S)|\s+} for a run of whitespace: the run leaves its last character to the next piece
+     * unless it ends the text or is a single character.
+     */
+    private static int whitespaceEnd(final CharSequence text, final int start, final int end) {
+        if (end == text.length()) {
+            return end;
+        }
+        final int last = Character.codePointBefore(text, end);
+        final int beforeLast = end - Character.charCount(last);
+        return beforeLast > start ? beforeLast : end;
+    }
+
+    /**
+     * Matches 's, 't, 're, 've, 'm, 'll or 'd after an apostrophe, returning the end or -1.
+     */
+    private static int contractionEnd(final CharSequence text, final int index, final boolean ignoreCase) {
+        final int length = text.length();
+        final char first = lower(text.charAt(index), ignoreCase);
+        if (first == 's' || first == 't' || first == 'm' || first == 'd') {
+            return index + 1;
+        }
+        if (index + 1 < length) {
+            final char second = lower(text.charAt(index + 1), ignoreCase);
+            if ((first == 'r' || first == 'v') && second == 'e' || first == 'l' && second == 'l') {
+                return index + 2;
+            }
+        }
+        return -1;
+    }
+
+    private static char lower(final char c, final boolean ignoreCase) {
+        return ignoreCase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int skipLetters(final CharSequence text, final int from) {
+        int end = from;
+        while (end < text.length()) {
+            final int next = Character.codePointAt(text, end);
+            if (!isLetter(next)) {
+                break;
+            }
+            end += Character.charCount(next);
+        }
+        return end;
+    }
+
+    private static int skipPunctuation(final CharSequence text, final int from) {
+        int end = from;
+        while (end < text.length()) {
+            final int next = Character.codePointAt(text, end);
+            if (!isPunctuation(next)) {
+                break;
+            }
+            end += Character.charCount(next);
+        }
+        return end;
+    }
+
+    static boolean isLetter(final int codePoint) {
+        if (codePoint < 128) {
+            return (codePoint | 0x20) >= 'a' && (codePoint | 0x20) <= 'z';
+        }
+        return Character.isLetter(codePoint);
+    }
+
+    static boolean isNumber(final int codePoint) {
+        if (codePoint < 128) {
+            return codePoint >= '0' && codePoint <= '9';
+        }
+        final int type = Character.getType(codePoint);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+                || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * Whether a code point has the Unicode White_Space property, which is what {@code \s} matches in the patterns.
+     */
+    static boolean isWhitespace(final int codePoint) {
+        if (codePoint < 128) {
+            return codePoint == ' ' || codePoint >= '\t' && codePoint <= '\r';
+        }
+        return codePoint == 0x85 || codePoint == 0xA0 || codePoint == 0x1680
+                || codePoint >= 0x2000 && codePoint <= 0x200A || codePoint == 0x2028 || codePoint == 0x2029
+                || codePoint == 0x202F || codePoint == 0x205F || codePoint == 0x3000;
+    }
+
+    private static boolean isPunctuation(final int codePoint) {
+        return !isWhitespace(codePoint) && !isLetter(codePoint) && !isNumber(codePoint);
+    }
+}
@@ -0,0 +1,148 @@
+package com.cloudurable.jai.util;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A body subscriber that decodes a UTF-8 response body straight into a {@code char[]} as the buffers arrive.
+ * <p>
+ * {@link HttpResponse.BodyHandlers#ofString()} keeps every buffer until the body is complete, copies them into one
+ * byte array, and decodes that into a String; jparse then copies the String into a char array before parsing. This
+ * subscriber decodes each buffer as soon as it is received, so the body exists only once, as the char array that is
+ * handed to {@code JsonParser.parse(char[])}. When the response has a Content-Length the array is sized up front, and
+ * for ASCII JSON (the common case) no resize or trim copy is needed. The Content-Length is only trusted up to
+ * {@link #MAX_INITIAL_CAPACITY}, so a wrong or hostile header cannot allocate a huge array before any byte arrives;
+ * larger bodies grow the array as they are decoded.
+ */
+public class CharArrayBodySubscriber implements HttpResponse.BodySubscriber<char[]> {
+
+    private static final int DEFAULT_CAPACITY = 8 * 1024;
+
+    /**
+     * The largest array allocated from the expected length, in chars.
+     */
+    static final int MAX_INITIAL_CAPACITY = 1024 * 1024;
+
+    private static final HttpResponse.BodyHandler<char[]> BODY_HANDLER = responseInfo -> new CharArrayBodySubscriber(
+            responseInfo.headers().firstValueAsLong("Content-Length").orElse(DEFAULT_CAPACITY));
+
+    private final CompletableFuture<char[]> body = new CompletableFuture<>();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars;
+    private ByteBuffer leftover;
+
+    /**
+     * Constructs a CharArrayBodySubscriber.
+     *
+     * @param expectedLength The expected length of the body in bytes, used to size the char array up to
+     *                       {@link #MAX_INITIAL_CAPACITY}.
+     */
+    public CharArrayBodySubscriber(final long expectedLength) {
+        this.chars = CharBuffer.allocate((int) Math.max(16, Math.min(expectedLength, MAX_INITIAL_CAPACITY)));
+    }
+
+    /**
+     * Returns the body handler that reads every response body into a char array.
+     * The same handler instance is returned on every call.
+     *
+     * @return The body handler.
+     */
+    public static HttpResponse.BodyHandler<char[]> bodyHandler() {
+        return BODY_HANDLER;
+    }
+
+    @Override
+    public CompletionStage<char[]> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                decode(withLeftover(buffer), false);
+            }
+        } catch (RuntimeException ex) {
+            body.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (body.isDone()) {
+            return;
+        }
+        try {
+            decode(leftover == null ? ByteBuffer.allocate(0) : leftover, true);
+            leftover = null;
+            while (decoder.flush(chars).isOverflow()) {
+                grow();
+            }
+            final char[] array = chars.array();
+            body.complete(chars.position() == array.length ? array : Arrays.copyOf(array, chars.position()));
+        } catch (RuntimeException ex) {
+            body.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Prepends the bytes of a multibyte character that was split across the previous buffer boundary.
+     */
+    private ByteBuffer withLeftover(final ByteBuffer buffer) {
+        if (leftover == null) {
+            return buffer;
+        }
+        final ByteBuffer joined = ByteBuffer.allocate(leftover.remaining() + buffer.remaining());
+        joined.put(leftover).put(buffer).flip();
+        leftover = null;
+        return joined;
+    }
+
+    private void decode(final ByteBuffer in, final boolean endOfInput) {
+        while (true) {
+            final CoderResult result = decoder.decode(in, chars, endOfInput);
+            if (result.isOverflow()) {
+                grow();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                // Malformed input is replaced, so this is not expected.
+                throw new IllegalStateException("Unable to decode response body: " + result);
+            }
+        }
+        if (in.hasRemaining()) {
+            leftover = ByteBuffer.allocate(in.remaining()).put(in);
+            leftover.flip();
+        }
+    }
+
+    private void grow() {
+        final CharBuffer larger = CharBuffer.allocate((int) Math.max(16,
+                Math.min(chars.capacity() * 2L, Integer.MAX_VALUE - 8)));
+        chars.flip();
+        larger.put(chars);
+        chars = larger;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudurable.jai.util;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A body subscriber that writes a response body into a file channel, starting at a given position, as the buffers
+ * arrive.
+ * <p>
+ * {@link HttpResponse.BodyHandlers#ofFile} always writes from the start of a file it opens itself. Writing at a
+ * position of a shared channel instead lets a download resume after the bytes already on disk, and lets several range
+ * requests fill their own regions of one file at once. The writes do not move the position of the channel, and a
+ * request that is retried writes the same region again, so a retry never duplicates data. The body is the number of
+ * bytes written; the channel is left open.
+ */
+public class FileRegionBodySubscriber implements HttpResponse.BodySubscriber<Long> {
+
+    private final FileChannel channel;
+    private final long position;
+    private final CompletableFuture<Long> body = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private long written;
+
+    /**
+     * Constructs a FileRegionBodySubscriber.
+     *
+     * @param channel  The channel to write to, opened for writing.
+     * @param position The position in the file of the first byte of the body.
+     */
+    public FileRegionBodySubscriber(final FileChannel channel, final long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    @Override
+    public CompletionStage<Long> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+        } catch (IOException ex) {
+            subscription.cancel();
+            body.completeExceptionally(ex);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        body.complete(written);
+    }
+}
@@ -0,0 +1,29 @@
+package com.cloudurable.jai.util;
+
+import io.nats.jparse.parser.JsonParser;
+import io.nats.jparse.parser.JsonParserBuilder;
+
+/**
+ * Provides the JSON parsers used by the deserializers.
+ * <p>
+ * Building a parser through {@link JsonParserBuilder} allocates a builder and a parser every time. The deserializers
+ * run once per response, so at a few thousand responses per second that is needless garbage. Parsers are not
+ * shared between threads; instead each thread builds one parser on first use and reuses it for every later response.
+ */
+public class JsonParsers {
+
+    private static final ThreadLocal<JsonParser> PARSER = ThreadLocal.withInitial(() -> JsonParserBuilder.builder().build());
+
+    private JsonParsers() {
+    }
+
+    /**
+     * Returns the JSON parser cached for the calling thread.
+     * The parser must not be handed to another thread.
+     *
+     * @return The JSON parser of the calling thread.
+     */
+    public static JsonParser parser() {
+        return PARSER.get();
+    }
+}
@@ -1,17 +1,32 @@
 package com.cloudurable.jai.util;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * The {@code MultipartEntityBuilder} class is responsible for building a multipart entity
  * for HTTP requests that require multipart/form-data content type.
  * It allows adding text and binary parts to the entity and generates the byte array representation
  * of the entity.
+ * <p>
+ * Binary parts can be byte arrays, byte buffers, files or input streams of known length. The entity is best sent with
+ * {@link #buildBodyPublisher()}, which streams the parts as the HTTP client asks for them, so files are never held in
+ * memory and byte arrays are never copied, and which declares the length of the entity up front so the request is sent
+ * with a Content-Length header rather than chunked.
  */
 public class MultipartEntityBuilder {
 
@@ -67,35 +82,142 @@ public class MultipartEntityBuilder {
      * @return The {@code MultipartEntityBuilder} instance.
      */
     public MultipartEntityBuilder addBinaryBody(String name, byte[] data, String contentType, String filename) {
-        parts.add(new BinaryPart(name, data, contentType, filename));
+        parts.add(new BinaryPart(name, () -> new ByteArrayInputStream(data), data.length, contentType, filename));
         return this;
     }
 
     /**
-     * Builds the multipart entity and returns it as a byte array.
+     * Adds a binary body part whose data are the remaining bytes of a buffer. The buffer's position is not changed.
      *
-     * @return The byte array representation of the multipart entity.
+     * @param name        The name of the part.
+     * @param data        The binary data of the body.
+     * @param contentType The content type of the binary data.
+     * @param filename    The filename associated with the binary data.
+     * @return The {@code MultipartEntityBuilder} instance.
      */
-    public byte[] build() {
+    public MultipartEntityBuilder addBinaryBody(String name, ByteBuffer data, String contentType, String filename) {
+        final ByteBuffer buffer = data.duplicate();
+        parts.add(new BinaryPart(name, () -> new ByteBufferInputStream(buffer.duplicate()), buffer.remaining(),
+                contentType, filename));
+        return this;
+    }
+
+    /**
+     * Adds a binary body part whose data are the contents of a file. The file is opened each time the entity is
+     * sent and read as it is sent; its size is taken now.
+     *
+     * @param name        The name of the part.
+     * @param file        The file.
+     * @param contentType The content type of the binary data.
+     * @param filename    The filename associated with the binary data.
+     * @return The {@code MultipartEntityBuilder} instance.
+     * @throws UncheckedIOException If the size of the file cannot be read.
+     */
+    public MultipartEntityBuilder addBinaryBody(String name, Path file, String contentType, String filename) {
         try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            for (Part part : parts) {
+            parts.add(new BinaryPart(name, () -> {
+                try {
+                    return Files.newInputStream(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, Files.size(file), contentType, filename));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a binary body part whose data are read from input streams. The supplier is called each time the entity
+     * is sent, so a request can be retried, and each stream must hold exactly the given number of bytes.
+     *
+     * @param name        The name of the part.
+     * @param data        Opens a stream of the binary data.
+     * @param length      The number of bytes of the data.
+     * @param contentType The content type of the binary data.
+     * @param filename    The filename associated with the binary data.
+     * @return The {@code MultipartEntityBuilder} instance.
+     */
+    public MultipartEntityBuilder addBinaryBody(String name, Supplier<InputStream> data, long length,
+                                                String contentType, String filename) {
+        parts.add(new BinaryPart(name, data, length, contentType, filename));
+        return this;
+    }
+
+    /**
+     * Returns the length of the multipart entity in bytes.
+     *
+     * @return The length of the entity.
+     */
+    public long getContentLength() {
+        long length = 0;
+        for (Part part : parts) {
+            length += part.header(boundary).length + part.length() + LINE_BREAK.length();
+        }
+        return length + getFinalBoundaryLine().length() + LINE_BREAK.length();
+    }
 
-                outputStream.write(getBoundaryLine().getBytes(StandardCharsets.UTF_8));
+    /**
+     * Opens a stream of the multipart entity. Each part is opened when the stream reaches it and closed when the
+     * stream has read it.
+     *
+     * @return The stream of the entity.
+     */
+    public InputStream openStream() {
+        final List<Supplier<InputStream>> segments = new ArrayList<>(parts.size() * 3 + 1);
+        for (Part part : parts) {
+            final byte[] header = part.header(boundary);
+            segments.add(() -> new ByteArrayInputStream(header));
+            segments.add(part::open);
+            segments.add(() -> new ByteArrayInputStream(LINE_BREAK.getBytes(StandardCharsets.UTF_8)));
+        }
+        segments.add(() -> new ByteArrayInputStream((getFinalBoundaryLine() + LINE_BREAK)
+                .getBytes(StandardCharsets.UTF_8)));
+        final Iterator<Supplier<InputStream>> iterator = segments.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
 
-                outputStream.write(LINE_BREAK.getBytes(StandardCharsets.UTF_8));
-                outputStream.write(part.buildHeader().getBytes(StandardCharsets.UTF_8));
-                outputStream.write(LINE_BREAK.getBytes(StandardCharsets.UTF_8));
-                outputStream.write(LINE_BREAK.getBytes(StandardCharsets.UTF_8));
-                outputStream.write(part.buildBody());
-                outputStream.write(LINE_BREAK.getBytes(StandardCharsets.UTF_8));
+            @Override
+            public InputStream nextElement() {
+                return iterator.next().get();
             }
-            outputStream.write(getFinalBoundaryLine().getBytes(StandardCharsets.UTF_8));
-            outputStream.write(LINE_BREAK.getBytes(StandardCharsets.UTF_8));
-            return outputStream.toByteArray();
+        });
+    }
+
+    /**
+     * Builds a body publisher that streams the multipart entity with a known content length. The publisher can be
+     * subscribed to again, which reads the parts again, so requests with it can be retried.
+     *
+     * @return The body publisher.
+     */
+    public HttpRequest.BodyPublisher buildBodyPublisher() {
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(this::openStream),
+                getContentLength());
+    }
 
+    /**
+     * Builds the multipart entity and returns it as a byte array.
+     *
+     * @return The byte array representation of the multipart entity.
+     */
+    public byte[] build() {
+        final long length = getContentLength();
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The entity is too large for an array; use buildBodyPublisher");
+        }
+        final byte[] entity = new byte[(int) length];
+        try (InputStream stream = openStream()) {
+            final int read = stream.readNBytes(entity, 0, entity.length);
+            if (read != entity.length || stream.read() != -1) {
+                throw new IOException("A part does not have the length it was added with");
+            }
+            return entity;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -153,12 +275,29 @@ public class MultipartEntityBuilder {
         public abstract String buildHeader();
 
         /**
-         * Builds the body of the part.
+         * Returns the length of the body of the part.
+         *
+         * @return The length in bytes.
+         */
+        public abstract long length();
+
+        /**
+         * Opens a stream of the body of the part.
+         *
+         * @return The stream of the body.
+         */
+        public abstract InputStream open();
+
+        /**
+         * Returns the boundary line and header of the part, up to the start of the body.
          *
-         * @return The body as a byte array.
-         * @throws IOException If an I/O error occurs while building the body.
+         * @param boundary The boundary of the entity.
+         * @return The bytes before the body.
          */
-        public abstract byte[] buildBody() throws IOException;
+        byte[] header(String boundary) {
+            return ("--" + boundary + LINE_BREAK + buildHeader() + LINE_BREAK + LINE_BREAK)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
 
     }
 
@@ -169,7 +308,7 @@ public class MultipartEntityBuilder {
      */
     private static class TextPart extends Part {
 
-        private final String value;
+        private final byte[] value;
 
         /**
          * Constructs a new {@code TextPart} object with the given name and value.
@@ -179,7 +318,7 @@ public class MultipartEntityBuilder {
          */
         public TextPart(String name, String value) {
             super(name);
-            this.value = value;
+            this.value = value.getBytes(StandardCharsets.UTF_8);
         }
 
         @Override
@@ -188,8 +327,13 @@ public class MultipartEntityBuilder {
         }
 
         @Override
-        public byte[] buildBody() {
-            return value.getBytes(StandardCharsets.UTF_8);
+        public long length() {
+            return value.length;
+        }
+
+        @Override
+        public InputStream open() {
+            return new ByteArrayInputStream(value);
         }
 
     }
@@ -201,7 +345,8 @@ public class MultipartEntityBuilder {
      */
     private static class BinaryPart extends Part {
 
-        private final byte[] data;
+        private final Supplier<InputStream> data;
+        private final long length;
         private final String contentType;
         private final String filename;
 
@@ -209,13 +354,15 @@ public class MultipartEntityBuilder {
          * Constructs a new {@code BinaryPart} object with the given name, binary data, content type, and filename.
          *
          * @param name        The name of the part.
-         * @param data        The binary data of the part.
+         * @param data        Opens a stream of the binary data of the part.
+         * @param length      The length of the binary data.
          * @param contentType The content type of the binary data.
          * @param filename    The filename associated with the binary data.
          */
-        public BinaryPart(String name, byte[] data, String contentType, String filename) {
+        public BinaryPart(String name, Supplier<InputStream> data, long length, String contentType, String filename) {
             super(name);
             this.data = data;
+            this.length = length;
             this.contentType = contentType;
             this.filename = filename;
         }
@@ -227,8 +374,13 @@ public class MultipartEntityBuilder {
         }
 
         @Override
-        public byte[] buildBody() {
-            return data;
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public InputStream open() {
+            return data.get();
         }
 
     }
@@ -16,15 +16,19 @@ import com.cloudurable.jai.model.image.*;
 import com.cloudurable.jai.model.moderation.CreateModerationRequest;
 import com.cloudurable.jai.model.moderation.CreateModerationResponse;
 import com.cloudurable.jai.model.moderation.CreateModerationResponseDeserializer;
+import com.cloudurable.jai.model.text.completion.CompletionChunkAggregator;
 import com.cloudurable.jai.model.text.completion.CompletionRequest;
 import com.cloudurable.jai.model.text.completion.CompletionResponse;
 import com.cloudurable.jai.model.text.completion.CompletionResponseDeserializer;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunkAggregator;
 import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponseDeserializer;
 import com.cloudurable.jai.model.text.edit.EditRequest;
 import com.cloudurable.jai.model.text.edit.EditResponse;
 import com.cloudurable.jai.model.text.edit.EditResponseDeserializer;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrixDeserializer;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponseDeserializer;
@@ -151,6 +155,30 @@ public class RequestResponseUtils {
         }
     }
 
+    /**
+     * Retrieves a client response for a streamed chat request once the stream has ended.
+     * The chat response is assembled from the chunks collected by the aggregator.
+     *
+     * @param chatRequest The chat request.
+     * @param response    The HTTP response. Its body is only set when the status is not OK.
+     * @param subscriber  The subscriber that decoded the event stream.
+     * @param aggregator  The aggregator that collected the chunks.
+     * @return The client response, or an error response if a chunk could not be handled.
+     */
+    public static ClientResponse<ChatRequest, ChatResponse> getChatStreamResponse(ChatRequest chatRequest,
+                                                                                  HttpResponse<String> response,
+                                                                                  ServerSentEventSubscriber subscriber,
+                                                                                  ChatChunkAggregator aggregator) {
+        if (subscriber.getError().isPresent()) {
+            return getErrorResponseForChatRequest(subscriber.getError().get(), chatRequest);
+        }
+        if (isOk(response.statusCode())) {
+            return getChatResponseSuccess(chatRequest, response.statusCode(), aggregator.toChatResponse());
+        } else {
+            return getChatResponseNotOk(chatRequest, response.statusCode(), response.body());
+        }
+    }
+
     /**
      * Retrieves a client success response for a completion request based on the HTTP response.
      *
@@ -169,6 +197,29 @@ public class RequestResponseUtils {
     }
 
 
+    /**
+     * Retrieves a client response for a streamed completion request once the stream has ended.
+     * The completion response is assembled from the chunks collected by the aggregator.
+     *
+     * @param completionRequest The completion request.
+     * @param response          The HTTP response. Its body is only set when the status is not OK.
+     * @param subscriber        The subscriber that decoded the event stream.
+     * @param aggregator        The aggregator that collected the chunks.
+     * @return The client response, or an error response if a chunk could not be handled.
+     */
+    public static ClientResponse<CompletionRequest, CompletionResponse>
+    getCompletionStreamResponse(CompletionRequest completionRequest, HttpResponse<String> response,
+                                ServerSentEventSubscriber subscriber, CompletionChunkAggregator aggregator) {
+        if (subscriber.getError().isPresent()) {
+            return getErrorResponseForCompletionRequest(subscriber.getError().get(), completionRequest);
+        }
+        if (isOk(response.statusCode())) {
+            return getCompletionResponseSuccess(completionRequest, response.statusCode(), aggregator.toCompletionResponse());
+        } else {
+            return getCompletionResponseNotOk(completionRequest, response.statusCode(), response.body());
+        }
+    }
+
     /**
      * Retrieves the embedding response from the HTTP response.
      *
@@ -186,6 +237,68 @@ public class RequestResponseUtils {
         }
     }
 
+    /**
+     * Retrieves the embedding response from an HTTP response whose body was read into a char array.
+     *
+     * @param embeddingRequest The embedding request.
+     * @param response         The HTTP response containing the embedding response data.
+     * @return The client success response with the embedding request and response, or an error response.
+     * @see CharArrayBodySubscriber
+     */
+    public static ClientSuccessResponse<EmbeddingRequest, EmbeddingResponse>
+    getEmbeddingCharResponse(EmbeddingRequest embeddingRequest, HttpResponse<char[]> response) {
+        if (isOk(response.statusCode())) {
+            final EmbeddingResponse embeddingResponse = EmbeddingResponseDeserializer.deserialize(response.body());
+            return getEmbeddingResponseSuccess(embeddingRequest, response.statusCode(), embeddingResponse);
+        } else {
+            return getEmbeddingResponseNotOk(embeddingRequest, response.statusCode(), new String(response.body()));
+        }
+    }
+
+    /**
+     * Retrieves the embedding matrix from an HTTP response whose body was read into a char array.
+     *
+     * @param embeddingRequest The embedding request.
+     * @param response         The HTTP response containing the embedding response data.
+     * @return The client success response with the embedding request and matrix.
+     * @see EmbeddingMatrixDeserializer
+     */
+    public static ClientSuccessResponse<EmbeddingRequest, EmbeddingMatrix>
+    getEmbeddingMatrixResponse(EmbeddingRequest embeddingRequest, HttpResponse<char[]> response) {
+        ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingMatrix> builder = ClientSuccessResponse.builder();
+        if (isOk(response.statusCode())) {
+            final int expectedRows = embeddingRequest.getInput() == null ? 0 : embeddingRequest.getInput().size();
+            return builder.request(embeddingRequest)
+                    .response(EmbeddingMatrixDeserializer.deserialize(response.body(), expectedRows))
+                    .statusCode(response.statusCode())
+                    .build();
+        } else {
+            return builder.request(embeddingRequest)
+                    .statusCode(response.statusCode())
+                    .statusMessage(new String(response.body()))
+                    .build();
+        }
+    }
+
+    /**
+     * Converts an embedding response into an embedding matrix response, keeping its status, message and exception.
+     *
+     * @param response The client response with the embedding request and response.
+     * @return The client response with the embedding request and matrix.
+     * @see EmbeddingMatrix#of(EmbeddingResponse)
+     */
+    public static ClientResponse<EmbeddingRequest, EmbeddingMatrix>
+    toEmbeddingMatrixResponse(ClientResponse<EmbeddingRequest, EmbeddingResponse> response) {
+        if (response.getException().isPresent()) {
+            return getErrorResponseForEmbeddingMatrixRequest(response.getException().get(), response.getRequest());
+        }
+        ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingMatrix> builder = ClientSuccessResponse.builder();
+        response.getResponse().map(EmbeddingMatrix::of).ifPresent(builder::response);
+        response.getStatusCode().ifPresent(builder::statusCode);
+        response.getStatusMessage().ifPresent(builder::statusMessage);
+        return builder.request(response.getRequest()).build();
+    }
+
     /**
      * Retrieves the translate response from the HTTP response.
      *
@@ -286,6 +399,30 @@ public class RequestResponseUtils {
     }
 
 
+    /**
+     * Retrieves the moderation response from an HTTP response whose body was read into a char array.
+     *
+     * @param cRequest The moderation request.
+     * @param response The HTTP response containing the moderation response data.
+     * @return The client response with the moderation request and response.
+     * @see CharArrayBodySubscriber
+     */
+    public static ClientResponse<CreateModerationRequest, CreateModerationResponse>
+    getCreateModerationCharResponse(CreateModerationRequest cRequest, HttpResponse<char[]> response) {
+        ClientSuccessResponse.Builder<CreateModerationRequest, CreateModerationResponse> builder = ClientSuccessResponse.builder();
+        if (isOk(response.statusCode())) {
+            return builder.request(cRequest)
+                    .response(CreateModerationResponseDeserializer.deserialize(response.body()))
+                    .statusCode(response.statusCode())
+                    .build();
+        } else {
+            return builder.request(cRequest)
+                    .statusCode(response.statusCode())
+                    .statusMessage(new String(response.body()))
+                    .build();
+        }
+    }
+
     public static ClientResponse<CreateModerationRequest, CreateModerationResponse>
     getCreateModerationResponse(CreateModerationRequest cRequest, HttpResponse<String> response) {
         if (isOk(response.statusCode())) {
@@ -588,6 +725,20 @@ public class RequestResponseUtils {
                 .build();
     }
 
+    /**
+     * Retrieves an error response for an embedding matrix request that encountered an exception.
+     *
+     * @param e                The exception that occurred.
+     * @param embeddingRequest The embedding request.
+     * @return The client response with the embedding request and error response.
+     */
+    public static ClientResponse<EmbeddingRequest, EmbeddingMatrix> getErrorResponseForEmbeddingMatrixRequest(Throwable e, EmbeddingRequest embeddingRequest) {
+        ClientErrorResponse.Builder<EmbeddingRequest, EmbeddingMatrix> builder = ClientErrorResponse.builder();
+        return builder.exception(e)
+                .request(embeddingRequest)
+                .build();
+    }
+
     /**
      * Retrieves an error response for a translate request that encountered an exception.
      *
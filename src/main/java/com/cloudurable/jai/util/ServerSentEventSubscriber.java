@@ -0,0 +1,125 @@
+package com.cloudurable.jai.util;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * A line subscriber that decodes a server-sent event (SSE) stream as it arrives.
+ * <p>
+ * The OpenAI API sends streamed completions as data-only server-sent events. Each event is one or more
+ * {@code data:} lines followed by a blank line, and the stream ends with a {@code data: [DONE]} event.
+ * This subscriber collects the {@code data:} lines of each event and hands the payload to the event consumer
+ * as soon as the event is complete, so callers can act on a partial response before the whole body has arrived.
+ * <p>
+ * If the event consumer throws, the error is recorded, later events are skipped, and the stream is drained
+ * so the underlying HTTP exchange can complete normally. The recorded error is available from {@link #getError()}.
+ */
+public class ServerSentEventSubscriber implements Flow.Subscriber<String> {
+
+    /**
+     * The payload of the event that marks the end of the stream.
+     */
+    public static final String DONE = "[DONE]";
+
+    private static final String DATA_FIELD = "data:";
+
+    private final Consumer<String> eventConsumer;
+    private final StringBuilder data = new StringBuilder();
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    /**
+     * Constructs a ServerSentEventSubscriber.
+     *
+     * @param eventConsumer The consumer that receives the data payload of each event.
+     */
+    public ServerSentEventSubscriber(final Consumer<String> eventConsumer) {
+        this.eventConsumer = eventConsumer;
+    }
+
+    /**
+     * Creates a body handler that streams a successful response through this subscriber.
+     * Responses with a non-2xx status are not event streams, so their body is read as a String and
+     * becomes the body of the HTTP response. The body of a successful response is an empty string.
+     *
+     * @return The body handler.
+     */
+    public HttpResponse.BodyHandler<String> bodyHandler() {
+        return responseInfo -> RequestResponseUtils.isOk(responseInfo.statusCode())
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(this, subscriber -> "", StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final String line) {
+        if (line.isEmpty()) {
+            dispatch();
+        } else if (line.startsWith(DATA_FIELD)) {
+            final int start = line.length() > DATA_FIELD.length() && line.charAt(DATA_FIELD.length()) == ' '
+                    ? DATA_FIELD.length() + 1 : DATA_FIELD.length();
+            if (data.length() > 0) {
+                data.append('\n');
+            }
+            data.append(line, start, line.length());
+        }
+        // Comments (":") and the event, id and retry fields are not used by the OpenAI API.
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        if (error == null) {
+            error = throwable;
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        dispatch();
+    }
+
+    /**
+     * Returns true once the {@code [DONE]} event has been received.
+     *
+     * @return true if the stream has ended normally.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the first error raised by the event consumer or the stream, if any.
+     *
+     * @return The error, or an empty Optional.
+     */
+    public Optional<Throwable> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    private void dispatch() {
+        if (data.length() == 0) {
+            return;
+        }
+        final String payload = data.toString();
+        data.setLength(0);
+        if (DONE.equals(payload)) {
+            done = true;
+            return;
+        }
+        if (done || error != null) {
+            return;
+        }
+        try {
+            eventConsumer.accept(payload);
+        } catch (RuntimeException ex) {
+            error = ex;
+        }
+    }
+}
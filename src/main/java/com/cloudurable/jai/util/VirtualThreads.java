@@ -0,0 +1,64 @@
+package com.cloudurable.jai.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run each task on a new virtual thread, on Java runtimes that have them.
+ * <p>
+ * The library is built for Java 11, so this class finds the virtual thread factory of Java 21 and later by
+ * reflection. A jar built with {@code -Pjava21} is a multi-release jar whose META-INF/versions/21 holds a version of
+ * this class that calls the factory directly. A blocking call such as {@code OpenAIClient.chat} parks a virtual
+ * thread instead of holding a platform thread, so tens of thousands of calls can wait on the API at once without
+ * sizing a thread pool.
+ */
+public final class VirtualThreads {
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor, or null before Java 21. Java 19 and 20 have it only as a preview.
+     */
+    private static final Method FACTORY = factory();
+
+    private VirtualThreads() {
+    }
+
+    private static Method factory() {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the runtime has virtual threads.
+     *
+     * @return true on Java 21 and later.
+     */
+    public static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return The executor.
+     * @throws UnsupportedOperationException If the runtime has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (FACTORY == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later; running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) FACTORY.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads could not be created", e);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.cloudurable.jai.vector;
+
+import com.cloudurable.jai.Client;
+import com.cloudurable.jai.ClientAsync;
+import com.cloudurable.jai.model.ClientErrorResponse;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.Usage;
+import com.cloudurable.jai.model.text.embedding.Embedding;
+import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
+import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent store of embedding vectors, keyed by a hash of the model and the input text.
+ * <p>
+ * Vectors live in segment files that are memory mapped. Each segment has a 16-byte header (magic, version,
+ * dimensions, record count) followed by fixed-size records: the 128-bit key and then the vector as little-endian
+ * floats. Because every record has the same stride, opening a store only reads the keys into a primitive hash table;
+ * no JSON is parsed and no per-vector arrays are allocated until a vector is asked for. A record is written before the
+ * count in the header is raised, so a record cut short by a crash is ignored on the next open.
+ * <p>
+ * {@link #embedding(Client, EmbeddingRequest)} and {@link #embeddingAsync(ClientAsync, EmbeddingRequest)} wrap an
+ * embedding call: inputs already in the store are served locally, only the rest are sent, and the new vectors are
+ * stored.
+ * <p>
+ * Reads run concurrently; writes take a lock one at a time. Java 11 cannot unmap a buffer, so the mapped segments
+ * are released when the store is garbage collected.
+ */
+public class EmbeddingStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x4A414945;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 12;
+    private static final int KEY_SIZE = 16;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path directory;
+    private final int dimensions;
+    private final int stride;
+    private final int segmentCapacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Open addressing hash table from key to record number plus one; zero marks an empty slot.
+     */
+    private long[] tableHigh;
+    private long[] tableLow;
+    private int[] tableRecords;
+    private int size;
+    private int records;
+    private boolean closed;
+
+    private EmbeddingStore(Path directory, int dimensions, int segmentCapacity) {
+        this.directory = directory;
+        this.dimensions = dimensions;
+        this.stride = KEY_SIZE + dimensions * Float.BYTES;
+        this.segmentCapacity = segmentCapacity;
+        allocateTable(1024);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the number of dimensions of the stored vectors.
+     *
+     * @return The number of dimensions.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Gets the number of stored vectors.
+     *
+     * @return The number of vectors.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the embedding of a text is stored.
+     *
+     * @param model The embedding model.
+     * @param text  The input text.
+     * @return True if the embedding is stored.
+     */
+    public boolean contains(final String model, final String text) {
+        final long[] key = key(model, text);
+        lock.readLock().lock();
+        try {
+            return find(key[0], key[1]) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the stored embedding of a text.
+     *
+     * @param model The embedding model.
+     * @param text  The input text.
+     * @return The embedding, or empty if it is not stored.
+     */
+    public Optional<float[]> get(final String model, final String text) {
+        final long[] key = key(model, text);
+        lock.readLock().lock();
+        try {
+            final int record = find(key[0], key[1]);
+            if (record < 0) {
+                return Optional.empty();
+            }
+            final float[] vector = new float[dimensions];
+            final ByteBuffer buffer = segments.get(record / segmentCapacity).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(offset(record) + KEY_SIZE);
+            buffer.asFloatBuffer().get(vector);
+            return Optional.of(vector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the embedding of a text unless one is already stored.
+     *
+     * @param model  The embedding model.
+     * @param text   The input text.
+     * @param vector The embedding.
+     * @return True if the embedding was added, false if one was already stored.
+     * @throws IllegalArgumentException If the vector does not have the dimensions of the store.
+     * @throws UncheckedIOException     If a new segment file cannot be created.
+     */
+    public boolean put(final String model, final String text, final float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("vector has " + vector.length + " dimensions, expected " + dimensions);
+        }
+        final long[] key = key(model, text);
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("EmbeddingStore is closed");
+            }
+            if (find(key[0], key[1]) >= 0) {
+                return false;
+            }
+            final int record = records;
+            if (record / segmentCapacity == segments.size()) {
+                segments.add(mapSegment(segments.size()));
+            }
+            final ByteBuffer buffer = segments.get(record / segmentCapacity).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            final int offset = offset(record);
+            buffer.putLong(offset, key[0]);
+            buffer.putLong(offset + Long.BYTES, key[1]);
+            buffer.position(offset + KEY_SIZE);
+            buffer.asFloatBuffer().put(vector);
+            buffer.putInt(COUNT_OFFSET, record % segmentCapacity + 1);
+            records++;
+            insert(key[0], key[1], record);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sends an embedding request for the inputs that are not stored, stores the returned embeddings, and answers with
+     * the embeddings of every input in request order. If every input is stored, no request is sent and the usage is
+     * zero.
+     *
+     * @param client  The client used for the inputs that are not stored.
+     * @param request The embedding request.
+     * @return The response, or the error of the request that was sent.
+     */
+    public ClientResponse<EmbeddingRequest, EmbeddingResponse> embedding(final Client client, final EmbeddingRequest request) {
+        try {
+            final Lookup lookup = lookup(request);
+            if (lookup.missing.isEmpty()) {
+                return lookup.complete(null);
+            }
+            return lookup.complete(client.embedding(lookup.missingRequest()));
+        } catch (Exception e) {
+            return errorResponse(request, e);
+        }
+    }
+
+    /**
+     * Asynchronously sends an embedding request for the inputs that are not stored, stores the returned embeddings,
+     * and answers with the embeddings of every input in request order.
+     *
+     * @param client  The client used for the inputs that are not stored.
+     * @param request The embedding request.
+     * @return A future of the response, or of the error of the request that was sent.
+     */
+    public CompletableFuture<ClientResponse<EmbeddingRequest, EmbeddingResponse>> embeddingAsync(final ClientAsync client,
+                                                                                                final EmbeddingRequest request) {
+        final Lookup lookup;
+        try {
+            lookup = lookup(request);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResponse(request, e));
+        }
+        if (lookup.missing.isEmpty()) {
+            return CompletableFuture.completedFuture(lookup.complete(null));
+        }
+        return client.embeddingAsync(lookup.missingRequest())
+                .thenApply(lookup::complete)
+                .exceptionally(e -> errorResponse(request, e));
+    }
+
+    /**
+     * Forces the written records to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the written records to disk and stops accepting new ones.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        flush();
+    }
+
+    private Lookup lookup(final EmbeddingRequest request) {
+        final List<String> input = request.getInput();
+        final float[][] vectors = new float[input.size()][];
+        final Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int index = 0; index < input.size(); index++) {
+            final Optional<float[]> stored = get(request.getModel(), input.get(index));
+            if (stored.isPresent()) {
+                vectors[index] = stored.get();
+            } else {
+                missing.computeIfAbsent(input.get(index), text -> new ArrayList<>()).add(index);
+            }
+        }
+        return new Lookup(request, vectors, missing);
+    }
+
+    private static ClientResponse<EmbeddingRequest, EmbeddingResponse> errorResponse(final EmbeddingRequest request,
+                                                                                   final Throwable e) {
+        final ClientErrorResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientErrorResponse.builder();
+        return builder.request(request).exception(e).build();
+    }
+
+    /**
+     * Maps segment files into memory and reads their keys into the hash table.
+     */
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        final List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().matches("segment-\\d{6}\\.emb"))
+                    .sorted().collect(Collectors.toList());
+        }
+        for (int index = 0; index < files.size(); index++) {
+            if (!files.get(index).equals(segmentPath(index))) {
+                throw new IllegalStateException("Missing embedding segment " + segmentPath(index));
+            }
+            final MappedByteBuffer segment = mapSegment(index);
+            final ByteBuffer buffer = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException(files.get(index) + " is not an embedding segment");
+            }
+            if (buffer.getInt(8) != dimensions) {
+                throw new IllegalStateException(files.get(index) + " holds vectors of " + buffer.getInt(8) +
+                        " dimensions, expected " + dimensions);
+            }
+            final int count = buffer.getInt(COUNT_OFFSET);
+            if (count > segmentCapacity || (count < segmentCapacity && index < files.size() - 1)) {
+                throw new IllegalStateException(files.get(index) + " has an invalid record count " + count);
+            }
+            segments.add(segment);
+            for (int slot = 0; slot < count; slot++) {
+                final int record = records++;
+                final int offset = offset(record);
+                final long high = buffer.getLong(offset);
+                final long low = buffer.getLong(offset + Long.BYTES);
+                if (find(high, low) < 0) {
+                    insert(high, low, record);
+                }
+            }
+        }
+    }
+
+    private MappedByteBuffer mapSegment(final int index) {
+        final Path path = segmentPath(index);
+        final long length = HEADER_SIZE + (long) segmentCapacity * stride;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final boolean created = channel.size() == 0;
+            if (!created && channel.size() != length) {
+                throw new IllegalStateException(path + " does not hold " + segmentCapacity + " vectors of " +
+                        dimensions + " dimensions");
+            }
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (created) {
+                final ByteBuffer buffer = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, dimensions);
+                buffer.putInt(COUNT_OFFSET, 0);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map " + path, e);
+        }
+    }
+
+    private Path segmentPath(final int index) {
+        return directory.resolve(String.format("segment-%06d.emb", index));
+    }
+
+    private int offset(final int record) {
+        return HEADER_SIZE + (record % segmentCapacity) * stride;
+    }
+
+    private int find(final long high, final long low) {
+        final int mask = tableRecords.length - 1;
+        for (int slot = (int) (low ^ (low >>> 32)) & mask; tableRecords[slot] != 0; slot = (slot + 1) & mask) {
+            if (tableHigh[slot] == high && tableLow[slot] == low) {
+                return tableRecords[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(final long high, final long low, final int record) {
+        if ((size + 1) * 2 > tableRecords.length) {
+            final long[] oldHigh = tableHigh;
+            final long[] oldLow = tableLow;
+            final int[] oldRecords = tableRecords;
+            allocateTable(oldRecords.length * 2);
+            for (int slot = 0; slot < oldRecords.length; slot++) {
+                if (oldRecords[slot] != 0) {
+                    place(oldHigh[slot], oldLow[slot], oldRecords[slot]);
+                }
+            }
+        }
+        place(high, low, record + 1);
+        size++;
+    }
+
+    private void place(final long high, final long low, final int entry) {
+        final int mask = tableRecords.length - 1;
+        int slot = (int) (low ^ (low >>> 32)) & mask;
+        while (tableRecords[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        tableHigh[slot] = high;
+        tableLow[slot] = low;
+        tableRecords[slot] = entry;
+    }
+
+    private void allocateTable(final int capacity) {
+        tableHigh = new long[capacity];
+        tableLow = new long[capacity];
+        tableRecords = new int[capacity];
+    }
+
+    /**
+     * Hashes the model and the text into a 128-bit key, taken from the first 16 bytes of their SHA-256 digest.
+     */
+    private static long[] key(final String model, final String text) {
+        final MessageDigest digest = SHA_256.get();
+        digest.reset();
+        digest.update((model == null ? "" : model).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        final ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new long[]{hash.getLong(), hash.getLong()};
+    }
+
+    /**
+     * The stored embeddings of a request, and the positions of each input that still has to be embedded.
+     */
+    private final class Lookup {
+        private final EmbeddingRequest request;
+        private final float[][] vectors;
+        private final Map<String, List<Integer>> missing;
+
+        Lookup(final EmbeddingRequest request, final float[][] vectors, final Map<String, List<Integer>> missing) {
+            this.request = request;
+            this.vectors = vectors;
+            this.missing = missing;
+        }
+
+        EmbeddingRequest missingRequest() {
+            return EmbeddingRequest.builder().model(request.getModel()).input(new ArrayList<>(missing.keySet())).build();
+        }
+
+        /**
+         * Stores the embeddings of a response to the missing request and answers the whole request.
+         */
+        ClientResponse<EmbeddingRequest, EmbeddingResponse> complete(
+                final ClientResponse<EmbeddingRequest, EmbeddingResponse> remote) {
+            Usage usage = new Usage(0, 0, 0);
+            int statusCode = 200;
+            String statusMessage = null;
+            if (remote != null) {
+                if (remote.getException().isPresent()) {
+                    return errorResponse(request, remote.getException().get());
+                }
+                statusCode = remote.getStatusCode().orElse(200);
+                statusMessage = remote.getStatusMessage().orElse(null);
+                if (remote.getResponse().isEmpty()) {
+                    final ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientSuccessResponse.builder();
+                    return builder.request(request).statusCode(statusCode).statusMessage(statusMessage).build();
+                }
+                final EmbeddingResponse response = remote.getResponse().get();
+                usage = response.getUsage();
+                final List<String> texts = new ArrayList<>(missing.keySet());
+                for (Embedding embedding : response.getData()) {
+                    if (embedding.getIndex() < 0 || embedding.getIndex() >= texts.size()) {
+                        return errorResponse(request, new IllegalStateException("Embedding index " +
+                                embedding.getIndex() + " is out of range for " + texts.size() + " inputs"));
+                    }
+                    final String text = texts.get(embedding.getIndex());
+                    put(request.getModel(), text, embedding.getEmbedding());
+                    for (int position : missing.get(text)) {
+                        vectors[position] = embedding.getEmbedding();
+                    }
+                }
+            }
+            final List<Embedding> data = new ArrayList<>(vectors.length);
+            for (int index = 0; index < vectors.length; index++) {
+                if (vectors[index] == null) {
+                    return errorResponse(request, new IllegalStateException("No embedding returned for input " + index));
+                }
+                data.add(new Embedding(index, vectors[index]));
+            }
+            final EmbeddingResponse response = EmbeddingResponse.builder().object("list").model(request.getModel())
+                    .usage(usage).data(data).build();
+            final ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientSuccessResponse.builder();
+            return builder.request(request).response(response).statusCode(statusCode).statusMessage(statusMessage).build();
+        }
+    }
+
+    /**
+     * Builder for EmbeddingStore.
+     */
+    public static class Builder {
+        private Path directory;
+        private int dimensions;
+        private int segmentCapacity = 4_096;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the directory of the segment files. Required; it is created if it does not exist.
+         *
+         * @param directory The directory.
+         * @return The builder instance.
+         */
+        public Builder setDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the number of dimensions of the vectors, for example 1536 for text-embedding-ada-002. Required.
+         *
+         * @param dimensions The number of dimensions.
+         * @return The builder instance.
+         */
+        public Builder setDimensions(int dimensions) {
+            this.dimensions = dimensions;
+            return this;
+        }
+
+        /**
+         * Sets the number of vectors per segment file. It must match the value used when the store was created.
+         * Every segment is mapped at its full size, so a large capacity reserves that much space up front. Defaults
+         * to 4,096, about 25 MB per segment for 1536-dimension vectors.
+         *
+         * @param segmentCapacity The number of vectors per segment.
+         * @return The builder instance.
+         */
+        public Builder setSegmentCapacity(int segmentCapacity) {
+            this.segmentCapacity = segmentCapacity;
+            return this;
+        }
+
+        /**
+         * Opens the store, mapping the existing segment files.
+         *
+         * @return The EmbeddingStore.
+         * @throws IllegalArgumentException If the directory is missing, a value is not positive, or a segment would be
+         *                                  larger than 2 GB.
+         * @throws IllegalStateException    If an existing segment does not match the dimensions or is corrupt.
+         * @throws UncheckedIOException     If the segment files cannot be read.
+         */
+        public EmbeddingStore build() {
+            if (directory == null) {
+                throw new IllegalArgumentException("directory is required");
+            }
+            if (dimensions < 1 || segmentCapacity < 1) {
+                throw new IllegalArgumentException("dimensions and segmentCapacity must be positive");
+            }
+            if (HEADER_SIZE + (long) segmentCapacity * (KEY_SIZE + (long) dimensions * Float.BYTES) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("segment of " + segmentCapacity + " vectors is larger than 2 GB");
+            }
+            final EmbeddingStore store = new EmbeddingStore(directory, dimensions, segmentCapacity);
+            try {
+                store.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open embedding store " + directory, e);
+            }
+            return store;
+        }
+    }
+}
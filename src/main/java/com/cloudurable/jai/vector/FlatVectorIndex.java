@@ -0,0 +1,164 @@
+package com.cloudurable.jai.vector;
+
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An exact index that compares the query with every vector.
+ * <p>
+ * All vectors are stored, normalized, in one row-major {@code float[]}, so a query is a single pass over contiguous
+ * memory. That is fast enough for tens of thousands of vectors; past that, {@link HnswVectorIndex} answers queries
+ * in logarithmic time at the cost of approximate results.
+ * <p>
+ * Queries do not lock. Adds are serialized, write past the end of the published vectors, and then publish the new
+ * size, so a query sees either the old or the new set of vectors and never a partly written one.
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    private final int dimensions;
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructs an empty FlatVectorIndex.
+     *
+     * @param dimensions The number of dimensions of the vectors.
+     */
+    public FlatVectorIndex(final int dimensions) {
+        this(dimensions, 16);
+    }
+
+    /**
+     * Constructs an empty FlatVectorIndex with room for a number of vectors.
+     *
+     * @param dimensions      The number of dimensions of the vectors.
+     * @param initialCapacity The number of vectors to allocate room for.
+     */
+    public FlatVectorIndex(final int dimensions, final int initialCapacity) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        this.dimensions = dimensions;
+        this.snapshot = new Snapshot(new float[Math.max(initialCapacity, 1) * dimensions], 0);
+    }
+
+    /**
+     * Creates an index holding the rows of an embedding matrix. Row i gets id i.
+     *
+     * @param matrix The embedding matrix.
+     * @return The index.
+     */
+    public static FlatVectorIndex of(final EmbeddingMatrix matrix) {
+        final FlatVectorIndex index = new FlatVectorIndex(matrix.getDimensions(), matrix.getRowCount());
+        index.addAll(matrix);
+        return index;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size;
+    }
+
+    @Override
+    public int add(final float[] vector) {
+        checkDimensions(vector);
+        final float[] normalized = VectorMath.normalize(vector);
+        synchronized (writeLock) {
+            final Snapshot current = ensureCapacity(1);
+            System.arraycopy(normalized, 0, current.vectors, current.size * dimensions, dimensions);
+            snapshot = new Snapshot(current.vectors, current.size + 1);
+            return current.size;
+        }
+    }
+
+    /**
+     * Adds every row of an embedding matrix, in order.
+     *
+     * @param matrix The embedding matrix.
+     * @return The id of the first row.
+     */
+    public int addAll(final EmbeddingMatrix matrix) {
+        if (matrix.getDimensions() != dimensions) {
+            throw new IllegalArgumentException("matrix has " + matrix.getDimensions() + " dimensions, expected " + dimensions);
+        }
+        synchronized (writeLock) {
+            final Snapshot current = ensureCapacity(matrix.getRowCount());
+            for (int row = 0; row < matrix.getRowCount(); row++) {
+                final float[] normalized = VectorMath.normalize(matrix.getRow(row));
+                System.arraycopy(normalized, 0, current.vectors, (current.size + row) * dimensions, dimensions);
+            }
+            snapshot = new Snapshot(current.vectors, current.size + matrix.getRowCount());
+            return current.size;
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(final float[] query, final int k) {
+        checkDimensions(query);
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        final float[] normalized = VectorMath.normalize(query);
+        final Snapshot current = snapshot;
+        final ScoreHeap top = new ScoreHeap(k, true);
+        for (int id = 0; id < current.size; id++) {
+            top.offer(id, VectorMath.dot(current.vectors, id * dimensions, normalized, 0, dimensions), k);
+        }
+        return top.drainDescending();
+    }
+
+    /**
+     * Returns a copy of a stored, normalized vector.
+     *
+     * @param id The id of the vector.
+     * @return The normalized vector.
+     */
+    public float[] get(final int id) {
+        final Snapshot current = snapshot;
+        if (id < 0 || id >= current.size) {
+            throw new IndexOutOfBoundsException("id " + id + " is not in the index");
+        }
+        return Arrays.copyOfRange(current.vectors, id * dimensions, (id + 1) * dimensions);
+    }
+
+    /**
+     * Makes room for more vectors, copying the storage into a larger array if needed. Called with the write lock.
+     */
+    private Snapshot ensureCapacity(final int additional) {
+        final Snapshot current = snapshot;
+        final int required = (current.size + additional) * dimensions;
+        if (required <= current.vectors.length) {
+            return current;
+        }
+        final float[] larger = Arrays.copyOf(current.vectors, Math.max(required, current.vectors.length * 2));
+        final Snapshot grown = new Snapshot(larger, current.size);
+        snapshot = grown;
+        return grown;
+    }
+
+    private void checkDimensions(final float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("vector has " + vector.length + " dimensions, expected " + dimensions);
+        }
+    }
+
+    /**
+     * The storage and the number of vectors visible to queries.
+     */
+    private static final class Snapshot {
+        private final float[] vectors;
+        private final int size;
+
+        Snapshot(final float[] vectors, final int size) {
+            this.vectors = vectors;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.cloudurable.jai.vector;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An approximate index based on hierarchical navigable small world graphs (HNSW).
+ * <p>
+ * Every vector is a node in a layered proximity graph. The bottom layer holds every node; each layer above holds a
+ * random, exponentially smaller subset. A query starts at the single entry point on the top layer, walks greedily
+ * toward the query on each layer, and on the bottom layer runs a best-first search that keeps the {@code efSearch}
+ * best candidates. Query time grows roughly with the logarithm of the number of vectors, and recall is tuned with
+ * {@code m}, {@code efConstruction} and {@code efSearch}.
+ * <p>
+ * Queries share a read lock and run concurrently; adds take the write lock one at a time.
+ */
+public class HnswVectorIndex implements VectorIndex {
+
+    private final int dimensions;
+    private final int m;
+    private final int maxConnectionsLayerZero;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private int[][][] links;
+    private int[][] linkCounts;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private HnswVectorIndex(int dimensions, int m, int efConstruction, int efSearch, long seed, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxConnectionsLayerZero = 2 * m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+        this.vectors = new float[initialCapacity * dimensions];
+        this.links = new int[initialCapacity][][];
+        this.linkCounts = new int[initialCapacity][];
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int add(final float[] vector) {
+        checkDimensions(vector);
+        final float[] normalized = VectorMath.normalize(vector);
+        lock.writeLock().lock();
+        try {
+            final int id = size;
+            final int level = randomLevel();
+            allocate(id, level, normalized);
+            size++;
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int nearest = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                nearest = greedyClosest(normalized, nearest, layer);
+            }
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                final ScoreHeap candidates = searchLayer(normalized, nearest, efConstruction, layer);
+                final int[] selected = selectBest(candidates, m);
+                for (int neighbor : selected) {
+                    connect(id, neighbor, layer);
+                    connect(neighbor, id, layer);
+                }
+                nearest = selected[0];
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(final float[] query, final int k) {
+        checkDimensions(query);
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        final float[] normalized = VectorMath.normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return new ScoreHeap(0, true).drainDescending();
+            }
+            int nearest = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                nearest = greedyClosest(normalized, nearest, layer);
+            }
+            final ScoreHeap candidates = searchLayer(normalized, nearest, Math.max(efSearch, k), 0);
+            final ScoreHeap top = new ScoreHeap(k, true);
+            while (!candidates.isEmpty()) {
+                final float score = candidates.topScore();
+                top.offer(candidates.pop(), score, k);
+            }
+            return top.drainDescending();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks from a node to the neighbor closest to the query until no neighbor is closer.
+     */
+    private int greedyClosest(final float[] query, final int start, final int layer) {
+        int current = start;
+        float currentScore = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            final int[] neighbors = links[current][layer];
+            final int count = linkCounts[current][layer];
+            for (int index = 0; index < count; index++) {
+                final float score = similarity(query, neighbors[index]);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbors[index];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. Returns a min-heap of the ef nodes closest to the query.
+     */
+    private ScoreHeap searchLayer(final float[] query, final int start, final int ef, final int layer) {
+        final BitSet visited = new BitSet(size);
+        final ScoreHeap candidates = new ScoreHeap(ef, false);
+        final ScoreHeap results = new ScoreHeap(ef, true);
+        final float startScore = similarity(query, start);
+        visited.set(start);
+        candidates.push(start, startScore);
+        results.push(start, startScore);
+
+        while (!candidates.isEmpty()) {
+            final float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            final int candidate = candidates.pop();
+            final int[] neighbors = links[candidate][layer];
+            final int count = linkCounts[candidate][layer];
+            for (int index = 0; index < count; index++) {
+                final int neighbor = neighbors[index];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                final float score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbor, score);
+                    results.offer(neighbor, score, ef);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Takes the count best nodes out of a min-heap, best first.
+     */
+    private static int[] selectBest(final ScoreHeap results, final int count) {
+        while (results.size() > count) {
+            results.pop();
+        }
+        final int[] selected = new int[results.size()];
+        for (int index = selected.length - 1; index >= 0; index--) {
+            selected[index] = results.pop();
+        }
+        return selected;
+    }
+
+    /**
+     * Adds a directed link, and if the node has too many links keeps only those to its closest neighbors.
+     */
+    private void connect(final int from, final int to, final int layer) {
+        final int maxConnections = layer == 0 ? maxConnectionsLayerZero : m;
+        int[] neighbors = links[from][layer];
+        final int count = linkCounts[from][layer];
+        if (count < maxConnections) {
+            if (count == neighbors.length) {
+                neighbors = Arrays.copyOf(neighbors, Math.min(maxConnections, Math.max(4, count * 2)));
+                links[from][layer] = neighbors;
+            }
+            neighbors[count] = to;
+            linkCounts[from][layer] = count + 1;
+            return;
+        }
+        final ScoreHeap closest = new ScoreHeap(maxConnections + 1, true);
+        for (int index = 0; index < count; index++) {
+            closest.offer(neighbors[index], similarity(from, neighbors[index]), maxConnections);
+        }
+        closest.offer(to, similarity(from, to), maxConnections);
+        int kept = 0;
+        while (!closest.isEmpty()) {
+            neighbors[kept++] = closest.pop();
+        }
+        linkCounts[from][layer] = kept;
+    }
+
+    private void allocate(final int id, final int level, final float[] normalized) {
+        if (id == links.length) {
+            final int capacity = Math.max(16, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            linkCounts = Arrays.copyOf(linkCounts, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        }
+        System.arraycopy(normalized, 0, vectors, id * dimensions, dimensions);
+        links[id] = new int[level + 1][];
+        linkCounts[id] = new int[level + 1];
+        for (int layer = 0; layer <= level; layer++) {
+            links[id][layer] = new int[4];
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private float similarity(final float[] query, final int id) {
+        return VectorMath.dot(vectors, id * dimensions, query, 0, dimensions);
+    }
+
+    private float similarity(final int a, final int b) {
+        return VectorMath.dot(vectors, a * dimensions, vectors, b * dimensions, dimensions);
+    }
+
+    private void checkDimensions(final float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("vector has " + vector.length + " dimensions, expected " + dimensions);
+        }
+    }
+
+    /**
+     * Builder for HnswVectorIndex.
+     */
+    public static class Builder {
+        private int dimensions;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 50;
+        private long seed = 42;
+        private int initialCapacity = 16;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of dimensions of the vectors. Required.
+         *
+         * @param dimensions The number of dimensions.
+         * @return The builder instance.
+         */
+        public Builder setDimensions(int dimensions) {
+            this.dimensions = dimensions;
+            return this;
+        }
+
+        /**
+         * Sets the number of links per node on the upper layers; the bottom layer allows twice as many.
+         * Higher values improve recall and use more memory. Defaults to 16.
+         *
+         * @param m The number of links.
+         * @return The builder instance.
+         */
+        public Builder setM(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * Sets the number of candidates considered when a vector is linked into the graph. Defaults to 200.
+         *
+         * @param efConstruction The number of candidates.
+         * @return The builder instance.
+         */
+        public Builder setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * Sets the number of candidates kept by a query; at least k are always kept. Defaults to 50.
+         *
+         * @param efSearch The number of candidates.
+         * @return The builder instance.
+         */
+        public Builder setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random layer assignment, which makes the graph reproducible. Defaults to 42.
+         *
+         * @param seed The seed.
+         * @return The builder instance.
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the number of vectors to allocate room for. Defaults to 16.
+         *
+         * @param initialCapacity The number of vectors.
+         * @return The builder instance.
+         */
+        public Builder setInitialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Builds the HnswVectorIndex.
+         *
+         * @return The HnswVectorIndex.
+         * @throws IllegalArgumentException If a parameter is out of range.
+         */
+        public HnswVectorIndex build() {
+            if (dimensions < 1) {
+                throw new IllegalArgumentException("dimensions must be positive");
+            }
+            if (m < 2 || efConstruction < 1 || efSearch < 1) {
+                throw new IllegalArgumentException("m must be at least 2, efConstruction and efSearch must be positive");
+            }
+            return new HnswVectorIndex(dimensions, m, efConstruction, efSearch, seed, Math.max(initialCapacity, 1));
+        }
+    }
+}
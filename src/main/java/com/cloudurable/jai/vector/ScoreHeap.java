@@ -0,0 +1,123 @@
+package com.cloudurable.jai.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A binary heap of (id, score) pairs stored in primitive arrays, used for candidate lists and top-k results.
+ * A min-heap keeps the lowest score on top, which makes it a bounded top-k collector; a max-heap keeps the highest.
+ */
+final class ScoreHeap {
+    private final boolean minHeap;
+    private int[] ids;
+    private float[] scores;
+    private int size;
+
+    ScoreHeap(final int capacity, final boolean minHeap) {
+        this.minHeap = minHeap;
+        this.ids = new int[Math.max(capacity, 4)];
+        this.scores = new float[Math.max(capacity, 4)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int topId() {
+        return ids[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    void push(final int id, final float score) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            ids[index] = ids[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    /**
+     * Adds a pair to a min-heap used as a top-k collector, dropping the lowest score once the heap holds k pairs.
+     */
+    void offer(final int id, final float score, final int k) {
+        if (size < k) {
+            push(id, score);
+        } else if (score > scores[0]) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    int pop() {
+        final int top = ids[0];
+        size--;
+        if (size > 0) {
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Drains a min-heap into results ordered from the highest score to the lowest.
+     */
+    List<SearchResult> drainDescending() {
+        final SearchResult[] results = new SearchResult[size];
+        for (int index = size - 1; index >= 0; index--) {
+            final float score = scores[0];
+            results[index] = new SearchResult(pop(), score);
+        }
+        final List<SearchResult> list = new ArrayList<>(results.length);
+        for (SearchResult result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+
+    private void siftDown(int index) {
+        final int id = ids[index];
+        final float score = scores[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                child++;
+            }
+            if (!above(scores[child], score)) {
+                break;
+            }
+            ids[index] = ids[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    private boolean above(final float score, final float other) {
+        return minHeap ? score < other : score > other;
+    }
+}
@@ -0,0 +1,62 @@
+package com.cloudurable.jai.vector;
+
+import java.util.Objects;
+
+/**
+ * One result of a similarity query: the id of a vector and its cosine similarity to the query.
+ */
+public class SearchResult {
+
+    private final int id;
+    private final float score;
+
+    /**
+     * Constructs a SearchResult.
+     *
+     * @param id    The id of the vector.
+     * @param score The cosine similarity of the vector to the query.
+     */
+    public SearchResult(int id, float score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    /**
+     * Gets the id of the vector, as returned by {@link VectorIndex#add(float[])}.
+     *
+     * @return The id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the cosine similarity of the vector to the query, from -1 to 1.
+     *
+     * @return The score.
+     */
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchResult that = (SearchResult) o;
+        return id == that.id && Float.compare(that.score, score) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, score);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "id=" + id +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.cloudurable.jai.vector;
+
+import com.cloudurable.jai.model.text.embedding.Embedding;
+import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+
+import java.util.List;
+
+/**
+ * An in-process index of embedding vectors that answers top-k similarity queries.
+ * <p>
+ * Vectors are compared by cosine similarity. Each vector is normalized to unit length when it is added, so a query
+ * only needs one dot product per candidate. Every vector gets the id returned by {@link #add(float[])}: ids start at
+ * zero and follow insertion order, so they can index a list of the documents that were embedded.
+ * <p>
+ * Implementations are safe for concurrent use: queries may run on any number of threads while vectors are added.
+ */
+public interface VectorIndex {
+
+    /**
+     * Gets the number of dimensions of the vectors in the index.
+     *
+     * @return The number of dimensions.
+     */
+    int dimensions();
+
+    /**
+     * Gets the number of vectors in the index.
+     *
+     * @return The number of vectors.
+     */
+    int size();
+
+    /**
+     * Adds a vector to the index. The array is copied, so the caller may reuse it.
+     *
+     * @param vector The vector, with {@link #dimensions()} values.
+     * @return The id of the vector.
+     */
+    int add(float[] vector);
+
+    /**
+     * Adds the embeddings of a response, in the order of the response data.
+     *
+     * @param response The embedding response.
+     * @return The id of the first embedding, or -1 if the response has none.
+     */
+    default int addAll(EmbeddingResponse response) {
+        int first = -1;
+        for (Embedding embedding : response.getData()) {
+            final int id = add(embedding.getEmbedding());
+            if (first < 0) {
+                first = id;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Finds the vectors most similar to a query vector.
+     *
+     * @param query The query vector, with {@link #dimensions()} values. It does not need to be normalized.
+     * @param k     The maximum number of results.
+     * @return Up to k results, most similar first.
+     */
+    List<SearchResult> search(float[] query, int k);
+}
@@ -0,0 +1,73 @@
+package com.cloudurable.jai.vector;
+
+/**
+ * Vector arithmetic used by the indexes.
+ * <p>
+ * The loops are written so the JIT can vectorize them: plain counted loops over arrays, with four independent
+ * accumulators so consecutive multiply-adds do not wait on each other.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param a The first vector.
+     * @param b The second vector, with the same length.
+     * @return The dot product.
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("vectors have " + a.length + " and " + b.length + " dimensions");
+        }
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Computes the dot product of two ranges of arrays.
+     *
+     * @param a       The first array.
+     * @param aOffset The start of the first vector.
+     * @param b       The second array.
+     * @param bOffset The start of the second vector.
+     * @param length  The number of dimensions.
+     * @return The dot product.
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int index = 0;
+        final int bound = length & ~3;
+        for (; index < bound; index += 4) {
+            sum0 += a[aOffset + index] * b[bOffset + index];
+            sum1 += a[aOffset + index + 1] * b[bOffset + index + 1];
+            sum2 += a[aOffset + index + 2] * b[bOffset + index + 2];
+            sum3 += a[aOffset + index + 3] * b[bOffset + index + 3];
+        }
+        for (; index < length; index++) {
+            sum0 += a[aOffset + index] * b[bOffset + index];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Returns a unit-length copy of a vector. A zero vector is copied unchanged.
+     *
+     * @param vector The vector.
+     * @return The normalized copy.
+     */
+    public static float[] normalize(float[] vector) {
+        final float[] normalized = vector.clone();
+        final float norm = (float) Math.sqrt(dot(vector, vector));
+        if (norm > 0) {
+            for (int index = 0; index < normalized.length; index++) {
+                normalized[index] /= norm;
+            }
+        }
+        return normalized;
+    }
+}
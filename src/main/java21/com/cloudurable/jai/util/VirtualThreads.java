@@ -0,0 +1,32 @@
+package com.cloudurable.jai.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run each task on a new virtual thread. This is the Java 21 version of the class, packaged in
+ * META-INF/versions/21 of the multi-release jar built with -Pjava21; see the Java 11 version for the details.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the runtime has virtual threads.
+     *
+     * @return true.
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,146 @@
+package com.cloudurable.jai;
+
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BulkChatRunnerTest {
+
+    ClientAsync client;
+
+    /**
+     * The futures of the requests sent, completed by the tests.
+     */
+    List<CompletableFuture<ClientResponse<ChatRequest, ChatResponse>>> sent;
+
+    List<ChatRequest> sentRequests;
+
+    @BeforeEach
+    void before() {
+        sent = new ArrayList<>();
+        sentRequests = new ArrayList<>();
+        client = mock(ClientAsync.class);
+        when(client.chatAsync(any())).thenAnswer(invocation -> {
+            final CompletableFuture<ClientResponse<ChatRequest, ChatResponse>> future = new CompletableFuture<>();
+            sentRequests.add(invocation.getArgument(0));
+            sent.add(future);
+            return future;
+        });
+    }
+
+    private static Stream<ChatRequest> requests(final int count) {
+        return IntStream.range(0, count).mapToObj(index -> ChatRequest.builder().model("gpt-3.5-turbo")
+                .user(String.valueOf(index)).build());
+    }
+
+    private void answer(final int index) {
+        final ClientSuccessResponse.Builder<ChatRequest, ChatResponse> builder = ClientSuccessResponse.builder();
+        sent.get(index).complete(builder.request(sentRequests.get(index)).statusCode(200).build());
+    }
+
+    private static List<Long> indexes(final List<BulkChatRunner.Result> results) {
+        return results.stream().map(BulkChatRunner.Result::getIndex).collect(Collectors.toList());
+    }
+
+    @Test
+    void deliversInOrderWithinWindow() throws Exception {
+        final List<BulkChatRunner.Result> results = new ArrayList<>();
+        final List<Long> checkpoints = new ArrayList<>();
+        final CompletableFuture<Long> done = BulkChatRunner.builder().setClient(client).setMaxInFlight(3)
+                .setCheckpointInterval(2).setCheckpointListener(checkpoints::add).build()
+                .run(requests(5), results::add);
+        assertEquals(3, sent.size());
+
+        answer(1);
+        assertTrue(results.isEmpty(), "waits for request 0");
+        assertEquals(3, sent.size(), "a result waiting for an earlier one keeps its place in the window");
+
+        answer(0);
+        assertEquals(List.of(0L, 1L), indexes(results));
+        assertEquals("1", results.get(1).getRequest().getUser());
+        assertEquals(5, sent.size());
+
+        answer(4);
+        answer(3);
+        assertFalse(done.isDone());
+        answer(2);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), indexes(results));
+        assertEquals(5, done.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(2L, 5L), checkpoints);
+    }
+
+    @Test
+    void deliversAsCompletedWhenUnordered() throws Exception {
+        final List<BulkChatRunner.Result> results = new ArrayList<>();
+        final List<Long> checkpoints = new ArrayList<>();
+        final CompletableFuture<Long> done = BulkChatRunner.builder().setClient(client).setMaxInFlight(2)
+                .setOrdered(false).setCheckpointInterval(1).setCheckpointListener(checkpoints::add).build()
+                .run(requests(3), results::add);
+        answer(1);
+        assertEquals(List.of(1L), indexes(results));
+        assertEquals(3, sent.size());
+        assertTrue(checkpoints.isEmpty(), "request 0 is still in flight");
+
+        answer(2);
+        answer(0);
+        assertEquals(List.of(1L, 2L, 0L), indexes(results));
+        assertEquals(3, done.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(3L), checkpoints);
+    }
+
+    @Test
+    void deliversFailuresAsErrorResponses() throws Exception {
+        final List<BulkChatRunner.Result> results = new ArrayList<>();
+        final CompletableFuture<Long> done = BulkChatRunner.builder().setClient(client).build()
+                .run(requests(2), results::add);
+        sent.get(0).completeExceptionally(new IOException("reset"));
+        answer(1);
+
+        assertEquals(2, done.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, results.get(0).getResponse().getException().orElseThrow());
+        assertEquals("0", results.get(0).getRequest().getUser());
+        assertTrue(results.get(1).getResponse().getException().isEmpty());
+    }
+
+    @Test
+    void resumesFromCheckpoint() throws Exception {
+        final List<BulkChatRunner.Result> results = new ArrayList<>();
+        final CompletableFuture<Long> done = BulkChatRunner.builder().setClient(client).build()
+                .resume(requests(5).iterator(), 3, results::add);
+        assertEquals(List.of("3", "4"), sentRequests.stream().map(ChatRequest::getUser).collect(Collectors.toList()));
+        answer(0);
+        answer(1);
+        assertEquals(List.of(3L, 4L), indexes(results));
+        assertEquals(5, done.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stopsWhenConsumerFails() {
+        final CompletableFuture<Long> done = BulkChatRunner.builder().setClient(client).setMaxInFlight(1).build()
+                .run(requests(5), result -> {
+                    throw new IllegalStateException("disk full");
+                });
+        answer(0);
+        final ExecutionException failed = assertThrows(ExecutionException.class, () -> done.get(1, TimeUnit.SECONDS));
+        assertEquals("disk full", failed.getCause().getMessage());
+        assertEquals(1, sent.size());
+        verify(client, times(1)).chatAsync(any());
+    }
+}
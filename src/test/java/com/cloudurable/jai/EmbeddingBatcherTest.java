@@ -0,0 +1,105 @@
+package com.cloudurable.jai;
+
+import com.cloudurable.jai.model.ClientErrorResponse;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EmbeddingBatcherTest {
+
+    ClientAsync client;
+
+    /**
+     * Answers each request with a matrix whose row i is {i, length of input i}.
+     */
+    @BeforeEach
+    void before() {
+        client = mock(ClientAsync.class);
+        when(client.embeddingMatrixAsync(any())).thenAnswer(invocation -> {
+            final EmbeddingRequest request = invocation.getArgument(0);
+            final List<String> input = request.getInput();
+            final float[] values = new float[input.size() * 2];
+            for (int index = 0; index < input.size(); index++) {
+                values[index * 2] = index;
+                values[index * 2 + 1] = input.get(index).length();
+            }
+            final ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingMatrix> builder = ClientSuccessResponse.builder();
+            final ClientResponse<EmbeddingRequest, EmbeddingMatrix> response = builder.request(request).statusCode(200)
+                    .response(new EmbeddingMatrix("list", request.getModel(), null, input.size(), 2, values)).build();
+            return CompletableFuture.completedFuture(response);
+        });
+    }
+
+    @Test
+    void sendsFullBatch() throws Exception {
+        try (EmbeddingBatcher batcher = EmbeddingBatcher.builder().setClient(client).setMaxItems(3)
+                .setMaxLinger(Duration.ofHours(1)).build()) {
+            final CompletableFuture<float[]> a = batcher.embed("a");
+            final CompletableFuture<float[]> bb = batcher.embed("bb");
+            assertFalse(a.isDone());
+            final CompletableFuture<float[]> ccc = batcher.embed("ccc");
+
+            assertArrayEquals(new float[]{0, 1}, a.get(1, TimeUnit.SECONDS));
+            assertArrayEquals(new float[]{1, 2}, bb.get(1, TimeUnit.SECONDS));
+            assertArrayEquals(new float[]{2, 3}, ccc.get(1, TimeUnit.SECONDS));
+        }
+        verify(client, times(1)).embeddingMatrixAsync(any());
+    }
+
+    @Test
+    void sendsAfterLinger() throws Exception {
+        try (EmbeddingBatcher batcher = EmbeddingBatcher.builder().setClient(client).setMaxItems(100)
+                .setMaxLinger(Duration.ofMillis(5)).build()) {
+            final CompletableFuture<float[]> a = batcher.embed("a");
+            final CompletableFuture<float[]> bb = batcher.embed("bb");
+
+            assertArrayEquals(new float[]{0, 1}, a.get(1, TimeUnit.SECONDS));
+            assertArrayEquals(new float[]{1, 2}, bb.get(1, TimeUnit.SECONDS));
+        }
+        verify(client, times(1)).embeddingMatrixAsync(any());
+    }
+
+    @Test
+    void splitsOnTokenBudget() throws Exception {
+        try (EmbeddingBatcher batcher = EmbeddingBatcher.builder().setClient(client).setMaxTokens(5)
+                .setTokenCounter(String::length).setMaxLinger(Duration.ofHours(1)).build()) {
+            final CompletableFuture<float[]> first = batcher.embed("abc");
+            final CompletableFuture<float[]> second = batcher.embed("defg");
+
+            assertArrayEquals(new float[]{0, 3}, first.get(1, TimeUnit.SECONDS));
+            assertFalse(second.isDone());
+            batcher.flush();
+            assertArrayEquals(new float[]{0, 4}, second.get(1, TimeUnit.SECONDS));
+        }
+        verify(client, times(2)).embeddingMatrixAsync(any());
+    }
+
+    @Test
+    void failsEveryCallerOfFailedBatch() {
+        final ClientErrorResponse.Builder<EmbeddingRequest, EmbeddingMatrix> builder = ClientErrorResponse.builder();
+        final ClientResponse<EmbeddingRequest, EmbeddingMatrix> error = builder.exception(new IllegalStateException("down")).build();
+        when(client.embeddingMatrixAsync(any())).thenReturn(CompletableFuture.completedFuture(error));
+
+        final EmbeddingBatcher batcher = EmbeddingBatcher.builder().setClient(client).build();
+        final CompletableFuture<float[]> a = batcher.embed("a");
+        final CompletableFuture<float[]> b = batcher.embed("b");
+        batcher.close();
+
+        assertThrows(ExecutionException.class, () -> a.get(1, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> b.get(1, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> batcher.embed("c"));
+    }
+}
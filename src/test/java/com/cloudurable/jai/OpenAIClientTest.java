@@ -1,9 +1,14 @@
 package com.cloudurable.jai;
 
+import com.cloudurable.jai.util.VirtualThreads;
 import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -38,4 +43,32 @@ class OpenAIClientTest {
 
     }
 
+    @Test
+    void testExecutor() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final OpenAIClient.Builder builder = OpenAIClient.builder().setApiKey("foo").setExecutor(executor);
+            assertSame(executor, builder.getHttpClient().executor().orElseThrow());
+        } finally {
+            executor.shutdown();
+        }
+
+        final HttpClient virtual = OpenAIClient.builder().setApiKey("foo").setVirtualThreads(true).getHttpClient();
+        assertEquals(VirtualThreads.isSupported(), virtual.executor().isPresent());
+    }
+
+    @Test
+    void testExecutorLeavesSuppliedBuilderAlone() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
+            final HttpClient httpClient = OpenAIClient.builder().setApiKey("foo")
+                    .setHttpClientBuilder(httpClientBuilder).setExecutor(executor).setVirtualThreads(true)
+                    .getHttpClient();
+            assertTrue(httpClient.executor().isEmpty());
+            assertTrue(httpClientBuilder.build().executor().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
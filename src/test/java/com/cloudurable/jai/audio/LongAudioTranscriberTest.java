@@ -0,0 +1,124 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.ClientAsync;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.FileSource;
+import com.cloudurable.jai.model.audio.AudioResponse;
+import com.cloudurable.jai.model.audio.AudioResponseFormat;
+import com.cloudurable.jai.model.audio.TranscriptionRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LongAudioTranscriberTest {
+
+    ClientAsync client;
+
+    /**
+     * The futures of the chunks sent, completed by the tests.
+     */
+    List<CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>>> sent;
+
+    List<TranscriptionRequest> sentRequests;
+
+    @BeforeEach
+    void before() {
+        sent = new ArrayList<>();
+        sentRequests = new ArrayList<>();
+        client = mock(ClientAsync.class);
+        when(client.transcribeAsync(any())).thenAnswer(invocation -> {
+            final CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> future =
+                    new CompletableFuture<>();
+            sentRequests.add(invocation.getArgument(0));
+            sent.add(future);
+            return future;
+        });
+    }
+
+    private void answer(final int index, final String body) {
+        final ClientSuccessResponse.Builder<TranscriptionRequest, AudioResponse> builder =
+                ClientSuccessResponse.builder();
+        sent.get(index).complete(builder.request(sentRequests.get(index)).statusCode(200)
+                .response(AudioResponse.builder().body(body).responseFormat(AudioResponseFormat.SRT).build())
+                .build());
+    }
+
+    private LongAudioTranscriber.Builder transcriber() {
+        // Chunks of at most 4 seconds at 1 kHz.
+        return LongAudioTranscriber.builder().setClient(client).setMaxChunkSeconds(4).setSilenceSearchSeconds(1)
+                .setMaxParallel(2);
+    }
+
+    private static TranscriptionRequest request(final byte[] audio) {
+        return TranscriptionRequest.builder().file(audio).fileName("talk.wav").model("whisper-1")
+                .language("en").responseFormat(AudioResponseFormat.SRT).build();
+    }
+
+    @Test
+    void transcribesChunksWithBoundedParallelismAndStitchesInOrder() throws Exception {
+        final CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> done = transcriber().build()
+                .transcribeAsync(request(WavAudioTest.wav(1000, 10_000, 3400, 3600, 6950, 7050)));
+        assertEquals(2, sent.size(), "two of three chunks in flight");
+        assertEquals("talk-0.wav", sentRequests.get(0).getFileName());
+        assertEquals("en", sentRequests.get(0).getLanguage());
+        final WavAudio chunk = WavAudio.read(ByteBuffer.wrap(sentRequests.get(1).getFile()));
+        assertTrue(chunk.getDuration() <= 4);
+
+        answer(1, "1\n00:00:01,000 --> 00:00:02,000\nsecond\n");
+        assertEquals(3, sent.size());
+        answer(2, "1\n00:00:00,000 --> 00:00:01,000\nthird\n");
+        assertFalse(done.isDone());
+        answer(0, "1\n00:00:00,000 --> 00:00:01,000\nfirst\n");
+
+        final ClientResponse<TranscriptionRequest, AudioResponse> response = done.get();
+        assertEquals(200, response.getStatusCode().orElse(0));
+        assertEquals("talk.wav", response.getRequest().getFileName());
+        final String body = response.getResponse().get().getBody();
+        assertTrue(body.startsWith("1\n00:00:00,000 --> 00:00:01,000\nfirst\n\n2\n00:00:04,"), body);
+        assertTrue(body.indexOf("second") < body.indexOf("third"), body);
+    }
+
+    @Test
+    void sendsShortAudioAsItIs() {
+        final TranscriptionRequest request = request(WavAudioTest.wav(1000, 3000));
+        transcriber().build().transcribeAsync(request);
+        assertEquals(List.of(request), sentRequests);
+
+        final TranscriptionRequest mp3 = request(new byte[]{'I', 'D', '3', 4, 0});
+        transcriber().build().transcribeAsync(mp3);
+        assertSame(mp3, sentRequests.get(1));
+    }
+
+    @Test
+    void wrapsRawPcm() {
+        final TranscriptionRequest request = TranscriptionRequest.builder()
+                .file(FileSource.ofBytes(new byte[2000])).fileName("raw.pcm").model("whisper-1").build();
+        transcriber().setPcmFormat(PcmFormat.of(1000, 1, 16)).build().transcribeAsync(request);
+        assertEquals(1, sent.size());
+        assertEquals(1000, WavAudio.read(ByteBuffer.wrap(sentRequests.get(0).getFile())).getFrameCount());
+        assertEquals(AudioResponseFormat.JSON, sentRequests.get(0).getResponseFormat());
+    }
+
+    @Test
+    void failsWithTheFirstFailedChunk() throws Exception {
+        final CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> done = transcriber().build()
+                .transcribeAsync(request(WavAudioTest.wav(1000, 10_000)));
+        sent.get(0).completeExceptionally(new IllegalStateException("boom"));
+        assertEquals("boom", done.get().getException().get().getMessage());
+        sent.get(1).completeExceptionally(new IllegalStateException("again"));
+        assertEquals(2, sent.size(), "no more chunks are sent");
+
+        final CompletableFuture<ClientResponse<TranscriptionRequest, AudioResponse>> tooBig = transcriber()
+                .setMaxChunkBytes(100).build().transcribeAsync(request(new byte[200]));
+        assertTrue(tooBig.get().getException().get() instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,93 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.model.FileSource;
+import com.cloudurable.jai.model.audio.TranscriptionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeechResamplerTest {
+
+    /**
+     * Writes a second of 16-bit audio with the same speech-band tone and a tone above 8 kHz in every channel.
+     */
+    private static byte[] tones(final int rate, final int channels) {
+        final ByteBuffer buffer = ByteBuffer.allocate(WavAudio.HEADER_SIZE + rate * channels * 2)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(WavAudio.header(PcmFormat.of(rate, channels, 16), rate * channels * 2L));
+        for (int frame = 0; frame < rate; frame++) {
+            final double time = (double) frame / rate;
+            final short sample = (short) Math.round(10000 * Math.sin(2 * Math.PI * 440 * time)
+                    + 6000 * Math.sin(2 * Math.PI * 12000 * time));
+            for (int channel = 0; channel < channels; channel++) {
+                buffer.putShort(sample);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Test
+    void convertsStereo48kToMono16kWithoutTheHighTone() {
+        final byte[] original = tones(48000, 2);
+        final FileSource converted = SpeechResampler.toSpeechWav(FileSource.ofBytes(original));
+        final byte[] bytes = converted.toBytes();
+        assertEquals(converted.length(), bytes.length);
+        assertArrayEquals(bytes, converted.toBytes(), "converted again on each read");
+        assertEquals(WavAudio.HEADER_SIZE + 32000, bytes.length, "six times smaller");
+
+        final WavAudio audio = WavAudio.read(ByteBuffer.wrap(bytes));
+        assertEquals(PcmFormat.of(16000, 1, 16), audio.getFormat());
+        int worst = 0;
+        // Away from the edges, where the filter sees silence past the ends.
+        for (int frame = 100; frame < 15900; frame++) {
+            final int expected = (int) Math.round(10000 * Math.sin(2 * Math.PI * 440 * frame / 16000.0));
+            worst = Math.max(worst, Math.abs(audio.getData().getShort(frame * 2) - expected));
+        }
+        assertTrue(worst < 50, "worst error " + worst);
+    }
+
+    @Test
+    void convertsOddRatesAndKeepsLowerRates() {
+        final WavAudio cd = WavAudio.read(ByteBuffer.wrap(SpeechResampler.toSpeechWav(
+                FileSource.ofBytes(tones(44100, 1))).toBytes()));
+        assertEquals(16000, cd.getFrameCount());
+
+        final WavAudio phone = WavAudio.read(ByteBuffer.wrap(SpeechResampler.toSpeechWav(
+                FileSource.ofBytes(tones(8000, 2))).toBytes()));
+        assertEquals(PcmFormat.of(8000, 1, 16), phone.getFormat(), "not raised to 16 kHz");
+        assertEquals(8000, phone.getFrameCount());
+
+        final FileSource speech = FileSource.ofBytes(tones(16000, 1));
+        assertSame(speech, SpeechResampler.toSpeechWav(speech));
+        final FileSource mp3 = FileSource.ofBytes(new byte[]{'I', 'D', '3', 4, 0});
+        assertSame(mp3, SpeechResampler.toSpeechWav(mp3));
+    }
+
+    @Test
+    void readsOnlyTheHeaderUntilTheConvertedFileIsRead() {
+        final byte[] original = tones(48000, 2);
+        final AtomicInteger opened = new AtomicInteger();
+        final FileSource converted = SpeechResampler.toSpeechWav(FileSource.ofStream(original.length, () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(original);
+        }));
+        assertEquals(WavAudio.HEADER_SIZE + 32000, converted.length());
+        assertEquals(1, opened.get(), "opened once to read the header");
+
+        assertArrayEquals(SpeechResampler.toSpeechWav(FileSource.ofBytes(original)).toBytes(), converted.toBytes());
+        assertEquals(2, opened.get());
+    }
+
+    @Test
+    void requestsDownsampleWhenAsked() {
+        final byte[] original = tones(48000, 2);
+        assertEquals(original.length, TranscriptionRequest.builder().file(original).build().getFile().length);
+        assertEquals(WavAudio.HEADER_SIZE + 32000,
+                TranscriptionRequest.builder().file(original).downsample(true).build().getFileSource().length());
+    }
+}
@@ -0,0 +1,70 @@
+package com.cloudurable.jai.audio;
+
+import com.cloudurable.jai.model.audio.AudioResponse;
+import com.cloudurable.jai.model.audio.AudioResponseFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranscriptStitcherTest {
+
+    private static AudioResponse response(final AudioResponseFormat format, final String body) {
+        return AudioResponse.builder().responseFormat(format).body(body).build();
+    }
+
+    @Test
+    void joinsText() {
+        assertEquals("Hello there. General Kenobi.", TranscriptStitcher.stitch(AudioResponseFormat.TEXT,
+                List.of(response(AudioResponseFormat.TEXT, "Hello there.\n"),
+                        response(AudioResponseFormat.TEXT, " General Kenobi.\n")), new double[]{0, 300}, 310));
+    }
+
+    @Test
+    void shiftsSrtCues() {
+        final AudioResponse first = response(AudioResponseFormat.SRT,
+                "1\r\n00:00:00,000 --> 00:00:02,500\r\nHello there.\r\n\r\n"
+                        + "2\r\n00:04:58,000 --> 00:04:59,900\r\nHow are you?\r\n");
+        final AudioResponse second = response(AudioResponseFormat.SRT,
+                "1\n00:00:01,250 --> 00:00:03,000\nFine,\nthanks.\n\n");
+        assertEquals("1\n00:00:00,000 --> 00:00:02,500\nHello there.\n\n"
+                        + "2\n00:04:58,000 --> 00:04:59,900\nHow are you?\n\n"
+                        + "3\n01:00:01,750 --> 01:00:03,500\nFine,\nthanks.\n\n",
+                TranscriptStitcher.stitch(AudioResponseFormat.SRT, List.of(first, second),
+                        new double[]{0, 3600.5}, 3610));
+    }
+
+    @Test
+    void shiftsVttCues() {
+        final AudioResponse first = response(AudioResponseFormat.VTT,
+                "WEBVTT\n\n00:00.000 --> 00:02.500\nHello there.\n\n");
+        final AudioResponse second = response(AudioResponseFormat.VTT,
+                "WEBVTT\n\n00:00:01.250 --> 00:00:03.000 align:start\nFine, thanks.\n");
+        assertEquals("WEBVTT\n\n00:00:00.000 --> 00:00:02.500\nHello there.\n\n"
+                        + "00:05:01.250 --> 00:05:03.000 align:start\nFine, thanks.\n\n",
+                TranscriptStitcher.stitch(AudioResponseFormat.VTT, List.of(first, second),
+                        new double[]{0, 300}, 310));
+    }
+
+    @Test
+    void shiftsVerboseJsonSegments() {
+        final AudioResponse first = response(AudioResponseFormat.VERBOSE_JSON, "{\"task\":\"transcribe\","
+                + "\"language\":\"english\",\"duration\":300.0,\"text\":\"Hello there.\",\"segments\":[{\"id\":0,"
+                + "\"seek\":0,\"start\":0.0,\"end\":2.5,\"text\":\" Hello there.\",\"tokens\":[50364,2425],"
+                + "\"temperature\":0.0,\"avg_logprob\":-0.25,\"compression_ratio\":0.8,\"no_speech_prob\":0.01}]}");
+        final AudioResponse second = response(AudioResponseFormat.VERBOSE_JSON, "{\"task\":\"transcribe\","
+                + "\"language\":\"english\",\"duration\":10.0,\"text\":\"Fine.\",\"segments\":[{\"id\":0,"
+                + "\"seek\":0,\"start\":1.25,\"end\":3.0,\"text\":\" Fine.\",\"tokens\":[50364,12879]}]}");
+        final String body = TranscriptStitcher.stitch(AudioResponseFormat.VERBOSE_JSON, List.of(first, second),
+                new double[]{0, 300}, 310);
+        final AudioResponse stitched = response(AudioResponseFormat.VERBOSE_JSON, body);
+        assertEquals("Hello there. Fine.", stitched.getText());
+        assertEquals("english", stitched.getObjectNode().get().getString("language"));
+        assertEquals(310.0, stitched.getObjectNode().get().getDouble("duration"));
+        assertEquals(1, stitched.getObjectNode().get().getArrayNode("segments").getObjectNode(1).getInt("id"));
+        assertEquals(30000, stitched.getObjectNode().get().getArrayNode("segments").getObjectNode(1).getInt("seek"));
+        assertEquals(301.25, stitched.getObjectNode().get().getArrayNode("segments").getObjectNode(1)
+                .getDouble("start"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.cloudurable.jai.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavAudioTest {
+
+    /**
+     * Writes 16-bit mono audio: a tone, except for the silent frames given as pairs of start and end.
+     */
+    static byte[] wav(final int rate, final int frames, final int... silences) {
+        final PcmFormat format = PcmFormat.of(rate, 1, 16);
+        final ByteBuffer buffer = ByteBuffer.allocate(WavAudio.HEADER_SIZE + frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(WavAudio.header(format, frames * 2L));
+        for (int frame = 0; frame < frames; frame++) {
+            boolean silent = false;
+            for (int index = 0; index < silences.length; index += 2) {
+                silent |= frame >= silences[index] && frame < silences[index + 1];
+            }
+            buffer.putShort(silent ? 0 : (short) (Math.sin(frame * 0.3) * 10000));
+        }
+        return buffer.array();
+    }
+
+    @Test
+    void readsWhatTheHeaderDescribes() {
+        final byte[] bytes = wav(8000, 800);
+        final WavAudio audio = WavAudio.read(ByteBuffer.wrap(bytes));
+        assertEquals(PcmFormat.of(8000, 1, 16), audio.getFormat());
+        assertEquals(800, audio.getFrameCount());
+        assertEquals(0.1, audio.getDuration(), 1e-9);
+        assertEquals((short) (Math.sin(0.3) * 10000), audio.getData().getShort(2));
+
+        final byte[] chunk = audio.toWav(100, 300).toBytes();
+        assertEquals(WavAudio.HEADER_SIZE + 400, chunk.length);
+        final WavAudio read = WavAudio.read(ByteBuffer.wrap(chunk));
+        assertEquals(200, read.getFrameCount());
+        assertEquals(audio.getData().getShort(200), read.getData().getShort(0));
+    }
+
+    @Test
+    void readsOtherSampleFormats() {
+        final ByteBuffer stereo24 = ByteBuffer.allocate(WavAudio.HEADER_SIZE + 12).order(ByteOrder.LITTLE_ENDIAN);
+        stereo24.put(WavAudio.header(PcmFormat.of(44100, 2, 24), 12));
+        stereo24.put(new byte[]{0, 0, 0x40, 0, 0, (byte) 0xC0, 0, 0, 0, 0, 0, 0});
+        final WavAudio audio = WavAudio.read(stereo24.flip());
+        assertEquals(2, audio.getFrameCount());
+        assertEquals(0x4000, audio.getFormat().sample(audio.getData(), 0));
+        assertEquals(-0x4000, audio.getFormat().sample(audio.getData(), 3));
+
+        final ByteBuffer floats = ByteBuffer.allocate(WavAudio.HEADER_SIZE + 8).order(ByteOrder.LITTLE_ENDIAN);
+        floats.put(WavAudio.header(PcmFormat.of(16000, 1, 32, true), 8)).putFloat(0.5f).putFloat(-2f);
+        final WavAudio floatAudio = WavAudio.read(floats.flip());
+        assertTrue(floatAudio.getFormat().isFloatingPoint());
+        assertEquals(16384, floatAudio.getFormat().sample(floatAudio.getData(), 0));
+        assertEquals(-32768, floatAudio.getFormat().sample(floatAudio.getData(), 4), "clipped");
+
+        final WavAudio pcm = WavAudio.ofPcm(ByteBuffer.wrap(new byte[]{(byte) 0xFF, 0, (byte) 0x80}),
+                PcmFormat.of(8000, 1, 8));
+        assertEquals(3, pcm.getFrameCount());
+        assertEquals(127 << 8, pcm.getFormat().sample(pcm.getData(), 0));
+        assertEquals(-128 << 8, pcm.getFormat().sample(pcm.getData(), 1));
+    }
+
+    @Test
+    void rejectsWhatIsNotPcmWav() {
+        assertFalse(WavAudio.isWav(ByteBuffer.wrap("ID3 not a wav file".getBytes())));
+        assertThrows(IllegalArgumentException.class, () -> WavAudio.read(ByteBuffer.wrap(new byte[12])));
+        final byte[] compressed = wav(8000, 10);
+        compressed[20] = 0x55;
+        assertThrows(IllegalArgumentException.class, () -> WavAudio.read(ByteBuffer.wrap(compressed)));
+        assertThrows(IllegalArgumentException.class, () -> PcmFormat.of(8000, 1, 12));
+    }
+
+    @Test
+    void cutsInSilence() {
+        // 10 seconds at 1 kHz, with silence around 3.5 and 7 seconds.
+        final WavAudio audio = WavAudio.read(ByteBuffer.wrap(wav(1000, 10_000, 3400, 3600, 6950, 7050)));
+        final List<Integer> cuts = SilenceSplitter.split(audio, 4000, 1000);
+        assertEquals(2, cuts.size());
+        assertTrue(cuts.get(0) >= 3400 && cuts.get(0) < 3600, "first cut " + cuts.get(0));
+        assertTrue(cuts.get(1) >= 6950 && cuts.get(1) < 7050, "second cut " + cuts.get(1));
+
+        assertTrue(SilenceSplitter.split(audio, 10_000, 1000).isEmpty());
+
+        final List<Integer> noSilence = SilenceSplitter.split(WavAudio.read(ByteBuffer.wrap(wav(1000, 10_000))),
+                4000, 1000);
+        for (int index = 0; index < noSilence.size(); index++) {
+            final int start = index == 0 ? 0 : noSilence.get(index - 1);
+            assertTrue(noSilence.get(index) - start <= 4000, "chunks stay under the limit");
+        }
+        assertTrue(10_000 - noSilence.get(noSilence.size() - 1) <= 4000);
+    }
+}
@@ -0,0 +1,137 @@
+package com.cloudurable.jai.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    Path directory;
+    MutableClock clock;
+
+    @BeforeEach
+    void before() throws IOException {
+        directory = Files.createTempDirectory("jai-response-cache");
+        clock = new MutableClock();
+    }
+
+    @AfterEach
+    void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void keyDependsOnPathAndBody() {
+        final String key = ResponseCache.key("/embeddings", "{\"input\":\"a\"}");
+        assertEquals(64, key.length());
+        assertEquals(key, ResponseCache.key("/embeddings", "{\"input\":\"a\"}"));
+        assertNotEquals(key, ResponseCache.key("/moderations", "{\"input\":\"a\"}"));
+        assertNotEquals(key, ResponseCache.key("/embeddings", "{\"input\":\"b\"}"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        final ResponseCache cache = ResponseCache.builder().setMaxEntries(2).build();
+        cache.put("a", "1".toCharArray());
+        cache.put("b", "2".toCharArray());
+        assertTrue(cache.get("a").isPresent());
+        cache.put("c", "3".toCharArray());
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("a").isPresent());
+        assertFalse(cache.get("b").isPresent());
+        assertArrayEquals("3".toCharArray(), cache.get("c").orElseThrow());
+    }
+
+    @Test
+    void evictsOverCharacterBudget() {
+        final ResponseCache cache = ResponseCache.builder().setMaxChars(10).build();
+        cache.put("a", "123456".toCharArray());
+        cache.put("b", "7890".toCharArray());
+        cache.put("c", "xy".toCharArray());
+        cache.put("big", "01234567890".toCharArray());
+
+        assertFalse(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isPresent());
+        assertTrue(cache.get("c").isPresent());
+        assertFalse(cache.get("big").isPresent());
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        final ResponseCache cache = ResponseCache.builder().setTtl(Duration.ofMinutes(5)).setClock(clock).build();
+        cache.put("a", "1".toCharArray());
+        clock.advance(Duration.ofMinutes(4));
+        assertTrue(cache.get("a").isPresent());
+        clock.advance(Duration.ofMinutes(1));
+        assertFalse(cache.get("a").isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void diskTierSurvivesNewCache() {
+        final String body = "{\"text\":\"caf\u00e9 \u2615\"}";
+        final ResponseCache first = ResponseCache.builder().setDirectory(directory).setTtl(Duration.ofHours(1))
+                .setClock(clock).build();
+        first.put("key", body.toCharArray());
+
+        final ResponseCache second = ResponseCache.builder().setDirectory(directory).setClock(clock).build();
+        assertEquals(body, new String(second.get("key").orElseThrow()));
+        assertEquals(1, second.size());
+
+        clock.advance(Duration.ofHours(2));
+        final ResponseCache third = ResponseCache.builder().setDirectory(directory).setClock(clock).build();
+        assertFalse(third.get("key").isPresent());
+        assertFalse(Files.exists(directory.resolve("key.cache")));
+    }
+
+    @Test
+    void invalidatesBothTiers() {
+        final ResponseCache cache = ResponseCache.builder().setDirectory(directory).build();
+        cache.put("a", "1".toCharArray());
+        cache.put("b", "2".toCharArray());
+        cache.invalidate("a");
+        assertFalse(cache.get("a").isPresent());
+        cache.clear();
+        assertFalse(cache.get("b").isPresent());
+        assertFalse(ResponseCache.builder().setDirectory(directory).build().get("b").isPresent());
+    }
+
+    static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2023-07-01T00:00:00Z");
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
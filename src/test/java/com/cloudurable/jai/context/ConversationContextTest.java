@@ -0,0 +1,157 @@
+package com.cloudurable.jai.context;
+
+import com.cloudurable.jai.Client;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.text.completion.chat.ChatChoice;
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+import com.cloudurable.jai.model.text.completion.chat.Message;
+import com.cloudurable.jai.model.text.completion.chat.Role;
+import com.cloudurable.jai.tokenizer.BpeTokenizer;
+import com.cloudurable.jai.tokenizer.Encoding;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationContextTest {
+
+    /**
+     * A tokenizer with a token per byte, so a message has 3 tokens plus one per byte of its role and content.
+     */
+    private static BpeTokenizer tokenizer;
+
+    @BeforeAll
+    static void loadTokenizer() throws IOException {
+        final StringBuilder file = new StringBuilder();
+        for (int value = 0; value < 256; value++) {
+            file.append(Base64.getEncoder().encodeToString(new byte[]{(byte) value})).append(' ').append(value)
+                    .append('\n');
+        }
+        tokenizer = BpeTokenizer.load(Encoding.CL100K_BASE,
+                new ByteArrayInputStream(file.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static Message message(final Role role, final String content) {
+        return Message.builder().role(role).content(content).build();
+    }
+
+    private static List<String> contents(final ConversationContext context) {
+        return context.getMessages().stream().map(Message::getContent).collect(Collectors.toList());
+    }
+
+    @Test
+    void slidesWindowOverOldestMessages() {
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(40)
+                .build();
+        context.add(message(Role.USER, "one1")).add(message(Role.USER, "two2")).add(message(Role.USER, "thr3"));
+        assertEquals(3 + 3 * 11, context.getTokenCount());
+
+        context.add(message(Role.USER, "fou4"));
+        assertEquals(List.of("two2", "thr3", "fou4"), contents(context));
+        assertEquals(3 + 3 * 11, context.getTokenCount());
+    }
+
+    @Test
+    void pinsSystemMessagesAndEvictsWholeTurns() {
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(80)
+                .setReplyTokens(14).build();
+        context.add(message(Role.SYSTEM, "be brief"))
+                .add(message(Role.USER, "q1")).add(message(Role.ASSISTANT, "a1"))
+                .add(message(Role.USER, "q2")).add(message(Role.ASSISTANT, "a2"));
+        assertEquals(3 + 17 + 2 * (9 + 14), context.getTokenCount());
+
+        context.add(message(Role.USER, "q3"));
+        assertEquals(List.of("be brief", "q2", "a2", "q3"), contents(context));
+        assertEquals(3 + 17 + 9 + 14 + 9, context.getTokenCount());
+
+        final ConversationContext unpinned = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(30)
+                .setPinSystemMessages(false).build();
+        unpinned.add(message(Role.SYSTEM, "be brief")).add(message(Role.USER, "q1")).add(message(Role.USER, "q2"));
+        assertEquals(List.of("q1", "q2"), contents(unpinned));
+    }
+
+    @Test
+    void summarizesEvictedMessages() {
+        final List<List<Message>> batches = new ArrayList<>();
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(60)
+                .setSummaryTokens(20)
+                .setSummarizer((previous, evicted) -> {
+                    batches.add(evicted);
+                    return message(Role.SYSTEM, previous == null ? "s" + evicted.size()
+                            : previous.getContent() + "s" + evicted.size());
+                })
+                .build();
+        context.add(message(Role.USER, "q1")).add(message(Role.ASSISTANT, "a1")).add(message(Role.USER, "q2"));
+        assertTrue(context.getSummary().isEmpty());
+
+        context.add(message(Role.ASSISTANT, "a2"));
+        assertEquals(1, batches.size());
+        assertEquals(List.of("q1", "a1"), batches.get(0).stream().map(Message::getContent)
+                .collect(Collectors.toList()));
+        assertEquals(List.of("s2", "q2", "a2"), contents(context));
+        assertEquals(3 + 11 + 9 + 14, context.getTokenCount());
+
+        context.add(message(Role.USER, "q3")).add(message(Role.ASSISTANT, "a3"));
+        assertEquals(List.of("s2s2", "q3", "a3"), contents(context));
+    }
+
+    @Test
+    void cutsLongSummaries() {
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(40)
+                .setSummaryTokens(20).setSummarizer((previous, evicted) -> message(Role.SYSTEM, "x".repeat(100)))
+                .build();
+        context.add(message(Role.USER, "q1")).add(message(Role.USER, "q2"));
+        assertEquals("x".repeat(11), context.getSummary().orElseThrow().getContent());
+        assertEquals(3 + 20 + 9, context.getTokenCount());
+    }
+
+    @Test
+    void summarizesWithAnyClient() {
+        final Client client = mock(Client.class);
+        when(client.chat(any())).thenAnswer(invocation -> {
+            final ChatRequest request = invocation.getArgument(0);
+            final ChatResponse response = ChatResponse.builder().addChoice(ChatChoice.builder().index(0)
+                    .message(message(Role.ASSISTANT, "They said hi.")).build()).build();
+            final ClientSuccessResponse.Builder<ChatRequest, ChatResponse> builder = ClientSuccessResponse.builder();
+            return builder.request(request).response(response).statusCode(200).build();
+        });
+
+        final Message summary = Summarizer.using(client, "gpt-3.5-turbo")
+                .summarize(null, List.of(message(Role.USER, "hi")));
+
+        assertEquals("Summary of the earlier conversation: They said hi.", summary.getContent());
+        assertEquals(Role.SYSTEM, summary.getRole());
+    }
+
+    @Test
+    void buildsRequests() {
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(100)
+                .build();
+        context.addAll(List.of(message(Role.USER, "hi"), message(Role.SYSTEM, "sys")));
+        assertEquals(List.of("sys", "hi"), context.newRequest("gpt-4").maxTokens(10).build().getMessages().stream()
+                .map(Message::getContent).collect(Collectors.toList()));
+    }
+
+    @Test
+    void rejectsMessagesThatCannotFit() {
+        final ConversationContext context = ConversationContext.builder().setTokenizer(tokenizer).setMaxTokens(20)
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> context.add(message(Role.USER, "x".repeat(20))));
+        assertTrue(context.getMessages().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ConversationContext.builder().setMaxTokens(100).build());
+        assertThrows(IllegalArgumentException.class, () -> ConversationContext.builder().setTokenizer(tokenizer)
+                .setMaxTokens(100).setReplyTokens(100).build());
+    }
+}
@@ -0,0 +1,154 @@
+package com.cloudurable.jai.cost;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostAccountantTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicLong now = new AtomicLong(10 * HOUR + 5);
+
+    private CostAccountant accountant(final Budget defaultBudget, final int retainedWindows) {
+        return new CostAccountant(Map.of("gpt-4", new long[]{30_000, 60_000}, "gpt-4-32k", new long[]{60_000, 120_000},
+                "gpt-3.5-turbo", new long[]{1_500, 2_000}), Map.of("gpt-4", "gpt-3.5-turbo"), defaultBudget, HOUR,
+                retainedWindows, now::get);
+    }
+
+    private static Budget budget(final double downgradeAt, final double limit) {
+        return Budget.builder().setDowngradeAt(downgradeAt).setLimit(limit).build();
+    }
+
+    @Test
+    void pricesByLongestModelPrefix() {
+        final CostAccountant accountant = accountant(null, 1);
+        assertEquals(0.06, accountant.record("alice", "gpt-4-0613", 1000, 500), 1e-9);
+        assertEquals(0.12, accountant.record("alice", "gpt-4-32k", 1000, 500), 1e-9);
+        assertEquals(0.0025, accountant.record("alice", "gpt-3.5-turbo", 1000, 500), 1e-9);
+        assertEquals(0, accountant.record("alice", "whisper-1", 1000, 0));
+        assertEquals(0.1825, accountant.getSpent("alice"), 1e-9);
+        assertEquals(0, accountant.getSpent("bob"));
+    }
+
+    @Test
+    void defaultPricesCoverCommonModels() {
+        final CostAccountant accountant = CostAccountant.builder().setPrice("my-model", 1, 2).build();
+        assertEquals(0.0035, accountant.record(null, "gpt-3.5-turbo-0613", 1000, 1000), 1e-9);
+        assertEquals(0.0001, accountant.record(null, "text-embedding-ada-002", 1000, 0), 1e-9);
+        assertEquals(3, accountant.record(null, "my-model", 1000, 1000), 1e-9);
+    }
+
+    @Test
+    void downgradesThenRejectsOverBudget() {
+        final CostAccountant accountant = accountant(budget(0.05, 0.09), 1);
+        assertEquals("gpt-4", accountant.admit("alice", "gpt-4"));
+        accountant.record("alice", "gpt-4", 1000, 500);
+
+        assertEquals("gpt-3.5-turbo", accountant.admit("alice", "gpt-4-0613"));
+        assertEquals("text-davinci-003", accountant.admit("alice", "text-davinci-003"), "no cheaper model set");
+        assertEquals("gpt-4", accountant.admit("bob", "gpt-4"));
+
+        accountant.record("alice", "gpt-4", 1000, 0);
+        final BudgetExceededException exceeded = assertThrows(BudgetExceededException.class,
+                () -> accountant.admit("alice", "gpt-3.5-turbo"));
+        assertEquals("alice", exceeded.getUser());
+        assertEquals(0.09, exceeded.getSpent(), 1e-9);
+        assertEquals(0.09, exceeded.getLimit(), 1e-9);
+
+        now.addAndGet(HOUR);
+        assertEquals("gpt-4", accountant.admit("alice", "gpt-4"), "budgets apply per window");
+    }
+
+    @Test
+    void userBudgetReplacesDefault() {
+        final CostAccountant accountant = accountant(budget(0, 0), 1);
+        assertThrows(BudgetExceededException.class, () -> accountant.admit(null, "gpt-4"));
+        accountant.setBudget("tenant-a", budget(1, 1));
+        assertEquals("gpt-4", accountant.admit("tenant-a", "gpt-4"));
+        accountant.setBudget("tenant-a", null);
+        assertThrows(BudgetExceededException.class, () -> accountant.admit("tenant-a", "gpt-4"));
+    }
+
+    @Test
+    void reservationCountsUntilSettled() {
+        final CostAccountant accountant = accountant(budget(1, 1), 1);
+        final CostAccountant.Reservation reservation = accountant.reserve("alice", "gpt-4", 1000, 1000);
+        assertEquals(0.09, accountant.getSpent("alice"), 1e-9, "the estimate counts while in flight");
+        assertEquals(0, accountant.getReports().get(0).getRequests());
+
+        assertEquals(0.06, reservation.settle(1000, 500), 1e-9);
+        assertEquals(0.06, accountant.getSpent("alice"), 1e-9);
+        assertEquals(1, accountant.getReports().get(0).getRequests());
+        assertEquals(0.0, reservation.settle(1000, 500), "settled once");
+        assertFalse(reservation.release());
+
+        final CostAccountant.Reservation refused = accountant.reserve("alice", "gpt-4", 1000, 0);
+        now.addAndGet(HOUR);
+        assertTrue(refused.release());
+        assertEquals(0, accountant.getSpent("alice"));
+        accountant.reserve("alice", "gpt-4", 20_000, 20_000);
+        assertThrows(BudgetExceededException.class, () -> accountant.admit("alice", "gpt-4"));
+    }
+
+    @Test
+    void reportsRetainedWindows() {
+        final CostAccountant accountant = accountant(null, 1);
+        accountant.record("alice", "gpt-4", 100, 0);
+        now.addAndGet(HOUR);
+        accountant.record("alice", "gpt-4", 200, 0);
+        accountant.record("alice", "gpt-4", 300, 10);
+        accountant.record(null, "gpt-3.5-turbo", 10, 0);
+        now.addAndGet(HOUR);
+        accountant.record("alice", "gpt-4", 400, 0);
+
+        final List<CostReport> reports = accountant.getReports();
+        assertEquals(3, reports.size(), "the oldest window is dropped");
+        final CostReport latest = reports.get(0);
+        assertEquals(Instant.ofEpochMilli(12 * HOUR), latest.getWindowStart());
+        assertEquals(400, latest.getPromptTokens());
+        final CostReport previous = reports.stream()
+                .filter(report -> report.getUser().equals("alice") && report.getWindowStart().toEpochMilli() == 11 * HOUR)
+                .findFirst().orElseThrow();
+        assertEquals(2, previous.getRequests());
+        assertEquals(500, previous.getPromptTokens());
+        assertEquals(10, previous.getCompletionTokens());
+        assertEquals(0.0156, previous.getCost(), 1e-9);
+    }
+
+    @Test
+    void countsConcurrentRecords() throws Exception {
+        final CostAccountant accountant = accountant(null, 0);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int task = 0; task < 8; task++) {
+                executor.execute(() -> {
+                    for (int count = 0; count < 10_000; count++) {
+                        accountant.record("alice", "gpt-3.5-turbo", 1, 1);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80_000, accountant.getReports().get(0).getRequests());
+        assertEquals(80_000 * 3_500 / 1e9, accountant.getSpent("alice"), 1e-9);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> Budget.builder().build());
+        assertThrows(IllegalArgumentException.class, () -> budget(2, 1));
+        assertThrows(IllegalArgumentException.class, () -> CostAccountant.builder().setWindow(Duration.ZERO).build());
+    }
+}
@@ -0,0 +1,81 @@
+package com.cloudurable.jai.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimpleClientMetricsTest {
+
+    private static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void recordsRequestsByPath() {
+        final SimpleClientMetrics metrics = new SimpleClientMetrics();
+        metrics.requestStarted("/chat/completions", 300);
+        metrics.requestStarted("/chat/completions", 200);
+        metrics.requestStarted("/embeddings", -1);
+        assertEquals(2, metrics.getPath("/chat/completions").orElseThrow().getInFlight());
+
+        metrics.responseStarted("/chat/completions", 200, millis(40));
+        metrics.requestCompleted("/chat/completions", 200, millis(90), 1000);
+        metrics.responseStarted("/chat/completions", 429, millis(5));
+        metrics.requestCompleted("/chat/completions", 429, millis(6), 80);
+        metrics.requestFailed("/embeddings", new IOException("reset"), millis(1));
+        metrics.tokensUsed("/chat/completions", 12, 30);
+
+        final SimpleClientMetrics.PathMetrics chat = metrics.getPath("/chat/completions").orElseThrow();
+        assertEquals(2, chat.getRequests());
+        assertEquals(0, chat.getInFlight());
+        assertEquals(Map.of(200, 1L, 429, 1L), chat.getStatusCounts());
+        assertEquals(500, chat.getRequestBytes());
+        assertEquals(1080, chat.getResponseBytes());
+        assertEquals(12, chat.getPromptTokens());
+        assertEquals(30, chat.getCompletionTokens());
+        assertEquals(2, chat.getLatency().getCount());
+        assertEquals(2, chat.getTimeToFirstByte().getCount());
+
+        final SimpleClientMetrics.PathMetrics embeddings = metrics.getPath("/embeddings").orElseThrow();
+        assertEquals(1, embeddings.getFailures());
+        assertEquals(0, embeddings.getInFlight());
+        assertEquals(0, embeddings.getRequestBytes());
+        assertEquals(Set.of("/chat/completions", "/embeddings"), metrics.getPaths());
+        assertFalse(metrics.getPath("/models").isPresent());
+    }
+
+    @Test
+    void histogramPercentilesAreWithinABucket() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(Duration.ZERO, histogram.getPercentile(0.5));
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis(millis));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(Duration.ofNanos(millis(5050) / 100), histogram.getMean());
+        assertBetween(50, 62.5, histogram.getPercentile(0.5));
+        assertBetween(99, 124, histogram.getPercentile(0.99));
+        assertBetween(100, 125, histogram.getPercentile(1));
+    }
+
+    @Test
+    void histogramBucketsCoverTheirBounds() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            final int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundMicros(bucket), "micros " + micros);
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBoundMicros(bucket - 1), "micros " + micros);
+        }
+        assertEquals(159, LatencyHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    private static void assertBetween(final double fromMillis, final double toMillis, final Duration actual) {
+        final double millis = actual.toNanos() / 1_000_000.0;
+        assertTrue(millis >= fromMillis && millis <= toMillis, actual.toString());
+    }
+}
@@ -0,0 +1,73 @@
+package com.cloudurable.jai.model;
+
+import com.cloudurable.jai.model.file.UploadFileRequest;
+import com.cloudurable.jai.model.file.UploadFileRequestSerializer;
+import com.cloudurable.jai.util.MultipartEntityBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSourceTest {
+
+    private static byte[] read(final FileSource source) throws IOException {
+        try (InputStream stream = source.openStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @Test
+    void readsEachKindOfSource() throws IOException {
+        final byte[] contents = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        final Path path = Files.createTempFile("file-source", ".bin");
+        try {
+            Files.write(path, contents);
+            for (FileSource source : new FileSource[]{FileSource.ofBytes(contents), FileSource.ofPath(path),
+                    FileSource.ofMapped(path)}) {
+                assertEquals(10, source.length(), source.toString());
+                assertArrayEquals(contents, source.toBytes(), source.toString());
+                assertArrayEquals(contents, read(source), source.toString());
+                assertArrayEquals(contents, read(source), "sources can be read again");
+            }
+
+            final FileSource region = FileSource.ofMapped(path, 3, 4);
+            assertEquals(4, region.length());
+            assertArrayEquals("3456".getBytes(StandardCharsets.US_ASCII), read(region));
+            assertEquals(region, FileSource.ofMapped(path, 3, 4));
+            assertEquals(FileSource.ofPath(path), FileSource.ofPath(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void opensFilesLazily() {
+        final UploadFileRequest request = UploadFileRequest.builder().file(new File("no-such-file.jsonl"))
+                .purpose("fine-tune").build();
+        assertEquals("no-such-file.jsonl", request.getFileName());
+        assertThrows(UncheckedIOException.class, () -> UploadFileRequestSerializer.buildForm(request));
+    }
+
+    @Test
+    void streamsFilesIntoForms() throws IOException {
+        final Path path = Files.createTempFile("file-source", ".jsonl");
+        try {
+            Files.write(path, "{\"prompt\":\"a\"}".getBytes(StandardCharsets.UTF_8));
+            final MultipartEntityBuilder fromFile = UploadFileRequestSerializer.buildForm(UploadFileRequest.builder()
+                    .file(path.toFile()).fileName("data.jsonl").purpose("fine-tune").build());
+            final MultipartEntityBuilder fromBytes = UploadFileRequestSerializer.buildForm(UploadFileRequest.builder()
+                    .file(Files.readAllBytes(path)).fileName("data.jsonl").purpose("fine-tune").build());
+            assertEquals(fromBytes.getContentLength(), fromFile.getContentLength());
+            assertArrayEquals(fromBytes.build(), fromFile.build());
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.cloudurable.jai.model.chat;
+
+import com.cloudurable.jai.model.FinishReason;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunk;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunkAggregator;
+import com.cloudurable.jai.model.text.completion.chat.ChatChunkDeserializer;
+import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
+import com.cloudurable.jai.model.text.completion.chat.Role;
+import io.nats.jparse.Json;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChatChunkDeserializerTest {
+
+    @Test
+    void deserialize() {
+        final String jsonBody = "{'id':'chatcmpl-123','object':'chat.completion.chunk','created':1677652288," +
+                "'choices':[{'index':0,'delta':{'role':'assistant','content':''},'finish_reason':null}]}";
+
+        ChatChunk chunk = ChatChunkDeserializer.deserialize(Json.niceJson(jsonBody));
+        assertEquals("chatcmpl-123", chunk.getId());
+        assertEquals("chat.completion.chunk", chunk.getObject());
+        assertEquals(1677652288, chunk.getCreated().toEpochMilli() / 1000);
+        assertEquals(1, chunk.getChoices().size());
+        assertEquals(Role.ASSISTANT, chunk.getChoices().get(0).getMessage().getRole());
+        assertEquals("", chunk.getChoices().get(0).getMessage().getContent());
+        assertEquals(FinishReason.NULL, chunk.getChoices().get(0).getFinishReason());
+    }
+
+    @Test
+    void aggregate() {
+        final String[] events = {
+                "{'id':'chatcmpl-123','object':'chat.completion.chunk','created':1677652288," +
+                        "'choices':[{'index':0,'delta':{'role':'assistant'},'finish_reason':null}]}",
+                "{'id':'chatcmpl-123','object':'chat.completion.chunk','created':1677652288," +
+                        "'choices':[{'index':0,'delta':{'content':'Hello'},'finish_reason':null}]}",
+                "{'id':'chatcmpl-123','object':'chat.completion.chunk','created':1677652288," +
+                        "'choices':[{'index':0,'delta':{'content':' there'},'finish_reason':null}]}",
+                "{'id':'chatcmpl-123','object':'chat.completion.chunk','created':1677652288," +
+                        "'choices':[{'index':0,'delta':{},'finish_reason':'stop'}]}"
+        };
+
+        final List<ChatChunk> received = new ArrayList<>();
+        final ChatChunkAggregator aggregator = new ChatChunkAggregator(received::add);
+        for (String event : events) {
+            aggregator.accept(ChatChunkDeserializer.deserialize(Json.niceJson(event)));
+        }
+
+        assertEquals(4, received.size());
+        ChatResponse response = aggregator.toChatResponse();
+        assertEquals("chatcmpl-123", response.getId());
+        assertEquals("chat.completion", response.getObject());
+        assertNull(response.getUsage());
+        assertEquals(1, response.getChoices().size());
+        assertEquals(Role.ASSISTANT, response.getChoices().get(0).getMessage().getRole());
+        assertEquals("Hello there", response.getChoices().get(0).getMessage().getContent());
+        assertEquals(FinishReason.STOP, response.getChoices().get(0).getFinishReason());
+    }
+
+    @Test
+    void aggregateFunctionCall() {
+        // The arguments are fragments of a JSON string, so the quotes inside them are escaped.
+        final String[] events = {
+                "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1677652288," +
+                        "\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":null," +
+                        "\"function_call\":{\"name\":\"get_weather\",\"arguments\":\"\"}},\"finish_reason\":null}]}",
+                "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1677652288," +
+                        "\"choices\":[{\"index\":0,\"delta\":{\"function_call\":{\"arguments\":\"{\\\"location\\\":\"}}," +
+                        "\"finish_reason\":null}]}",
+                "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1677652288," +
+                        "\"choices\":[{\"index\":0,\"delta\":{\"function_call\":{\"arguments\":\"\\\"Austin\\\"}\"}}," +
+                        "\"finish_reason\":null}]}"
+        };
+
+        final ChatChunkAggregator aggregator = new ChatChunkAggregator(chunk -> {
+        });
+        for (String event : events) {
+            aggregator.accept(ChatChunkDeserializer.deserialize(event));
+        }
+
+        ChatResponse response = aggregator.toChatResponse();
+        assertNull(response.getChoices().get(0).getMessage().getContent());
+        assertEquals("get_weather", response.getChoices().get(0).getMessage().getFunctionCall().getName());
+        assertEquals("Austin", response.getChoices().get(0).getMessage().getFunctionCall()
+                .getArguments().getString("location"));
+    }
+}
@@ -11,6 +11,8 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ChatRequestSerializerTest {
 
@@ -62,4 +64,18 @@ class ChatRequestSerializerTest {
 
 
     }
+
+    @Test
+    void serializeTemperatureOnlyWhenSet() {
+        final ChatRequest.Builder builder = ChatRequest.builder().model("gpt-3.5-turbo")
+                .addMessage(Message.builder().role(Role.USER).content("Hello!").build());
+        final ChatRequest unset = builder.build();
+        assertFalse(unset.isTemperatureSet());
+        assertFalse(ChatRequestSerializer.serialize(unset).contains("\"temperature\""));
+
+        final ChatRequest zero = builder.temperature(0).build();
+        assertTrue(zero.isTemperatureSet());
+        assertTrue(ChatRequestSerializer.serialize(zero).contains("\"temperature\":0"));
+        assertTrue(zero.withModel("gpt-4").isTemperatureSet());
+    }
 }
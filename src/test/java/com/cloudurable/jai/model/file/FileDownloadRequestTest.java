@@ -0,0 +1,35 @@
+package com.cloudurable.jai.model.file;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+class FileDownloadRequestTest {
+
+    @Test
+    void builder_SetsFields() {
+        FileDownloadRequest request = FileDownloadRequest.builder()
+                .fileId("file-123")
+                .target(Path.of("results.jsonl"))
+                .resume(true)
+                .build();
+
+        Assertions.assertEquals("file-123", request.getFileId());
+        Assertions.assertEquals(Path.of("results.jsonl"), request.getTarget());
+        Assertions.assertTrue(request.isResume());
+        Assertions.assertEquals(1, request.getSegments());
+        Assertions.assertEquals(request, FileDownloadRequest.builder().fileId("file-123")
+                .target(Path.of("results.jsonl")).resume(true).build());
+    }
+
+    @Test
+    void build_RejectsInvalidRequests() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FileDownloadRequest.builder()
+                .target(Path.of("results.jsonl")).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FileDownloadRequest.builder()
+                .fileId("file-123").target(Path.of("results.jsonl")).segments(0).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FileDownloadRequest.builder()
+                .fileId("file-123").target(Path.of("results.jsonl")).segments(4).resume(true).build());
+    }
+}
@@ -0,0 +1,60 @@
+package com.cloudurable.jai.model.text.completion;
+
+import com.cloudurable.jai.model.FinishReason;
+import io.nats.jparse.Json;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompletionChunkDeserializerTest {
+
+    @Test
+    void deserialize() {
+        final String jsonBody = "{'id':'cmpl-123','object':'text_completion','created':1677652288,'model':'davinci'," +
+                "'choices':[{'text':'Hello','index':0,'logprobs':null,'finish_reason':null}]}";
+
+        CompletionChunk chunk = CompletionChunkDeserializer.deserialize(Json.niceJson(jsonBody));
+        assertEquals("cmpl-123", chunk.getId());
+        assertEquals("text_completion", chunk.getObject());
+        assertEquals(1677652288, chunk.getCreated().toEpochMilli() / 1000);
+        assertEquals(1, chunk.getChoices().size());
+        assertEquals("Hello", chunk.getChoices().get(0).getText());
+        assertEquals(0, chunk.getChoices().get(0).getLogprobs().size());
+        assertEquals(FinishReason.NULL, chunk.getChoices().get(0).getFinishReason());
+    }
+
+    @Test
+    void aggregate() {
+        final String[] events = {
+                "{'id':'cmpl-123','object':'text_completion','created':1677652288," +
+                        "'choices':[{'text':'Hello','index':0,'logprobs':null,'finish_reason':null}]}",
+                "{'id':'cmpl-123','object':'text_completion','created':1677652288," +
+                        "'choices':[{'text':' world','index':1,'logprobs':null,'finish_reason':null}]}",
+                "{'id':'cmpl-123','object':'text_completion','created':1677652288," +
+                        "'choices':[{'text':' there','index':0,'logprobs':null,'finish_reason':'length'}]}",
+                "{'id':'cmpl-123','object':'text_completion','created':1677652288," +
+                        "'choices':[{'text':'','index':1,'logprobs':null,'finish_reason':'stop'}]}"
+        };
+
+        final List<CompletionChunk> received = new ArrayList<>();
+        final CompletionChunkAggregator aggregator = new CompletionChunkAggregator(received::add);
+        for (String event : events) {
+            aggregator.accept(CompletionChunkDeserializer.deserialize(Json.niceJson(event)));
+        }
+
+        assertEquals(4, received.size());
+        CompletionResponse response = aggregator.toCompletionResponse();
+        assertEquals("cmpl-123", response.getId());
+        assertEquals("text_completion", response.getObject());
+        assertNull(response.getUsage());
+        assertEquals(2, response.getChoices().size());
+        assertEquals("Hello there", response.getChoices().get(0).getText());
+        assertEquals(FinishReason.LENGTH, response.getChoices().get(0).getFinishReason());
+        assertEquals(" world", response.getChoices().get(1).getText());
+        assertEquals(FinishReason.STOP, response.getChoices().get(1).getFinishReason());
+    }
+}
@@ -0,0 +1,90 @@
+package com.cloudurable.jai.model.text.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingMatrixDeserializerTest {
+
+    @Test
+    void deserialize() {
+        final String json = "{\n" +
+                "  \"object\": \"list\",\n" +
+                "  \"data\": [\n" +
+                "    {\"object\": \"embedding\", \"embedding\": [0.0023064255, -0.009327292, 1.5e-3], \"index\": 0},\n" +
+                "    {\"object\": \"embedding\", \"index\": 1, \"embedding\": [-7.4364e-05, 1, -0.5]}\n" +
+                "  ],\n" +
+                "  \"model\": \"text-embedding-ada-002\",\n" +
+                "  \"usage\": {\"prompt_tokens\": 8, \"total_tokens\": 8}\n" +
+                "}";
+
+        final EmbeddingMatrix matrix = EmbeddingMatrixDeserializer.deserialize(json.toCharArray(), 2);
+
+        assertEquals("list", matrix.getObject());
+        assertEquals("text-embedding-ada-002", matrix.getModel());
+        assertEquals(8, matrix.getUsage().getPromptTokens());
+        assertEquals(8, matrix.getUsage().getTotalTokens());
+        assertEquals(2, matrix.getRowCount());
+        assertEquals(3, matrix.getDimensions());
+        assertEquals(6, matrix.getValues().length);
+        assertEquals(0.0023064255f, matrix.get(0, 0));
+        assertEquals(-0.009327292f, matrix.get(0, 1));
+        assertEquals(0.0015f, matrix.get(0, 2));
+        assertEquals(-7.4364e-05f, matrix.get(1, 0));
+        assertEquals(1.0f, matrix.get(1, 1));
+        assertEquals(-0.5f, matrix.get(1, 2));
+    }
+
+    @Test
+    void ordersRowsByIndex() {
+        final String json = "{\"data\":[{\"index\":1,\"embedding\":[3,4]},{\"index\":0,\"embedding\":[1,2]}]," +
+                "\"extra\":{\"nested\":[true,null,\"x\\\"y\"]}}";
+
+        final EmbeddingMatrix matrix = EmbeddingMatrixDeserializer.deserialize(json);
+
+        assertEquals(2, matrix.getRowCount());
+        assertArrayEquals(new float[]{1, 2}, matrix.getRow(0));
+        assertArrayEquals(new float[]{3, 4}, matrix.getRow(1));
+        assertNull(matrix.getUsage());
+    }
+
+    @Test
+    void parsesFloatsLikeFloatParseFloat() {
+        final String[] numbers = {"0.006929283495992422", "-0.0072949", "123456789012345678901234", "1E-40",
+                "3.4028235E38", "-0.000000123456789", "0", "-0.0", "2.5e+3"};
+        final StringBuilder json = new StringBuilder("{\"data\":[{\"index\":0,\"embedding\":[");
+        for (int index = 0; index < numbers.length; index++) {
+            json.append(index == 0 ? "" : ",").append(numbers[index]);
+        }
+        json.append("]}]}");
+
+        final EmbeddingMatrix matrix = EmbeddingMatrixDeserializer.deserialize(json.toString());
+
+        for (int index = 0; index < numbers.length; index++) {
+            final float expected = Float.parseFloat(numbers[index]);
+            assertEquals(expected, matrix.get(0, index), Math.ulp(expected));
+        }
+    }
+
+    @Test
+    void rejectsRaggedRows() {
+        final String json = "{\"data\":[{\"index\":0,\"embedding\":[1,2]},{\"index\":1,\"embedding\":[1]}]}";
+
+        assertThrows(IllegalStateException.class, () -> EmbeddingMatrixDeserializer.deserialize(json));
+    }
+
+    @Test
+    void ofEmbeddingResponse() {
+        final EmbeddingResponse response = EmbeddingResponse.builder().object("list")
+                .data(java.util.Arrays.asList(Embedding.builder().index(1).embedding(new float[]{3, 4}).build(),
+                        Embedding.builder().index(0).embedding(new float[]{1, 2}).build()))
+                .build();
+
+        final EmbeddingMatrix matrix = EmbeddingMatrix.of(response);
+
+        assertEquals(matrix, EmbeddingMatrixDeserializer.deserialize(
+                "{\"object\":\"list\",\"data\":[{\"index\":0,\"embedding\":[1,2]},{\"index\":1,\"embedding\":[3,4]}]}"));
+        assertEquals(11.0f, matrix.dot(1, new float[]{1, 2}));
+        assertEquals(2, matrix.toEmbeddings().size());
+    }
+}
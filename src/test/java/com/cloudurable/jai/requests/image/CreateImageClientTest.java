@@ -6,6 +6,7 @@ import com.cloudurable.jai.model.ClientResponse;
 import com.cloudurable.jai.model.image.CreateImageRequest;
 import com.cloudurable.jai.model.image.ImageRequestSerializer;
 import com.cloudurable.jai.model.image.ImageResponse;
+import com.cloudurable.jai.resilience.RetryPolicy;
 import com.cloudurable.jai.test.mock.HttpClientMock;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,10 +14,12 @@ import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CreateImageClientTest {
 
@@ -58,6 +61,42 @@ public class CreateImageClientTest {
         verify(mock, times(1)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
     }
 
+    /**
+     * Test method to verify that a generation answered with 503 is not sent again under the client-wide retry policy,
+     * but is under a retry policy set for its path.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void createImageRetriesOnlyWithPathPolicy() throws Exception {
+        final RetryPolicy retryPolicy = RetryPolicy.builder().setBaseDelay(Duration.ofMillis(1))
+                .setMaxDelay(Duration.ofMillis(10)).build();
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRetryPolicy(retryPolicy).build();
+
+        HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePost("/images/generations", requestBody, responseBody);
+        final HttpResponse<String> unavailable = HttpClientMock.httpResponseBuilder().setStatusCode(503)
+                .setBody("{}").build();
+        when(httpClientMock.getMock().send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString()))
+                .thenReturn(unavailable, (HttpResponse<String>) requestResponse.getResponse());
+
+        assertEquals(503, client.createImage(createImageRequest).getStatusCode().orElse(-666));
+        verify(httpClientMock.getMock(), times(1)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRetryPolicy(retryPolicy).setRetryPolicy("/images", retryPolicy).build();
+
+        requestResponse = httpClientMock.setResponsePost("/images/generations", requestBody, responseBody);
+        when(httpClientMock.getMock().send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString()))
+                .thenReturn(unavailable, (HttpResponse<String>) requestResponse.getResponse());
+
+        assertEquals(200, client.createImage(createImageRequest).getStatusCode().orElse(-666));
+        verify(httpClientMock.getMock(), times(2)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+    }
+
     /**
      * Setup method to initialize the client, mock HttpClient,
      * and set up request and response data before each test.
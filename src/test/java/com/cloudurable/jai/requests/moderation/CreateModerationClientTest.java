@@ -9,12 +9,12 @@ import com.cloudurable.jai.model.moderation.CreateModerationRequest;
 import com.cloudurable.jai.model.moderation.CreateModerationRequestSerializer;
 import com.cloudurable.jai.model.moderation.CreateModerationResponse;
 import com.cloudurable.jai.test.mock.HttpClientMock;
+import com.cloudurable.jai.util.CharArrayBodySubscriber;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpClient;
-import java.net.http.HttpResponse;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.times;
@@ -43,7 +43,7 @@ public class CreateModerationClientTest {
         client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock).build();
 
         // Mock the response
-        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePost("/moderations", requestBody, responseBody);
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostChars("/moderations", requestBody, responseBody);
 
         final ClientResponse<CreateModerationRequest, CreateModerationResponse> response = client.moderate(createModerationRequest);
 
@@ -57,7 +57,7 @@ public class CreateModerationClientTest {
         });
 
         HttpClient mock = httpClientMock.getMock();
-        verify(mock, times(1)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+        verify(mock, times(1)).send(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
     }
 
     /**
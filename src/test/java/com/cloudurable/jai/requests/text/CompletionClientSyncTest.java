@@ -2,21 +2,37 @@ package com.cloudurable.jai.requests.text;
 
 
 import com.cloudurable.jai.OpenAIClient;
+import com.cloudurable.jai.cost.Budget;
+import com.cloudurable.jai.cost.BudgetExceededException;
+import com.cloudurable.jai.cost.CostAccountant;
+import com.cloudurable.jai.metrics.SimpleClientMetrics;
 import com.cloudurable.jai.model.ClientResponse;
 import com.cloudurable.jai.model.text.completion.CompletionRequest;
 import com.cloudurable.jai.model.text.completion.CompletionRequestSerializer;
 import com.cloudurable.jai.model.text.completion.CompletionResponse;
+import com.cloudurable.jai.resilience.RateLimiter;
 import com.cloudurable.jai.test.mock.HttpClientMock;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CompletionClientSyncTest {
 
@@ -58,6 +74,172 @@ public class CompletionClientSyncTest {
         verify(mock, times(1)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
     }
 
+    /**
+     * Test method to verify that the cost accountant is charged for the usage of a completion.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    void completionChargesCostAccountant() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final CostAccountant costAccountant = CostAccountant.builder().build();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setCostAccountant(costAccountant).build();
+        httpClientMock.setResponsePost("/completions", basicCompletionRequestBody, basicCompletionResponseBody);
+
+        final ClientResponse<CompletionRequest, CompletionResponse> response = client.completion(basicCompletionRequest);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        assertEquals(0.000025, costAccountant.getSpent(null), 1e-12);
+        assertEquals(10, costAccountant.getReports().get(0).getPromptTokens());
+        assertEquals(5, costAccountant.getReports().get(0).getCompletionTokens());
+    }
+
+    /**
+     * Test method to verify that a completion of a user over budget is sent to the cheaper model.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void completionDowngradedOverBudget() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final CostAccountant costAccountant = CostAccountant.builder().setDowngrade("gpt-3.5-turbo", "text-ada-001")
+                .setDefaultBudget(Budget.builder().setDowngradeAt(0).setLimit(1).build()).build();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setCostAccountant(costAccountant).build();
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePost("/completions",
+                basicCompletionRequestBody, basicCompletionResponseBody);
+        when(httpClientMock.getMock().send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(requestResponse.getResponse());
+
+        final ClientResponse<CompletionRequest, CompletionResponse> response = client.completion(basicCompletionRequest);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        assertEquals("text-ada-001", response.getRequest().getModel());
+        assertEquals("text-ada-001", costAccountant.getReports().get(0).getModel());
+    }
+
+    /**
+     * Test method to verify that a completion of a user whose budget is spent is not sent.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    void completionRejectedOverBudget() throws Exception {
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setCostAccountant(CostAccountant.builder()
+                        .setDefaultBudget(Budget.builder().setLimit(0).build()).build()).build();
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePost("/completions",
+                basicCompletionRequestBody, basicCompletionResponseBody);
+
+        final ClientResponse<CompletionRequest, CompletionResponse> response = client.completion(basicCompletionRequest);
+
+        assertTrue(response.getException().orElseThrow() instanceof BudgetExceededException);
+        assertSame(basicCompletionRequest, response.getRequest());
+        verify(httpClientMock.getMock(), never()).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Test method to verify that a streamed completion is charged, so a stream that takes a user over budget gets the
+     * next call of the user refused.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void completionStreamChargedUntilNextCallRefused() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final CostAccountant costAccountant = CostAccountant.builder()
+                .setDefaultBudget(Budget.builder().setLimit(0.00002).build()).build();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setCostAccountant(costAccountant).build();
+        answerStream();
+
+        final ClientResponse<CompletionRequest, CompletionResponse> response =
+                client.completionStream(basicCompletionRequest, chunk -> {
+                });
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        assertEquals("This is the completion response.", response.getResponse().orElseThrow().getChoices().get(0).getText());
+        assertTrue(costAccountant.getSpent(null) > 0.00002, "spent " + costAccountant.getSpent(null));
+        assertEquals(1, costAccountant.getReports().get(0).getRequests());
+        assertEquals(8, costAccountant.getReports().get(0).getCompletionTokens(), "the streamed text, four characters per token");
+
+        final ClientResponse<CompletionRequest, CompletionResponse> refused =
+                client.completionStream(basicCompletionRequest, chunk -> {
+                });
+        assertTrue(refused.getException().orElseThrow() instanceof BudgetExceededException);
+        verify(httpClientMock.getMock(), times(1)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    /**
+     * Test method to verify that the rate limiter estimate of a streamed completion is replaced with the tokens the
+     * stream used.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    void completionStreamReconcilesRateLimiter() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.acquire(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRateLimiter(rateLimiter).build();
+        answerStream();
+
+        client.completionStream(basicCompletionRequest, chunk -> {
+        });
+
+        final int promptTokens = CompletionRequestSerializer.serialize(basicCompletionRequest, true).length() / 4;
+        verify(rateLimiter).acquire(promptTokens + 10);
+        verify(rateLimiter).reconcile(promptTokens + 10, promptTokens + 8);
+    }
+
+    /**
+     * Test method to verify that the tokens of a streamed completion are reported to the client metrics.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    void completionStreamRecordsTokenMetrics() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final SimpleClientMetrics metrics = new SimpleClientMetrics();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setMetrics(metrics).build();
+        answerStream();
+
+        client.completionStream(basicCompletionRequest, chunk -> {
+        });
+
+        final SimpleClientMetrics.PathMetrics completions = metrics.getPath("/completions").orElseThrow();
+        assertEquals(CompletionRequestSerializer.serialize(basicCompletionRequest, true).length() / 4,
+                completions.getPromptTokens());
+        assertEquals(8, completions.getCompletionTokens());
+    }
+
+    /**
+     * Answers every request with a stream of one completion chunk.
+     */
+    @SuppressWarnings("unchecked")
+    private void answerStream() throws Exception {
+        final String events = "data: {\"id\":\"cmpl-1\",\"object\":\"text_completion\",\"created\":1687413620,"
+                + "\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"text\":\"This is the completion response.\","
+                + "\"index\":0,\"finish_reason\":\"stop\"}]}\n\ndata: [DONE]\n\n";
+        when(httpClientMock.getMock().send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenAnswer(invocation -> {
+                    final HttpResponse.ResponseInfo info = mock(HttpResponse.ResponseInfo.class);
+                    when(info.statusCode()).thenReturn(200);
+                    final HttpResponse.BodySubscriber<String> body =
+                            ((HttpResponse.BodyHandler<String>) invocation.getArgument(1)).apply(info);
+                    body.onSubscribe(mock(Flow.Subscription.class));
+                    body.onNext(List.of(ByteBuffer.wrap(events.getBytes(StandardCharsets.UTF_8))));
+                    body.onComplete();
+                    return HttpClientMock.httpResponseBuilder().setBody("").build();
+                });
+    }
+
     /**
      * Setup method to initialize the client, mock HttpClient,
      * and set up request and response data before each test.
@@ -6,17 +6,28 @@ import com.cloudurable.jai.model.ClientResponse;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequestSerializer;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import com.cloudurable.jai.resilience.HedgingPolicy;
+import com.cloudurable.jai.resilience.RateLimiter;
+import com.cloudurable.jai.resilience.RetryPolicy;
 import com.cloudurable.jai.test.mock.HttpClientMock;
+import com.cloudurable.jai.util.CharArrayBodySubscriber;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class EmbeddingClientAsyncTest {
 
@@ -41,7 +52,7 @@ public class EmbeddingClientAsyncTest {
         client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock).build();
 
         // Mock the response
-        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostAsync("/embeddings", requestBody, responseBody);
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostCharsAsync("/embeddings", requestBody, responseBody);
 
         final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embeddingAsync(embeddingRequest).get();
 
@@ -55,7 +66,122 @@ public class EmbeddingClientAsyncTest {
         });
 
         HttpClient mock = httpClientMock.getMock();
-        verify(mock, times(1)).sendAsync(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+        verify(mock, times(1)).sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that an async request that fails with an I/O error is sent again on a timer and the
+     * retry's response is returned.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingAsyncRetriesIOException() throws Exception {
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRetryPolicy(RetryPolicy.builder().setBaseDelay(Duration.ofMillis(1))
+                        .setMaxDelay(Duration.ofMillis(10)).build()).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostCharsAsync("/embeddings", requestBody, responseBody);
+        when(httpClientMock.getMock().sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")),
+                        CompletableFuture.completedFuture((HttpResponse<char[]>) requestResponse.getResponse()));
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embeddingAsync(embeddingRequest).get();
+
+        assertFalse(response.getException().isPresent());
+        assertEquals(200, response.getStatusCode().orElse(-666));
+
+        HttpClient mock = httpClientMock.getMock();
+        verify(mock, times(2)).sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that a hedged request slower than the hedge delay is sent a second time and the faster
+     * copy's response is returned.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingAsyncHedgesSlowRequest() throws Exception {
+        final HedgingPolicy hedgingPolicy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).setMinSamples(1).build();
+        hedgingPolicy.recordLatency("/embeddings", Duration.ofMillis(5));
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setHedgingPolicy(hedgingPolicy).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostCharsAsync("/embeddings", requestBody, responseBody);
+        when(httpClientMock.getMock().sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler()))
+                .thenReturn(new CompletableFuture<>(),
+                        CompletableFuture.completedFuture((HttpResponse<char[]>) requestResponse.getResponse()));
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embeddingAsync(embeddingRequest)
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+
+        HttpClient mock = httpClientMock.getMock();
+        verify(mock, times(2)).sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that both copies of a hedged request share one permit from the rate limiter.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingAsyncHedgeSharesOnePermit() throws Exception {
+        final HedgingPolicy hedgingPolicy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).setMinSamples(1).build();
+        hedgingPolicy.recordLatency("/embeddings", Duration.ofMillis(5));
+        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.acquire(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRateLimiter(rateLimiter).setHedgingPolicy(hedgingPolicy).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostCharsAsync("/embeddings", requestBody, responseBody);
+        when(httpClientMock.getMock().sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler()))
+                .thenReturn(new CompletableFuture<>(),
+                        CompletableFuture.completedFuture((HttpResponse<char[]>) requestResponse.getResponse()));
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embeddingAsync(embeddingRequest)
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        verify(httpClientMock.getMock(), times(2)).sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+        verify(rateLimiter, times(1)).acquire(anyInt());
+    }
+
+    /**
+     * Test method to verify that a slow request is not hedged while other requests wait for the rate limiter.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingAsyncDoesNotHedgeWhileThrottled() throws Exception {
+        final HedgingPolicy hedgingPolicy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).setMinSamples(1).build();
+        hedgingPolicy.recordLatency("/embeddings", Duration.ofMillis(5));
+        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.acquire(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+        when(rateLimiter.waiting()).thenReturn(1);
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRateLimiter(rateLimiter).setHedgingPolicy(hedgingPolicy).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostCharsAsync("/embeddings", requestBody, responseBody);
+        when(httpClientMock.getMock().sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler()))
+                .thenReturn(CompletableFuture.supplyAsync(() -> (HttpResponse<char[]>) requestResponse.getResponse(),
+                        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)));
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embeddingAsync(embeddingRequest)
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        verify(httpClientMock.getMock(), times(1)).sendAsync(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
     }
 
     /**
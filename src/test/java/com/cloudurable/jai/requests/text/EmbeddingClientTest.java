@@ -2,21 +2,29 @@ package com.cloudurable.jai.requests.text;
 
 
 import com.cloudurable.jai.OpenAIClient;
+import com.cloudurable.jai.cache.ResponseCache;
+import com.cloudurable.jai.metrics.SimpleClientMetrics;
 import com.cloudurable.jai.model.ClientResponse;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingRequestSerializer;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import com.cloudurable.jai.resilience.RetryPolicy;
 import com.cloudurable.jai.test.mock.HttpClientMock;
+import com.cloudurable.jai.util.CharArrayBodySubscriber;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class EmbeddingClientTest {
 
@@ -41,7 +49,7 @@ public class EmbeddingClientTest {
         client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock).build();
 
         // Mock the response
-        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePost("/embeddings", requestBody, responseBody);
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostChars("/embeddings", requestBody, responseBody);
 
         final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embedding(embeddingRequest);
 
@@ -55,7 +63,87 @@ public class EmbeddingClientTest {
         });
 
         HttpClient mock = httpClientMock.getMock();
-        verify(mock, times(1)).send(requestResponse.getRequest(), HttpResponse.BodyHandlers.ofString());
+        verify(mock, times(1)).send(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that a repeated embedding request is answered from the response cache.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    void embeddingFromCache() throws Exception {
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setResponseCache(ResponseCache.builder().build()).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostChars("/embeddings", requestBody, responseBody);
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> first = client.embedding(embeddingRequest);
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> second = client.embedding(embeddingRequest);
+
+        assertEquals(first.getResponse().orElseThrow(), second.getResponse().orElseThrow());
+        assertEquals(200, second.getStatusCode().orElse(-666));
+
+        HttpClient mock = httpClientMock.getMock();
+        verify(mock, times(1)).send(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that a request answered with 503 is sent again and the retry's response is returned.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingRetriesServiceUnavailable() throws Exception {
+        httpClientMock = new HttpClientMock();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setRetryPolicy(RetryPolicy.builder().setBaseDelay(Duration.ofMillis(1))
+                        .setMaxDelay(Duration.ofMillis(10)).build()).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostChars("/embeddings", requestBody, responseBody);
+        final HttpResponse<char[]> unavailable = HttpClientMock.httpResponseBuilder().setStatusCode(503)
+                .setHeader("retry-after-ms", "2").setBody("{}").buildChars();
+        when(httpClientMock.getMock().send(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler()))
+                .thenReturn(unavailable, (HttpResponse<char[]>) requestResponse.getResponse());
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embedding(embeddingRequest);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        assertTrue(response.getResponse().isPresent());
+
+        HttpClient mock = httpClientMock.getMock();
+        verify(mock, times(2)).send(requestResponse.getRequest(), CharArrayBodySubscriber.bodyHandler());
+    }
+
+    /**
+     * Test method to verify that the client metrics record the status and token usage of a request.
+     *
+     * @throws Exception in case of errors
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingRecordsMetrics() throws Exception {
+        httpClientMock = new HttpClientMock();
+        final SimpleClientMetrics metrics = new SimpleClientMetrics();
+        client = OpenAIClient.builder().setApiKey("pk-123456789").setHttpClient(httpClientMock)
+                .setMetrics(metrics).build();
+
+        final HttpClientMock.RequestResponse requestResponse = httpClientMock.setResponsePostChars("/embeddings", requestBody, responseBody);
+        when(httpClientMock.getMock().send(eq(requestResponse.getRequest()), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(requestResponse.getResponse());
+
+        final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = client.embedding(embeddingRequest);
+
+        assertEquals(200, response.getStatusCode().orElse(-666));
+        final SimpleClientMetrics.PathMetrics embeddings = metrics.getPath("/embeddings").orElseThrow();
+        assertEquals(1, embeddings.getRequests());
+        assertEquals(0, embeddings.getInFlight());
+        assertEquals(1, embeddings.getStatusCount(200));
+        assertEquals(requestBody.length(), embeddings.getRequestBytes());
+        assertEquals(8, embeddings.getPromptTokens());
+        assertEquals(1, embeddings.getLatency().getCount());
     }
 
     /**
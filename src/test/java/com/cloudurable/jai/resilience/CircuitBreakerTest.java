@@ -0,0 +1,125 @@
+package com.cloudurable.jai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final String PATH = "/chat/completions";
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker breaker(final Duration slowCallDuration) {
+        return new CircuitBreaker(0.5, 0.5, slowCallDuration, 10, 10, Duration.ofSeconds(30), 2, now::get);
+    }
+
+    private void record(final CircuitBreaker breaker, final int statusCode, final int times) {
+        for (int count = 0; count < times; count++) {
+            breaker.acquire(PATH).record(statusCode, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private void advanceSeconds(final long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void namesCircuitsByPathWithoutIds() {
+        assertEquals("/chat/completions", CircuitBreaker.circuitName("/chat/completions"));
+        assertEquals("/files/{id}/content", CircuitBreaker.circuitName("/files/file-abc123/content"));
+        assertEquals("/models/{id}", CircuitBreaker.circuitName("//models/gpt-3.5-turbo"));
+        assertEquals("/fine-tunes/{id}/events", CircuitBreaker.circuitName("/fine-tunes/ft-AF1WoRqd3aJ/events?stream=false"));
+    }
+
+    @Test
+    void opensOnFailureRateAndFailsFast() {
+        final CircuitBreaker breaker = breaker(null);
+        record(breaker, 200, 4);
+        record(breaker, 429, 1);
+        record(breaker, 503, 4);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH));
+        breaker.acquire(PATH).record(new IOException("reset"), 0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PATH));
+
+        final CircuitOpenException rejected = assertThrows(CircuitOpenException.class, () -> breaker.acquire(PATH));
+        assertEquals(PATH, rejected.getPath());
+        assertEquals(Duration.ofSeconds(30), rejected.getRetryAfter());
+        assertThrows(CircuitOpenException.class, () -> breaker.check(PATH));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("/embeddings"));
+    }
+
+    @Test
+    void waitsForMinimumCalls() {
+        final CircuitBreaker breaker = breaker(null);
+        record(breaker, 500, 9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH));
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        final CircuitBreaker breaker = breaker(Duration.ofMillis(50));
+        record(breaker, 200, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PATH));
+    }
+
+    @Test
+    void closesAfterProbesSucceed() {
+        final CircuitBreaker breaker = breaker(null);
+        record(breaker, 500, 10);
+        advanceSeconds(30);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(PATH));
+
+        final CircuitBreaker.Permit first = breaker.acquire(PATH);
+        final CircuitBreaker.Permit second = breaker.acquire(PATH);
+        assertThrows(CircuitOpenException.class, () -> breaker.acquire(PATH));
+        first.record(200, 0);
+        second.record(200, 0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH));
+        record(breaker, 500, 9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH), "closing empties the window");
+    }
+
+    @Test
+    void reopensWhenProbeFails() {
+        final CircuitBreaker breaker = breaker(null);
+        record(breaker, 500, 10);
+        advanceSeconds(30);
+        final CircuitBreaker.Permit probe = breaker.acquire(PATH);
+        probe.record(502, 0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(PATH));
+        advanceSeconds(29);
+        assertThrows(CircuitOpenException.class, () -> breaker.acquire(PATH));
+    }
+
+    @Test
+    void releasedProbeFreesItsSlot() {
+        final CircuitBreaker breaker = breaker(null);
+        record(breaker, 500, 10);
+        advanceSeconds(30);
+        breaker.acquire(PATH).release();
+        breaker.acquire(PATH).record(new IllegalStateException("not sent"), 0);
+        breaker.acquire(PATH).record(200, 0);
+        breaker.acquire(PATH).record(200, 0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH));
+    }
+
+    @Test
+    void ignoresOutcomesFromBeforeTheCircuitOpened() {
+        final CircuitBreaker breaker = breaker(null);
+        final CircuitBreaker.Permit stale = breaker.acquire(PATH);
+        record(breaker, 500, 10);
+        advanceSeconds(30);
+        final CircuitBreaker.Permit probe = breaker.acquire(PATH);
+        stale.record(500, 0);
+        probe.record(200, 0);
+        breaker.acquire(PATH).record(200, 0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(PATH));
+    }
+}
@@ -0,0 +1,184 @@
+package com.cloudurable.jai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointPoolTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final Endpoint east = Endpoint.builder().setUrl("https://east.example.com/v1/").setApiKey("key-east").build();
+    private final Endpoint west = Endpoint.builder().setUrl("https://west.example.com/v1/").setApiKey("key-west")
+            .setOrganization("org-west").build();
+
+    private static HttpHeaders headers(final String... namesAndValues) {
+        final Map<String, List<String>> map = new HashMap<>();
+        for (int index = 0; index < namesAndValues.length; index += 2) {
+            map.put(namesAndValues[index], List.of(namesAndValues[index + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private EndpointPool pool(final EndpointPool.Strategy strategy) {
+        return new EndpointPool(List.of(east, west), strategy, 2, Duration.ofSeconds(10), Duration.ofSeconds(30), now::get);
+    }
+
+    private void advanceSeconds(final long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void spreadsOverLeastOutstanding() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        final EndpointPool.Lease first = pool.acquire();
+        final EndpointPool.Lease second = pool.acquire();
+        assertNotSame(first.getEndpoint(), second.getEndpoint());
+
+        first.complete(200, headers());
+        assertSame(first.getEndpoint(), pool.acquire().getEndpoint());
+        assertEquals(1, pool.getOutstanding(east));
+        assertEquals(1, pool.getOutstanding(west));
+    }
+
+    @Test
+    void ejectsFailingEndpointAndTriesItAgainLater() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        for (int count = 0; count < 2; count++) {
+            leaseOf(pool, east).complete(503, headers());
+        }
+        assertTrue(pool.isEjected(east));
+        for (int count = 0; count < 4; count++) {
+            final EndpointPool.Lease lease = pool.acquire();
+            assertSame(west, lease.getEndpoint());
+            lease.complete(200, headers());
+        }
+
+        advanceSeconds(10);
+        assertFalse(pool.isEjected(east));
+        leaseOf(pool, east).fail(new IOException("connection refused"));
+        assertTrue(pool.isEjected(east));
+        advanceSeconds(10);
+        assertTrue(pool.isEjected(east), "second ejection lasts twice as long");
+        advanceSeconds(10);
+        leaseOf(pool, east).complete(200, headers());
+        leaseOf(pool, east).complete(503, headers());
+        assertFalse(pool.isEjected(east), "a success resets the failures");
+    }
+
+    @Test
+    void usesEndpointEjectedLongestAgoWhenAllAreEjected() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        leaseOf(pool, east).complete(401, headers());
+        leaseOf(pool, east).complete(401, headers());
+        advanceSeconds(1);
+        leaseOf(pool, west).complete(500, headers());
+        leaseOf(pool, west).complete(500, headers());
+        assertSame(east, pool.acquire().getEndpoint());
+    }
+
+    @Test
+    void prefersMostRemainingRateLimit() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.MOST_REMAINING_RATE_LIMIT);
+        leaseOf(pool, east).complete(200, headers("x-ratelimit-limit-tokens", "1000",
+                "x-ratelimit-remaining-tokens", "100", "x-ratelimit-reset-tokens", "30s"));
+        leaseOf(pool, west).complete(200, headers("x-ratelimit-limit-tokens", "1000",
+                "x-ratelimit-remaining-tokens", "900", "x-ratelimit-reset-tokens", "3s"));
+        for (int count = 0; count < 3; count++) {
+            assertSame(west, pool.acquire().getEndpoint());
+        }
+        advanceSeconds(30);
+        assertSame(east, pool.acquire().getEndpoint());
+    }
+
+    @Test
+    void skipsRateLimitedEndpointUntilReset() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        leaseOf(pool, east).complete(429, headers("retry-after", "5"));
+        assertFalse(pool.isEjected(east));
+        for (int count = 0; count < 3; count++) {
+            assertSame(west, pool.acquire().getEndpoint());
+        }
+        advanceSeconds(5);
+        assertSame(east, pool.acquire().getEndpoint());
+    }
+
+    @Test
+    void routesRequestToEndpoint() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        final HttpRequest request = HttpRequest.newBuilder(URI.create("https://api.openai.com/v1//embeddings"))
+                .header("Authorization", "Bearer pk-default").header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build();
+
+        final HttpRequest routed = leaseOf(pool, west).route(request, "/embeddings");
+
+        assertEquals(URI.create("https://west.example.com/v1//embeddings"), routed.uri());
+        assertEquals("POST", routed.method());
+        assertEquals(List.of("Bearer key-west"), routed.headers().allValues("Authorization"));
+        assertEquals("org-west", routed.headers().firstValue("OpenAI-Organization").orElseThrow());
+        assertEquals("application/json", routed.headers().firstValue("Content-Type").orElseThrow());
+    }
+
+    @Test
+    void pinsFileRoundTripToPrimaryEndpoint() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        // The primary endpoint is busy and then ejected, which would send stateless requests to the other one.
+        final EndpointPool.Lease busy = pool.acquire("/embeddings");
+        assertSame(east, busy.getEndpoint());
+        assertSame(west, pool.acquire("/chat/completions").getEndpoint());
+        pool.acquire("/embeddings").complete(200, headers());
+        for (int failure = 0; failure < 2; failure++) {
+            leaseOf(pool, east).complete(500, headers());
+        }
+        assertTrue(pool.isEjected(east));
+        assertSame(west, pool.acquire("/embeddings").getEndpoint());
+
+        for (String path : new String[]{"/files", "/files/file-1", "/files/file-1/content", "/fine-tunes",
+                "/fine-tunes/ft-1/events", "/models/ft-model", "/files?purpose=fine-tune"}) {
+            final EndpointPool.Lease lease = pool.acquire(path);
+            assertSame(east, lease.getEndpoint(), path);
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("https://api.openai.com/v1/" + path))
+                    .header("Authorization", "Bearer pk-default").GET().build();
+            assertEquals(List.of("Bearer key-east"), lease.route(request, path).headers().allValues("Authorization"));
+            lease.complete(200, headers());
+        }
+        assertFalse(EndpointPool.isPooled("/filesystem"));
+        assertTrue(EndpointPool.isPooled("/audio/transcriptions"));
+        assertTrue(EndpointPool.isPooled("/images/generations"));
+    }
+
+    @Test
+    void releasesLeaseOnce() {
+        final EndpointPool pool = pool(EndpointPool.Strategy.LEAST_OUTSTANDING);
+        final EndpointPool.Lease lease = pool.acquire();
+        lease.complete(200, headers());
+        lease.fail(new IOException());
+        assertEquals(0, pool.getOutstanding(lease.getEndpoint()));
+        assertFalse(pool.isEjected(lease.getEndpoint()));
+    }
+
+    /**
+     * Acquires leases until one is for the endpoint, releasing the others.
+     */
+    private EndpointPool.Lease leaseOf(final EndpointPool pool, final Endpoint endpoint) {
+        for (int count = 0; count < 10; count++) {
+            final EndpointPool.Lease lease = pool.acquire();
+            if (lease.getEndpoint() == endpoint) {
+                return lease;
+            }
+            lease.fail(new IllegalStateException("not used"));
+        }
+        throw new AssertionError("endpoint not chosen: " + endpoint);
+    }
+}
@@ -0,0 +1,164 @@
+package com.cloudurable.jai.resilience;
+
+import com.cloudurable.jai.cache.CachedHttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingPolicyTest {
+
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://api.openai.com/v1/embeddings")).build();
+
+    private final List<CompletableFuture<HttpResponse<String>>> copies = new ArrayList<>();
+
+    private final Supplier<CompletableFuture<HttpResponse<String>>> send = () -> {
+        final CompletableFuture<HttpResponse<String>> copy = new CompletableFuture<>();
+        synchronized (copies) {
+            copies.add(copy);
+        }
+        return copy;
+    };
+
+    private static HttpResponse<String> response(final int statusCode, final String body) {
+        return new CachedHttpResponse<>(REQUEST, body) {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+        };
+    }
+
+    private static HedgingPolicy warmedUp(final RetryBudget budget) {
+        final HedgingPolicy policy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).setMinSamples(10)
+                .setBudget(budget).build();
+        for (int count = 0; count < 10; count++) {
+            policy.recordLatency("/embeddings", Duration.ofMillis(5));
+        }
+        return policy;
+    }
+
+    private static HedgingPolicy warmedUp() {
+        return warmedUp(RetryBudget.builder().build());
+    }
+
+    private int copiesSent() {
+        synchronized (copies) {
+            return copies.size();
+        }
+    }
+
+    private void awaitCopies(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (copiesSent() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, copiesSent());
+    }
+
+    @Test
+    void computesPercentileDelay() {
+        final HedgingPolicy policy = HedgingPolicy.builder().setPercentile(0.95).setMinDelay(Duration.ZERO).build();
+        assertTrue(policy.getHedgeDelay("/embeddings").isEmpty());
+        for (int millis = 1; millis <= 20; millis++) {
+            policy.recordLatency("/embeddings", Duration.ofMillis(millis));
+        }
+        assertEquals(Duration.ofMillis(19), policy.getHedgeDelay("/embeddings").orElseThrow());
+        // The percentile is recomputed every 32 samples.
+        for (int millis = 21; millis <= 52; millis++) {
+            policy.recordLatency("/embeddings", Duration.ofMillis(millis));
+        }
+        assertEquals(Duration.ofMillis(50), policy.getHedgeDelay("/embeddings").orElseThrow());
+    }
+
+    @Test
+    void doesNotHedgeWithoutEnoughSamples() throws Exception {
+        final HedgingPolicy policy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).build();
+        policy.hedge("/embeddings", send);
+        Thread.sleep(50);
+        assertEquals(1, copiesSent());
+    }
+
+    @Test
+    void takesFasterCopyAndCancelsSlowerOne() throws Exception {
+        final CompletableFuture<HttpResponse<String>> result = warmedUp().hedge("/embeddings", send);
+        awaitCopies(2);
+        copies.get(1).complete(response(200, "hedge"));
+
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS).body());
+        assertTrue(copies.get(0).isCancelled());
+    }
+
+    @Test
+    void doesNotHedgeFastRequest() throws Exception {
+        final HedgingPolicy policy = HedgingPolicy.builder().setMinDelay(Duration.ofMillis(20)).setMinSamples(10).build();
+        for (int count = 0; count < 10; count++) {
+            policy.recordLatency("/embeddings", Duration.ofMillis(20));
+        }
+        final CompletableFuture<HttpResponse<String>> result = policy.hedge("/embeddings", send);
+        copies.get(0).complete(response(200, "first"));
+        assertEquals("first", result.get(1, TimeUnit.SECONDS).body());
+        Thread.sleep(50);
+        assertEquals(1, copiesSent());
+    }
+
+    @Test
+    void waitsForOtherCopyWhenOneFails() throws Exception {
+        final CompletableFuture<HttpResponse<String>> result = warmedUp().hedge("/embeddings", send);
+        awaitCopies(2);
+        copies.get(0).complete(response(503, "unavailable"));
+        assertFalse(result.isDone());
+        copies.get(1).complete(response(200, "hedge"));
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS).body());
+    }
+
+    @Test
+    void failsWithLastCopyWhenBothFail() throws Exception {
+        final CompletableFuture<HttpResponse<String>> result = warmedUp().hedge("/embeddings", send);
+        awaitCopies(2);
+        copies.get(1).complete(response(500, "error"));
+        copies.get(0).complete(response(503, "unavailable"));
+        assertEquals(503, result.get(1, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void recordsLatencyOfFailedCopies() throws Exception {
+        final HedgingPolicy policy = HedgingPolicy.builder().setMinDelay(Duration.ZERO).setMinSamples(1).build();
+        final CompletableFuture<HttpResponse<String>> result = policy.hedge("/embeddings", send);
+        copies.get(0).complete(response(503, "unavailable"));
+        assertEquals(503, result.get(1, TimeUnit.SECONDS).statusCode());
+        assertTrue(policy.getHedgeDelay("/embeddings").isPresent());
+    }
+
+    @Test
+    void cancelsHedgeSentAfterResultCompleted() throws Exception {
+        final Supplier<CompletableFuture<HttpResponse<String>>> answerFirstWhileHedging = () -> {
+            if (copiesSent() == 1) {
+                copies.get(0).complete(response(200, "first"));
+            }
+            return send.get();
+        };
+        final CompletableFuture<HttpResponse<String>> result = warmedUp().hedge("/embeddings", answerFirstWhileHedging);
+        awaitCopies(2);
+
+        assertEquals("first", result.get(1, TimeUnit.SECONDS).body());
+        assertTrue(copies.get(1).isCancelled());
+    }
+
+    @Test
+    void budgetLimitsHedges() throws Exception {
+        final HedgingPolicy policy = warmedUp(RetryBudget.builder().setRatio(0).setMinRetriesPerSecond(0).build());
+        policy.hedge("/embeddings", send);
+        Thread.sleep(50);
+        assertEquals(1, copiesSent());
+    }
+}
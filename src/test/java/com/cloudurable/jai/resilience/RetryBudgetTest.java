@@ -0,0 +1,48 @@
+package com.cloudurable.jai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void allowsRetriesInProportionToRequests() {
+        final RetryBudget budget = new RetryBudget(0.25, 0, now::get);
+        for (int count = 0; count < 8; count++) {
+            budget.recordRequest();
+        }
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    void reserveRefillsEverySecond() {
+        final RetryBudget budget = new RetryBudget(0, 2, now::get);
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    void keepsDepositsOfRecentRequestsOnly() {
+        final RetryBudget budget = new RetryBudget(0.1, 0, now::get);
+        for (int count = 0; count < 5000; count++) {
+            budget.recordRequest();
+        }
+        int retries = 0;
+        while (budget.tryRetry()) {
+            retries++;
+        }
+        assertEquals(100, retries);
+    }
+}
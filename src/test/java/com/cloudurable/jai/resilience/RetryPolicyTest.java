@@ -0,0 +1,118 @@
+package com.cloudurable.jai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private static HttpHeaders headers(final String... namesAndValues) {
+        final Map<String, List<String>> map = new HashMap<>();
+        for (int index = 0; index < namesAndValues.length; index += 2) {
+            map.put(namesAndValues[index], List.of(namesAndValues[index + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private static RetryPolicy.Builder fastPolicy() {
+        return RetryPolicy.builder().setBaseDelay(Duration.ofMillis(100)).setMaxDelay(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void parsesRateLimitDurations() {
+        assertEquals(20, RetryPolicy.parseDuration("20ms"));
+        assertEquals(1500, RetryPolicy.parseDuration("1.5s"));
+        assertEquals(360_000, RetryPolicy.parseDuration("6m0s"));
+        assertEquals(3_723_000, RetryPolicy.parseDuration("1h2m3s"));
+    }
+
+    @Test
+    void readsRetryAfterHeaders() {
+        assertEquals(250, RetryPolicy.serverDelayMillis(503, headers("retry-after-ms", "250"), 0));
+        assertEquals(3000, RetryPolicy.serverDelayMillis(503, headers("retry-after", "3"), 0));
+
+        final long now = Instant.parse("2023-06-01T10:00:00Z").toEpochMilli();
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.parse("2023-06-01T10:00:05Z").atOffset(ZoneOffset.UTC));
+        assertEquals(5000, RetryPolicy.serverDelayMillis(503, headers("retry-after", date), now));
+        assertEquals(0, RetryPolicy.serverDelayMillis(503, headers(), 0));
+    }
+
+    @Test
+    void readsResetOfExhaustedLimitOn429() {
+        final HttpHeaders headers = headers(
+                "x-ratelimit-remaining-requests", "59",
+                "x-ratelimit-reset-requests", "1s",
+                "x-ratelimit-remaining-tokens", "0",
+                "x-ratelimit-reset-tokens", "6.5s");
+        assertEquals(6500, RetryPolicy.serverDelayMillis(429, headers, 0));
+        assertEquals(0, RetryPolicy.serverDelayMillis(503, headers, 0));
+        assertEquals(20, RetryPolicy.serverDelayMillis(429,
+                headers("x-ratelimit-reset-requests", "20ms", "x-ratelimit-reset-tokens", "2s"), 0));
+    }
+
+    @Test
+    void delaysWithDecorrelatedJitter() {
+        final RetryPolicy policy = fastPolicy().setMaxAttempts(10)
+                .setRetryBudget(RetryBudget.builder().setMinRetriesPerSecond(100).build()).build();
+        final RetryPolicy.Retries retries = policy.start();
+        long previous = 100;
+        for (int attempt = 1; attempt < 10; attempt++) {
+            final long delay = retries.delayAfter(500, headers());
+            assertTrue(delay >= 100 && delay <= Math.min(2000, previous * 3), "delay " + delay);
+            previous = delay;
+        }
+        assertEquals(10, retries.getAttempts());
+        assertEquals(-1, retries.delayAfter(500, headers()));
+    }
+
+    @Test
+    void neverRetriesSoonerThanServerAsks() {
+        final RetryPolicy.Retries retries = fastPolicy().build().start();
+        assertTrue(retries.delayAfter(429, headers("retry-after-ms", "1500")) >= 1500);
+    }
+
+    @Test
+    void givesUpWhenServerAsksForMoreThanMaxDelay() {
+        final RetryPolicy.Retries retries = fastPolicy().build().start();
+        assertEquals(-1, retries.delayAfter(429, headers("retry-after", "60")));
+    }
+
+    @Test
+    void retriesOnlyRetryableFailures() {
+        final RetryPolicy policy = fastPolicy().build();
+        assertEquals(-1, policy.start().delayAfter(400, headers()));
+        assertEquals(-1, policy.start().delayAfter(new IllegalStateException()));
+        assertTrue(policy.start().delayAfter(new HttpTimeoutException("timeout")) >= 0);
+        assertTrue(policy.isRetryable(new CompletionException(new IOException("reset"))));
+        assertFalse(RetryPolicy.none().isRetryable(503));
+        assertEquals(-1, RetryPolicy.none().start().delayAfter(new IOException()));
+    }
+
+    @Test
+    void stopsWhenBudgetIsUsedUp() {
+        final RetryPolicy policy = fastPolicy().setRetryBudget(RetryBudget.builder().setRatio(0)
+                .setMinRetriesPerSecond(1).build()).build();
+        assertTrue(policy.start().delayAfter(503, headers()) >= 0);
+        assertEquals(-1, policy.start().delayAfter(503, headers()));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().setMaxAttempts(0).build());
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder()
+                .setBaseDelay(Duration.ofSeconds(2)).setMaxDelay(Duration.ofSeconds(1)).build());
+    }
+}
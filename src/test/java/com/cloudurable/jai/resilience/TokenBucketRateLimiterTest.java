@@ -0,0 +1,126 @@
+package com.cloudurable.jai.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    ScheduledExecutorService scheduler;
+    AtomicLong now;
+
+    @BeforeEach
+    void before() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        now = new AtomicLong();
+    }
+
+    @AfterEach
+    void after() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void limitsRequestsPerMinute() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 0, scheduler, now::get);
+        assertTrue(limiter.acquire(0).isDone());
+        assertTrue(limiter.acquire(0).isDone());
+        final CompletableFuture<Void> third = limiter.acquire(0);
+        assertFalse(third.isDone());
+        assertEquals(1, limiter.waiting());
+
+        advanceSeconds(29);
+        limiter.drain();
+        assertFalse(third.isDone());
+        advanceSeconds(1);
+        limiter.drain();
+        assertTrue(third.isDone());
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1000, scheduler, now::get);
+        assertTrue(limiter.acquire(800).isDone());
+        final CompletableFuture<Void> large = limiter.acquire(400);
+        final CompletableFuture<Void> small = limiter.acquire(10);
+        assertEquals(2, limiter.waiting());
+
+        large.cancel(false);
+        assertTrue(small.isDone(), "a cancelled request must not hold up the queue");
+        assertEquals(0, limiter.waiting());
+        assertTrue(limiter.acquire(190).isDone(), "a cancelled request must not be charged");
+    }
+
+    @Test
+    void limitsTokensPerMinuteInOrder() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1000, scheduler, now::get);
+        assertTrue(limiter.acquire(800).isDone());
+        final CompletableFuture<Void> large = limiter.acquire(400);
+        final CompletableFuture<Void> small = limiter.acquire(10);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone(), "a small request must not overtake a waiting one");
+
+        advanceSeconds(12);
+        limiter.drain();
+        assertTrue(large.isDone());
+        assertFalse(small.isDone());
+        advanceSeconds(1);
+        limiter.drain();
+        assertTrue(small.isDone());
+    }
+
+    @Test
+    void reconcileRefundsOverestimate() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1000, scheduler, now::get);
+        assertTrue(limiter.acquire(900).isDone());
+        final CompletableFuture<Void> next = limiter.acquire(500);
+        assertFalse(next.isDone());
+
+        limiter.reconcile(900, 100);
+        assertTrue(next.isDone());
+    }
+
+    @Test
+    void reconcileChargesUnderestimate() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1000, scheduler, now::get);
+        assertTrue(limiter.acquire(100).isDone());
+        limiter.reconcile(100, 700);
+        assertFalse(limiter.acquire(400).isDone());
+    }
+
+    @Test
+    void admitsOversizedRequestWhenFull() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1000, scheduler, now::get);
+        assertTrue(limiter.acquire(5000).isDone());
+        final CompletableFuture<Void> next = limiter.acquire(1);
+        assertFalse(next.isDone());
+    }
+
+    @Test
+    void wakesUpOnTimer() throws Exception {
+        final long start = System.nanoTime();
+        final TokenBucketRateLimiter limiter = TokenBucketRateLimiter.builder().setRequestsPerMinute(1200).build();
+        for (int count = 0; count < 1200; count++) {
+            assertTrue(limiter.acquire(0).isDone());
+        }
+        limiter.acquire(0).get(1, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void requiresALimit() {
+        assertThrows(IllegalArgumentException.class, () -> TokenBucketRateLimiter.builder().build());
+    }
+
+    private void advanceSeconds(final long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
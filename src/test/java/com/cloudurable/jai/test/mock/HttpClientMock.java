@@ -1,5 +1,7 @@
 package com.cloudurable.jai.test.mock;
 
+import com.cloudurable.jai.util.CharArrayBodySubscriber;
+
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 import java.io.IOException;
@@ -8,10 +10,14 @@ import java.net.CookieHandler;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -201,6 +207,43 @@ public class HttpClientMock extends HttpClient {
         return new RequestResponse(request, response);
     }
 
+    /**
+     * Set up a mocked response for a synchronous POST request whose body is read into a char array.
+     *
+     * @param path         the request path
+     * @param requestBody  the request body as a String
+     * @param responseBody the response body as a String
+     * @return this RequestResponse instance
+     * @throws Exception in case of errors
+     */
+    public RequestResponse setResponsePostChars(String path, String requestBody, String responseBody) throws Exception {
+        final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody(path);
+        requestBuilder.POST(HttpRequest.BodyPublishers.ofString(requestBody));
+        final HttpRequest request = requestBuilder.build();
+        final HttpResponse<char[]> response = httpResponseBuilder().setBody(responseBody).buildChars();
+        when(mockClient.send(request, CharArrayBodySubscriber.bodyHandler())).thenReturn(response);
+        return new RequestResponse(request, response);
+    }
+
+    /**
+     * Set up a mocked response for an asynchronous POST request whose body is read into a char array.
+     *
+     * @param path         the request path
+     * @param requestBody  the request body as a String
+     * @param responseBody the response body as a String
+     * @return this RequestResponse instance
+     * @throws Exception in case of errors
+     */
+    public RequestResponse setResponsePostCharsAsync(String path, String requestBody, String responseBody) throws Exception {
+        final HttpRequest.Builder requestBuilder = createRequestBuilderWithBody(path);
+        requestBuilder.POST(HttpRequest.BodyPublishers.ofString(requestBody));
+        final HttpRequest request = requestBuilder.build();
+        final HttpResponse<char[]> response = httpResponseBuilder().setBody(responseBody).buildChars();
+        final CompletableFuture<HttpResponse<char[]>> future = CompletableFuture.supplyAsync(() -> response);
+        when(mockClient.sendAsync(request, CharArrayBodySubscriber.bodyHandler())).thenReturn(future);
+        return new RequestResponse(request, response);
+    }
+
     /**
      * Helper method to create a request builder with default headers and given path.
      *
@@ -316,9 +359,20 @@ public class HttpClientMock extends HttpClient {
 
         private byte[] bodyContent;
 
+        private final Map<String, List<String>> headers = new HashMap<>();
+
         private HttpResponseBuilder() {
         }
 
+        public HttpResponseBuilder setHeader(String name, String value) {
+            this.headers.put(name, List.of(value));
+            return this;
+        }
+
+        public HttpHeaders getHeaders() {
+            return HttpHeaders.of(headers, (name, value) -> true);
+        }
+
         public String getBody() {
             return body;
         }
@@ -355,6 +409,15 @@ public class HttpClientMock extends HttpClient {
             final HttpResponse<String> mockResponse = mock(HttpResponse.class);
             when(mockResponse.statusCode()).thenReturn(this.getStatusCode());
             when(mockResponse.body()).thenReturn(this.getBody());
+            when(mockResponse.headers()).thenReturn(this.getHeaders());
+            return mockResponse;
+        }
+
+        public HttpResponse<char[]> buildChars() {
+            final HttpResponse<char[]> mockResponse = mock(HttpResponse.class);
+            when(mockResponse.statusCode()).thenReturn(this.getStatusCode());
+            when(mockResponse.body()).thenReturn(this.getBody().toCharArray());
+            when(mockResponse.headers()).thenReturn(this.getHeaders());
             return mockResponse;
         }
 
@@ -362,6 +425,7 @@ public class HttpClientMock extends HttpClient {
             final HttpResponse<byte[]> mockResponse = mock(HttpResponse.class);
             when(mockResponse.statusCode()).thenReturn(this.getStatusCode());
             when(mockResponse.body()).thenReturn(this.bodyContent);
+            when(mockResponse.headers()).thenReturn(this.getHeaders());
 
             return mockResponse;
         }
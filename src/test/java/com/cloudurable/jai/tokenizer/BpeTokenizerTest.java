@@ -0,0 +1,136 @@
+package com.cloudurable.jai.tokenizer;
+
+import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
+import com.cloudurable.jai.model.text.completion.chat.Message;
+import com.cloudurable.jai.model.text.completion.chat.Role;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BpeTokenizerTest {
+
+    private static final Pattern CL100K = Pattern.compile("(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+"
+            + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final Pattern GPT2 = Pattern.compile("'s|'t|'re|'ve|'m|'ll|'d| ?\\p{L}+| ?\\p{N}+"
+            + "| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final String[] SAMPLES = {
+            "Hello, world! It's 2023 and we've got 1234567 tokens.",
+            "  leading spaces\n\n\ttabs and trailing   ",
+            "I'LL see you at 10:30pm...\r\n\r\nBye!!!\n",
+            "caf\u00e9 na\u00efve \u4f60\u597d\u4e16\u754c \u0645\u0631\u062d\u0628\u0627 \ud83d\ude00\ud83d\ude80 done",
+            "x = [1, 2, 3]; // comment\n    return x;  end",
+            "'s 'tis ' '' don't ROCK'N'ROLL \u0663\u0664\u0665 \u2167\u00a0\u00a0x\u3000",
+            " ",
+            "\n",
+    };
+
+    /**
+     * A vocabulary of the 256 bytes followed by "he", "ll", "hell", "hello", " w", "or", " wor", "ld" and " world".
+     */
+    private static BpeTokenizer tokenizer(final Encoding encoding) throws IOException {
+        final List<byte[]> tokens = new ArrayList<>();
+        for (int value = 0; value < 256; value++) {
+            tokens.add(new byte[]{(byte) value});
+        }
+        for (String merged : new String[]{"he", "ll", "hell", "hello", " w", "or", " wor", "ld", " world"}) {
+            tokens.add(merged.getBytes(StandardCharsets.UTF_8));
+        }
+        final StringBuilder file = new StringBuilder();
+        for (int rank = 0; rank < tokens.size(); rank++) {
+            file.append(Base64.getEncoder().encodeToString(tokens.get(rank))).append(' ').append(rank).append('\n');
+        }
+        return BpeTokenizer.load(encoding, new ByteArrayInputStream(file.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static List<String> split(final Encoding encoding, final String text) {
+        final List<String> pieces = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            final int end = encoding.pieceEnd(text, start);
+            pieces.add(text.substring(start, end));
+            start = end;
+        }
+        return pieces;
+    }
+
+    private static List<String> split(final Pattern pattern, final String text) {
+        final List<String> pieces = new ArrayList<>();
+        final Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            pieces.add(matcher.group());
+        }
+        return pieces;
+    }
+
+    @Test
+    void splitsLikeTheEncodingPatterns() {
+        for (String sample : SAMPLES) {
+            assertEquals(split(CL100K, sample), split(Encoding.CL100K_BASE, sample), sample);
+            assertEquals(split(GPT2, sample), split(Encoding.R50K_BASE, sample), sample);
+        }
+        assertEquals(List.of("123", "456", "7"), split(Encoding.CL100K_BASE, "1234567"));
+        assertEquals(List.of("1234567"), split(Encoding.P50K_BASE, "1234567"));
+    }
+
+    @Test
+    void mergesLowestRankFirst() throws IOException {
+        final BpeTokenizer tokenizer = tokenizer(Encoding.CL100K_BASE);
+        assertArrayEquals(new int[]{259}, tokenizer.encode("hello"));
+        assertArrayEquals(new int[]{258, 'x'}, tokenizer.encode("hellx"));
+        assertArrayEquals(new int[]{259, 264}, tokenizer.encode("hello world"));
+        assertArrayEquals(new int[]{262, 's', 't'}, tokenizer.encode(" worst"));
+        assertArrayEquals(new int[]{'H', 'e', 257, 'o'}, tokenizer.encode("Hello"), "He is not a token");
+        assertEquals(0, tokenizer.countTokens(""));
+    }
+
+    @Test
+    void decodesWhatItEncodes() throws IOException {
+        final BpeTokenizer tokenizer = tokenizer(Encoding.CL100K_BASE);
+        for (String sample : SAMPLES) {
+            final int[] tokens = tokenizer.encode(sample);
+            assertEquals(sample, tokenizer.decode(tokens));
+            assertEquals(tokens.length, tokenizer.countTokens(sample));
+        }
+        assertEquals(4, tokenizer.countTokens("\ud83d\ude00"), "one token per byte of the emoji");
+        assertEquals("?", tokenizer.decode(tokenizer.encode("\ud83d")), "unpaired surrogate");
+        assertThrows(IllegalArgumentException.class, () -> tokenizer.decode(new int[]{100_000}));
+    }
+
+    @Test
+    void countsChatRequestTokens() throws IOException {
+        final BpeTokenizer tokenizer = tokenizer(Encoding.CL100K_BASE);
+        final ChatRequest chatRequest = ChatRequest.builder().model("gpt-3.5-turbo")
+                .addMessage(Message.builder().role(Role.SYSTEM).content("hello").build())
+                .addMessage(Message.builder().role(Role.USER).content("hello world").name("bob").build())
+                .build();
+        // system: 3 + "system" 6 + "hello" 1; user: 3 + "user" 4 + "hello world" 2 + name 1 + "bob" 3; reply: 3
+        assertEquals(10 + 13 + 3, tokenizer.countTokens(chatRequest));
+    }
+
+    @Test
+    void mapsModelsToEncodings() {
+        assertEquals(Encoding.CL100K_BASE, Encoding.forModel("gpt-4-0613"));
+        assertEquals(Encoding.CL100K_BASE, Encoding.forModel("text-embedding-ada-002"));
+        assertEquals(Encoding.P50K_BASE, Encoding.forModel("text-davinci-003"));
+        assertEquals(Encoding.R50K_BASE, Encoding.forModel("davinci"));
+        assertEquals(Encoding.R50K_BASE, Encoding.forModel("text-davinci-001"));
+    }
+
+    @Test
+    void explainsMissingVocabulary() {
+        final UncheckedIOException missing = assertThrows(UncheckedIOException.class,
+                () -> BpeTokenizer.load(Encoding.R50K_BASE));
+        assertTrue(missing.getMessage().contains("r50k_base.tiktoken"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.cloudurable.jai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharArrayBodySubscriberTest {
+
+    @Test
+    void decodesExactlySizedBody() throws Exception {
+        final byte[] json = "{\"object\":\"list\",\"data\":[1,2,3]}".getBytes(StandardCharsets.UTF_8);
+        final CharArrayBodySubscriber subscriber = new CharArrayBodySubscriber(json.length);
+
+        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(json)));
+        subscriber.onComplete();
+
+        assertEquals("{\"object\":\"list\",\"data\":[1,2,3]}", new String(subscriber.getBody().toCompletableFuture().get()));
+    }
+
+    @Test
+    void decodesCharacterSplitAcrossBuffers() throws Exception {
+        final byte[] json = "{\"text\":\"caf\u00e9 \u20ac\"}".getBytes(StandardCharsets.UTF_8);
+        // No Content-Length, so the array has to grow, and every buffer is a single byte.
+        final CharArrayBodySubscriber subscriber = new CharArrayBodySubscriber(0);
+        for (int index = 0; index < json.length; index++) {
+            subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(Arrays.copyOfRange(json, index, index + 1))));
+        }
+        subscriber.onComplete();
+
+        assertEquals("{\"text\":\"caf\u00e9 \u20ac\"}", new String(subscriber.getBody().toCompletableFuture().get()));
+    }
+
+    @Test
+    void growsPastTheCappedContentLength() throws Exception {
+        final char[] text = new char[CharArrayBodySubscriber.MAX_INITIAL_CAPACITY + 100];
+        Arrays.fill(text, 'a');
+        final byte[] bytes = new String(text).getBytes(StandardCharsets.UTF_8);
+        // A Content-Length far beyond the body must not be allocated up front.
+        final CharArrayBodySubscriber subscriber = new CharArrayBodySubscriber(Integer.MAX_VALUE);
+
+        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(bytes)));
+        subscriber.onComplete();
+
+        assertArrayEquals(text, subscriber.getBody().toCompletableFuture().get());
+    }
+
+    @Test
+    void completesExceptionallyOnError() {
+        final CharArrayBodySubscriber subscriber = new CharArrayBodySubscriber(16);
+
+        subscriber.onError(new IllegalStateException("closed"));
+
+        assertThrows(ExecutionException.class, () -> subscriber.getBody().toCompletableFuture().get());
+    }
+}
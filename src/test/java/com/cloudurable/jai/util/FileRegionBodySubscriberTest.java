@@ -0,0 +1,78 @@
+package com.cloudurable.jai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRegionBodySubscriberTest {
+
+    private static final Flow.Subscription SUBSCRIPTION = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private static List<ByteBuffer> buffers(final String... parts) {
+        final ByteBuffer[] buffers = new ByteBuffer[parts.length];
+        for (int index = 0; index < parts.length; index++) {
+            buffers[index] = ByteBuffer.wrap(parts[index].getBytes(StandardCharsets.US_ASCII));
+        }
+        return List.of(buffers);
+    }
+
+    @Test
+    void writesRegionsOfOneFile() throws Exception {
+        final Path path = Files.createTempFile("region", ".bin");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            final FileRegionBodySubscriber second = new FileRegionBodySubscriber(channel, 5);
+            second.onSubscribe(SUBSCRIPTION);
+            second.onNext(buffers("fgh", "ij"));
+            second.onComplete();
+
+            final FileRegionBodySubscriber first = new FileRegionBodySubscriber(channel, 0);
+            first.onSubscribe(SUBSCRIPTION);
+            first.onNext(buffers("abcde"));
+            first.onComplete();
+
+            assertEquals(5, second.getBody().toCompletableFuture().get());
+            assertEquals(5, first.getBody().toCompletableFuture().get());
+            assertEquals(0, channel.position(), "positional writes leave the channel where it was");
+            assertEquals("abcdefghij", new String(Files.readAllBytes(path), StandardCharsets.US_ASCII));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void completesExceptionallyWhenTheWriteFails() throws IOException {
+        final Path path = Files.createTempFile("region", ".bin");
+        try {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.close();
+            final FileRegionBodySubscriber subscriber = new FileRegionBodySubscriber(channel, 0);
+            subscriber.onSubscribe(SUBSCRIPTION);
+            subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(new byte[]{1})));
+            final ExecutionException failed = assertThrows(ExecutionException.class,
+                    () -> subscriber.getBody().toCompletableFuture().get());
+            assertInstanceOf(IOException.class, failed.getCause());
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
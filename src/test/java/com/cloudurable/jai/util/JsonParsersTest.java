@@ -0,0 +1,28 @@
+package com.cloudurable.jai.util;
+
+import io.nats.jparse.parser.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonParsersTest {
+
+    @Test
+    void reusesParserOnSameThread() {
+        assertSame(JsonParsers.parser(), JsonParsers.parser());
+        assertEquals("b", JsonParsers.parser().parse("{\"a\":\"b\"}").getObjectNode().getString("a"));
+    }
+
+    @Test
+    void separateParserPerThread() throws Exception {
+        final AtomicReference<JsonParser> other = new AtomicReference<>();
+        final Thread thread = new Thread(() -> other.set(JsonParsers.parser()));
+        thread.start();
+        thread.join();
+
+        assertNotNull(other.get());
+        assertNotSame(JsonParsers.parser(), other.get());
+    }
+}
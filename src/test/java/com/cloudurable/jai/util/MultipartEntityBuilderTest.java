@@ -4,8 +4,18 @@ package com.cloudurable.jai.util;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 public class MultipartEntityBuilderTest {
 
@@ -37,4 +47,82 @@ public class MultipartEntityBuilderTest {
         // ... additional assertions based on the expected entity structure and content
     }
 
+    @Test
+    public void testEntityFormat() {
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create()
+                .addTextBody("model", "whisper-1")
+                .addBinaryBody("file", new byte[]{1, 2}, "application/binary", "a.mp3");
+        String boundary = builder.getBoundary();
+
+        String expected = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"model\"\r\n\r\n"
+                + "whisper-1\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.mp3\"\r\n"
+                + "Content-Type: application/binary\r\n\r\n"
+                + "\u0001\u0002\r\n"
+                + "--" + boundary + "--\r\n";
+        Assertions.assertEquals(expected, new String(builder.build(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(expected.length(), builder.getContentLength());
+    }
+
+    @Test
+    public void testBodyPublisherStreamsEveryKindOfPart() throws Exception {
+        Path file = Files.createTempFile("multipart", ".wav");
+        try {
+            Files.write(file, new byte[100_000]);
+            byte[] streamed = "streamed".getBytes(StandardCharsets.UTF_8);
+            MultipartEntityBuilder builder = MultipartEntityBuilder.create()
+                    .addTextBody("prompt", "caf\u00e9")
+                    .addBinaryBody("file", file, "audio/wav", "a.wav")
+                    .addBinaryBody("buffer", ByteBuffer.wrap("buffer".getBytes(StandardCharsets.UTF_8)),
+                            "application/binary", "b.bin")
+                    .addBinaryBody("stream", () -> new ByteArrayInputStream(streamed), streamed.length,
+                            "application/binary", "c.bin");
+            byte[] entity = builder.build();
+
+            HttpRequest.BodyPublisher publisher = builder.buildBodyPublisher();
+            Assertions.assertEquals(entity.length, publisher.contentLength());
+            Assertions.assertArrayEquals(entity, publish(publisher));
+            Assertions.assertArrayEquals(entity, publish(publisher), "a retry reads the parts again");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBuildRejectsWrongStreamLength() {
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create()
+                .addBinaryBody("stream", () -> new ByteArrayInputStream(new byte[3]), 4, "application/binary", "c.bin");
+        Assertions.assertThrows(UncheckedIOException.class, builder::build);
+    }
+
+    private static byte[] publish(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CompletableFuture<byte[]> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                body.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(body.toByteArray());
+            }
+        });
+        return done.get(5, TimeUnit.SECONDS);
+    }
 }
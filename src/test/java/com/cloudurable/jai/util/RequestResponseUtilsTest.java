@@ -20,6 +20,9 @@ import com.cloudurable.jai.model.text.completion.chat.ChatRequest;
 import com.cloudurable.jai.model.text.completion.chat.ChatResponse;
 import com.cloudurable.jai.model.text.edit.EditRequest;
 import com.cloudurable.jai.model.text.edit.EditResponse;
+import com.cloudurable.jai.model.text.embedding.Embedding;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
 import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
 import io.nats.jparse.Json;
 import org.junit.jupiter.api.Assertions;
@@ -32,6 +35,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.List;
 import java.util.Optional;
 
 import static com.cloudurable.jai.util.RequestResponseUtils.*;
@@ -56,6 +60,35 @@ public class RequestResponseUtilsTest {
         assertEquals(uploadFileRequest, response.getRequest());
     }
 
+    @Test
+    public void testToEmbeddingMatrixResponse() {
+        EmbeddingRequest embeddingRequest = EmbeddingRequest.builder().input("a", "b").build();
+        EmbeddingResponse embeddingResponse = EmbeddingResponse.builder().object("list").model("m")
+                .data(List.of(new Embedding(1, new float[]{3, 4}), new Embedding(0, new float[]{1, 2}))).build();
+        ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientSuccessResponse.builder();
+
+        ClientResponse<EmbeddingRequest, EmbeddingMatrix> response = RequestResponseUtils.toEmbeddingMatrixResponse(
+                builder.request(embeddingRequest).response(embeddingResponse).statusCode(200).build());
+
+        assertEquals(embeddingRequest, response.getRequest());
+        assertEquals(200, response.getStatusCode().orElse(-1));
+        EmbeddingMatrix matrix = response.getResponse().orElseThrow();
+        assertEquals(2, matrix.getRowCount());
+        assertEquals(3.0f, matrix.get(1, 0));
+    }
+
+    @Test
+    public void testToEmbeddingMatrixResponseKeepsException() {
+        Throwable exception = new RuntimeException("Something went wrong");
+        EmbeddingRequest embeddingRequest = EmbeddingRequest.builder().input("a").build();
+
+        ClientResponse<EmbeddingRequest, EmbeddingMatrix> response = RequestResponseUtils.toEmbeddingMatrixResponse(
+                RequestResponseUtils.getErrorResponseForEmbeddingRequest(exception, embeddingRequest));
+
+        assertEquals(exception, response.getException().orElse(null));
+        assertTrue(response.getResponse().isEmpty());
+    }
+
     @Test
     public void testGetErrorResponseForCreateFineTuneRequest() {
         // Create the exception and request objects
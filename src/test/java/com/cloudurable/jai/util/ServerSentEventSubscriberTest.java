@@ -0,0 +1,68 @@
+package com.cloudurable.jai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerSentEventSubscriberTest {
+
+    @Test
+    void dispatchesEachEvent() {
+        final List<String> events = new ArrayList<>();
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(events::add);
+
+        subscriber.onNext("data: {\"a\":1}");
+        subscriber.onNext("");
+        subscriber.onNext(": keep-alive comment");
+        subscriber.onNext("");
+        subscriber.onNext("data:{\"b\":2}");
+        subscriber.onNext("");
+        subscriber.onNext("data: [DONE]");
+        subscriber.onNext("");
+        subscriber.onComplete();
+
+        assertEquals(2, events.size());
+        assertEquals("{\"a\":1}", events.get(0));
+        assertEquals("{\"b\":2}", events.get(1));
+        assertTrue(subscriber.isDone());
+        assertFalse(subscriber.getError().isPresent());
+    }
+
+    @Test
+    void joinsMultiLineData() {
+        final List<String> events = new ArrayList<>();
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(events::add);
+
+        subscriber.onNext("data: first");
+        subscriber.onNext("data: second");
+        subscriber.onComplete();
+
+        assertEquals(1, events.size());
+        assertEquals("first\nsecond", events.get(0));
+        assertFalse(subscriber.isDone());
+    }
+
+    @Test
+    void recordsConsumerError() {
+        final List<String> events = new ArrayList<>();
+        final ServerSentEventSubscriber subscriber = new ServerSentEventSubscriber(data -> {
+            if (data.equals("bad")) {
+                throw new IllegalStateException("bad event");
+            }
+            events.add(data);
+        });
+
+        subscriber.onNext("data: bad");
+        subscriber.onNext("");
+        subscriber.onNext("data: good");
+        subscriber.onNext("");
+        subscriber.onComplete();
+
+        assertTrue(subscriber.getError().isPresent());
+        assertEquals("bad event", subscriber.getError().get().getMessage());
+        assertTrue(events.isEmpty());
+    }
+}
@@ -0,0 +1,132 @@
+package com.cloudurable.jai.vector;
+
+import com.cloudurable.jai.Client;
+import com.cloudurable.jai.model.ClientResponse;
+import com.cloudurable.jai.model.ClientSuccessResponse;
+import com.cloudurable.jai.model.Usage;
+import com.cloudurable.jai.model.text.embedding.Embedding;
+import com.cloudurable.jai.model.text.embedding.EmbeddingRequest;
+import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EmbeddingStoreTest {
+
+    Path directory;
+
+    @BeforeEach
+    void before() throws IOException {
+        directory = Files.createTempDirectory("jai-embedding-store");
+    }
+
+    @AfterEach
+    void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void reopensAcrossSegments() {
+        try (EmbeddingStore store = open()) {
+            for (int index = 0; index < 10; index++) {
+                assertTrue(store.put("model", "text " + index, new float[]{index, -index, 0.5f}));
+            }
+            assertFalse(store.put("model", "text 3", new float[]{9, 9, 9}));
+            assertEquals(10, store.size());
+        }
+        assertTrue(Files.exists(directory.resolve("segment-000002.emb")));
+
+        try (EmbeddingStore store = open()) {
+            assertEquals(10, store.size());
+            for (int index = 0; index < 10; index++) {
+                assertArrayEquals(new float[]{index, -index, 0.5f}, store.get("model", "text " + index).orElseThrow());
+            }
+            assertFalse(store.get("other-model", "text 1").isPresent());
+            assertTrue(store.put("model", "text 10", new float[]{1, 2, 3}));
+            assertEquals(11, store.size());
+        }
+    }
+
+    @Test
+    void rejectsMismatchedDimensions() {
+        try (EmbeddingStore store = open()) {
+            store.put("model", "text", new float[]{1, 2, 3});
+            assertThrows(IllegalArgumentException.class, () -> store.put("model", "other", new float[]{1, 2}));
+        }
+        assertThrows(IllegalStateException.class, () ->
+                EmbeddingStore.builder().setDirectory(directory).setDimensions(4).setSegmentCapacity(4).build());
+    }
+
+    @Test
+    void sendsOnlyMissingInputs() {
+        final Client client = mock(Client.class);
+        when(client.embedding(any())).thenAnswer(invocation -> {
+            final EmbeddingRequest request = invocation.getArgument(0);
+            final List<Embedding> data = new ArrayList<>();
+            for (int index = 0; index < request.getInput().size(); index++) {
+                data.add(new Embedding(index, new float[]{request.getInput().get(index).length(), 0, 0}));
+            }
+            final EmbeddingResponse response = EmbeddingResponse.builder().object("list").model(request.getModel())
+                    .usage(new Usage(5, 0, 5)).data(data).build();
+            final ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientSuccessResponse.builder();
+            return builder.request(request).response(response).statusCode(200).build();
+        });
+
+        try (EmbeddingStore store = open()) {
+            store.put("text-embedding-ada-002", "stored", new float[]{7, 7, 7});
+            final EmbeddingRequest request = EmbeddingRequest.builder().input("a", "stored", "bbb", "a").build();
+
+            final ClientResponse<EmbeddingRequest, EmbeddingResponse> first = store.embedding(client, request);
+            final List<Embedding> data = first.getResponse().orElseThrow().getData();
+            assertEquals(4, data.size());
+            assertArrayEquals(new float[]{1, 0, 0}, data.get(0).getEmbedding());
+            assertArrayEquals(new float[]{7, 7, 7}, data.get(1).getEmbedding());
+            assertArrayEquals(new float[]{3, 0, 0}, data.get(2).getEmbedding());
+            assertArrayEquals(new float[]{1, 0, 0}, data.get(3).getEmbedding());
+            assertEquals(5, first.getResponse().get().getUsage().getTotalTokens());
+            assertEquals(3, store.size());
+
+            final ClientResponse<EmbeddingRequest, EmbeddingResponse> second = store.embedding(client, request);
+            assertEquals(0, second.getResponse().orElseThrow().getUsage().getTotalTokens());
+            assertArrayEquals(new float[]{3, 0, 0}, second.getResponse().get().getData().get(2).getEmbedding());
+        }
+        verify(client, times(1)).embedding(any());
+    }
+
+    @Test
+    void rejectsOutOfRangeIndex() {
+        final Client client = mock(Client.class);
+        when(client.embedding(any())).thenAnswer(invocation -> {
+            final EmbeddingRequest request = invocation.getArgument(0);
+            final EmbeddingResponse response = EmbeddingResponse.builder().object("list").model(request.getModel())
+                    .usage(new Usage(5, 0, 5)).data(List.of(new Embedding(1, new float[]{1, 2, 3}))).build();
+            final ClientSuccessResponse.Builder<EmbeddingRequest, EmbeddingResponse> builder = ClientSuccessResponse.builder();
+            return builder.request(request).response(response).statusCode(200).build();
+        });
+
+        try (EmbeddingStore store = open()) {
+            final EmbeddingRequest request = EmbeddingRequest.builder().input("a").build();
+            final ClientResponse<EmbeddingRequest, EmbeddingResponse> response = store.embedding(client, request);
+            assertInstanceOf(IllegalStateException.class, response.getException().orElseThrow());
+            assertEquals(0, store.size());
+        }
+    }
+
+    private EmbeddingStore open() {
+        return EmbeddingStore.builder().setDirectory(directory).setDimensions(3).setSegmentCapacity(4).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.cloudurable.jai.vector;
+
+import com.cloudurable.jai.model.text.embedding.Embedding;
+import com.cloudurable.jai.model.text.embedding.EmbeddingMatrix;
+import com.cloudurable.jai.model.text.embedding.EmbeddingResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatVectorIndexTest {
+
+    @Test
+    void findsNearestByCosine() {
+        final FlatVectorIndex index = new FlatVectorIndex(2, 1);
+        assertEquals(0, index.add(new float[]{1, 0}));
+        assertEquals(1, index.add(new float[]{0, 3}));
+        assertEquals(2, index.add(new float[]{2, 2}));
+
+        final List<SearchResult> results = index.search(new float[]{10, 1}, 2);
+
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).getId());
+        assertEquals(2, results.get(1).getId());
+        assertTrue(results.get(0).getScore() > results.get(1).getScore());
+        assertEquals(1.0f, VectorMath.dot(index.get(1), index.get(1)), 1e-6f);
+    }
+
+    @Test
+    void matchesBruteForce() {
+        final Random random = new Random(7);
+        final int dimensions = 33;
+        final float[][] vectors = new float[500][];
+        final FlatVectorIndex index = new FlatVectorIndex(dimensions);
+        for (int id = 0; id < vectors.length; id++) {
+            vectors[id] = randomVector(random, dimensions);
+            index.add(vectors[id]);
+        }
+        final float[] query = randomVector(random, dimensions);
+
+        int best = -1;
+        float bestScore = -2;
+        for (int id = 0; id < vectors.length; id++) {
+            final float score = VectorMath.dot(VectorMath.normalize(vectors[id]), VectorMath.normalize(query));
+            if (score > bestScore) {
+                bestScore = score;
+                best = id;
+            }
+        }
+        final List<SearchResult> results = index.search(query, 10);
+        assertEquals(10, results.size());
+        assertEquals(best, results.get(0).getId());
+        assertEquals(bestScore, results.get(0).getScore(), 1e-5f);
+    }
+
+    @Test
+    void loadsEmbeddingMatrix() {
+        final EmbeddingMatrix matrix = new EmbeddingMatrix("list", "model", null, 2, 2, new float[]{3, 4, 0, 1});
+        final FlatVectorIndex index = FlatVectorIndex.of(matrix);
+
+        assertEquals(2, index.size());
+        assertArrayEquals(new float[]{0.6f, 0.8f}, index.get(0), 1e-6f);
+        assertEquals(1, index.search(new float[]{0, 1}, 1).get(0).getId());
+    }
+
+    @Test
+    void loadsEmbeddingResponse() {
+        final EmbeddingResponse response = EmbeddingResponse.builder().object("list").model("model")
+                .data(Arrays.asList(new Embedding(0, new float[]{1, 0}), new Embedding(1, new float[]{0, 1}))).build();
+        final FlatVectorIndex index = new FlatVectorIndex(2);
+        index.add(new float[]{1, 1});
+
+        assertEquals(1, index.addAll(response));
+        assertEquals(3, index.size());
+        assertEquals(2, index.search(new float[]{0, 5}, 1).get(0).getId());
+    }
+
+    @Test
+    void searchesWhileAdding() throws Exception {
+        final FlatVectorIndex index = new FlatVectorIndex(8, 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            final Random random = new Random(1);
+            for (int count = 0; count < 5000; count++) {
+                index.add(randomVector(random, 8));
+            }
+        });
+        final Thread reader = new Thread(() -> {
+            try {
+                final Random random = new Random(2);
+                while (index.size() < 5000) {
+                    final List<SearchResult> results = index.search(randomVector(random, 8), 3);
+                    assertTrue(results.size() <= 3);
+                }
+            } catch (Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(5000, index.size());
+    }
+
+    @Test
+    void rejectsWrongDimensions() {
+        final FlatVectorIndex index = new FlatVectorIndex(3);
+        assertThrows(IllegalArgumentException.class, () -> index.add(new float[]{1, 2}));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[]{1, 2}, 1));
+        assertTrue(index.search(new float[]{1, 2, 3}, 5).isEmpty());
+    }
+
+    static float[] randomVector(final Random random, final int dimensions) {
+        final float[] vector = new float[dimensions];
+        for (int index = 0; index < dimensions; index++) {
+            vector[index] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudurable.jai.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.cloudurable.jai.vector.FlatVectorIndexTest.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswVectorIndexTest {
+
+    @Test
+    void recallMatchesExactSearch() {
+        final Random random = new Random(11);
+        final int dimensions = 32;
+        final FlatVectorIndex exact = new FlatVectorIndex(dimensions);
+        final HnswVectorIndex approximate = HnswVectorIndex.builder().setDimensions(dimensions).setM(12)
+                .setEfConstruction(100).setEfSearch(64).build();
+        for (int count = 0; count < 3000; count++) {
+            final float[] vector = randomVector(random, dimensions);
+            assertEquals(exact.add(vector), approximate.add(vector));
+        }
+        assertEquals(3000, approximate.size());
+
+        int found = 0;
+        final int queries = 50;
+        for (int query = 0; query < queries; query++) {
+            final float[] vector = randomVector(random, dimensions);
+            final Set<Integer> expected = new HashSet<>();
+            for (SearchResult result : exact.search(vector, 10)) {
+                expected.add(result.getId());
+            }
+            final List<SearchResult> results = approximate.search(vector, 10);
+            assertEquals(10, results.size());
+            for (int index = 1; index < results.size(); index++) {
+                assertTrue(results.get(index - 1).getScore() >= results.get(index).getScore());
+            }
+            for (SearchResult result : results) {
+                if (expected.contains(result.getId())) {
+                    found++;
+                }
+            }
+        }
+        final double recall = found / (queries * 10.0);
+        assertTrue(recall > 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    void findsStoredVector() {
+        final Random random = new Random(3);
+        final HnswVectorIndex index = HnswVectorIndex.builder().setDimensions(16).build();
+        final float[][] vectors = new float[200][];
+        for (int id = 0; id < vectors.length; id++) {
+            vectors[id] = randomVector(random, 16);
+            index.add(vectors[id]);
+        }
+        for (int id = 0; id < vectors.length; id += 17) {
+            final SearchResult best = index.search(vectors[id], 1).get(0);
+            assertEquals(id, best.getId());
+            assertEquals(1.0f, best.getScore(), 1e-5f);
+        }
+    }
+
+    @Test
+    void handlesEmptyAndSmallIndexes() {
+        final HnswVectorIndex index = HnswVectorIndex.builder().setDimensions(2).build();
+        assertTrue(index.search(new float[]{1, 0}, 3).isEmpty());
+        index.add(new float[]{1, 0});
+        index.add(new float[]{0, 1});
+        assertEquals(2, index.search(new float[]{1, 1}, 3).size());
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[]{1, 0}, 0));
+        assertThrows(IllegalArgumentException.class, () -> HnswVectorIndex.builder().build());
+    }
+}